@@ -0,0 +1,120 @@
+package com.pearson.statspoller.benchmarks;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds batches of metrics (& their wire formats) that look like what StatsPoller's collectors produce --
+ * a few hundred distinct hosts/components, 4-6 level metric paths, a mix of integer & decimal values, 2-3 tags per OpenTSDB metric.
+ * The batches are seeded, so every run of a benchmark works on the same data.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class BenchmarkData {
+    
+    private static final long SEED = 8675309L;
+    
+    private static final String[] COMPONENTS = {"Linux.Cpu", "Linux.Memory", "Linux.DiskIo", "Linux.Network", "Linux.FileSystem", "JMX.Tomcat", "MySQL", "Mongo"};
+    private static final String[] FIELDS = {"Used-Pct", "Free-Bytes", "Reads-Per-Second", "Writes-Per-Second", "Bytes-Received", "Connections", "Latency-Ms", "Uptime"};
+    
+    public static final int TIMESTAMP_IN_SECONDS = 1463373915;
+    public static final long TIMESTAMP_IN_MS = 1463373915123L;
+    
+    public static List<GraphiteMetric> getGraphiteMetrics(int numMetrics) {
+        
+        Random random = new Random(SEED);
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>(numMetrics);
+        
+        for (int i = 0; i < numMetrics; i++) {
+            graphiteMetrics.add(new GraphiteMetric(getMetricPath(random, i), getMetricValue(random), TIMESTAMP_IN_SECONDS));
+        }
+        
+        return graphiteMetrics;
+    }
+    
+    public static List<OpenTsdbMetric> getOpenTsdbMetrics(int numMetrics) {
+        
+        Random random = new Random(SEED);
+        List<OpenTsdbMetric> openTsdbMetrics = new ArrayList<>(numMetrics);
+        
+        for (int i = 0; i < numMetrics; i++) {
+            List<OpenTsdbTag> openTsdbTags = new ArrayList<>();
+            openTsdbTags.add(new OpenTsdbTag("host=host-" + (i % 250)));
+            openTsdbTags.add(new OpenTsdbTag("component=" + COMPONENTS[random.nextInt(COMPONENTS.length)].replace('.', '-')));
+            if ((i % 3) == 0) openTsdbTags.add(new OpenTsdbTag("instance=" + random.nextInt(16)));
+            
+            String metric = "StatsPoller." + FIELDS[random.nextInt(FIELDS.length)];
+            openTsdbMetrics.add(new OpenTsdbMetric(metric, TIMESTAMP_IN_MS, getMetricValue(random), openTsdbTags));
+        }
+        
+        return openTsdbMetrics;
+    }
+    
+    /*
+    Graphite plaintext lines, without the trailing newline.
+    */
+    public static List<String> getGraphiteLines(int numMetrics) {
+        
+        List<String> graphiteLines = new ArrayList<>(numMetrics);
+        for (GraphiteMetric graphiteMetric : getGraphiteMetrics(numMetrics)) graphiteLines.add(graphiteMetric.getGraphiteFormatString(false, false));
+        
+        return graphiteLines;
+    }
+    
+    /*
+    OpenTSDB telnet lines, without the leading 'put ' (which is how the telnet parser expects them).
+    */
+    public static List<String> getOpenTsdbTelnetLines(int numMetrics) {
+        
+        List<String> openTsdbTelnetLines = new ArrayList<>(numMetrics);
+        
+        for (OpenTsdbMetric openTsdbMetric : getOpenTsdbMetrics(numMetrics)) {
+            String openTsdbTelnetLine = openTsdbMetric.getOpenTsdbTelnetFormatString(false);
+            if (openTsdbTelnetLine.startsWith("put ")) openTsdbTelnetLine = openTsdbTelnetLine.substring(4);
+            openTsdbTelnetLines.add(openTsdbTelnetLine);
+        }
+        
+        return openTsdbTelnetLines;
+    }
+    
+    public static String getOpenTsdbJson(int numMetrics) {
+        return OpenTsdbMetric.getOpenTsdbJson(getOpenTsdbMetrics(numMetrics), false);
+    }
+    
+    /*
+    InfluxDB line protocol, one point per line, with millisecond timestamps.
+    */
+    public static String getInfluxdbLines(int numMetrics) {
+        
+        Random random = new Random(SEED);
+        StringBuilder influxdbLines = new StringBuilder(numMetrics * 96);
+        
+        for (int i = 0; i < numMetrics; i++) {
+            influxdbLines.append(COMPONENTS[random.nextInt(COMPONENTS.length)].replace('.', '_'))
+                    .append(",host=host-").append(i % 250)
+                    .append(",instance=").append(random.nextInt(16))
+                    .append(' ').append(FIELDS[random.nextInt(FIELDS.length)]).append('=').append(getMetricValue(random).toPlainString())
+                    .append(",count=").append(random.nextInt(1000)).append('i')
+                    .append(' ').append(TIMESTAMP_IN_MS + i)
+                    .append('\n');
+        }
+        
+        return influxdbLines.toString();
+    }
+    
+    private static String getMetricPath(Random random, int metricIndex) {
+        return "host-" + (metricIndex % 250) + "." + COMPONENTS[random.nextInt(COMPONENTS.length)] + ".instance-" + random.nextInt(16) + "." + FIELDS[random.nextInt(FIELDS.length)];
+    }
+    
+    // roughly half integers (counters) & half 3-decimal-place values (percentages, rates)
+    private static BigDecimal getMetricValue(Random random) {
+        if (random.nextBoolean()) return new BigDecimal(random.nextInt(10000000));
+        else return BigDecimal.valueOf(random.nextInt(10000000), 3);
+    }
+
+}
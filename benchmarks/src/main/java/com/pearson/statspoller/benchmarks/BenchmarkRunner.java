@@ -0,0 +1,37 @@
+package com.pearson.statspoller.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The benchmarks jar's main class. Takes the same arguments as JMH's own runner (ex- a benchmark regex, '-p batchSize=1000'),
+ * but always adds the GC profiler, so that allocation rates (gc.alloc.rate.norm = bytes allocated per batch) are reported alongside timings.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class BenchmarkRunner {
+    
+    public static void main(String[] args) throws Exception {
+        
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+        
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build();
+        
+        Runner runner = new Runner(options);
+        
+        if (commandLineOptions.shouldList()) runner.list();
+        else runner.run();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.pearson.statspoller.benchmarks;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.output.MetricEncodingCache;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding & parsing a batch of Graphite metrics. Each operation is one full batch.
+ *
+ * @author Jeffrey Schmidt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphiteMetricBenchmark {
+    
+    @Param({"1000", "10000", "100000"})
+    public int batchSize;
+    
+    private List<GraphiteMetric> graphiteMetrics_;
+    private List<String> graphiteLines_;
+    
+    @Setup
+    public void setup() {
+        graphiteMetrics_ = BenchmarkData.getGraphiteMetrics(batchSize);
+        graphiteLines_ = BenchmarkData.getGraphiteLines(batchSize);
+    }
+    
+    @Benchmark
+    public void getGraphiteFormatString(Blackhole blackhole) {
+        for (GraphiteMetric graphiteMetric : graphiteMetrics_) blackhole.consume(graphiteMetric.getGraphiteFormatString(true, true));
+    }
+    
+    // what the graphite output modules actually send
+    @Benchmark
+    public Object encodeGraphite() {
+        return MetricEncodingCache.encodeGraphite(graphiteMetrics_, true, true);
+    }
+    
+    @Benchmark
+    public void parseGraphiteMetric(Blackhole blackhole) {
+        for (String graphiteLine : graphiteLines_) blackhole.consume(GraphiteMetric.parseGraphiteMetric(graphiteLine, null, BenchmarkData.TIMESTAMP_IN_MS));
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.pearson.statspoller.benchmarks;
+
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetric_v2;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a batch of InfluxDB line protocol points. Each operation is one full batch.
+ *
+ * Note : InfluxdbMetric_v2.parseInfluxdbMetricLines is unfinished -- it only scans the first line, & returns no metrics.
+ * This benchmark is here so that there is a baseline once the parser is finished.
+ *
+ * @author Jeffrey Schmidt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InfluxdbMetricBenchmark {
+    
+    @Param({"1000", "10000", "100000"})
+    public int batchSize;
+    
+    private String influxdbLines_;
+    
+    @Setup
+    public void setup() {
+        influxdbLines_ = BenchmarkData.getInfluxdbLines(batchSize);
+    }
+    
+    @Benchmark
+    public List<InfluxdbMetric_v2> parseInfluxdbMetricLines() {
+        return InfluxdbMetric_v2.parseInfluxdbMetricLines("statspoller", influxdbLines_, null, null, null,
+                null, null, "ms", null, BenchmarkData.TIMESTAMP_IN_MS);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.pearson.statspoller.benchmarks;
+
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.output.MetricEncodingCache;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding & parsing a batch of OpenTSDB metrics, in both the telnet & the HTTP (json) formats. Each operation is one full batch.
+ *
+ * @author Jeffrey Schmidt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OpenTsdbMetricBenchmark {
+    
+    @Param({"1000", "10000", "100000"})
+    public int batchSize;
+    
+    private List<OpenTsdbMetric> openTsdbMetrics_;
+    private List<String> openTsdbTelnetLines_;
+    private String openTsdbJson_;
+    
+    @Setup
+    public void setup() {
+        openTsdbMetrics_ = BenchmarkData.getOpenTsdbMetrics(batchSize);
+        openTsdbTelnetLines_ = BenchmarkData.getOpenTsdbTelnetLines(batchSize);
+        openTsdbJson_ = BenchmarkData.getOpenTsdbJson(batchSize);
+    }
+    
+    @Benchmark
+    public void getOpenTsdbTelnetFormatString(Blackhole blackhole) {
+        for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics_) blackhole.consume(openTsdbMetric.getOpenTsdbTelnetFormatString(true));
+    }
+    
+    @Benchmark
+    public String getOpenTsdbJson() {
+        return OpenTsdbMetric.getOpenTsdbJson(openTsdbMetrics_, true);
+    }
+    
+    // what the opentsdb telnet output modules actually send
+    @Benchmark
+    public Object encodeOpenTsdbTelnet() {
+        return MetricEncodingCache.encodeOpenTsdbTelnet(openTsdbMetrics_, true, null, null);
+    }
+    
+    // what the opentsdb http output modules actually send
+    @Benchmark
+    public Object encodeOpenTsdbJson() {
+        return MetricEncodingCache.encodeOpenTsdbJson(openTsdbMetrics_, true, null, null);
+    }
+    
+    @Benchmark
+    public void parseOpenTsdbTelnetMetric(Blackhole blackhole) {
+        for (String openTsdbTelnetLine : openTsdbTelnetLines_) blackhole.consume(OpenTsdbMetric.parseOpenTsdbTelnetMetric(openTsdbTelnetLine, null, BenchmarkData.TIMESTAMP_IN_MS));
+    }
+    
+    @Benchmark
+    public List<OpenTsdbMetric> parseOpenTsdbJson() {
+        return OpenTsdbMetric.parseOpenTsdbJson(openTsdbJson_, null, BenchmarkData.TIMESTAMP_IN_MS);
+    }
+
+}
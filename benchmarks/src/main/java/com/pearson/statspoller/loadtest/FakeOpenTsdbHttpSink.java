@@ -0,0 +1,205 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fake OpenTSDB HTTP endpoint. Accepts POSTs of OpenTSDB json (optionally gzip compressed) to '/api/put', & replies like OpenTSDB does (204 No Content).
+ *
+ * Latency is injected before every reply, so a slow sink ties up the sender's in-flight requests the same way a slow OpenTSDB does.
+ * A failure is injected by replying with a 500 (& not counting the request's metrics).
+ *
+ * @author Jeffrey Schmidt
+ */
+public class FakeOpenTsdbHttpSink extends FakeSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FakeOpenTsdbHttpSink.class.getName());
+    
+    public static final String PATH = "/api/put";
+    
+    private static final int NUM_REQUEST_THREADS = 32;
+    private static final byte[] VALUE_KEY = "\"value\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FAILURE_RESPONSE = "{\"error\":{\"code\":500,\"message\":\"Injected failure\"}}".getBytes(StandardCharsets.UTF_8);
+    
+    private HttpServer httpServer_ = null;
+    private ExecutorService executorService_ = null;
+    
+    public FakeOpenTsdbHttpSink(String name, long latencyInMs, double failureRate) {
+        super(name, latencyInMs, failureRate);
+    }
+    
+    @Override
+    public synchronized boolean start() {
+        
+        if (httpServer_ != null) return true;
+        
+        try {
+            executorService_ = Executors.newFixedThreadPool(NUM_REQUEST_THREADS, getThreadFactory(getName()));
+            
+            httpServer_ = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            httpServer_.createContext(PATH, new PutHandler());
+            httpServer_.setExecutor(executorService_);
+            httpServer_.start();
+            
+            return true;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            stop();
+            return false;
+        }
+    }
+    
+    @Override
+    public synchronized void stop() {
+        
+        try {
+            if (httpServer_ != null) httpServer_.stop(0);
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        
+        if (executorService_ != null) executorService_.shutdownNow();
+        
+        httpServer_ = null;
+        executorService_ = null;
+    }
+    
+    @Override
+    public synchronized int getPort() {
+        if (httpServer_ == null) return -1;
+        else return httpServer_.getAddress().getPort();
+    }
+    
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort() + PATH;
+    }
+    
+    private final class PutHandler implements HttpHandler {
+        
+        @Override
+        public void handle(HttpExchange httpExchange) throws IOException {
+            
+            try {
+                if (!"POST".equalsIgnoreCase(httpExchange.getRequestMethod())) {
+                    httpExchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                
+                byte[] requestBody = readFully(httpExchange.getRequestBody());
+                recordBytes(requestBody.length);
+                if ("gzip".equalsIgnoreCase(httpExchange.getRequestHeaders().getFirst("Content-Encoding"))) requestBody = gunzip(requestBody);
+                
+                injectLatency();
+                
+                if (shouldInjectFailure()) {
+                    httpExchange.getResponseHeaders().set("Content-Type", "application/json");
+                    httpExchange.sendResponseHeaders(500, FAILURE_RESPONSE.length);
+                    OutputStream outputStream = httpExchange.getResponseBody();
+                    outputStream.write(FAILURE_RESPONSE);
+                    outputStream.flush();
+                    return;
+                }
+                
+                recordMetrics(requestBody, System.currentTimeMillis());
+                httpExchange.sendResponseHeaders(204, -1);
+            }
+            catch (Exception e) {
+                logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+            finally {
+                httpExchange.close();
+            }
+        }
+    
+    }
+    
+    /*
+    Counts every '"value":<number>' in the json. This is much cheaper than fully parsing the json, so the sink doesn't compete with the sender for cpu.
+    */
+    private void recordMetrics(byte[] openTsdbJson, long receivedTimestampInMs) {
+        
+        for (int i = indexOf(openTsdbJson, VALUE_KEY, 0); i >= 0; i = indexOf(openTsdbJson, VALUE_KEY, i)) {
+            i += VALUE_KEY.length;
+            
+            int valueEndIndex = i;
+            while ((valueEndIndex < openTsdbJson.length) && (openTsdbJson[valueEndIndex] != ',') && (openTsdbJson[valueEndIndex] != '}')) valueEndIndex++;
+            
+            try {
+                long metricProducedTimestampInMs = (long) Double.parseDouble(new String(openTsdbJson, i, valueEndIndex - i, StandardCharsets.UTF_8).trim());
+                recordMetric(metricProducedTimestampInMs, receivedTimestampInMs);
+            }
+            catch (Exception e) {
+                logger.debug("Unparseable value: \"" + new String(openTsdbJson, i, valueEndIndex - i, StandardCharsets.UTF_8) + "\"");
+            }
+        }
+    }
+    
+    private static int indexOf(byte[] bytes, byte[] target, int fromIndex) {
+        
+        for (int i = fromIndex; i <= (bytes.length - target.length); i++) {
+            int j = 0;
+            while ((j < target.length) && (bytes[i + j] == target[j])) j++;
+            if (j == target.length) return i;
+        }
+        
+        return -1;
+    }
+    
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16384];
+        
+        int numBytesRead;
+        while ((numBytesRead = inputStream.read(buffer)) >= 0) byteArrayOutputStream.write(buffer, 0, numBytesRead);
+        
+        return byteArrayOutputStream.toByteArray();
+    }
+    
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        
+        GZIPInputStream gzipInputStream = null;
+        
+        try {
+            gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
+            return readFully(gzipInputStream);
+        }
+        finally {
+            if (gzipInputStream != null) gzipInputStream.close();
+        }
+    }
+    
+    private static ThreadFactory getThreadFactory(final String name) {
+        
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FakeOpenTsdbHttpSink-" + name + "-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.utilities.core_utils.Threads;
+import com.pearson.statspoller.utilities.math_utils.AtomicHistogram;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for a metrics endpoint (Graphite, OpenTSDB). It counts what it receives, but doesn't store it.
+ *
+ * The load test puts the time that each metric was produced into the metric's value, so a sink can work out how long each metric took to get to it (the lag).
+ * A sink can be made slow (latency) or unreliable (failure rate), to see how the output path copes with a struggling endpoint.
+ *
+ * @author Jeffrey Schmidt
+ */
+public abstract class FakeSink {
+    
+    private final String name_;
+    private final long latencyInMs_;
+    private final double failureRate_;
+    
+    private final AtomicLong numMetricsReceived_ = new AtomicLong(0);
+    private final AtomicLong numBytesReceived_ = new AtomicLong(0);
+    private final AtomicLong numInjectedFailures_ = new AtomicLong(0);
+    private final AtomicHistogram lagInMs_ = new AtomicHistogram();
+    
+    public FakeSink(String name, long latencyInMs, double failureRate) {
+        this.name_ = name;
+        this.latencyInMs_ = latencyInMs;
+        this.failureRate_ = failureRate;
+    }
+    
+    /*
+    Starts listening on any free port. Returns true if the sink was started (or was already running).
+    */
+    public abstract boolean start();
+    
+    public abstract void stop();
+    
+    /*
+    The port that the sink is listening on.
+    */
+    public abstract int getPort();
+    
+    /*
+    Counts a metric that was received. The metric's value is the time (in ms) that it was produced.
+    */
+    protected void recordMetric(long metricProducedTimestampInMs, long metricReceivedTimestampInMs) {
+        numMetricsReceived_.incrementAndGet();
+        lagInMs_.record(metricReceivedTimestampInMs - metricProducedTimestampInMs);
+    }
+    
+    protected void recordBytes(long numBytesReceived) {
+        numBytesReceived_.addAndGet(numBytesReceived);
+    }
+    
+    /*
+    Sleeps for the sink's latency (if it has any).
+    */
+    protected void injectLatency() {
+        if (latencyInMs_ > 0) Threads.sleepMilliseconds(latencyInMs_);
+    }
+    
+    /*
+    Returns true (& counts an injected failure) on a 'failureRate' fraction of calls. A failure rate of 0.05 fails 1 in 20 calls.
+    */
+    protected boolean shouldInjectFailure() {
+        
+        if (failureRate_ <= 0) return false;
+        
+        if (ThreadLocalRandom.current().nextDouble() < failureRate_) {
+            numInjectedFailures_.incrementAndGet();
+            return true;
+        }
+        
+        return false;
+    }
+    
+    public String getName() {
+        return name_;
+    }
+    
+    public long getLatencyInMs() {
+        return latencyInMs_;
+    }
+    
+    public double getFailureRate() {
+        return failureRate_;
+    }
+    
+    public long getNumMetricsReceived() {
+        return numMetricsReceived_.get();
+    }
+    
+    public long getNumBytesReceived() {
+        return numBytesReceived_.get();
+    }
+    
+    public long getNumInjectedFailures() {
+        return numInjectedFailures_.get();
+    }
+    
+    /*
+    The lag (time from production to receipt) of every metric that was received since the last snapshot.
+    */
+    public AtomicHistogram.Snapshot getLagSnapshotAndReset() {
+        return lagInMs_.getSnapshotAndReset();
+    }
+
+}
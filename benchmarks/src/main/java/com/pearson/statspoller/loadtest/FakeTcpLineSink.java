@@ -0,0 +1,212 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fake line-based TCP endpoint -- accepts Graphite plaintext lines ('path value timestamp') & OpenTSDB telnet lines ('put metric timestamp value tags').
+ *
+ * Latency is injected after every read from a connection (each read is up to 64KB), so a slow sink pushes back on the sender the same way a slow carbon-cache does.
+ * A failure is injected by closing the connection instead of reading from it. Whatever the sender had already written to the connection is lost.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class FakeTcpLineSink extends FakeSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FakeTcpLineSink.class.getName());
+    
+    private static final int READ_BUFFER_SIZE_IN_BYTES = 65536;
+    
+    private final List<Socket> sockets_ = new ArrayList<>();
+    
+    private ServerSocket serverSocket_ = null;
+    private volatile boolean continueRunning_ = false;
+    
+    public FakeTcpLineSink(String name, long latencyInMs, double failureRate) {
+        super(name, latencyInMs, failureRate);
+    }
+    
+    @Override
+    public synchronized boolean start() {
+        
+        if (serverSocket_ != null) return true;
+        
+        try {
+            serverSocket_ = new ServerSocket();
+            serverSocket_.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            continueRunning_ = true;
+            
+            Thread acceptThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    acceptConnections();
+                }
+            }, "FakeTcpLineSink-" + getName());
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+            
+            return true;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            stop();
+            return false;
+        }
+    }
+    
+    @Override
+    public synchronized void stop() {
+        
+        continueRunning_ = false;
+        
+        try {
+            if (serverSocket_ != null) serverSocket_.close();
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        
+        synchronized (sockets_) {
+            for (Socket socket : sockets_) closeSocket(socket);
+            sockets_.clear();
+        }
+    }
+    
+    @Override
+    public synchronized int getPort() {
+        if (serverSocket_ == null) return -1;
+        else return serverSocket_.getLocalPort();
+    }
+    
+    private void acceptConnections() {
+        
+        while (continueRunning_) {
+            try {
+                final Socket socket = serverSocket_.accept();
+                synchronized (sockets_) {
+                    sockets_.add(socket);
+                }
+                
+                Thread connectionThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        readConnection(socket);
+                    }
+                }, "FakeTcpLineSink-" + getName() + "-Connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            }
+            catch (Exception e) {
+                if (continueRunning_) logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+    }
+    
+    /*
+    Reads lines until the sender closes the connection (or until a failure is injected).
+    A line that is split across two reads is carried over to the next read.
+    */
+    private void readConnection(Socket socket) {
+        
+        byte[] readBuffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+        byte[] partialLine = new byte[0];
+        
+        try {
+            InputStream inputStream = socket.getInputStream();
+            
+            while (continueRunning_) {
+                injectLatency();
+                if (shouldInjectFailure()) break;
+                
+                int numBytesRead = inputStream.read(readBuffer);
+                if (numBytesRead < 0) break;
+                recordBytes(numBytesRead);
+                
+                long receivedTimestampInMs = System.currentTimeMillis();
+                int lineStartIndex = 0;
+                
+                for (int i = 0; i < numBytesRead; i++) {
+                    if (readBuffer[i] != '\n') continue;
+                    
+                    String line;
+                    if (partialLine.length == 0) {
+                        line = new String(readBuffer, lineStartIndex, i - lineStartIndex, StandardCharsets.UTF_8);
+                    }
+                    else {
+                        byte[] lineBytes = new byte[partialLine.length + (i - lineStartIndex)];
+                        System.arraycopy(partialLine, 0, lineBytes, 0, partialLine.length);
+                        System.arraycopy(readBuffer, lineStartIndex, lineBytes, partialLine.length, i - lineStartIndex);
+                        line = new String(lineBytes, StandardCharsets.UTF_8);
+                        partialLine = new byte[0];
+                    }
+                    
+                    parseLine(line, receivedTimestampInMs);
+                    lineStartIndex = i + 1;
+                }
+                
+                if (lineStartIndex < numBytesRead) {
+                    byte[] newPartialLine = new byte[partialLine.length + (numBytesRead - lineStartIndex)];
+                    System.arraycopy(partialLine, 0, newPartialLine, 0, partialLine.length);
+                    System.arraycopy(readBuffer, lineStartIndex, newPartialLine, partialLine.length, numBytesRead - lineStartIndex);
+                    partialLine = newPartialLine;
+                }
+            }
+        }
+        catch (Exception e) {
+            if (continueRunning_) logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        finally {
+            synchronized (sockets_) {
+                sockets_.remove(socket);
+            }
+            
+            closeSocket(socket);
+        }
+    }
+    
+    /*
+    Graphite : 'path value timestamp'. OpenTSDB telnet : 'put metric timestamp value tag1=a tag2=b'.
+    */
+    private void parseLine(String line, long receivedTimestampInMs) {
+        
+        try {
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty()) return;
+            
+            boolean isOpenTsdb = trimmedLine.startsWith("put ");
+            int fieldIndex = isOpenTsdb ? 3 : 1;
+            
+            int fieldStartIndex = 0;
+            for (int i = 0; i < fieldIndex; i++) fieldStartIndex = trimmedLine.indexOf(' ', fieldStartIndex) + 1;
+            
+            int fieldEndIndex = trimmedLine.indexOf(' ', fieldStartIndex);
+            if (fieldEndIndex < 0) fieldEndIndex = trimmedLine.length();
+            
+            long metricProducedTimestampInMs = (long) Double.parseDouble(trimmedLine.substring(fieldStartIndex, fieldEndIndex));
+            recordMetric(metricProducedTimestampInMs, receivedTimestampInMs);
+        }
+        catch (Exception e) {
+            logger.debug("Unparseable line: \"" + line + "\"");
+        }
+    }
+    
+    private static void closeSocket(Socket socket) {
+        
+        try {
+            if (socket != null) socket.close();
+        }
+        catch (Exception e) {
+            logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.globals.AgentInstrumentation;
+import com.pearson.statspoller.globals.GlobalVariables;
+import com.pearson.statspoller.output.OutputMetricsThread;
+import com.pearson.statspoller.output.OutputModuleScheduler;
+import com.pearson.statspoller.utilities.math_utils.AtomicHistogram;
+import java.util.List;
+
+/**
+ * Prints a load test's per-interval results (one line per sink), & the summary at the end of the test.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class LoadTestReport {
+    
+    private static final String INTERVAL_FORMAT = "%7s  %-14s %11s %11s %9s %9s %9s %9s %6s %7s %8s %8s %12s";
+    
+    private final List<FakeSink> sinks_;
+    private final List<String> sinkOutputModuleIds_;
+    private final long outputIntervalInMs_;
+    private final long startTimeInMs_;
+    
+    private long previousReportTimeInMs_;
+    private long previousNumMetricsProduced_ = 0;
+    
+    // per sink (same order as sinks_)
+    private final long[] previousNumMetricsReceived_;
+    private final long[] previousNumSends_;
+    private final long[] previousNumFailedSends_;
+    private final long[] worstLagP99InMs_;
+    private final long[] maxLagInMs_;
+    private final long[] firstReceiveIntervalStartTimeInMs_;
+    private final long[] lastReceiveTimeInMs_;
+    
+    public LoadTestReport(List<FakeSink> sinks, List<String> sinkOutputModuleIds, long outputIntervalInMs, long startTimeInMs) {
+        this.sinks_ = sinks;
+        this.sinkOutputModuleIds_ = sinkOutputModuleIds;
+        this.outputIntervalInMs_ = outputIntervalInMs;
+        this.startTimeInMs_ = startTimeInMs;
+        this.previousReportTimeInMs_ = startTimeInMs;
+        
+        this.previousNumMetricsReceived_ = new long[sinks.size()];
+        this.previousNumSends_ = new long[sinks.size()];
+        this.previousNumFailedSends_ = new long[sinks.size()];
+        this.worstLagP99InMs_ = new long[sinks.size()];
+        this.maxLagInMs_ = new long[sinks.size()];
+        this.firstReceiveIntervalStartTimeInMs_ = new long[sinks.size()];
+        this.lastReceiveTimeInMs_ = new long[sinks.size()];
+    }
+    
+    public void printHeader() {
+        System.out.println(String.format(INTERVAL_FORMAT, "Time", "Sink", "Produced/s", "Received/s", "Lag-P50", "Lag-P99", "Lag-Max",
+                "Send-P99", "Sends", "Failed", "Backlog", "Dropped", "Queue-Drops"));
+    }
+    
+    /*
+    Prints the results of the interval since the last call. Returns true if any sink received metrics during the interval.
+    */
+    public boolean printInterval(SyntheticMetricProducer syntheticMetricProducer) {
+        
+        long currentTimeInMs = System.currentTimeMillis();
+        long intervalStartTimeInMs = previousReportTimeInMs_;
+        double intervalInSeconds = Math.max(1, currentTimeInMs - intervalStartTimeInMs) / 1000.0;
+        previousReportTimeInMs_ = currentTimeInMs;
+        
+        long numMetricsProduced = syntheticMetricProducer.getNumMetricsProduced();
+        long metricsProducedPerSecond = Math.round((numMetricsProduced - previousNumMetricsProduced_) / intervalInSeconds);
+        previousNumMetricsProduced_ = numMetricsProduced;
+        
+        long numQueueDrops = GlobalVariables.graphiteMetrics.getNumDroppedMetrics();
+        String time = ((currentTimeInMs - startTimeInMs_) / 1000) + "s";
+        boolean didAnySinkReceiveMetrics = false;
+        
+        for (int i = 0; i < sinks_.size(); i++) {
+            FakeSink sink = sinks_.get(i);
+            String outputModuleUniqueId = sinkOutputModuleIds_.get(i);
+            
+            long numMetricsReceived = sink.getNumMetricsReceived();
+            long metricsReceivedPerSecond = Math.round((numMetricsReceived - previousNumMetricsReceived_[i]) / intervalInSeconds);
+            if (numMetricsReceived > previousNumMetricsReceived_[i]) {
+                didAnySinkReceiveMetrics = true;
+                if (firstReceiveIntervalStartTimeInMs_[i] == 0) firstReceiveIntervalStartTimeInMs_[i] = intervalStartTimeInMs;
+                lastReceiveTimeInMs_[i] = currentTimeInMs;
+            }
+            previousNumMetricsReceived_[i] = numMetricsReceived;
+            
+            AtomicHistogram.Snapshot lagSnapshot = sink.getLagSnapshotAndReset();
+            long lagP99 = lagSnapshot.getPercentile(99);
+            worstLagP99InMs_[i] = Math.max(worstLagP99InMs_[i], lagP99);
+            maxLagInMs_[i] = Math.max(maxLagInMs_[i], lagSnapshot.getMax());
+            
+            AgentInstrumentation.OutputModuleInstrumentation outputModuleInstrumentation = AgentInstrumentation.getOutputModuleInstrumentation(outputModuleUniqueId);
+            AtomicHistogram.Snapshot sendTimeSnapshot = getSendTimeSnapshotAndReset(outputModuleUniqueId);
+            long numSends = outputModuleInstrumentation.getNumSends();
+            long numFailedSends = outputModuleInstrumentation.getNumFailedSends();
+            
+            OutputModuleScheduler outputModuleScheduler = getOutputModuleScheduler(outputModuleUniqueId);
+            int backlogSize = (outputModuleScheduler == null) ? 0 : outputModuleScheduler.getBacklogSize();
+            long numDroppedBatches = (outputModuleScheduler == null) ? 0 : outputModuleScheduler.getNumDroppedBatches();
+            
+            System.out.println(String.format(INTERVAL_FORMAT, (i == 0) ? time : "", sink.getName(), (i == 0) ? metricsProducedPerSecond : "",
+                    metricsReceivedPerSecond, getLagString(lagSnapshot.getCount(), lagSnapshot.getPercentile(50)), getLagString(lagSnapshot.getCount(), lagP99),
+                    getLagString(lagSnapshot.getCount(), lagSnapshot.getMax()), getLagString(sendTimeSnapshot.getCount(), sendTimeSnapshot.getPercentile(99)),
+                    numSends - previousNumSends_[i], numFailedSends - previousNumFailedSends_[i], backlogSize, numDroppedBatches, (i == 0) ? numQueueDrops : ""));
+            
+            previousNumSends_[i] = numSends;
+            previousNumFailedSends_[i] = numFailedSends;
+        }
+        
+        return didAnySinkReceiveMetrics;
+    }
+    
+    /*
+    True once every sink has received (at least) every metric that made it into the ingestion queue.
+    */
+    public boolean isEverySinkCaughtUp(SyntheticMetricProducer syntheticMetricProducer) {
+        
+        for (FakeSink sink : sinks_) {
+            if (sink.getNumMetricsReceived() < syntheticMetricProducer.getNumMetricsQueued()) return false;
+        }
+        
+        return true;
+    }
+    
+    /*
+    Loss is the metrics that were produced, but never received (including ingestion queue drops). A negative loss means that some metrics were received more than once (ex- a retried http request).
+    A sink kept up if it lost nothing, & its worst interval p99 lag was under two output intervals (a metric normally waits up to one output interval before it is sent).
+    */
+    public void printSummary(SyntheticMetricProducer syntheticMetricProducer) {
+        
+        long numMetricsProduced = syntheticMetricProducer.getNumMetricsProduced();
+        long numMetricsQueued = syntheticMetricProducer.getNumMetricsQueued();
+        
+        System.out.println();
+        System.out.println("Summary");
+        System.out.println("  Produced=" + numMetricsProduced + ", Queued=" + numMetricsQueued + ", IngestionQueueDrops=" + (numMetricsProduced - numMetricsQueued));
+        
+        for (int i = 0; i < sinks_.size(); i++) {
+            FakeSink sink = sinks_.get(i);
+            AgentInstrumentation.OutputModuleInstrumentation outputModuleInstrumentation = AgentInstrumentation.getOutputModuleInstrumentation(sinkOutputModuleIds_.get(i));
+            OutputModuleScheduler outputModuleScheduler = getOutputModuleScheduler(sinkOutputModuleIds_.get(i));
+            
+            long numMetricsReceived = sink.getNumMetricsReceived();
+            long numMetricsLost = numMetricsProduced - numMetricsReceived;
+            double lossPercent = (numMetricsProduced == 0) ? 0 : (100.0 * numMetricsLost) / numMetricsProduced;
+            
+            // throughput is measured over the intervals that the sink received metrics in (so the wait for the first output interval isn't counted)
+            long receiveTimeInMs = Math.max(1, lastReceiveTimeInMs_[i] - firstReceiveIntervalStartTimeInMs_[i]);
+            long metricsReceivedPerSecond = (lastReceiveTimeInMs_[i] == 0) ? 0 : Math.round(numMetricsReceived / (receiveTimeInMs / 1000.0));
+            
+            boolean didKeepUp = (numMetricsLost <= 0) && (worstLagP99InMs_[i] < (2 * outputIntervalInMs_));
+            
+            System.out.println("  " + sink.getName() + " : " + (didKeepUp ? "kept up" : "FELL BEHIND"));
+            System.out.println("    Received=" + numMetricsReceived + ", Lost=" + numMetricsLost + String.format(" (%.2f%%)", lossPercent) + ", Received/s=" + metricsReceivedPerSecond +
+                    ", WorstIntervalLagP99=" + worstLagP99InMs_[i] + "ms, MaxLag=" + maxLagInMs_[i] + "ms");
+            System.out.println("    Sends=" + outputModuleInstrumentation.getNumSends() + ", FailedSends=" + outputModuleInstrumentation.getNumFailedSends() +
+                    ", SendRetries=" + outputModuleInstrumentation.getNumRetryAttempts() + ", DroppedBatches=" + ((outputModuleScheduler == null) ? 0 : outputModuleScheduler.getNumDroppedBatches()) +
+                    ", InjectedFailures=" + sink.getNumInjectedFailures() + ", BytesReceived=" + sink.getNumBytesReceived());
+        }
+    }
+    
+    /*
+    Returns the scheduler of an output module. Returns null if the output module doesn't have one (ex- it isn't enabled).
+    */
+    private static OutputModuleScheduler getOutputModuleScheduler(String outputModuleUniqueId) {
+        
+        for (OutputModuleScheduler outputModuleScheduler : OutputMetricsThread.getOutputModuleSchedulers()) {
+            if (outputModuleScheduler.getOutputModuleUniqueId().equals(outputModuleUniqueId)) return outputModuleScheduler;
+        }
+        
+        return null;
+    }
+    
+    /*
+    Takes (& resets) the send time histogram of an output module.
+    */
+    private static AtomicHistogram.Snapshot getSendTimeSnapshotAndReset(String outputModuleUniqueId) {
+        return AgentInstrumentation.getOutputModuleInstrumentation(outputModuleUniqueId).getSendTimeInMs().getSnapshotAndReset();
+    }
+    
+    private static String getLagString(long count, long valueInMs) {
+        if (count == 0) return "-";
+        else return valueInMs + "ms";
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.globals.ApplicationConfiguration;
+import com.pearson.statspoller.globals.GlobalVariables;
+import com.pearson.statspoller.output.OutputMetricsInvokerThread;
+import com.pearson.statspoller.utilities.core_utils.Threads;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An end-to-end throughput test of StatsPoller's output path. Answers "how many metrics/second can one agent push?".
+ *
+ * Starts in-process fake endpoints (a Graphite TCP sink, an OpenTSDB HTTP sink), points StatsPoller's real output modules at them,
+ * & runs the real output thread & output module schedulers. Synthetic metrics are put in the ingestion queue at a set rate.
+ * Every output interval, it reports the rate that each sink received metrics at, the lag (p50/p99/max time from a metric being produced to a sink receiving it),
+ * & the output module's send times, failed sends, & backlog. When producing stops, it waits for the sinks to drain, then reports the loss.
+ *
+ * A metric normally waits up to one output interval in the ingestion queue, so a lag of up to 'output interval + send time' is expected.
+ * A p99 lag that keeps growing past that means that the output path isn't keeping up with the rate.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class LoadTestRunner {
+    
+    private static final String SINK_GRAPHITE = "graphite";
+    private static final String SINK_OPENTSDB_HTTP = "opentsdb-http";
+    
+    private long metricsPerSecond_ = 10000;
+    private long durationInSeconds_ = 60;
+    private int numSeries_ = 10000;
+    private double outputIntervalInSeconds_ = 10;
+    private final List<String> sinkNames_ = new ArrayList<>();
+    private long sinkLatencyInMs_ = 0;
+    private double sinkFailureRate_ = 0;
+    private int graphiteMaxMetricsPerMessage_ = 1000;
+    private int openTsdbMaxMetricsPerMessage_ = 50;
+    private boolean openTsdbGzip_ = false;
+    private String extraConfigFile_ = null;
+    
+    private final List<FakeSink> sinks_ = new ArrayList<>();
+    private final List<String> sinkOutputModuleIds_ = new ArrayList<>();
+    
+    public static void main(String[] args) throws Exception {
+        
+        LoadTestRunner loadTestRunner = new LoadTestRunner();
+        
+        if (!loadTestRunner.parseArguments(args)) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        int exitCode = loadTestRunner.run() ? 0 : 1;
+        System.exit(exitCode);
+    }
+    
+    private static void printUsage() {
+        System.out.println("Usage: java -cp benchmarks.jar com.pearson.statspoller.loadtest.LoadTestRunner [options]");
+        System.out.println("  --rate <n>                      Metrics per second to produce. Default: 10000");
+        System.out.println("  --duration <seconds>            How long to produce metrics for. Default: 60");
+        System.out.println("  --series <n>                    The number of distinct series (metric paths) to cycle through. Default: 10000");
+        System.out.println("  --output-interval <seconds>     StatsPoller's 'output_interval'. Default: 10");
+        System.out.println("  --sinks <list>                  Comma separated. 'graphite', 'opentsdb-http'. Default: graphite,opentsdb-http");
+        System.out.println("  --latency <ms>                  Latency that the sinks add to every read (tcp) or request (http). Default: 0");
+        System.out.println("  --failure-rate <0-1>            Fraction of reads (tcp, the connection is closed) or requests (http, a 500 is returned) that fail. Default: 0");
+        System.out.println("  --graphite-max-per-message <n>  'graphite_max_metrics_per_message'. Default: 1000");
+        System.out.println("  --opentsdb-max-per-message <n>  'opentsdb_http_max_metrics_per_message'. Default: 50");
+        System.out.println("  --opentsdb-gzip <true|false>    'opentsdb_http_gzip'. Default: false");
+        System.out.println("  --conf <file>                   Extra StatsPoller settings (application.properties format). These override the load test's settings.");
+    }
+    
+    /*
+    Returns false if the arguments are invalid.
+    */
+    private boolean parseArguments(String[] args) {
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String argument = args[i];
+                if (argument.equals("-h") || argument.equals("--help")) return false;
+                if ((i + 1) >= args.length) return false;
+                String value = args[++i];
+                
+                if (argument.equals("--rate")) metricsPerSecond_ = Long.parseLong(value);
+                else if (argument.equals("--duration")) durationInSeconds_ = Long.parseLong(value);
+                else if (argument.equals("--series")) numSeries_ = Integer.parseInt(value);
+                else if (argument.equals("--output-interval")) outputIntervalInSeconds_ = Double.parseDouble(value);
+                else if (argument.equals("--latency")) sinkLatencyInMs_ = Long.parseLong(value);
+                else if (argument.equals("--failure-rate")) sinkFailureRate_ = Double.parseDouble(value);
+                else if (argument.equals("--graphite-max-per-message")) graphiteMaxMetricsPerMessage_ = Integer.parseInt(value);
+                else if (argument.equals("--opentsdb-max-per-message")) openTsdbMaxMetricsPerMessage_ = Integer.parseInt(value);
+                else if (argument.equals("--opentsdb-gzip")) openTsdbGzip_ = Boolean.parseBoolean(value);
+                else if (argument.equals("--conf")) extraConfigFile_ = value;
+                else if (argument.equals("--sinks")) {
+                    for (String sinkName : value.split(",")) {
+                        String trimmedSinkName = sinkName.trim().toLowerCase();
+                        if (!trimmedSinkName.equals(SINK_GRAPHITE) && !trimmedSinkName.equals(SINK_OPENTSDB_HTTP)) return false;
+                        if (!sinkNames_.contains(trimmedSinkName)) sinkNames_.add(trimmedSinkName);
+                    }
+                }
+                else return false;
+            }
+        }
+        catch (Exception e) {
+            return false;
+        }
+        
+        if (sinkNames_.isEmpty()) {
+            sinkNames_.add(SINK_GRAPHITE);
+            sinkNames_.add(SINK_OPENTSDB_HTTP);
+        }
+        
+        return (metricsPerSecond_ > 0) && (durationInSeconds_ > 0) && (outputIntervalInSeconds_ > 0) && (sinkLatencyInMs_ >= 0) &&
+                (sinkFailureRate_ >= 0) && (sinkFailureRate_ <= 1);
+    }
+    
+    private boolean run() throws Exception {
+        
+        if (!startSinks()) return false;
+        if (!initializeStatsPoller()) return false;
+        
+        long outputIntervalInMs = ApplicationConfiguration.getOutputInterval();
+        
+        System.out.println("Rate=" + metricsPerSecond_ + "/s, Duration=" + durationInSeconds_ + "s, Series=" + numSeries_ + ", OutputInterval=" + outputIntervalInMs + "ms" +
+                ", SinkLatency=" + sinkLatencyInMs_ + "ms, SinkFailureRate=" + sinkFailureRate_);
+        System.out.println();
+        
+        OutputMetricsInvokerThread outputMetricsInvokerThread = new OutputMetricsInvokerThread(outputIntervalInMs);
+        Thread outputThread = new Thread(outputMetricsInvokerThread, "OutputMetricsInvokerThread");
+        outputThread.setDaemon(true);
+        outputThread.start();
+        
+        SyntheticMetricProducer syntheticMetricProducer = new SyntheticMetricProducer(metricsPerSecond_, numSeries_);
+        Thread producerThread = new Thread(syntheticMetricProducer, "SyntheticMetricProducer");
+        producerThread.setDaemon(true);
+        producerThread.start();
+        
+        long startTimeInMs = System.currentTimeMillis();
+        long produceEndTimeInMs = startTimeInMs + (durationInSeconds_ * 1000);
+        
+        LoadTestReport loadTestReport = new LoadTestReport(sinks_, sinkOutputModuleIds_, outputIntervalInMs, startTimeInMs);
+        loadTestReport.printHeader();
+        
+        // produce for the duration, reporting once per output interval
+        while (System.currentTimeMillis() < produceEndTimeInMs) {
+            Threads.sleepMilliseconds(Math.min(outputIntervalInMs, produceEndTimeInMs - System.currentTimeMillis()));
+            loadTestReport.printInterval(syntheticMetricProducer);
+        }
+        
+        syntheticMetricProducer.stop();
+        producerThread.join();
+        
+        // wait for the sinks to receive everything that was queued. give up once nothing has been received for a few output intervals.
+        int numIntervalsWithoutProgress = 0;
+        while (!loadTestReport.isEverySinkCaughtUp(syntheticMetricProducer) && (numIntervalsWithoutProgress < 3)) {
+            Threads.sleepMilliseconds(outputIntervalInMs);
+            if (loadTestReport.printInterval(syntheticMetricProducer)) numIntervalsWithoutProgress = 0;
+            else numIntervalsWithoutProgress++;
+        }
+        
+        loadTestReport.printSummary(syntheticMetricProducer);
+        
+        outputMetricsInvokerThread.shutdown();
+        for (FakeSink sink : sinks_) sink.stop();
+        
+        return true;
+    }
+    
+    private boolean startSinks() {
+        
+        for (String sinkName : sinkNames_) {
+            FakeSink sink = sinkName.equals(SINK_GRAPHITE) ? new FakeTcpLineSink(sinkName, sinkLatencyInMs_, sinkFailureRate_) :
+                    new FakeOpenTsdbHttpSink(sinkName, sinkLatencyInMs_, sinkFailureRate_);
+            
+            if (!sink.start()) {
+                System.out.println("Couldn't start the " + sinkName + " sink");
+                return false;
+            }
+            
+            sinks_.add(sink);
+        }
+        
+        return true;
+    }
+    
+    /*
+    Writes a StatsPoller configuration that outputs to the sinks (plus the contents of '--conf', if it was specified), & loads it.
+    The ingestion queues are set up the same way the Driver sets them up.
+    */
+    private boolean initializeStatsPoller() throws Exception {
+        
+        StringBuilder configuration = new StringBuilder();
+        configuration.append("global_metric_name_prefix = loadtest\n");
+        configuration.append("output_interval = ").append(outputIntervalInSeconds_).append("\n");
+        configuration.append("output_internal_metrics_to_disk = false\n");
+        
+        for (FakeSink sink : sinks_) {
+            if (sink instanceof FakeTcpLineSink) {
+                configuration.append("graphite_output_module_1 = true,127.0.0.1,").append(sink.getPort()).append(",2,").append(graphiteMaxMetricsPerMessage_).append(",false,false\n");
+            }
+            else if (sink instanceof FakeOpenTsdbHttpSink) {
+                configuration.append("opentsdb_http_output_module_1 = true,").append(((FakeOpenTsdbHttpSink) sink).getUrl()).append(",2,")
+                        .append(openTsdbMaxMetricsPerMessage_).append(",false,").append(openTsdbGzip_).append("\n");
+            }
+        }
+        
+        if (extraConfigFile_ != null) {
+            configuration.append("\n");
+            configuration.append(new String(Files.readAllBytes(new File(extraConfigFile_).toPath()), StandardCharsets.UTF_8));
+            configuration.append("\n");
+        }
+        
+        File configurationFile = File.createTempFile("statspoller-loadtest-", ".properties");
+        configurationFile.deleteOnExit();
+        Files.write(configurationFile.toPath(), configuration.toString().getBytes(StandardCharsets.UTF_8));
+        
+        if (!ApplicationConfiguration.initialize(configurationFile.getAbsolutePath(), true)) {
+            System.out.println("Couldn't load the StatsPoller configuration");
+            return false;
+        }
+        
+        GlobalVariables.graphiteMetrics.setMaxSize(ApplicationConfiguration.getMaxQueuedMetrics());
+        GlobalVariables.openTsdbMetrics.setMaxSize(ApplicationConfiguration.getMaxQueuedMetrics());
+        GlobalVariables.graphiteMetrics.setMetricRelabeler(ApplicationConfiguration.getMetricRelabeler());
+        GlobalVariables.openTsdbMetrics.setMetricRelabeler(ApplicationConfiguration.getMetricRelabeler());
+        GlobalVariables.graphiteMetrics.setMetricMemoryBudget(ApplicationConfiguration.getMetricMemoryBudget());
+        GlobalVariables.openTsdbMetrics.setMetricMemoryBudget(ApplicationConfiguration.getMetricMemoryBudget());
+        
+        for (FakeSink sink : sinks_) {
+            if (sink instanceof FakeTcpLineSink) sinkOutputModuleIds_.add(ApplicationConfiguration.getGraphiteOutputModules().get(0).getUniqueId());
+            else sinkOutputModuleIds_.add(ApplicationConfiguration.getOpenTsdbHttpOutputModules().get(0).getUniqueId());
+        }
+        
+        return true;
+    }
+
+}
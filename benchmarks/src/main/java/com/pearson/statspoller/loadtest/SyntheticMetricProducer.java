@@ -0,0 +1,101 @@
+package com.pearson.statspoller.loadtest;
+
+import com.pearson.statspoller.globals.GlobalVariables;
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.utilities.core_utils.Threads;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Puts synthetic metrics into StatsPoller's Graphite ingestion queue (GlobalVariables.graphiteMetrics) at a steady rate, the same way a collector does.
+ *
+ * Every metric's value is the time (in ms) that it was produced, so that a sink can tell how long the metric took to reach it.
+ * Metric paths cycle through a fixed number of series ('loadtest.series-N').
+ *
+ * @author Jeffrey Schmidt
+ */
+public class SyntheticMetricProducer implements Runnable {
+    
+    // metrics are produced in small batches, this many times per second
+    private static final int NUM_BATCHES_PER_SECOND = 20;
+    
+    private final long metricsPerSecond_;
+    private final int numSeries_;
+    
+    private volatile boolean continueRunning_ = true;
+    private volatile long numMetricsProduced_ = 0;
+    private volatile long numMetricsQueued_ = 0;
+    
+    public SyntheticMetricProducer(long metricsPerSecond, int numSeries) {
+        this.metricsPerSecond_ = metricsPerSecond;
+        this.numSeries_ = (numSeries < 1) ? 1 : numSeries;
+    }
+    
+    /*
+    Produces enough metrics on every batch to stay on the target rate. If producing falls behind (ex- a gc pause), then at most 1 second's worth of the missed metrics are made up (the rest are skipped).
+    */
+    @Override
+    public void run() {
+        
+        long startTimeInMs = System.currentTimeMillis();
+        long metricIndex = 0;
+        
+        // metrics that were produced, plus metrics that were skipped because producing fell too far behind
+        long numMetricsScheduled = 0;
+        
+        while (continueRunning_) {
+            long currentTimeInMs = System.currentTimeMillis();
+            long targetNumMetricsScheduled = ((currentTimeInMs - startTimeInMs) * metricsPerSecond_) / 1000;
+            long numMetricsToProduce = targetNumMetricsScheduled - numMetricsScheduled;
+            
+            if (numMetricsToProduce > metricsPerSecond_) {
+                numMetricsScheduled += (numMetricsToProduce - metricsPerSecond_);
+                numMetricsToProduce = metricsPerSecond_;
+            }
+            
+            if (numMetricsToProduce > 0) {
+                int metricTimestampInSeconds = (int) (currentTimeInMs / 1000);
+                List<GraphiteMetric> graphiteMetrics = new ArrayList<>((int) numMetricsToProduce);
+                
+                for (long i = 0; i < numMetricsToProduce; i++) {
+                    graphiteMetrics.add(new GraphiteMetric("loadtest.series-" + (metricIndex % numSeries_), currentTimeInMs, metricTimestampInSeconds));
+                    metricIndex++;
+                }
+                
+                int numMetricsQueued = GlobalVariables.graphiteMetrics.offerAll(graphiteMetrics);
+                numMetricsScheduled += numMetricsToProduce;
+                numMetricsProduced_ += numMetricsToProduce;
+                numMetricsQueued_ += numMetricsQueued;
+            }
+            
+            Threads.sleepMilliseconds(1000 / NUM_BATCHES_PER_SECOND);
+        }
+    }
+    
+    public void stop() {
+        continueRunning_ = false;
+    }
+    
+    public long getMetricsPerSecond() {
+        return metricsPerSecond_;
+    }
+    
+    public int getNumSeries() {
+        return numSeries_;
+    }
+    
+    /*
+    The number of metrics that the producer tried to queue.
+    */
+    public long getNumMetricsProduced() {
+        return numMetricsProduced_;
+    }
+    
+    /*
+    The number of metrics that made it into the ingestion queue (the rest were dropped because the queue was full, or by a relabel rule).
+    */
+    public long getNumMetricsQueued() {
+        return numMetricsQueued_;
+    }
+
+}
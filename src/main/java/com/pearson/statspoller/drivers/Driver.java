@@ -9,8 +9,10 @@ import com.pearson.statspoller.utilities.file_utils.FileIo;
 import com.pearson.statspoller.internal_metric_collectors.statspoller_native.StatsPollerNativeCollectorsThread;
 import java.io.File;
 import com.pearson.statspoller.globals.ApplicationConfiguration;
+import com.pearson.statspoller.globals.GlobalVariables;
 import com.pearson.statspoller.external_metric_collectors.ExternalMetricCollectorExecuterThread;
 import com.pearson.statspoller.output.OutputMetricsInvokerThread;
+import com.pearson.statspoller.metric_formats.prometheus.PrometheusExpositionServer;
 import com.pearson.statspoller.external_metric_collectors.ReadMetricsFromFileThread;
 import com.pearson.statspoller.external_metric_collectors.ExternalMetricCollector;
 import com.pearson.statspoller.internal_metric_collectors.apache_http.ApacheHttpMetricCollector;
@@ -73,6 +75,13 @@ public class Driver {
             Runtime.getRuntime().addShutdownHook(jmxJvmShutdownHook);
         }
         
+        // start the prometheus exposition (scrape) endpoint
+        if (ApplicationConfiguration.isPrometheusExpositionEnabled()) {
+            PrometheusExpositionServer prometheusExpositionServer = new PrometheusExpositionServer(GlobalVariables.prometheusMetricIndex, 
+                    ApplicationConfiguration.getPrometheusExpositionPort());
+            prometheusExpositionServer.start();
+        }
+        
         // start the 'output metrics' invoker thread
         Thread outputMetricsInvokerThread = new Thread(new OutputMetricsInvokerThread(ApplicationConfiguration.getOutputInterval()));
         outputMetricsInvokerThread.start();
@@ -128,6 +137,13 @@ public class Driver {
             logger.error("An error during application initialization. Exiting...");
             return false;
         }
+        
+        GlobalVariables.graphiteMetrics.setMaxSize(ApplicationConfiguration.getMaxQueuedMetrics());
+        GlobalVariables.openTsdbMetrics.setMaxSize(ApplicationConfiguration.getMaxQueuedMetrics());
+        GlobalVariables.graphiteMetrics.setMetricRelabeler(ApplicationConfiguration.getMetricRelabeler());
+        GlobalVariables.openTsdbMetrics.setMetricRelabeler(ApplicationConfiguration.getMetricRelabeler());
+        GlobalVariables.graphiteMetrics.setMetricMemoryBudget(ApplicationConfiguration.getMetricMemoryBudget());
+        GlobalVariables.openTsdbMetrics.setMetricMemoryBudget(ApplicationConfiguration.getMetricMemoryBudget());
 
         logger.info("Finish - Initialize application");
         
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import com.pearson.statspoller.globals.AgentInstrumentation;
 import com.pearson.statspoller.globals.ApplicationConfiguration;
 import com.pearson.statspoller.globals.GlobalVariables;
 import com.pearson.statspoller.metric_formats.GenericMetricFormat;
@@ -37,11 +38,13 @@ public class ReadMetricsFromFileThread implements Runnable {
     private final File fileToMonitor_;
     private final long checkFilesIntervalInMilliseconds_;
     private final String metricCollectorPrefix_;
+    private final AgentInstrumentation.CollectorInstrumentation collectorInstrumentation_;
     
     public ReadMetricsFromFileThread(File fileToMonitor, long checkFilesIntervalInMilliseconds, String metricCollectorPrefix) {
         this.fileToMonitor_ = fileToMonitor;
         this.checkFilesIntervalInMilliseconds_ = checkFilesIntervalInMilliseconds;
         this.metricCollectorPrefix_ = metricCollectorPrefix;
+        this.collectorInstrumentation_ = AgentInstrumentation.getCollectorInstrumentation(metricCollectorPrefix);
         
         this.applicationStartTimeInMs_ = ApplicationConfiguration.getApplicationStartTimeInMs();
     }
@@ -63,12 +66,17 @@ public class ReadMetricsFromFileThread implements Runnable {
             List<GenericMetricFormat> metrics = getMetricsFromFile(ApplicationConfiguration.isAlwaysCheckOutputFiles(), metricPrefix);
             List<GenericMetricFormat> newMetrics = getNewMetrics(metrics);
             
+            List<GraphiteMetric> newGraphiteMetrics = new ArrayList<>();
+            List<OpenTsdbMetric> newOpenTsdbMetrics = new ArrayList<>();
+            
             for (GenericMetricFormat metric : newMetrics) {
-                metric.setMetricHashKey(GlobalVariables.metricHashKeyGenerator.incrementAndGet());
-                if (metric instanceof GraphiteMetric) GlobalVariables.graphiteMetrics.put(metric.getMetricHashKey(), (GraphiteMetric) metric);
-                else if (metric instanceof OpenTsdbMetric) GlobalVariables.openTsdbMetrics.put(metric.getMetricHashKey(), (OpenTsdbMetric) metric);
+                if (metric instanceof GraphiteMetric) newGraphiteMetrics.add((GraphiteMetric) metric);
+                else if (metric instanceof OpenTsdbMetric) newOpenTsdbMetrics.add((OpenTsdbMetric) metric);
             }
             
+            GlobalVariables.graphiteMetrics.offerAll(newGraphiteMetrics, collectorInstrumentation_);
+            GlobalVariables.openTsdbMetrics.offerAll(newOpenTsdbMetrics, collectorInstrumentation_);
+            
             cleanupPreviousMetrics();
 
             String filename = (fileToMonitor_ == null) ? null : fileToMonitor_.getName();
@@ -79,6 +87,8 @@ public class ReadMetricsFromFileThread implements Runnable {
             else logger.debug(outputStatusString);
 
             long readMetricsTimeElapsed = System.currentTimeMillis() - readMetricsTimeStart;
+            collectorInstrumentation_.recordCollectionTime(readMetricsTimeElapsed);
+            collectorInstrumentation_.recordMetricsProduced(newMetrics.size());
             
             long sleepTime = checkFilesIntervalInMilliseconds_ - readMetricsTimeElapsed;
             
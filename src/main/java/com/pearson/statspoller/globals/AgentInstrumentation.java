@@ -0,0 +1,176 @@
+package com.pearson.statspoller.globals;
+
+import com.pearson.statspoller.utilities.math_utils.AtomicHistogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatsPoller's measurements of itself -- how long each collector takes to collect, how many metrics it produces (& how many of them are queued/were dropped),
+ * & how long/how many bytes/how many retries each output module's sends take.
+ * StatsPollerNativeCollectorsThread outputs these as 'Agent.*' metrics.
+ *
+ * Recording is lock-free, so collectors & send threads can record on every collection/send.
+ * Histograms cover the time since they were last published. Counters are cumulative (since StatsPoller started).
+ *
+ * @author Jeffrey Schmidt
+ */
+public class AgentInstrumentation {
+    
+    // k=collector name, v=that collector's measurements
+    private static final ConcurrentHashMap<String,CollectorInstrumentation> collectorInstrumentations_ = new ConcurrentHashMap<>();
+    
+    // k=output module unique id, v=that output module's measurements
+    private static final ConcurrentHashMap<String,OutputModuleInstrumentation> outputModuleInstrumentations_ = new ConcurrentHashMap<>();
+    
+    /*
+    Returns the measurements for a collector (creating them on first use). Collectors with the same name share measurements.
+    */
+    public static CollectorInstrumentation getCollectorInstrumentation(String collectorName) {
+        
+        String collectorNameLocal = ((collectorName == null) || collectorName.trim().isEmpty()) ? "Unnamed" : collectorName.trim();
+        
+        CollectorInstrumentation collectorInstrumentation = collectorInstrumentations_.get(collectorNameLocal);
+        if (collectorInstrumentation != null) return collectorInstrumentation;
+        
+        collectorInstrumentation = new CollectorInstrumentation(collectorNameLocal);
+        CollectorInstrumentation existingCollectorInstrumentation = collectorInstrumentations_.putIfAbsent(collectorNameLocal, collectorInstrumentation);
+        
+        return (existingCollectorInstrumentation != null) ? existingCollectorInstrumentation : collectorInstrumentation;
+    }
+    
+    /*
+    Returns the measurements for an output module (creating them on first use).
+    */
+    public static OutputModuleInstrumentation getOutputModuleInstrumentation(String outputModuleUniqueId) {
+        
+        String outputModuleUniqueIdLocal = (outputModuleUniqueId == null) ? "Unnamed" : outputModuleUniqueId;
+        
+        OutputModuleInstrumentation outputModuleInstrumentation = outputModuleInstrumentations_.get(outputModuleUniqueIdLocal);
+        if (outputModuleInstrumentation != null) return outputModuleInstrumentation;
+        
+        outputModuleInstrumentation = new OutputModuleInstrumentation(outputModuleUniqueIdLocal);
+        OutputModuleInstrumentation existingOutputModuleInstrumentation = outputModuleInstrumentations_.putIfAbsent(outputModuleUniqueIdLocal, outputModuleInstrumentation);
+        
+        return (existingOutputModuleInstrumentation != null) ? existingOutputModuleInstrumentation : outputModuleInstrumentation;
+    }
+    
+    public static List<CollectorInstrumentation> getCollectorInstrumentations() {
+        return Collections.unmodifiableList(new ArrayList<>(collectorInstrumentations_.values()));
+    }
+    
+    public static List<OutputModuleInstrumentation> getOutputModuleInstrumentations() {
+        return Collections.unmodifiableList(new ArrayList<>(outputModuleInstrumentations_.values()));
+    }
+    
+    public static class CollectorInstrumentation {
+        
+        private final String collectorName_;
+        private final AtomicHistogram collectionTimeInMs_ = new AtomicHistogram();
+        private final AtomicLong numMetricsProduced_ = new AtomicLong(0);
+        
+        // the estimated bytes of this collector's metrics that are waiting in the ingestion queues, & how many of its metrics the queues dropped
+        private final AtomicLong numQueuedBytes_ = new AtomicLong(0);
+        private final AtomicLong numDroppedMetrics_ = new AtomicLong(0);
+        
+        private CollectorInstrumentation(String collectorName) {
+            this.collectorName_ = collectorName;
+        }
+        
+        public void recordCollectionTime(long collectionTimeInMs) {
+            collectionTimeInMs_.record(collectionTimeInMs);
+        }
+        
+        public void recordMetricsProduced(long numMetricsProduced) {
+            if (numMetricsProduced > 0) numMetricsProduced_.addAndGet(numMetricsProduced);
+        }
+        
+        public void recordQueuedBytes(long numQueuedBytes) {
+            if (numQueuedBytes != 0) numQueuedBytes_.addAndGet(numQueuedBytes);
+        }
+        
+        public void recordDroppedMetrics(long numDroppedMetrics) {
+            if (numDroppedMetrics > 0) numDroppedMetrics_.addAndGet(numDroppedMetrics);
+        }
+        
+        public String getCollectorName() {
+            return collectorName_;
+        }
+        
+        public AtomicHistogram getCollectionTimeInMs() {
+            return collectionTimeInMs_;
+        }
+        
+        public long getNumMetricsProduced() {
+            return numMetricsProduced_.get();
+        }
+        
+        public long getNumQueuedBytes() {
+            return numQueuedBytes_.get();
+        }
+        
+        public long getNumDroppedMetrics() {
+            return numDroppedMetrics_.get();
+        }
+    
+    }
+    
+    public static class OutputModuleInstrumentation {
+        
+        private final String outputModuleUniqueId_;
+        private final AtomicHistogram sendTimeInMs_ = new AtomicHistogram();
+        private final AtomicLong numSends_ = new AtomicLong(0);
+        private final AtomicLong numFailedSends_ = new AtomicLong(0);
+        private final AtomicLong numMetricsSent_ = new AtomicLong(0);
+        private final AtomicLong numBytesSent_ = new AtomicLong(0);
+        private final AtomicLong numRetryAttempts_ = new AtomicLong(0);
+        
+        private OutputModuleInstrumentation(String outputModuleUniqueId) {
+            this.outputModuleUniqueId_ = outputModuleUniqueId;
+        }
+        
+        /*
+        Records a single send (of a batch of metrics, plus any spool replay) to the output module's endpoint.
+        */
+        public void recordSend(long sendTimeInMs, boolean didSendFail, long numMetricsSent, long numBytesSent, long numRetryAttempts) {
+            sendTimeInMs_.record(sendTimeInMs);
+            numSends_.incrementAndGet();
+            if (didSendFail) numFailedSends_.incrementAndGet();
+            if (numMetricsSent > 0) numMetricsSent_.addAndGet(numMetricsSent);
+            if (numBytesSent > 0) numBytesSent_.addAndGet(numBytesSent);
+            if (numRetryAttempts > 0) numRetryAttempts_.addAndGet(numRetryAttempts);
+        }
+        
+        public String getOutputModuleUniqueId() {
+            return outputModuleUniqueId_;
+        }
+        
+        public AtomicHistogram getSendTimeInMs() {
+            return sendTimeInMs_;
+        }
+        
+        public long getNumSends() {
+            return numSends_.get();
+        }
+        
+        public long getNumFailedSends() {
+            return numFailedSends_.get();
+        }
+        
+        public long getNumMetricsSent() {
+            return numMetricsSent_.get();
+        }
+        
+        public long getNumBytesSent() {
+            return numBytesSent_.get();
+        }
+        
+        public long getNumRetryAttempts() {
+            return numRetryAttempts_.get();
+        }
+    
+    }
+
+}
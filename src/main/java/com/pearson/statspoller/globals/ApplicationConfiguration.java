@@ -1,15 +1,22 @@
 package com.pearson.statspoller.globals;
 
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.ICSVParser;
 import com.pearson.statspoller.utilities.config_utils.HierarchicalIniConfigurationWrapper;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import com.pearson.statspoller.external_metric_collectors.ExternalMetricCollector;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import com.pearson.statspoller.internal_metric_collectors.apache_http.ApacheHttpMetricCollector;
 import com.pearson.statspoller.internal_metric_collectors.cadvisor.CadvisorMetricCollector;
 import com.pearson.statspoller.internal_metric_collectors.file_counter.FileCounterMetricCollector;
+import com.pearson.statspoller.internal_metric_collectors.MetricRollup;
 import com.pearson.statspoller.internal_metric_collectors.jmx.JmxMetricCollector;
 import com.pearson.statspoller.internal_metric_collectors.mongo.MongoMetricCollector;
 import com.pearson.statspoller.internal_metric_collectors.mysql.MysqlMetricCollector;
@@ -17,10 +24,20 @@ import com.pearson.statspoller.internal_metric_collectors.db_querier.DbQuerier;
 import com.pearson.statspoller.internal_metric_collectors.postgres.PostgresMetricCollector;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteOutputModule;
+import com.pearson.statspoller.metric_formats.graphite.GraphiteShardedOutputModule;
+import com.pearson.statspoller.metric_formats.influxdb.Common;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetric_v2;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbV1HttpOutputModule;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbV2HttpOutputModule;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbHttpOutputModule;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTelnetOutputModule;
+import com.pearson.statspoller.output.MetricCompactor;
+import com.pearson.statspoller.output.MetricMemoryBudget;
+import com.pearson.statspoller.output.MetricRelabeler;
+import com.pearson.statspoller.output.OutputModuleSchedule;
+import com.pearson.statspoller.output.UnchangedMetricSuppressor;
 import com.pearson.statspoller.utilities.web_utils.NetIo;
 import java.net.InetAddress;
 import org.apache.commons.lang.StringUtils;
@@ -50,10 +67,43 @@ public class ApplicationConfiguration {
     private static long maxMetricAge_ = VALUE_NOT_SET_CODE;
     private static boolean outputInternalMetricsToDisk_ = true;
     private static boolean legacyMode_ = false;
+    private static int maxQueuedMetrics_ = VALUE_NOT_SET_CODE;
+    private static MetricMemoryBudget metricMemoryBudget_ = null;
     
     private static final List<GraphiteOutputModule> graphiteOutputModules_ = new ArrayList<>();
+    private static final List<GraphiteShardedOutputModule> graphiteShardedOutputModules_ = new ArrayList<>();
     private static final List<OpenTsdbTelnetOutputModule> openTsdbTelnetOutputModules_ = new ArrayList<>();
     private static final List<OpenTsdbHttpOutputModule> openTsdbHttpOutputModules_ = new ArrayList<>();
+    private static final List<InfluxdbV1HttpOutputModule> influxdbV1HttpOutputModules_ = new ArrayList<>();
+    private static final List<InfluxdbV2HttpOutputModule> influxdbV2HttpOutputModules_ = new ArrayList<>();
+    
+    private static long outputModuleSendInterval_ = VALUE_NOT_SET_CODE;
+    private static int outputModuleConnectTimeout_ = VALUE_NOT_SET_CODE;
+    private static int outputModuleReadTimeout_ = VALUE_NOT_SET_CODE;
+    private static int outputModuleMaxSendTime_ = VALUE_NOT_SET_CODE;
+    private static int outputModuleMaxBacklog_ = VALUE_NOT_SET_CODE;
+    private static final Map<String,OutputModuleSchedule> outputModuleSchedules_ = new HashMap<>(); // k=output module unique id, v=the output module's schedule
+    
+    private static boolean outputCircuitBreakerEnabled_ = true;
+    private static int outputCircuitBreakerFailureThreshold_ = VALUE_NOT_SET_CODE;
+    private static long outputCircuitBreakerMinOpenTime_ = VALUE_NOT_SET_CODE;
+    private static long outputCircuitBreakerMaxOpenTime_ = VALUE_NOT_SET_CODE;
+    
+    private static boolean outputPersistentTcpConnections_ = true;
+    private static int outputHttpMaxConcurrentRequests_ = VALUE_NOT_SET_CODE;
+    private static boolean outputSpoolEnabled_ = false;
+    private static String outputSpoolDirectory_ = null;
+    private static long outputSpoolMaxSizeInBytes_ = VALUE_NOT_SET_CODE;
+    private static long outputSpoolSegmentSizeInBytes_ = VALUE_NOT_SET_CODE;
+    private static int outputSpoolMaxReplayMessagesPerInterval_ = VALUE_NOT_SET_CODE;
+    private static int outputCompactionMode_ = VALUE_NOT_SET_CODE;
+    private static List<String> rollupCollectors_ = new ArrayList<>();
+    private static int[] rollupStatistics_ = null;
+    private static MetricRelabeler metricRelabeler_ = null;
+    private static UnchangedMetricSuppressor unchangedMetricSuppressor_ = null;
+    private static boolean prometheusExpositionEnabled_ = false;
+    private static int prometheusExpositionPort_ = VALUE_NOT_SET_CODE;
+    private static long prometheusExpositionSeriesMaxAge_ = VALUE_NOT_SET_CODE;
     
     private static String statspollerMetricCollectorPrefix_ = null;
     private static boolean statspollerEnableJavaMetricCollector_ = false;
@@ -118,6 +168,8 @@ public class ApplicationConfiguration {
             // advanced core statspoller configuration values
             maxMetricAge_ = applicationConfiguration_.safeGetLong("max_metric_age", 90 * 1000); // remove?
             outputInternalMetricsToDisk_ = applicationConfiguration_.safeGetBoolean("output_internal_metrics_to_disk", true);
+            maxQueuedMetrics_ = applicationConfiguration_.safeGetInt("max_queued_metrics", GlobalVariables.DEFAULT_MAX_QUEUED_METRICS);
+            metricMemoryBudget_ = readMetricMemoryBudget();
             double checkOutputFilesInterval = applicationConfiguration_.safeGetDouble("check_output_files_interval", 5);
             checkOutputFilesInterval_ = legacyMode_ ? (long) checkOutputFilesInterval : (long) (checkOutputFilesInterval * 1000);    
             
@@ -136,15 +188,75 @@ public class ApplicationConfiguration {
                 return false;
             }
            
+            // output module schedule configuration -- the defaults for every output module. read before the output modules, since they can override these.
+            double outputModuleSendInterval = applicationConfiguration_.safeGetDouble("output_module_send_interval", legacyMode_ ? outputInterval_ : (outputInterval_ / 1000.0));
+            outputModuleSendInterval_ = legacyMode_ ? (long) outputModuleSendInterval : (long) (outputModuleSendInterval * 1000);
+            outputModuleConnectTimeout_ = readOutputModuleTimeout("output_module_connect_timeout", VALUE_NOT_SET_CODE);
+            outputModuleReadTimeout_ = readOutputModuleTimeout("output_module_read_timeout", VALUE_NOT_SET_CODE);
+            outputModuleMaxSendTime_ = readOutputModuleTimeout("output_module_max_send_time", 0);
+            outputModuleMaxBacklog_ = Math.max(1, applicationConfiguration_.safeGetInt("output_module_max_backlog", 10));
+           
             // graphite configuration
             graphiteOutputModules_.addAll(readLegacyGraphiteOutputModule());
             graphiteOutputModules_.addAll(readGraphiteOutputModules());
+            graphiteShardedOutputModules_.addAll(readGraphiteShardedOutputModules());
 
             // opentsdb configuration
             openTsdbTelnetOutputModules_.addAll(readOpenTsdbTelnetOutputModules());
             
             // opentsdb configuration
             openTsdbHttpOutputModules_.addAll(readOpenTsdbHttpOutputModules());
+            
+            // influxdb v1 configuration
+            influxdbV1HttpOutputModules_.addAll(readInfluxdbV1HttpOutputModules());
+            
+            // influxdb v2 configuration
+            influxdbV2HttpOutputModules_.addAll(readInfluxdbV2HttpOutputModules());
+            
+            // output module circuit breakers -- an endpoint that keeps failing is skipped (& probed on an exponential backoff) until it is reachable again
+            outputCircuitBreakerEnabled_ = applicationConfiguration_.safeGetBoolean("output_circuit_breaker_enabled", true);
+            outputCircuitBreakerFailureThreshold_ = Math.max(1, applicationConfiguration_.safeGetInt("output_circuit_breaker_failure_threshold", 3));
+            outputCircuitBreakerMinOpenTime_ = (long) (applicationConfiguration_.safeGetDouble("output_circuit_breaker_min_open_time", 30) * 1000);
+            outputCircuitBreakerMaxOpenTime_ = (long) (applicationConfiguration_.safeGetDouble("output_circuit_breaker_max_open_time", 600) * 1000);
+            
+            // tcp output modules (graphite, opentsdb telnet) keep their connections open between output intervals
+            outputPersistentTcpConnections_ = applicationConfiguration_.safeGetBoolean("output_persistent_tcp_connections", true);
+            
+            // http output modules (opentsdb http) send several messages at once. the jvm's http keep-alive cache must be able to hold a connection for each of them.
+            outputHttpMaxConcurrentRequests_ = Math.max(1, applicationConfiguration_.safeGetInt("output_http_max_concurrent_requests", 4));
+            if (System.getProperty("http.maxConnections") == null) System.setProperty("http.maxConnections", Integer.toString(Math.max(5, outputHttpMaxConcurrentRequests_)));
+            
+            // output spool configuration
+            outputSpoolEnabled_ = applicationConfiguration_.safeGetBoolean("output_spool_enabled", false);
+            outputSpoolDirectory_ = applicationConfiguration_.safeGetString("output_spool_directory", "./spool");
+            outputSpoolMaxSizeInBytes_ = applicationConfiguration_.safeGetLong("output_spool_max_size", 256) * 1024 * 1024;
+            outputSpoolSegmentSizeInBytes_ = applicationConfiguration_.safeGetLong("output_spool_segment_size", 16) * 1024 * 1024;
+            outputSpoolMaxReplayMessagesPerInterval_ = applicationConfiguration_.safeGetInt("output_spool_max_replay_messages_per_interval", 50);
+            
+            // output compaction -- one metric per series per output interval
+            String outputCompactionMode = applicationConfiguration_.safeGetString("output_compaction_mode", "off");
+            outputCompactionMode_ = MetricCompactor.getCompactionModeCode(outputCompactionMode);
+            if (outputCompactionMode_ == -1) {
+                logger.warn("Invalid output_compaction_mode. Valid values are 'off', 'last', 'min', 'max', 'avg'. Defaulting to 'off'. OutputCompactionMode=" + outputCompactionMode);
+                outputCompactionMode_ = MetricCompactor.COMPACTION_MODE_OFF;
+            }
+            
+            // rollup of fast internal collectors
+            rollupCollectors_ = readRollupCollectors();
+            rollupStatistics_ = readRollupStatistics();
+            
+            // global relabel/filter rules. null if there are no rules.
+            metricRelabeler_ = readMetricRelabeler();
+            
+            // change-only output. null if it is disabled.
+            boolean outputSuppressUnchangedMetrics = applicationConfiguration_.safeGetBoolean("output_suppress_unchanged_metrics", false);
+            int outputSuppressUnchangedMetricsHeartbeat = applicationConfiguration_.safeGetInt("output_suppress_unchanged_metrics_heartbeat", 10);
+            unchangedMetricSuppressor_ = outputSuppressUnchangedMetrics ? new UnchangedMetricSuppressor(outputSuppressUnchangedMetricsHeartbeat) : null;
+            
+            // prometheus exposition (scrape) endpoint configuration
+            prometheusExpositionEnabled_ = applicationConfiguration_.safeGetBoolean("prometheus_exposition_enabled", false);
+            prometheusExpositionPort_ = applicationConfiguration_.safeGetInt("prometheus_exposition_port", 9582);
+            prometheusExpositionSeriesMaxAge_ = applicationConfiguration_.safeGetLong("prometheus_exposition_series_max_age", 600) * 1000;
 
             // native (built-in) server-info collector
             statspollerMetricCollectorPrefix_ = applicationConfiguration_.safeGetString("statspoller_metric_collector_prefix", "StatsPoller");
@@ -379,6 +491,7 @@ public class ApplicationConfiguration {
                                 numSendRetryAttempts, maxMetricsPerMessage, sanitizeMetrics, substituteCharacters, uniqueId);
                         
                         graphiteOutputModules.add(graphiteOutputModule);
+                        outputModuleSchedules_.put(uniqueId, readOutputModuleSchedule(graphiteOutputModuleKey));
                     }
                 }
             }
@@ -390,6 +503,207 @@ public class ApplicationConfiguration {
         return graphiteOutputModules;
     }
 
+    private static List<GraphiteShardedOutputModule> readGraphiteShardedOutputModules() {
+        
+        List<GraphiteShardedOutputModule> graphiteShardedOutputModules = new ArrayList<>();
+        
+        for (int i = -1; i < 10000; i++) {
+            String graphiteShardedOutputModuleKey = "graphite_sharded_output_module_" + (i + 1);
+            String graphiteShardedOutputModuleValue = applicationConfiguration_.safeGetString(graphiteShardedOutputModuleKey, null);
+            
+            if (graphiteShardedOutputModuleValue == null) continue;
+            
+            try {
+                CSVReader reader = new CSVReader(new StringReader(graphiteShardedOutputModuleValue));
+                List<String[]> csvValuesArray = reader.readAll();
+
+                if ((csvValuesArray != null) && !csvValuesArray.isEmpty() && (csvValuesArray.get(0) != null)) {
+                    String[] csvValues = csvValuesArray.get(0);
+
+                    if (csvValues.length >= 3) {                                
+                        boolean isOutputEnabled = Boolean.valueOf(csvValues[0]);
+                        int numSendRetryAttempts = Integer.valueOf(csvValues[2]);
+                        
+                        // the shards are a semicolon separated list of host:port pairs
+                        List<String> hosts = new ArrayList<>();
+                        List<Integer> ports = new ArrayList<>();
+                        for (String shard : csvValues[1].split(";")) {
+                            if (shard.trim().isEmpty()) continue;
+                            int portSeparatorIndex = shard.lastIndexOf(':');
+                            hosts.add((portSeparatorIndex > 0) ? shard.substring(0, portSeparatorIndex).trim() : shard.trim());
+                            ports.add((portSeparatorIndex > 0) ? Integer.valueOf(shard.substring(portSeparatorIndex + 1).trim()) : 2003);
+                        }
+                        
+                        if (hosts.isEmpty()) {
+                            logger.error("Graphite sharded output module has no shards. Key=" + graphiteShardedOutputModuleKey);
+                            continue;
+                        }
+                        
+                        int maxMetricsPerMessage = 1000;
+                        if (csvValues.length > 3) maxMetricsPerMessage = Integer.valueOf(csvValues[3]);
+                        
+                        boolean sanitizeMetrics = false;
+                        if (csvValues.length > 4) sanitizeMetrics = Boolean.valueOf(csvValues[4]);
+                        
+                        boolean substituteCharacters = false;
+                        if (csvValues.length > 5) substituteCharacters = Boolean.valueOf(csvValues[5]);
+                        
+                        String uniqueId = "Graphite-Sharded-" + (i+1);
+                        
+                        GraphiteShardedOutputModule graphiteShardedOutputModule = new GraphiteShardedOutputModule(isOutputEnabled, hosts, ports, 
+                                numSendRetryAttempts, maxMetricsPerMessage, sanitizeMetrics, substituteCharacters, uniqueId);
+                        
+                        graphiteShardedOutputModules.add(graphiteShardedOutputModule);
+                        
+                        // every shard is sent to on the sharded output module's schedule
+                        OutputModuleSchedule outputModuleSchedule = readOutputModuleSchedule(graphiteShardedOutputModuleKey);
+                        for (GraphiteOutputModule shardOutputModule : graphiteShardedOutputModule.getShardOutputModules()) {
+                            outputModuleSchedules_.put(shardOutputModule.getUniqueId(), outputModuleSchedule);
+                        }
+                    }
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return graphiteShardedOutputModules;
+    }
+
+    /*
+    Reads an output module's schedule overrides (ex- 'graphite_output_module_1_send_interval'). Anything not overridden uses the 'output_module_*' default.
+    */
+    private static OutputModuleSchedule readOutputModuleSchedule(String outputModuleKey) {
+        
+        long sendInterval = outputModuleSendInterval_;
+        double sendIntervalValue = applicationConfiguration_.safeGetDouble(outputModuleKey + "_send_interval", -1);
+        if (sendIntervalValue > 0) sendInterval = legacyMode_ ? (long) sendIntervalValue : (long) (sendIntervalValue * 1000);
+        
+        int connectTimeout = readOutputModuleTimeout(outputModuleKey + "_connect_timeout", outputModuleConnectTimeout_);
+        int readTimeout = readOutputModuleTimeout(outputModuleKey + "_read_timeout", outputModuleReadTimeout_);
+        int maxSendTime = readOutputModuleTimeout(outputModuleKey + "_max_send_time", outputModuleMaxSendTime_);
+        int maxBacklog = applicationConfiguration_.safeGetInt(outputModuleKey + "_max_backlog", outputModuleMaxBacklog_);
+        
+        return new OutputModuleSchedule(sendInterval, connectTimeout, readTimeout, maxSendTime, maxBacklog);
+    }
+    
+    /*
+    Reads a timeout (configured in seconds), & returns it in milliseconds. Returns the default value if the timeout isn't configured.
+    */
+    private static int readOutputModuleTimeout(String key, int defaultValueInMs) {
+        
+        double timeoutValue = applicationConfiguration_.safeGetDouble(key, -1);
+        if (timeoutValue < 0) return defaultValueInMs;
+        
+        return legacyMode_ ? (int) timeoutValue : (int) (timeoutValue * 1000);
+    }
+    
+    /*
+    Reads 'rollup_collectors' -- a csv list of internal collector metric prefixes (ex- Linux.Cpu,Linux.Network-Bandwidth).
+    */
+    private static List<String> readRollupCollectors() {
+        
+        List<String> rollupCollectors = new ArrayList<>();
+        
+        String rollupCollectorsValue = applicationConfiguration_.safeGetString("rollup_collectors", "");
+        if ((rollupCollectorsValue == null) || rollupCollectorsValue.trim().isEmpty()) return rollupCollectors;
+        
+        for (String rollupCollector : rollupCollectorsValue.split(",")) {
+            if (!rollupCollector.trim().isEmpty()) rollupCollectors.add(rollupCollector.trim());
+        }
+        
+        return rollupCollectors;
+    }
+    
+    /*
+    Reads 'rollup_statistics' -- a csv list of the statistics (min, max, avg, last, count) that rolled up collectors output.
+    Invalid statistics are logged & ignored. Returns null if no valid statistics are configured (which disables rollups).
+    */
+    private static int[] readRollupStatistics() {
+        
+        String rollupStatisticsValue = applicationConfiguration_.safeGetString("rollup_statistics", "min,max,avg");
+        if (rollupStatisticsValue == null) return null;
+        
+        List<Integer> rollupStatistics = new ArrayList<>();
+        
+        for (String rollupStatistic : rollupStatisticsValue.split(",")) {
+            if (rollupStatistic.trim().isEmpty()) continue;
+            
+            int rollupStatisticCode = MetricRollup.getStatisticCode(rollupStatistic);
+            
+            if (rollupStatisticCode == -1) logger.warn("Invalid rollup_statistics value. Valid values are 'min', 'max', 'avg', 'last', 'count'. Value=" + rollupStatistic.trim());
+            else if (!rollupStatistics.contains(rollupStatisticCode)) rollupStatistics.add(rollupStatisticCode);
+        }
+        
+        if (rollupStatistics.isEmpty()) return null;
+        
+        int[] rollupStatisticCodes = new int[rollupStatistics.size()];
+        for (int i = 0; i < rollupStatistics.size(); i++) rollupStatisticCodes[i] = rollupStatistics.get(i);
+        
+        return rollupStatisticCodes;
+    }
+    
+    /*
+    The memory limits of the ingestion queues. Returns null if 'max_queued_metrics_memory' is 0 (the queues are only limited by 'max_queued_metrics').
+    */
+    private static MetricMemoryBudget readMetricMemoryBudget() {
+        
+        long maxQueuedMetricsMemoryInBytes = applicationConfiguration_.safeGetLong("max_queued_metrics_memory", 64) * 1024 * 1024;
+        long maxQueuedMetricsMemoryPerCollectorInBytes = applicationConfiguration_.safeGetLong("max_queued_metrics_memory_per_collector", 0) * 1024 * 1024;
+        if (maxQueuedMetricsMemoryInBytes <= 0) return null;
+        
+        String queuedMetricsOverflowPolicy = applicationConfiguration_.safeGetString("queued_metrics_overflow_policy", "drop_newest");
+        int queuedMetricsOverflowPolicyCode = MetricMemoryBudget.getOverflowPolicyCode(queuedMetricsOverflowPolicy);
+        if (queuedMetricsOverflowPolicyCode == -1) {
+            logger.warn("Invalid queued_metrics_overflow_policy. Valid values are 'drop_newest', 'drop_oldest', 'sample'. Defaulting to 'drop_newest'. " + 
+                    "QueuedMetricsOverflowPolicy=" + queuedMetricsOverflowPolicy);
+            queuedMetricsOverflowPolicyCode = MetricMemoryBudget.OVERFLOW_POLICY_DROP_NEWEST;
+        }
+        
+        return new MetricMemoryBudget(maxQueuedMetricsMemoryInBytes, maxQueuedMetricsMemoryPerCollectorInBytes, queuedMetricsOverflowPolicyCode);
+    }
+    
+    /*
+    Reads the 'metric_relabel_rule' lines, in order. Each line is csv -- action,regex[,replacement]. Invalid rules are logged & skipped.
+    Returns null if there are no valid rules.
+    */
+    private static MetricRelabeler readMetricRelabeler() {
+        
+        List<MetricRelabeler.RelabelRule> relabelRules = new ArrayList<>();
+        
+        try {
+            List<Object> relabelRuleConfigs = applicationConfiguration_.safeGetList("metric_relabel_rule", new ArrayList<>());
+            
+            for (Object relabelRuleConfig : relabelRuleConfigs) {
+                if ((relabelRuleConfig == null) || ((String) relabelRuleConfig).trim().isEmpty()) continue;
+                
+                // backslashes are regex escapes, so the csv parser must not treat them as csv escapes
+                CSVParser csvParser = new CSVParserBuilder().withEscapeChar(ICSVParser.NULL_CHARACTER).build();
+                CSVReader reader = new CSVReaderBuilder(new StringReader((String) relabelRuleConfig)).withCSVParser(csvParser).build();
+                List<String[]> csvValuesArray = reader.readAll();
+                if ((csvValuesArray == null) || csvValuesArray.isEmpty() || (csvValuesArray.get(0) == null)) continue;
+                
+                String[] csvValues = csvValuesArray.get(0);
+                if ((csvValues.length < 2) || (csvValues.length > 3)) {
+                    logger.warn("Invalid metric_relabel_rule. Expected 'action,regex' or 'action,regex,replacement'. Value=" + relabelRuleConfig);
+                    continue;
+                }
+                
+                String replacement = (csvValues.length == 3) ? csvValues[2] : null;
+                MetricRelabeler.RelabelRule relabelRule = MetricRelabeler.RelabelRule.createRelabelRule(csvValues[0], csvValues[1], replacement);
+                if (relabelRule != null) relabelRules.add(relabelRule);
+            }
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        
+        if (relabelRules.isEmpty()) return null;
+        
+        return new MetricRelabeler(relabelRules);
+    }
+
     private static List<OpenTsdbTelnetOutputModule> readOpenTsdbTelnetOutputModules() {
         
         List<OpenTsdbTelnetOutputModule> openTsdbTelnetOutputModules = new ArrayList<>();
@@ -422,6 +736,7 @@ public class ApplicationConfiguration {
                                 numSendRetryAttempts, sanitizeMetrics, uniqueId);
                         
                         openTsdbTelnetOutputModules.add(openTsdbTelnetOutputModule);
+                        outputModuleSchedules_.put(uniqueId, readOutputModuleSchedule(openTsdbTelnetOutputModuleKey));
                     }
                 }
             }
@@ -459,11 +774,15 @@ public class ApplicationConfiguration {
                         boolean sanitizeMetrics = false;
                         if (csvValues.length > 4) sanitizeMetrics = Boolean.valueOf(csvValues[4]);
                         
+                        boolean isGzipEnabled = false;
+                        if (csvValues.length > 5) isGzipEnabled = Boolean.valueOf(csvValues[5]);
+                        
                         String uniqueId = "OpenTSDB-HTTP-" + (i+1);
                         
                         OpenTsdbHttpOutputModule openTsdbHttpOutputModule = new OpenTsdbHttpOutputModule(isOutputEnabled, url, numSendRetryAttempts, 
-                                maxMetricsPerMessage, sanitizeMetrics, uniqueId);
+                                maxMetricsPerMessage, sanitizeMetrics, isGzipEnabled, uniqueId);
                         openTsdbHttpOutputModules.add(openTsdbHttpOutputModule);
+                        outputModuleSchedules_.put(uniqueId, readOutputModuleSchedule(openTsdbHttpOutputModuleKey));
                     }
                 }
             }
@@ -475,6 +794,107 @@ public class ApplicationConfiguration {
         return openTsdbHttpOutputModules;
     }
 
+    private static List<InfluxdbV1HttpOutputModule> readInfluxdbV1HttpOutputModules() {
+        
+        List<InfluxdbV1HttpOutputModule> influxdbV1HttpOutputModules = new ArrayList<>();
+        
+        for (int i = -1; i < 10000; i++) {
+            String influxdbV1HttpOutputModuleKey = "influxdb_v1_output_module_" + (i + 1);
+            String influxdbV1HttpOutputModuleValue = applicationConfiguration_.safeGetString(influxdbV1HttpOutputModuleKey, null);
+            
+            if (influxdbV1HttpOutputModuleValue == null) continue;
+            
+            try {
+                CSVReader reader = new CSVReader(new StringReader(influxdbV1HttpOutputModuleValue));
+                List<String[]> csvValuesArray = reader.readAll();
+
+                if ((csvValuesArray != null) && !csvValuesArray.isEmpty() && (csvValuesArray.get(0) != null)) {
+                    String[] csvValues = csvValuesArray.get(0);
+
+                    if (csvValues.length >= 5) {                                
+                        boolean isOutputEnabled = Boolean.valueOf(csvValues[0]);
+                        String url = csvValues[1];
+                        int numSendRetryAttempts = Integer.valueOf(csvValues[2]);
+                        int maxMetricsPerMessage = Integer.valueOf(csvValues[3]);
+                        String databaseName = csvValues[4];
+                        
+                        String username = null, password = null;
+                        if ((csvValues.length > 5) && !csvValues[5].trim().isEmpty()) username = csvValues[5].trim();
+                        if (csvValues.length > 6) password = csvValues[6];
+                        
+                        String uniqueId = "InfluxDB-V1-" + (i+1);
+                        
+                        InfluxdbV1HttpOutputModule influxdbV1HttpOutputModule = new InfluxdbV1HttpOutputModule(isOutputEnabled, url, numSendRetryAttempts, 
+                                maxMetricsPerMessage, databaseName, username, password, uniqueId);
+                        influxdbV1HttpOutputModules.add(influxdbV1HttpOutputModule);
+                        outputModuleSchedules_.put(uniqueId, readOutputModuleSchedule(influxdbV1HttpOutputModuleKey));
+                    }
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return influxdbV1HttpOutputModules;
+    }
+    
+    private static List<InfluxdbV2HttpOutputModule> readInfluxdbV2HttpOutputModules() {
+        
+        List<InfluxdbV2HttpOutputModule> influxdbV2HttpOutputModules = new ArrayList<>();
+        
+        for (int i = -1; i < 10000; i++) {
+            String influxdbV2HttpOutputModuleKey = "influxdb_v2_output_module_" + (i + 1);
+            String influxdbV2HttpOutputModuleValue = applicationConfiguration_.safeGetString(influxdbV2HttpOutputModuleKey, null);
+            
+            if (influxdbV2HttpOutputModuleValue == null) continue;
+            
+            try {
+                CSVReader reader = new CSVReader(new StringReader(influxdbV2HttpOutputModuleValue));
+                List<String[]> csvValuesArray = reader.readAll();
+                
+                if ((csvValuesArray != null) && !csvValuesArray.isEmpty() && (csvValuesArray.get(0) != null)) {
+                    String[] csvValues = csvValuesArray.get(0);
+                    
+                    if (csvValues.length >= 5) {                                
+                        boolean isOutputEnabled = Boolean.valueOf(csvValues[0]);
+                        String url = csvValues[1];
+                        int numSendRetryAttempts = Integer.valueOf(csvValues[2]);
+                        int maxMetricsPerMessage = Integer.valueOf(csvValues[3]);
+                        String databaseName = csvValues[4];
+                        
+                        byte timePrecisionCode = Common.TIMESTAMP_PRECISION_MILLISECONDS;
+                        if ((csvValues.length > 5) && !csvValues[5].trim().isEmpty()) timePrecisionCode = InfluxdbMetric_v2.getTimePrecisionCodeFromTimePrecisionString(csvValues[5].trim());
+                        
+                        if (timePrecisionCode == Common.TIMESTAMP_PRECISION_UNKNOWN) {
+                            logger.error("Invalid timestamp precision for " + influxdbV2HttpOutputModuleKey + ". Valid values are: n, u, ms, s, m, h");
+                            continue;
+                        }
+                        
+                        boolean isGzipEnabled = true;
+                        if ((csvValues.length > 6) && !csvValues[6].trim().isEmpty()) isGzipEnabled = Boolean.valueOf(csvValues[6].trim());
+                        
+                        String username = null, password = null;
+                        if ((csvValues.length > 7) && !csvValues[7].trim().isEmpty()) username = csvValues[7].trim();
+                        if (csvValues.length > 8) password = csvValues[8];
+                        
+                        String uniqueId = "InfluxDB-V2-" + (i+1);
+                        
+                        InfluxdbV2HttpOutputModule influxdbV2HttpOutputModule = new InfluxdbV2HttpOutputModule(isOutputEnabled, url, numSendRetryAttempts, 
+                                maxMetricsPerMessage, databaseName, timePrecisionCode, isGzipEnabled, username, password, uniqueId);
+                        influxdbV2HttpOutputModules.add(influxdbV2HttpOutputModule);
+                        outputModuleSchedules_.put(uniqueId, readOutputModuleSchedule(influxdbV2HttpOutputModuleKey));
+                    }
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return influxdbV2HttpOutputModules;
+    }
+    
     private static List<String[]> readProcessCounterPrefixesAndRegexes() {
        
         List<String[]> processCounterPrefixesAndRegexes = new ArrayList<>();
@@ -1174,6 +1594,14 @@ public class ApplicationConfiguration {
         return outputInternalMetricsToDisk_;
     }
 
+    public static int getMaxQueuedMetrics() {
+        return maxQueuedMetrics_;
+    }
+    
+    public static MetricMemoryBudget getMetricMemoryBudget() {
+        return metricMemoryBudget_;
+    }
+    
     public static boolean isLegacyMode() {
         return legacyMode_;
     }
@@ -1183,6 +1611,10 @@ public class ApplicationConfiguration {
         else return new ArrayList<>(graphiteOutputModules_);
     }
 
+    public static List<GraphiteShardedOutputModule> getGraphiteShardedOutputModules() {
+        return new ArrayList<>(graphiteShardedOutputModules_);
+    }
+    
     public static List<OpenTsdbTelnetOutputModule> getOpenTsdbTelnetOutputModules() {
         if (openTsdbTelnetOutputModules_ == null) return null;
         else return new ArrayList<>(openTsdbTelnetOutputModules_);
@@ -1193,6 +1625,114 @@ public class ApplicationConfiguration {
         else return new ArrayList<>(openTsdbHttpOutputModules_);
     }
     
+    public static List<InfluxdbV1HttpOutputModule> getInfluxdbV1HttpOutputModules() {
+        if (influxdbV1HttpOutputModules_ == null) return null;
+        else return new ArrayList<>(influxdbV1HttpOutputModules_);
+    }
+    
+    public static List<InfluxdbV2HttpOutputModule> getInfluxdbV2HttpOutputModules() {
+        if (influxdbV2HttpOutputModules_ == null) return null;
+        else return new ArrayList<>(influxdbV2HttpOutputModules_);
+    }
+    
+    public static boolean isOutputPersistentTcpConnections() {
+        return outputPersistentTcpConnections_;
+    }
+    
+    /*
+    Returns the output module's schedule. Output modules without their own schedule (ex- the legacy graphite config) use the 'output_module_*' defaults.
+    */
+    public static OutputModuleSchedule getOutputModuleSchedule(String outputModuleUniqueId) {
+        
+        OutputModuleSchedule outputModuleSchedule = (outputModuleUniqueId == null) ? null : outputModuleSchedules_.get(outputModuleUniqueId);
+        if (outputModuleSchedule != null) return outputModuleSchedule;
+        
+        return new OutputModuleSchedule(outputModuleSendInterval_, outputModuleConnectTimeout_, outputModuleReadTimeout_, 
+                outputModuleMaxSendTime_, outputModuleMaxBacklog_);
+    }
+    
+    public static boolean isOutputCircuitBreakerEnabled() {
+        return outputCircuitBreakerEnabled_;
+    }
+    
+    public static int getOutputCircuitBreakerFailureThreshold() {
+        return outputCircuitBreakerFailureThreshold_;
+    }
+    
+    public static long getOutputCircuitBreakerMinOpenTime() {
+        return outputCircuitBreakerMinOpenTime_;
+    }
+    
+    public static long getOutputCircuitBreakerMaxOpenTime() {
+        return outputCircuitBreakerMaxOpenTime_;
+    }
+    
+    public static int getOutputHttpMaxConcurrentRequests() {
+        return outputHttpMaxConcurrentRequests_;
+    }
+    
+    public static boolean isOutputSpoolEnabled() {
+        return outputSpoolEnabled_;
+    }
+    
+    public static String getOutputSpoolDirectory() {
+        return outputSpoolDirectory_;
+    }
+    
+    public static long getOutputSpoolMaxSizeInBytes() {
+        return outputSpoolMaxSizeInBytes_;
+    }
+    
+    public static long getOutputSpoolSegmentSizeInBytes() {
+        return outputSpoolSegmentSizeInBytes_;
+    }
+    
+    public static int getOutputSpoolMaxReplayMessagesPerInterval() {
+        return outputSpoolMaxReplayMessagesPerInterval_;
+    }
+    
+    public static int getOutputCompactionMode() {
+        return outputCompactionMode_;
+    }
+    
+    /*
+    Returns true if the internal collector with this metric prefix (ex- Linux.Cpu) is listed in 'rollup_collectors'.
+    */
+    public static boolean isRollupCollector(String internalCollectorMetricPrefix) {
+        if ((internalCollectorMetricPrefix == null) || (rollupCollectors_ == null) || (rollupStatistics_ == null)) return false;
+        return rollupCollectors_.contains(internalCollectorMetricPrefix);
+    }
+    
+    public static List<String> getRollupCollectors() {
+        if (rollupCollectors_ == null) return null;
+        return new ArrayList<>(rollupCollectors_);
+    }
+    
+    public static MetricRelabeler getMetricRelabeler() {
+        return metricRelabeler_;
+    }
+    
+    public static UnchangedMetricSuppressor getUnchangedMetricSuppressor() {
+        return unchangedMetricSuppressor_;
+    }
+    
+    public static int[] getRollupStatistics() {
+        if (rollupStatistics_ == null) return null;
+        return rollupStatistics_.clone();
+    }
+    
+    public static boolean isPrometheusExpositionEnabled() {
+        return prometheusExpositionEnabled_;
+    }
+    
+    public static int getPrometheusExpositionPort() {
+        return prometheusExpositionPort_;
+    }
+    
+    public static long getPrometheusExpositionSeriesMaxAge() {
+        return prometheusExpositionSeriesMaxAge_;
+    }
+    
     public static String getStatspollerMetricCollectorPrefix() {
         return statspollerMetricCollectorPrefix_;
     }
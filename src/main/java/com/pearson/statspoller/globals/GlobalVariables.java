@@ -2,7 +2,8 @@ package com.pearson.statspoller.globals;
 
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
-import java.util.concurrent.ConcurrentHashMap;
+import com.pearson.statspoller.metric_formats.prometheus.PrometheusMetricIndex;
+import com.pearson.statspoller.output.MetricIngestionQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,10 +15,16 @@ public class GlobalVariables {
     
     private static final Logger logger = LoggerFactory.getLogger(GlobalVariables.class.getName());
     
-    public final static ConcurrentHashMap<Long,GraphiteMetric> graphiteMetrics = new ConcurrentHashMap<>();
-    public final static ConcurrentHashMap<Long,OpenTsdbMetric> openTsdbMetrics = new ConcurrentHashMap<>();
+    public static final int DEFAULT_MAX_QUEUED_METRICS = 500000;
+    
+    // metric collectors put metrics into these queues. the output thread drains them every output interval.
+    public final static MetricIngestionQueue<GraphiteMetric> graphiteMetrics = new MetricIngestionQueue<>(DEFAULT_MAX_QUEUED_METRICS);
+    public final static MetricIngestionQueue<OpenTsdbMetric> openTsdbMetrics = new MetricIngestionQueue<>(DEFAULT_MAX_QUEUED_METRICS);
     public final static AtomicLong metricHashKeyGenerator = new AtomicLong(Long.MIN_VALUE);
     public final static AtomicLong metricTransmitErrorCount = new AtomicLong(0l);
+    
+    // the latest value of every series that has been output. served by the prometheus exposition endpoint (if it is enabled).
+    public final static PrometheusMetricIndex prometheusMetricIndex = new PrometheusMetricIndex();
       
 }
 
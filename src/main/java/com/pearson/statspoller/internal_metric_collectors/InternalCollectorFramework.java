@@ -1,14 +1,14 @@
 package com.pearson.statspoller.internal_metric_collectors;
 
+import com.pearson.statspoller.globals.AgentInstrumentation;
 import com.pearson.statspoller.globals.ApplicationConfiguration;
 import com.pearson.statspoller.globals.GlobalVariables;
 import java.util.List;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
-import com.pearson.statspoller.utilities.core_utils.Threads;
-import com.pearson.statspoller.utilities.file_utils.FileIo;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,8 +20,8 @@ public abstract class InternalCollectorFramework {
     
     private static final Logger logger = LoggerFactory.getLogger(InternalCollectorFramework.class.getName());
     
-    protected final int NUM_FILE_WRITE_RETRIES = 3;
-    protected final int DELAY_BETWEEN_WRITE_RETRIES_IN_MS = 100;
+    // a collector that outputs more distinct metric names than this (ex- names with embedded ids) has its metric name cache emptied, rather than growing forever
+    private static final int MAX_CACHED_METRIC_NAMES = 100000;
     
     private final boolean isEnabled_;
     private final long collectionInterval_;
@@ -35,6 +35,18 @@ public abstract class InternalCollectorFramework {
     private String fullInternalCollectorMetricPrefix_ = null;
     private String finalOutputFilePathAndFilename_ = null;
     
+    // k=raw metric name (graphite metric path, or opentsdb metric key), v=fullInternalCollectorMetricPrefix_ + raw metric name
+    private final ConcurrentHashMap<String,String> prefixedMetricNames_ = new ConcurrentHashMap<>();
+    
+    // k=opentsdb metric key, v=fullInternalCollectorMetricPrefix_ + opentsdb metric name (no tags)
+    private final ConcurrentHashMap<String,String> prefixedOpenTsdbMetricNames_ = new ConcurrentHashMap<>();
+    
+    // null unless this collector is configured to be rolled up (see 'rollup_collectors')
+    private final MetricRollup metricRollup_;
+    
+    // this collector's collection times & metric counts, which are output as 'Agent.Collector.*' metrics. also used to limit this collector's queued metrics.
+    private final AgentInstrumentation.CollectorInstrumentation collectorInstrumentation_;
+    
     public InternalCollectorFramework(boolean isEnabled, long collectionInterval, String internalCollectorMetricPrefix, 
             String outputFilePathAndFilename, boolean writeOutputFiles) {
         this.isEnabled_ = isEnabled;
@@ -43,6 +55,11 @@ public abstract class InternalCollectorFramework {
         this.outputFilePathAndFilename_ = outputFilePathAndFilename;
         this.writeOutputFiles_ = writeOutputFiles;
         
+        if (ApplicationConfiguration.isRollupCollector(internalCollectorMetricPrefix)) this.metricRollup_ = MetricRollup.createRollup(ApplicationConfiguration.getRollupStatistics());
+        else this.metricRollup_ = null;
+        
+        this.collectorInstrumentation_ = AgentInstrumentation.getCollectorInstrumentation(internalCollectorMetricPrefix);
+        
         createFullInternalCollectorMetricPrefix();
         this.finalOutputFilePathAndFilename_ = this.outputFilePathAndFilename_;
     }
@@ -51,24 +68,30 @@ public abstract class InternalCollectorFramework {
         
         if (graphiteMetrics == null) return;
         
+        List<GraphiteMetric> outputGraphiteMetrics = new ArrayList<>(graphiteMetrics.size());
+        
         for (GraphiteMetric graphiteMetric : graphiteMetrics) {
             try {
                 if (graphiteMetric == null) continue;
 
-                String graphiteMetricPathWithPrefix = fullInternalCollectorMetricPrefix_ + graphiteMetric.getMetricPath();
-                GraphiteMetric outputGraphiteMetric = new GraphiteMetric(graphiteMetricPathWithPrefix, graphiteMetric.getMetricValue(), graphiteMetric.getMetricTimestampInSeconds());
+                String graphiteMetricPathWithPrefix = getPrefixedMetricName(prefixedMetricNames_, graphiteMetric.getMetricPath(), graphiteMetric.getMetricPath());
+                GraphiteMetric outputGraphiteMetric = graphiteMetric.getCopyWithMetricPath(graphiteMetricPathWithPrefix);
 
-                outputGraphiteMetric.setHashKey(GlobalVariables.metricHashKeyGenerator.incrementAndGet());
-                GlobalVariables.graphiteMetrics.put(outputGraphiteMetric.getHashKey(), outputGraphiteMetric);
+                outputGraphiteMetrics.add(outputGraphiteMetric);
             } 
             catch (Exception e) {
                 logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
             }
         }
         
+        collectorInstrumentation_.recordMetricsProduced(outputGraphiteMetrics.size());
+        
+        if (metricRollup_ == null) GlobalVariables.graphiteMetrics.offerAll(outputGraphiteMetrics, collectorInstrumentation_);
+        else offerUnrolledGraphiteMetrics(metricRollup_.add(outputGraphiteMetrics));
+        
         if (writeOutputFiles_) {
-            String outputString = buildGraphiteMetricsFile(graphiteMetrics, true, fullInternalCollectorMetricPrefix_);
-            writeGraphiteMetricsToFile(outputString);
+            InternalCollectorOutputFileWriter.queueWrite(finalOutputFilePathAndFilename_, InternalCollectorOutputFileWriter.FORMAT_GRAPHITE, 
+                    graphiteMetrics, fullInternalCollectorMetricPrefix_);
         }
         
     }
@@ -77,37 +100,30 @@ public abstract class InternalCollectorFramework {
 
         if (openTsdbMetrics == null) return;
         
+        List<GraphiteMetric> outputGraphiteMetrics = new ArrayList<>(openTsdbMetrics.size());
+        
         for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics) {
             try {
                 if (openTsdbMetric == null) continue;
 
-                String metricNameWithPrefix = fullInternalCollectorMetricPrefix_ + openTsdbMetric.getMetric();
+                String metricNameWithPrefix = getPrefixedMetricName(prefixedOpenTsdbMetricNames_, openTsdbMetric.getMetricKey(), openTsdbMetric.getMetric());
                 GraphiteMetric outputGraphiteMetric = new GraphiteMetric(metricNameWithPrefix, openTsdbMetric.getMetricValue(), openTsdbMetric.getMetricTimestampInSeconds());
 
-                outputGraphiteMetric.setHashKey(GlobalVariables.metricHashKeyGenerator.incrementAndGet());
-                GlobalVariables.graphiteMetrics.put(outputGraphiteMetric.getHashKey(), outputGraphiteMetric);
+                outputGraphiteMetrics.add(outputGraphiteMetric);
             } 
             catch (Exception e) {
                 logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
             }
         }
         
+        collectorInstrumentation_.recordMetricsProduced(outputGraphiteMetrics.size());
+        
+        if (metricRollup_ == null) GlobalVariables.graphiteMetrics.offerAll(outputGraphiteMetrics, collectorInstrumentation_);
+        else offerUnrolledGraphiteMetrics(metricRollup_.add(outputGraphiteMetrics));
+        
         if (writeOutputFiles_) {
-            List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
-            
-            for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics) {
-                try {
-                    if (openTsdbMetric == null) continue;
-                    GraphiteMetric graphiteMetric = new GraphiteMetric(openTsdbMetric.getMetric(), openTsdbMetric.getMetricValue(), openTsdbMetric.getMetricTimestampInSeconds());
-                    graphiteMetrics.add(graphiteMetric);
-                } 
-                catch (Exception e) {
-                    logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-                }
-            }
-            
-            String outputString = buildGraphiteMetricsFile(graphiteMetrics, true, fullInternalCollectorMetricPrefix_);
-            writeGraphiteMetricsToFile(outputString);
+            InternalCollectorOutputFileWriter.queueWrite(finalOutputFilePathAndFilename_, InternalCollectorOutputFileWriter.FORMAT_OPENTSDB_AS_GRAPHITE, 
+                    openTsdbMetrics, fullInternalCollectorMetricPrefix_);
         }
         
     }
@@ -116,107 +132,74 @@ public abstract class InternalCollectorFramework {
         
         if (openTsdbMetrics == null) return;
         
+        List<OpenTsdbMetric> outputOpenTsdbMetrics = new ArrayList<>(openTsdbMetrics.size());
+        
         for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics) {
             try {
                 if (openTsdbMetric == null) continue;
 
-                String metricNameWithPrefix = fullInternalCollectorMetricPrefix_ + openTsdbMetric.getMetric();
-                OpenTsdbMetric outputOpenTsdbMetric = new OpenTsdbMetric(metricNameWithPrefix, openTsdbMetric.getMetricTimestampInMilliseconds(), 
-                        openTsdbMetric.getMetricValue(), openTsdbMetric.getTags());
+                // the prefixed metric key is the prefix + the unprefixed metric key, so the tags don't need to be re-parsed & re-sorted
+                String metricKeyWithPrefix = getPrefixedMetricName(prefixedMetricNames_, openTsdbMetric.getMetricKey(), openTsdbMetric.getMetricKey());
+                OpenTsdbMetric outputOpenTsdbMetric = openTsdbMetric.getCopyWithMetricPrefix(fullInternalCollectorMetricPrefix_, metricKeyWithPrefix);
+                
+                if (outputOpenTsdbMetric == null) {
+                    String metricNameWithPrefix = fullInternalCollectorMetricPrefix_ + openTsdbMetric.getMetric();
+                    outputOpenTsdbMetric = new OpenTsdbMetric(metricNameWithPrefix, openTsdbMetric.getMetricTimestampInMilliseconds(), 
+                            openTsdbMetric.getMetricValue(), openTsdbMetric.getTags());
+                }
 
-                outputOpenTsdbMetric.setHashKey(GlobalVariables.metricHashKeyGenerator.incrementAndGet());
-                GlobalVariables.openTsdbMetrics.put(outputOpenTsdbMetric.getHashKey(), outputOpenTsdbMetric);
+                outputOpenTsdbMetrics.add(outputOpenTsdbMetric);
             } 
             catch (Exception e) {
                 logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
             }
         }
         
+        collectorInstrumentation_.recordMetricsProduced(outputOpenTsdbMetrics.size());
+        
+        if (metricRollup_ == null) GlobalVariables.openTsdbMetrics.offerAll(outputOpenTsdbMetrics, collectorInstrumentation_);
+        else offerUnrolledOpenTsdbMetrics(metricRollup_.add(outputOpenTsdbMetrics));
+        
         if (writeOutputFiles_) {
-            String outputString = buildOpenTsdbMetricsFile(openTsdbMetrics, true, fullInternalCollectorMetricPrefix_);
-            writeGraphiteMetricsToFile(outputString);
+            InternalCollectorOutputFileWriter.queueWrite(finalOutputFilePathAndFilename_, InternalCollectorOutputFileWriter.FORMAT_OPENTSDB, 
+                    openTsdbMetrics, fullInternalCollectorMetricPrefix_);
         }
         
     }
     
-    private void writeGraphiteMetricsToFile(String output) {
-        
-        if ((output == null) || output.isEmpty()) {
-            return;
-        }
-        
-        boolean isSuccessfulWrite;
-        
-        try {
-            for (int i = 0; i <= NUM_FILE_WRITE_RETRIES; i++) {
-                isSuccessfulWrite = FileIo.saveStringToFile(finalOutputFilePathAndFilename_, output);
-
-                if (isSuccessfulWrite) break;
-                else Threads.sleepMilliseconds(DELAY_BETWEEN_WRITE_RETRIES_IN_MS);
-            }
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-        }
+    /*
+    Collectors call this once per collection routine, with how long the routine took.
+    */
+    protected void recordCollectionTime(long collectionTimeInMs) {
+        collectorInstrumentation_.recordCollectionTime(collectionTimeInMs);
     }
     
-    private String buildGraphiteMetricsFile(List<GraphiteMetric> graphiteMetrics, boolean stripPrefix, String metricPrefix) {
-        
-        if ((graphiteMetrics == null) || graphiteMetrics.isEmpty()) {
-            return null;
-        }
-        
-        StringBuilder stringBuilder = new StringBuilder();
-        
-        for (GraphiteMetric graphiteMetric : graphiteMetrics) {
-            try {
-                if (graphiteMetric == null) continue;
-
-                GraphiteMetric outputGraphiteMetric = graphiteMetric;
-
-                if (stripPrefix && (metricPrefix != null)) {
-                    String graphiteMetricPathNoPrefix = StringUtils.removeStart(graphiteMetric.getMetricPath(), metricPrefix);
-                    outputGraphiteMetric = new GraphiteMetric(graphiteMetricPathNoPrefix, graphiteMetric.getMetricValue(), graphiteMetric.getMetricTimestampInSeconds());
-                }
-
-                stringBuilder.append(outputGraphiteMetric.getGraphiteFormatString(true, true)).append("\n");
-            }
-            catch (Exception e) {
-                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            }
-        }
-        
-        return stringBuilder.toString();
+    // metrics that the rollup couldn't take (see MetricRollup.add) are output as-is
+    private void offerUnrolledGraphiteMetrics(List<GraphiteMetric> unrolledGraphiteMetrics) {
+        if ((unrolledGraphiteMetrics != null) && !unrolledGraphiteMetrics.isEmpty()) GlobalVariables.graphiteMetrics.offerAll(unrolledGraphiteMetrics, collectorInstrumentation_);
     }
     
-    private String buildOpenTsdbMetricsFile(List<OpenTsdbMetric> openTsdbMetrics, boolean stripPrefix, String metricPrefix) {
+    private void offerUnrolledOpenTsdbMetrics(List<OpenTsdbMetric> unrolledOpenTsdbMetrics) {
+        if ((unrolledOpenTsdbMetrics != null) && !unrolledOpenTsdbMetrics.isEmpty()) GlobalVariables.openTsdbMetrics.offerAll(unrolledOpenTsdbMetrics, collectorInstrumentation_);
+    }
+    
+    /*
+    Returns fullInternalCollectorMetricPrefix_ + metricName. 
+    The prefixed name is built once per cache key & then reused, so collectors that output the same metrics every interval don't build new strings.
+    */
+    private String getPrefixedMetricName(ConcurrentHashMap<String,String> prefixedMetricNames, String cacheKey, String metricName) {
         
-        if ((openTsdbMetrics == null) || openTsdbMetrics.isEmpty()) {
-            return null;
-        }
+        if ((cacheKey == null) || (metricName == null)) return fullInternalCollectorMetricPrefix_ + metricName;
         
-        StringBuilder stringBuilder = new StringBuilder();
+        String prefixedMetricName = prefixedMetricNames.get(cacheKey);
+        if (prefixedMetricName != null) return prefixedMetricName;
         
-        for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics) {
-            try {
-                if (openTsdbMetric == null) continue;
-
-                OpenTsdbMetric outputOpenTsdbMetric = openTsdbMetric;
-
-                if (stripPrefix && (metricPrefix != null)) {
-                    String openTsdbMetricNameNoPrefix = StringUtils.removeStart(openTsdbMetric.getMetric(), metricPrefix);
-                    outputOpenTsdbMetric = new OpenTsdbMetric(openTsdbMetricNameNoPrefix, openTsdbMetric.getMetricTimestampInMilliseconds(), 
-                            openTsdbMetric.getMetricValue(), openTsdbMetric.getTags());
-                }
-
-                stringBuilder.append(outputOpenTsdbMetric.getOpenTsdbTelnetFormatString(true)).append("\n");
-            }
-            catch (Exception e) {
-                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            }
-        }
+        if (prefixedMetricNames.size() >= MAX_CACHED_METRIC_NAMES) prefixedMetricNames.clear();
+        
+        prefixedMetricName = fullInternalCollectorMetricPrefix_ + metricName;
+        prefixedMetricNames.put(cacheKey, prefixedMetricName);
         
-        return stringBuilder.toString();
+        return prefixedMetricName;
     }
     
     /*
@@ -246,6 +229,12 @@ public abstract class InternalCollectorFramework {
         
         if (!metricPrefix.isEmpty() && !metricPrefix.endsWith(".")) metricPrefix += ".";
         
+        // cached names were built with the old prefix. some collectors (jmx) re-set the prefix often, so only empty the caches if it actually changed.
+        if (!metricPrefix.equals(fullInternalCollectorMetricPrefix_)) {
+            prefixedMetricNames_.clear();
+            prefixedOpenTsdbMetricNames_.clear();
+        }
+        
         fullInternalCollectorMetricPrefix_ = metricPrefix;
     }
     
@@ -292,6 +281,10 @@ public abstract class InternalCollectorFramework {
         return writeOutputFiles_;
     }
 
+    public MetricRollup getMetricRollup() {
+        return metricRollup_;
+    }
+
     protected String getLinuxProcFileSystemLocation() {
         return linuxProcFileSystemLocation_;
     }
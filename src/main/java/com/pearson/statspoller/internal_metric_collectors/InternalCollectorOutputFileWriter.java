@@ -0,0 +1,259 @@
+package com.pearson.statspoller.internal_metric_collectors;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.pearson.statspoller.utilities.core_utils.Threads;
+import com.pearson.statspoller.utilities.file_utils.FileIo;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the internal collectors' output files (ex- ./output/linux_cpu.out) on a single background thread, so that a slow disk never stalls a collector.
+ *
+ * Collectors queue their latest metrics, & return immediately. Each output file only ever holds its collector's latest metrics,
+ * so if a file has a write queued that hasn't happened yet, the newer metrics replace the queued ones (the older write is skipped).
+ * The writer waits a moment after the first queued write, so that writes that arrive close together are written in one pass.
+ * Files are formatted on the writer thread, & written to a temporary file that is then renamed over the output file.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class InternalCollectorOutputFileWriter implements Runnable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InternalCollectorOutputFileWriter.class.getName());
+    
+    public static final byte FORMAT_GRAPHITE = 1;
+    public static final byte FORMAT_OPENTSDB = 2;
+    public static final byte FORMAT_OPENTSDB_AS_GRAPHITE = 3;
+    
+    private static final int NUM_FILE_WRITE_RETRIES = 3;
+    private static final int DELAY_BETWEEN_WRITE_RETRIES_IN_MS = 100;
+    
+    // after a write is queued, wait this long for other writes to be queued before writing
+    private static final long MERGE_WINDOW_IN_MS = 200;
+    
+    private static final Object lockObject_ = new Object();
+    
+    // k=output file path & filename, v=the latest metrics to write to the file. never holds more than one pending write per file.
+    private static final LinkedHashMap<String,PendingWrite> pendingWrites_ = new LinkedHashMap<>();
+    
+    private static Thread writerThread_ = null;
+    private static long numSkippedWrites_ = 0;
+    
+    private InternalCollectorOutputFileWriter() {}
+    
+    /*
+    Queues the metrics to be written to the output file. Never blocks on disk i/o.
+    'metricPrefix' is stripped from the start of metric names that begin with it.
+    Metrics that don't match the format (ex- a GraphiteMetric in a FORMAT_OPENTSDB write) are skipped.
+    */
+    public static void queueWrite(String outputFilePathAndFilename, byte format, List<?> metrics, String metricPrefix) {
+        
+        if ((outputFilePathAndFilename == null) || (metrics == null) || metrics.isEmpty()) return;
+        
+        // the collector may reuse its list, so the writer gets its own copy
+        PendingWrite pendingWrite = new PendingWrite(format, new ArrayList<>(metrics), metricPrefix);
+        
+        synchronized (lockObject_) {
+            if (pendingWrites_.put(outputFilePathAndFilename, pendingWrite) != null) numSkippedWrites_++;
+            
+            if (writerThread_ == null) {
+                writerThread_ = new Thread(new InternalCollectorOutputFileWriter(), "InternalCollectorOutputFileWriter");
+                writerThread_.setDaemon(true);
+                writerThread_.start();
+            }
+            
+            lockObject_.notifyAll();
+        }
+    }
+    
+    @Override
+    public void run() {
+        
+        while (true) {
+            LinkedHashMap<String,PendingWrite> pendingWrites;
+            
+            try {
+                synchronized (lockObject_) {
+                    while (pendingWrites_.isEmpty()) lockObject_.wait();
+                }
+                
+                Threads.sleepMilliseconds(MERGE_WINDOW_IN_MS);
+                
+                synchronized (lockObject_) {
+                    pendingWrites = new LinkedHashMap<>(pendingWrites_);
+                    pendingWrites_.clear();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            
+            // this is the only writer thread, so nothing (not even an Error) may stop it. otherwise output files would silently stop being written.
+            for (String outputFilePathAndFilename : pendingWrites.keySet()) {
+                try {
+                    writeFile(outputFilePathAndFilename, pendingWrites.get(outputFilePathAndFilename));
+                }
+                catch (Exception e) {
+                    logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+                }
+                catch (Throwable t) {
+                    logger.error(t.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(t.getStackTrace()));
+                }
+            }
+        }
+    }
+    
+    private static void writeFile(String outputFilePathAndFilename, PendingWrite pendingWrite) {
+        
+        String output;
+        
+        if (pendingWrite.getFormat() == FORMAT_GRAPHITE) output = buildGraphiteMetricsFile(pendingWrite.getMetrics(), true, pendingWrite.getMetricPrefix());
+        else if (pendingWrite.getFormat() == FORMAT_OPENTSDB) output = buildOpenTsdbMetricsFile(pendingWrite.getMetrics(), true, pendingWrite.getMetricPrefix());
+        else if (pendingWrite.getFormat() == FORMAT_OPENTSDB_AS_GRAPHITE) output = buildOpenTsdbMetricsAsGraphiteMetricsFile(pendingWrite.getMetrics(), pendingWrite.getMetricPrefix());
+        else output = null;
+        
+        if ((output == null) || output.isEmpty()) return;
+        
+        byte[] outputBytes = output.getBytes(Charset.defaultCharset());
+        
+        for (int i = 0; i <= NUM_FILE_WRITE_RETRIES; i++) {
+            if (FileIo.saveBytesToFileAtomically(outputFilePathAndFilename, outputBytes)) return;
+            
+            // a newer write for this file is already queued, so there is no point retrying this one
+            synchronized (lockObject_) {
+                if (pendingWrites_.containsKey(outputFilePathAndFilename)) return;
+            }
+            
+            Threads.sleepMilliseconds(DELAY_BETWEEN_WRITE_RETRIES_IN_MS);
+        }
+        
+        logger.debug("Failed to write output file. File=\"" + outputFilePathAndFilename + "\"");
+    }
+    
+    private static String buildGraphiteMetricsFile(List<?> graphiteMetrics, boolean stripPrefix, String metricPrefix) {
+        
+        if ((graphiteMetrics == null) || graphiteMetrics.isEmpty()) {
+            return null;
+        }
+        
+        StringBuilder stringBuilder = new StringBuilder();
+        
+        for (Object metric : graphiteMetrics) {
+            try {
+                if (!(metric instanceof GraphiteMetric)) continue;
+                
+                GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+                GraphiteMetric outputGraphiteMetric = graphiteMetric;
+                
+                if (stripPrefix && (metricPrefix != null)) {
+                    String graphiteMetricPathNoPrefix = StringUtils.removeStart(graphiteMetric.getMetricPath(), metricPrefix);
+                    outputGraphiteMetric = new GraphiteMetric(graphiteMetricPathNoPrefix, graphiteMetric.getMetricValue(), graphiteMetric.getMetricTimestampInSeconds());
+                }
+                
+                stringBuilder.append(outputGraphiteMetric.getGraphiteFormatString(true, true)).append("\n");
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return stringBuilder.toString();
+    }
+    
+    private static String buildOpenTsdbMetricsFile(List<?> openTsdbMetrics, boolean stripPrefix, String metricPrefix) {
+        
+        if ((openTsdbMetrics == null) || openTsdbMetrics.isEmpty()) {
+            return null;
+        }
+        
+        StringBuilder stringBuilder = new StringBuilder();
+        
+        for (Object metric : openTsdbMetrics) {
+            try {
+                if (!(metric instanceof OpenTsdbMetric)) continue;
+                
+                OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+                OpenTsdbMetric outputOpenTsdbMetric = openTsdbMetric;
+                
+                if (stripPrefix && (metricPrefix != null)) {
+                    String openTsdbMetricNameNoPrefix = StringUtils.removeStart(openTsdbMetric.getMetric(), metricPrefix);
+                    outputOpenTsdbMetric = new OpenTsdbMetric(openTsdbMetricNameNoPrefix, openTsdbMetric.getMetricTimestampInMilliseconds(),
+                            openTsdbMetric.getMetricValue(), openTsdbMetric.getTags());
+                }
+                
+                stringBuilder.append(outputOpenTsdbMetric.getOpenTsdbTelnetFormatString(true)).append("\n");
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return stringBuilder.toString();
+    }
+    
+    private static String buildOpenTsdbMetricsAsGraphiteMetricsFile(List<?> openTsdbMetrics, String metricPrefix) {
+        
+        if ((openTsdbMetrics == null) || openTsdbMetrics.isEmpty()) {
+            return null;
+        }
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        
+        for (Object metric : openTsdbMetrics) {
+            try {
+                if (!(metric instanceof OpenTsdbMetric)) continue;
+                OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+                GraphiteMetric graphiteMetric = new GraphiteMetric(openTsdbMetric.getMetric(), openTsdbMetric.getMetricValue(), openTsdbMetric.getMetricTimestampInSeconds());
+                graphiteMetrics.add(graphiteMetric);
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return buildGraphiteMetricsFile(graphiteMetrics, true, metricPrefix);
+    }
+    
+    /*
+    The number of queued writes that were replaced by a newer write to the same file before they were written.
+    */
+    public static long getNumSkippedWrites() {
+        synchronized (lockObject_) {
+            return numSkippedWrites_;
+        }
+    }
+    
+    private static class PendingWrite {
+        
+        private final byte format_;
+        private final List<?> metrics_;
+        private final String metricPrefix_;
+        
+        public PendingWrite(byte format, List<?> metrics, String metricPrefix) {
+            this.format_ = format;
+            this.metrics_ = metrics;
+            this.metricPrefix_ = metricPrefix;
+        }
+        
+        public byte getFormat() {
+            return format_;
+        }
+        
+        public List<?> getMetrics() {
+            return metrics_;
+        }
+        
+        public String getMetricPrefix() {
+            return metricPrefix_;
+        }
+    
+    }
+
+}
@@ -0,0 +1,341 @@
+package com.pearson.statspoller.internal_metric_collectors;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rolls up the metrics of a fast internal collector (ex- a cpu collector that runs every second) into a few statistics per series, per output interval.
+ *
+ * Instead of queueing every point for output, the collector adds its points to its rollup. Each series keeps a running min, max, sum, last, & count.
+ * Every output interval, the rollup outputs the configured statistics as suffixed series (ex- Linux.Cpu.Usage-Pct.max), & starts over.
+ * Short spikes show up in the 'max' series, but the number of points that are output doesn't depend on how often the collector runs.
+ *
+ * The running statistics are kept in primitive arrays (one slot per series), so adding a point doesn't create any objects.
+ * Series that weren't seen during an output interval are dropped at the end of the interval.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricRollup {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricRollup.class.getName());
+    
+    public static final int STATISTIC_MIN = 0;
+    public static final int STATISTIC_MAX = 1;
+    public static final int STATISTIC_AVG = 2;
+    public static final int STATISTIC_LAST = 3;
+    public static final int STATISTIC_COUNT = 4;
+    
+    private static final String[] STATISTIC_NAMES = {"min", "max", "avg", "last", "count"};
+    
+    // a collector that outputs more distinct series than this (ex- names with embedded ids) has its extra series output as-is, rather than rolled up
+    private static final int MAX_SERIES = 100000;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private static final byte SERIES_TYPE_GRAPHITE = 1;
+    private static final byte SERIES_TYPE_OPENTSDB = 2;
+    
+    // every rollup that has been created. they are all flushed by the output thread, once per output interval.
+    private static final List<MetricRollup> rollups_ = new CopyOnWriteArrayList<>();
+    
+    private final int[] statistics_;
+    private final String[] statisticSuffixes_;
+    
+    // k=series key (graphite metric path, or opentsdb metric key), v=slot
+    private final HashMap<String,Integer> seriesSlots_ = new HashMap<>();
+    private int numSeries_ = 0;
+    
+    private String[] seriesKeys_ = new String[INITIAL_CAPACITY];
+    private byte[] seriesTypes_ = new byte[INITIAL_CAPACITY];
+    private Object[] lastMetrics_ = new Object[INITIAL_CAPACITY];
+    private String[][] suffixedSeriesKeys_ = new String[INITIAL_CAPACITY][];
+    private long[] counts_ = new long[INITIAL_CAPACITY];
+    private double[] mins_ = new double[INITIAL_CAPACITY];
+    private double[] maxes_ = new double[INITIAL_CAPACITY];
+    private double[] sums_ = new double[INITIAL_CAPACITY];
+    private double[] lasts_ = new double[INITIAL_CAPACITY];
+    private long[] lastTimestampsInMs_ = new long[INITIAL_CAPACITY];
+    
+    private MetricRollup(int[] statistics) {
+        this.statistics_ = Arrays.copyOf(statistics, statistics.length);
+        this.statisticSuffixes_ = new String[statistics.length];
+        for (int i = 0; i < statistics.length; i++) statisticSuffixes_[i] = "." + STATISTIC_NAMES[statistics[i]];
+    }
+    
+    /*
+    Creates a rollup that outputs 'statistics' (STATISTIC_ codes), & registers it to be flushed every output interval. Returns null if there are no valid statistics.
+    */
+    public static MetricRollup createRollup(int[] statistics) {
+        
+        if (statistics == null) return null;
+        
+        for (int statistic : statistics) {
+            if ((statistic < 0) || (statistic >= STATISTIC_NAMES.length)) return null;
+        }
+        
+        if (statistics.length == 0) return null;
+        
+        MetricRollup metricRollup = new MetricRollup(statistics);
+        rollups_.add(metricRollup);
+        
+        return metricRollup;
+    }
+    
+    /*
+    Returns the statistic code of a statistic name ('min', 'max', 'avg', 'last', 'count'). Returns -1 if the name isn't recognized.
+    */
+    public static int getStatisticCode(String statisticName) {
+        
+        if (statisticName == null) return -1;
+        
+        String statistic = statisticName.trim();
+        
+        for (int i = 0; i < STATISTIC_NAMES.length; i++) {
+            if (STATISTIC_NAMES[i].equalsIgnoreCase(statistic)) return i;
+        }
+        
+        return -1;
+    }
+    
+    /*
+    Outputs (& resets) every rollup. Called by the output thread, once per output interval.
+    */
+    public static List<Object> flushRollups() {
+        
+        List<Object> metrics = new ArrayList<>();
+        
+        for (MetricRollup metricRollup : rollups_) {
+            try {
+                metricRollup.flush(metrics);
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return metrics;
+    }
+    
+    /*
+    Adds the points to their series' running statistics.
+    Returns the metrics that couldn't be rolled up (ex- metrics with no series key, or series beyond MAX_SERIES). They should be output as-is.
+    Points with a null value have nothing to roll up, & are dropped.
+    */
+    public synchronized <T> List<T> add(List<T> metrics) {
+        
+        if (metrics == null) return null;
+        
+        List<T> unrolledMetrics = null;
+        
+        for (T metric : metrics) {
+            if (metric == null) continue;
+            
+            String seriesKey;
+            byte seriesType;
+            double metricValue;
+            long metricTimestampInMs;
+            
+            if (metric instanceof GraphiteMetric) {
+                GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+                seriesKey = graphiteMetric.getMetricPath();
+                seriesType = SERIES_TYPE_GRAPHITE;
+                metricValue = graphiteMetric.getMetricValueDouble();
+                metricTimestampInMs = graphiteMetric.getMetricTimestampInMilliseconds();
+            }
+            else if (metric instanceof OpenTsdbMetric) {
+                OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+                seriesKey = openTsdbMetric.getMetricKey();
+                seriesType = SERIES_TYPE_OPENTSDB;
+                metricValue = openTsdbMetric.getMetricValueDouble();
+                metricTimestampInMs = openTsdbMetric.getMetricTimestampInMilliseconds();
+            }
+            else {
+                seriesKey = null;
+                seriesType = 0;
+                metricValue = Double.NaN;
+                metricTimestampInMs = 0;
+            }
+            
+            int slot = (seriesKey == null) ? -1 : getSlot(seriesKey, seriesType);
+            
+            if ((slot == -1) || (seriesTypes_[slot] != seriesType)) {
+                if (unrolledMetrics == null) unrolledMetrics = new ArrayList<>();
+                unrolledMetrics.add(metric);
+                continue;
+            }
+            
+            if (Double.isNaN(metricValue) || Double.isInfinite(metricValue)) continue;
+            
+            if (counts_[slot] == 0) {
+                mins_[slot] = metricValue;
+                maxes_[slot] = metricValue;
+                sums_[slot] = 0;
+            }
+            else {
+                if (metricValue < mins_[slot]) mins_[slot] = metricValue;
+                if (metricValue > maxes_[slot]) maxes_[slot] = metricValue;
+            }
+            
+            sums_[slot] += metricValue;
+            counts_[slot]++;
+            
+            // the newest point is 'last'. if timestamps are tied, the point that was added last wins.
+            if ((counts_[slot] == 1) || (metricTimestampInMs >= lastTimestampsInMs_[slot])) {
+                lasts_[slot] = metricValue;
+                lastTimestampsInMs_[slot] = metricTimestampInMs;
+                lastMetrics_[slot] = metric;
+            }
+        }
+        
+        return unrolledMetrics;
+    }
+    
+    /*
+    Returns the slot of a series, creating the slot if the series is new. Returns -1 if the series is new & there are already MAX_SERIES series.
+    */
+    private int getSlot(String seriesKey, byte seriesType) {
+        
+        Integer slot = seriesSlots_.get(seriesKey);
+        if (slot != null) return slot;
+        
+        if (numSeries_ >= MAX_SERIES) return -1;
+        if (numSeries_ == seriesKeys_.length) resize(seriesKeys_.length * 2);
+        
+        int newSlot = numSeries_;
+        numSeries_++;
+        
+        seriesSlots_.put(seriesKey, newSlot);
+        seriesKeys_[newSlot] = seriesKey;
+        seriesTypes_[newSlot] = seriesType;
+        lastMetrics_[newSlot] = null;
+        suffixedSeriesKeys_[newSlot] = null;
+        counts_[newSlot] = 0;
+        
+        return newSlot;
+    }
+    
+    private void resize(int capacity) {
+        seriesKeys_ = Arrays.copyOf(seriesKeys_, capacity);
+        seriesTypes_ = Arrays.copyOf(seriesTypes_, capacity);
+        lastMetrics_ = Arrays.copyOf(lastMetrics_, capacity);
+        suffixedSeriesKeys_ = Arrays.copyOf(suffixedSeriesKeys_, capacity);
+        counts_ = Arrays.copyOf(counts_, capacity);
+        mins_ = Arrays.copyOf(mins_, capacity);
+        maxes_ = Arrays.copyOf(maxes_, capacity);
+        sums_ = Arrays.copyOf(sums_, capacity);
+        lasts_ = Arrays.copyOf(lasts_, capacity);
+        lastTimestampsInMs_ = Arrays.copyOf(lastTimestampsInMs_, capacity);
+    }
+    
+    /*
+    Adds the rolled up statistics of every series to 'outputMetrics', & resets the statistics.
+    Series with no points this interval are dropped, & the remaining series are moved down so that the slots stay packed.
+    */
+    private synchronized void flush(List<Object> outputMetrics) {
+        
+        int numKeptSeries = 0;
+        
+        for (int slot = 0; slot < numSeries_; slot++) {
+            if (counts_[slot] == 0) {
+                seriesSlots_.remove(seriesKeys_[slot]);
+                continue;
+            }
+            
+            try {
+                outputStatistics(slot, outputMetrics);
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+            
+            if (slot != numKeptSeries) moveSlot(slot, numKeptSeries);
+            
+            counts_[numKeptSeries] = 0;
+            lastMetrics_[numKeptSeries] = null;
+            numKeptSeries++;
+        }
+        
+        for (int slot = numKeptSeries; slot < numSeries_; slot++) {
+            seriesKeys_[slot] = null;
+            lastMetrics_[slot] = null;
+            suffixedSeriesKeys_[slot] = null;
+        }
+        
+        numSeries_ = numKeptSeries;
+        
+        // give back memory after a burst of series
+        if ((seriesKeys_.length > INITIAL_CAPACITY) && (numSeries_ < (seriesKeys_.length / 4))) resize(Math.max(INITIAL_CAPACITY, seriesKeys_.length / 2));
+    }
+    
+    private void moveSlot(int fromSlot, int toSlot) {
+        seriesSlots_.put(seriesKeys_[fromSlot], toSlot);
+        seriesKeys_[toSlot] = seriesKeys_[fromSlot];
+        seriesTypes_[toSlot] = seriesTypes_[fromSlot];
+        lastMetrics_[toSlot] = lastMetrics_[fromSlot];
+        suffixedSeriesKeys_[toSlot] = suffixedSeriesKeys_[fromSlot];
+        counts_[toSlot] = counts_[fromSlot];
+        mins_[toSlot] = mins_[fromSlot];
+        maxes_[toSlot] = maxes_[fromSlot];
+        sums_[toSlot] = sums_[fromSlot];
+        lasts_[toSlot] = lasts_[fromSlot];
+        lastTimestampsInMs_[toSlot] = lastTimestampsInMs_[fromSlot];
+    }
+    
+    /*
+    Outputs the configured statistics of a series, at the timestamp of the series' newest point.
+    The suffixed series names are built the first time a series is output, & reused while the series stays active.
+    */
+    private void outputStatistics(int slot, List<Object> outputMetrics) {
+        
+        String[] suffixedSeriesKeys = suffixedSeriesKeys_[slot];
+        
+        if (suffixedSeriesKeys == null) {
+            suffixedSeriesKeys = new String[statistics_.length];
+            
+            for (int i = 0; i < statistics_.length; i++) {
+                if (seriesTypes_[slot] == SERIES_TYPE_OPENTSDB) suffixedSeriesKeys[i] = ((OpenTsdbMetric) lastMetrics_[slot]).getSuffixedMetricKey(statisticSuffixes_[i]);
+                else suffixedSeriesKeys[i] = seriesKeys_[slot] + statisticSuffixes_[i];
+            }
+            
+            suffixedSeriesKeys_[slot] = suffixedSeriesKeys;
+        }
+        
+        long metricTimestampInMs = lastTimestampsInMs_[slot];
+        int metricTimestampInSeconds = (int) (metricTimestampInMs / 1000);
+        
+        for (int i = 0; i < statistics_.length; i++) {
+            double statisticValue;
+            
+            if (statistics_[i] == STATISTIC_MIN) statisticValue = mins_[slot];
+            else if (statistics_[i] == STATISTIC_MAX) statisticValue = maxes_[slot];
+            else if (statistics_[i] == STATISTIC_AVG) statisticValue = sums_[slot] / counts_[slot];
+            else if (statistics_[i] == STATISTIC_LAST) statisticValue = lasts_[slot];
+            else statisticValue = counts_[slot];
+            
+            if (seriesTypes_[slot] == SERIES_TYPE_OPENTSDB) {
+                OpenTsdbMetric openTsdbMetric = ((OpenTsdbMetric) lastMetrics_[slot]).getCopyWithMetricSuffix(statisticSuffixes_[i],
+                        suffixedSeriesKeys[i], metricTimestampInMs, statisticValue);
+                if (openTsdbMetric != null) outputMetrics.add(openTsdbMetric);
+            }
+            else if (statistics_[i] == STATISTIC_COUNT) {
+                outputMetrics.add(new GraphiteMetric(suffixedSeriesKeys[i], counts_[slot], metricTimestampInSeconds));
+            }
+            else {
+                outputMetrics.add(new GraphiteMetric(suffixedSeriesKeys[i], statisticValue, metricTimestampInSeconds));
+            }
+        }
+    }
+    
+    public synchronized int getNumSeries() {
+        return numSeries_;
+    }
+
+}
@@ -68,6 +68,8 @@ public class ApacheHttpMetricCollector extends InternalCollectorFramework implem
                     ", ApacheHttpMetricsCollected=" + graphiteMetrics.size() +
                     ", ApacheHttpMetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) {
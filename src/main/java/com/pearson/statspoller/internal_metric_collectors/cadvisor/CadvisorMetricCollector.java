@@ -16,7 +16,6 @@ import com.pearson.statspoller.utilities.core_utils.Threads;
 import com.pearson.statspoller.utilities.json_utils.JsonUtils;
 import com.pearson.statspoller.utilities.web_utils.HttpRequest;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -41,12 +40,13 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
     private static final Logger logger = LoggerFactory.getLogger(CadvisorMetricCollector.class.getName());
     
     private static final String CADVISOR_STAT_TIMESTAMP_MILLISECOND_PRECISION_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSX";
-    private static final BigDecimal ONE_HUNDRED = new BigDecimal(100);
-    private static final BigDecimal ONE_THOUSAND = new BigDecimal(1000);
-    private static final BigDecimal ONE_THOUSAND_TWENTY_FOUR = new BigDecimal(1024);
-    private static final BigDecimal BYTES_TO_MEGABITS_DIVISOR = new BigDecimal("125000");
-    private static final int SCALE = 7;
-    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+    private static final double ONE_HUNDRED = 100;
+    private static final double ONE_THOUSAND = 1000;
+    private static final double BYTES_TO_MEGABITS_DIVISOR = 125000;
+    
+    // computed values are rounded (half-up) to 7 decimal places
+    private static final double ROUNDING_FACTOR = 10000000;
+    private static final double MAX_ROUNDABLE_VALUE = Long.MAX_VALUE / ROUNDING_FACTOR;
 
     private final String protocol_;
     private final String host_;
@@ -180,6 +180,8 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
             }
             
             if (routineTimeElapsed == -1) routineTimeElapsed = System.currentTimeMillis() - routineStartTime;
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
         }
@@ -429,11 +431,11 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
             
             // covers the case of a container that isn't consuming any cpu at all
             if (Objects.equals(previousStatMetadata.getStat().getCpu().getUsage().getTotal(), currentStatMetadata.getStat().getCpu().getUsage().getTotal()) || (timestamp_Difference_Ms == 0)) {
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags_Cpu));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuUserUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags_Cpu));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuSystemUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags_Cpu));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOtherUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags_Cpu));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToCpuShares-Pct", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags_Cpu));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags_Cpu));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuUserUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags_Cpu));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuSystemUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags_Cpu));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOtherUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags_Cpu));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToCpuShares-Pct", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags_Cpu));
                 return openTsdbMetrics;
             }
             
@@ -452,23 +454,23 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
             Double cpuSystemTimeAsPercentOfTotalTime = cpuSystem_Difference.doubleValue() / cpuTotal_Difference.doubleValue();
             Double cpuOtherTimeAsPercentOfTotalTime = cpuOther_Difference.doubleValue() / cpuTotal_Difference.doubleValue();
 
-            BigDecimal cpuTotalPercent_ContainerRelativeToHostResources = new BigDecimal((totalCpuLoad / cpuCoreCount) * 100).setScale(SCALE, ROUNDING_MODE);
-            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuTotalPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
+            double cpuTotalPercent_ContainerRelativeToHostResources = getRounded((totalCpuLoad / cpuCoreCount) * 100);
+            if (Double.isFinite(cpuTotalPercent_ContainerRelativeToHostResources)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuTotalPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
             
-            BigDecimal cpuUserPercent_ContainerRelativeToHostResources = new BigDecimal(cpuTotalPercent_ContainerRelativeToHostResources.doubleValue() * cpuUserTimeAsPercentOfTotalTime).setScale(SCALE, ROUNDING_MODE);
-            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuUserUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuUserPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
+            double cpuUserPercent_ContainerRelativeToHostResources = getRounded(cpuTotalPercent_ContainerRelativeToHostResources * cpuUserTimeAsPercentOfTotalTime);
+            if (Double.isFinite(cpuUserPercent_ContainerRelativeToHostResources)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuUserUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuUserPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
 
-            BigDecimal cpuSystemPercent_ContainerRelativeToHostResources = new BigDecimal(cpuTotalPercent_ContainerRelativeToHostResources.doubleValue() * cpuSystemTimeAsPercentOfTotalTime).setScale(SCALE, ROUNDING_MODE);
-            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuSystemUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuSystemPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
+            double cpuSystemPercent_ContainerRelativeToHostResources = getRounded(cpuTotalPercent_ContainerRelativeToHostResources * cpuSystemTimeAsPercentOfTotalTime);
+            if (Double.isFinite(cpuSystemPercent_ContainerRelativeToHostResources)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuSystemUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuSystemPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
 
-            BigDecimal cpuOtherPercent_ContainerRelativeToHostResources = new BigDecimal(cpuTotalPercent_ContainerRelativeToHostResources.doubleValue() * cpuOtherTimeAsPercentOfTotalTime).setScale(SCALE, ROUNDING_MODE);
-            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOtherUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuOtherPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
+            double cpuOtherPercent_ContainerRelativeToHostResources = getRounded(cpuTotalPercent_ContainerRelativeToHostResources * cpuOtherTimeAsPercentOfTotalTime);
+            if (Double.isFinite(cpuOtherPercent_ContainerRelativeToHostResources)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOtherUsage-RelativeToHost-Pct", currentStatMetadata.getTimestamp().getTime(), cpuOtherPercent_ContainerRelativeToHostResources, openTsdbTags_Cpu));
 
             if ((currentStatMetadata.getDocker().getSpec() != null) || (currentStatMetadata.getDocker().getSpec().getCpu() != null) && (currentStatMetadata.getDocker().getSpec().getCpu().getLimit() != null)) {
                 Double cpuSharesLimit = currentStatMetadata.getDocker().getSpec().getCpu().getLimit().doubleValue();
                 Double totalUsedCpuShares = totalCpuLoad * 1024;
-                Double cpuSharesLimitPercent = totalUsedCpuShares / cpuSharesLimit;
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToCpuShares-Pct", currentStatMetadata.getTimestamp().getTime(), new BigDecimal(cpuSharesLimitPercent).multiply(ONE_HUNDRED).setScale(SCALE, ROUNDING_MODE), openTsdbTags_Cpu));
+                double cpuSharesLimitPercent = getRounded((totalUsedCpuShares / cpuSharesLimit) * ONE_HUNDRED);
+                if (Double.isFinite(cpuSharesLimitPercent)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Cpu.CpuOverallUsage-RelativeToCpuShares-Pct", currentStatMetadata.getTimestamp().getTime(), cpuSharesLimitPercent, openTsdbTags_Cpu));
             }
         }
         catch (Exception e) {
@@ -493,30 +495,30 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
             Memory_ memory = currentStatMetadata.getStat().getMemory();
             if (memory == null) return openTsdbMetrics;
 
-            if (memory.getWorkingSet() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.WorkingSet-Bytes", timestamp.getTime(), new BigDecimal(memory.getWorkingSet()), openTsdbTags));
-            if (memory.getRss() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.RSS-Bytes", timestamp.getTime(), new BigDecimal(memory.getRss()), openTsdbTags));
-            if (memory.getCache() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Cache-Bytes", timestamp.getTime(), new BigDecimal(memory.getCache()), openTsdbTags));
-            if (memory.getSwap() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Swap-Bytes", timestamp.getTime(), new BigDecimal(memory.getSwap()), openTsdbTags));
-            if (memory.getUsage() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Usage-Bytes", timestamp.getTime(), new BigDecimal(memory.getUsage()), openTsdbTags));
+            if (memory.getWorkingSet() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.WorkingSet-Bytes", timestamp.getTime(), memory.getWorkingSet(), openTsdbTags));
+            if (memory.getRss() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.RSS-Bytes", timestamp.getTime(), memory.getRss(), openTsdbTags));
+            if (memory.getCache() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Cache-Bytes", timestamp.getTime(), memory.getCache(), openTsdbTags));
+            if (memory.getSwap() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Swap-Bytes", timestamp.getTime(), memory.getSwap(), openTsdbTags));
+            if (memory.getUsage() != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Usage-Bytes", timestamp.getTime(), memory.getUsage(), openTsdbTags));
             //if (memory.getFailcnt()!= null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.Fail-Count", timestamp.getTime(), new BigDecimal(memory.getFailcnt()), openTsdbTags));
 
-            if ((memory.getContainerData() != null) && (memory.getContainerData().getPgfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFault-Container-Count", timestamp.getTime(), new BigDecimal(memory.getContainerData().getPgfault()), openTsdbTags));
-            if ((memory.getContainerData() != null) && (memory.getContainerData().getPgmajfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFaultMajor-Container-Count", timestamp.getTime(), new BigDecimal(memory.getContainerData().getPgmajfault()), openTsdbTags));
-            if ((memory.getHierarchicalData() != null) && (memory.getHierarchicalData().getPgfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFault-Hierarchical-Count", timestamp.getTime(), new BigDecimal(memory.getHierarchicalData().getPgfault()), openTsdbTags));
-            if ((memory.getHierarchicalData() != null) && (memory.getHierarchicalData().getPgmajfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFaultMajor-Hierarchical-Count", timestamp.getTime(), new BigDecimal(memory.getHierarchicalData().getPgmajfault()), openTsdbTags));
+            if ((memory.getContainerData() != null) && (memory.getContainerData().getPgfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFault-Container-Count", timestamp.getTime(), memory.getContainerData().getPgfault(), openTsdbTags));
+            if ((memory.getContainerData() != null) && (memory.getContainerData().getPgmajfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFaultMajor-Container-Count", timestamp.getTime(), memory.getContainerData().getPgmajfault(), openTsdbTags));
+            if ((memory.getHierarchicalData() != null) && (memory.getHierarchicalData().getPgfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFault-Hierarchical-Count", timestamp.getTime(), memory.getHierarchicalData().getPgfault(), openTsdbTags));
+            if ((memory.getHierarchicalData() != null) && (memory.getHierarchicalData().getPgmajfault() != null)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.PageFaultMajor-Hierarchical-Count", timestamp.getTime(), memory.getHierarchicalData().getPgmajfault(), openTsdbTags));
 
             if ((currentStatMetadata.getDocker().getSpec() == null) || (currentStatMetadata.getDocker().getSpec().getMemory() == null) || (currentStatMetadata.getDocker().getSpec().getMemory().getReservation() == null)) return openTsdbMetrics;
             Long memorySoftLimit = (currentStatMetadata.getDocker().getSpec().getMemory().getReservation() > currentStatMetadata.getMachine().getMemoryCapacity()) ? currentStatMetadata.getMachine().getMemoryCapacity() : currentStatMetadata.getDocker().getSpec().getMemory().getReservation();
             if ((memorySoftLimit != null) && (memory.getUsage() != null) && (memorySoftLimit != 0)) {
-                BigDecimal memoryUsageRelativeToSoftLimitPercent = new BigDecimal(memory.getUsage()).divide(new BigDecimal(memorySoftLimit), SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.UsageRelativeToSoftLimit-Pct", timestamp.getTime(), memoryUsageRelativeToSoftLimitPercent, openTsdbTags));
+                double memoryUsageRelativeToSoftLimitPercent = getRounded(memory.getUsage().doubleValue() / memorySoftLimit) * ONE_HUNDRED;
+                if (Double.isFinite(memoryUsageRelativeToSoftLimitPercent)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.UsageRelativeToSoftLimit-Pct", timestamp.getTime(), memoryUsageRelativeToSoftLimitPercent, openTsdbTags));
             }
             
             if ((currentStatMetadata.getDocker().getSpec() == null) || (currentStatMetadata.getDocker().getSpec().getMemory() == null) || (currentStatMetadata.getDocker().getSpec().getMemory().getLimit() == null)) return openTsdbMetrics;
             Long memoryHardLimit = (currentStatMetadata.getDocker().getSpec().getMemory().getLimit() > currentStatMetadata.getMachine().getMemoryCapacity()) ? currentStatMetadata.getMachine().getMemoryCapacity() : currentStatMetadata.getDocker().getSpec().getMemory().getLimit();
             if ((memoryHardLimit != null) && (memory.getUsage() != null) && (memoryHardLimit != 0)) {
-                BigDecimal memoryUsageRelativeToHardLimitPercent = new BigDecimal(memory.getUsage()).divide(new BigDecimal(memoryHardLimit), SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.UsageRelativeToHardLimit-Pct", timestamp.getTime(), memoryUsageRelativeToHardLimitPercent, openTsdbTags));
+                double memoryUsageRelativeToHardLimitPercent = getRounded(memory.getUsage().doubleValue() / memoryHardLimit) * ONE_HUNDRED;
+                if (Double.isFinite(memoryUsageRelativeToHardLimitPercent)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Memory.UsageRelativeToHardLimit-Pct", timestamp.getTime(), memoryUsageRelativeToHardLimitPercent, openTsdbTags));
             }
         }
         catch (Exception e) {
@@ -568,7 +570,7 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
 
             long currentTime = System.currentTimeMillis();
             long uptimeInSeconds = (currentTime - creationTimestamp.getTime()) / 1000;
-            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Uptime.Uptime-Seconds", currentTime, new BigDecimal(uptimeInSeconds), openTsdbTags));
+            openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Uptime.Uptime-Seconds", currentTime, uptimeInSeconds, openTsdbTags));
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
@@ -622,35 +624,36 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
             // get connection counts
             Long tcpv4ConnectionCount = getTcpv4ConnectionCount(currentStatMetadata.getStat().getNetwork());
             Long tcpv6ConnectionCount = getTcpv6ConnectionCount(currentStatMetadata.getStat().getNetwork());
-            if (tcpv4ConnectionCount != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Connections.TcpV4-Count", currentStatMetadata.getTimestamp().getTime(), new BigDecimal(tcpv4ConnectionCount), openTsdbTags));
-            if (tcpv6ConnectionCount != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Connections.TcpV6-Count", currentStatMetadata.getTimestamp().getTime(), new BigDecimal(tcpv6ConnectionCount), openTsdbTags));
+            if (tcpv4ConnectionCount != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Connections.TcpV4-Count", currentStatMetadata.getTimestamp().getTime(), tcpv4ConnectionCount, openTsdbTags));
+            if (tcpv6ConnectionCount != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Connections.TcpV6-Count", currentStatMetadata.getTimestamp().getTime(), tcpv6ConnectionCount, openTsdbTags));
 
             Long timestamp_Difference_Ms = currentStatMetadata.getTimestamp().getTime() - previousStatMetadata.getTimestamp().getTime();
                         
             // check to make sure there is a measuable time difference -- avoids divide by 0 exceptions when a container disappears
             if (timestamp_Difference_Ms == 0) {
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
-                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), BigDecimal.ZERO, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
+                openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), 0L, openTsdbTags));
             }
             else {
                 Long rxBytesDiff = currentStatMetadata.getStat().getNetwork().getRxBytes() - previousStatMetadata.getStat().getNetwork().getRxBytes();
                 Long txBytesDiff = currentStatMetadata.getStat().getNetwork().getTxBytes() - previousStatMetadata.getStat().getNetwork().getTxBytes();
-                BigDecimal rxBytesPerSecond = new BigDecimal(rxBytesDiff).divide(new BigDecimal(timestamp_Difference_Ms).divide(ONE_THOUSAND, SCALE, ROUNDING_MODE), SCALE, ROUNDING_MODE);
-                BigDecimal txBytesPerSecond = new BigDecimal(txBytesDiff).divide(new BigDecimal(timestamp_Difference_Ms).divide(ONE_THOUSAND, SCALE, ROUNDING_MODE), SCALE, ROUNDING_MODE);
-                BigDecimal overallBytesPerSecond = rxBytesPerSecond.add(txBytesPerSecond);
-                BigDecimal rxMegabitsPerSecond = rxBytesPerSecond.divide(BYTES_TO_MEGABITS_DIVISOR, SCALE, ROUNDING_MODE);
-                BigDecimal txMegabitsPerSecond = txBytesPerSecond.divide(BYTES_TO_MEGABITS_DIVISOR, SCALE, ROUNDING_MODE);
-                BigDecimal overallMegabitsPerSecond = rxMegabitsPerSecond.add(txMegabitsPerSecond);
-                if (rxBytesPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), rxBytesPerSecond, openTsdbTags));
-                if (txBytesPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), txBytesPerSecond, openTsdbTags));
-                if (overallBytesPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), overallBytesPerSecond, openTsdbTags));
-                if (rxMegabitsPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), rxMegabitsPerSecond, openTsdbTags));
-                if (txMegabitsPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), txMegabitsPerSecond, openTsdbTags));
-                if (overallMegabitsPerSecond != null) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), overallMegabitsPerSecond, openTsdbTags));
+                double secondsBetweenStats = getRounded(timestamp_Difference_Ms / ONE_THOUSAND);
+                double rxBytesPerSecond = getRounded(rxBytesDiff / secondsBetweenStats);
+                double txBytesPerSecond = getRounded(txBytesDiff / secondsBetweenStats);
+                double overallBytesPerSecond = rxBytesPerSecond + txBytesPerSecond;
+                double rxMegabitsPerSecond = getRounded(rxBytesPerSecond / BYTES_TO_MEGABITS_DIVISOR);
+                double txMegabitsPerSecond = getRounded(txBytesPerSecond / BYTES_TO_MEGABITS_DIVISOR);
+                double overallMegabitsPerSecond = rxMegabitsPerSecond + txMegabitsPerSecond;
+                if (Double.isFinite(rxBytesPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), rxBytesPerSecond, openTsdbTags));
+                if (Double.isFinite(txBytesPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), txBytesPerSecond, openTsdbTags));
+                if (Double.isFinite(overallBytesPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Bytes-Second", currentStatMetadata.getTimestamp().getTime(), overallBytesPerSecond, openTsdbTags));
+                if (Double.isFinite(rxMegabitsPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Received-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), rxMegabitsPerSecond, openTsdbTags));
+                if (Double.isFinite(txMegabitsPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Transmitted-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), txMegabitsPerSecond, openTsdbTags));
+                if (Double.isFinite(overallMegabitsPerSecond)) openTsdbMetrics.add(new OpenTsdbMetric(cadvisorScopedMetricPrefix + ".Network.Bandwidth.Overall-Megabits-Second", currentStatMetadata.getTimestamp().getTime(), overallMegabitsPerSecond, openTsdbTags));
             }
         }
         catch (Exception e) {
@@ -660,6 +663,15 @@ public class CadvisorMetricCollector extends InternalCollectorFramework implemen
         return openTsdbMetrics;
     }
     
+    /*
+    NaN & infinite values (ex- a divide by zero) are returned as-is, so callers must check them (with Double.isFinite) before creating a metric. 
+    Values that are too large to round with a long are also returned as-is -- a double that large doesn't have 7 decimal places of precision anyway.
+    */
+    private static double getRounded(double value) {
+        if (!Double.isFinite(value) || (Math.abs(value) >= MAX_ROUNDABLE_VALUE)) return value;
+        return Math.round(value * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+    }
+    
     private static Long getTcpv4ConnectionCount(Network network) {
         
         if ((network == null) || (network.getTcp() == null)) {
@@ -65,6 +65,8 @@ public class DbQuerier extends InternalCollectorFramework implements Runnable {
                     ", MetricsCollected=" + graphiteMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
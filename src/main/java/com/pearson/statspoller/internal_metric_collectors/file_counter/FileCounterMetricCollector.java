@@ -62,6 +62,8 @@ public class FileCounterMetricCollector extends InternalCollectorFramework imple
 					"MetricsCollected=" + graphiteMetrics.size() +
 					", MetricCollectionTime=" + routineTimeElapsed);
 			
+			recordCollectionTime(routineTimeElapsed);
+			
 			long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
 			if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
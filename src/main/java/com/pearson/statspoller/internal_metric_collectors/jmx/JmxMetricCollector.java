@@ -324,6 +324,8 @@ public class JmxMetricCollector extends InternalCollectorFramework implements Ru
             }
 
             long routineTimeElapsed = System.currentTimeMillis() - routineStartTime;
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) {
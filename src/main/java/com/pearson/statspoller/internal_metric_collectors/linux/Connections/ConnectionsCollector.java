@@ -48,6 +48,8 @@ public class ConnectionsCollector extends InternalCollectorFramework implements
                     "MetricsCollected=" + graphiteMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
@@ -7,7 +7,6 @@ import com.pearson.statspoller.utilities.core_utils.Threads;
 import com.pearson.statspoller.utilities.file_utils.FileIo;
 import java.io.BufferedReader;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +49,8 @@ public class CpuCollector extends InternalCollectorFramework implements Runnable
                     "MetricsCollected=" + graphiteMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
@@ -177,11 +178,11 @@ public class CpuCollector extends InternalCollectorFramework implements Runnable
 
                 for (int i = 1; i < rawCpuStats_DelimtedBySpace_Current.length; i++) {
                     try {
-                        BigDecimal previousValue = new BigDecimal(rawCpuStats_DelimtedBySpace_Previous[i]);
-                        BigDecimal currentValue = new BigDecimal(rawCpuStats_DelimtedBySpace_Current[i]);
-                        BigDecimal deltaValue = currentValue.subtract(previousValue);
-                        if (deltaValue.compareTo(BigDecimal.ZERO) == -1) return new HashMap<>();
-                        rawCpuStats_Delta.append(deltaValue.stripTrailingZeros().toPlainString()).append(" ");
+                        long previousValue = Long.parseLong(rawCpuStats_DelimtedBySpace_Previous[i]);
+                        long currentValue = Long.parseLong(rawCpuStats_DelimtedBySpace_Current[i]);
+                        long deltaValue = currentValue - previousValue;
+                        if (deltaValue < 0) return new HashMap<>();
+                        rawCpuStats_Delta.append(deltaValue).append(" ");
                     }
                     catch (Exception e) {
                         logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
@@ -236,18 +237,18 @@ public class CpuCollector extends InternalCollectorFramework implements Runnable
             if (cpuStat.getFormattedCpuName() == null) return graphiteMetrics;
             
             String cpuName = cpuStat.getFormattedCpuName();
-            if ((cpuStat.getUserPercent() != null) && (cpuStat.getUserPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".User-Pct", cpuStat.getUserPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getNicePercent() != null) && (cpuStat.getNicePercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Nice-Pct", cpuStat.getNicePercent(), currentTimestampInSeconds));
-            if ((cpuStat.getSystemPercent() != null) && (cpuStat.getSystemPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".System-Pct", cpuStat.getSystemPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getIdlePercent() != null) && (cpuStat.getIdlePercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Idle-Pct", cpuStat.getIdlePercent(), currentTimestampInSeconds));
-            if ((cpuStat.getIowaitPercent() != null) && (cpuStat.getIowaitPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Iowait-Pct", cpuStat.getIowaitPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getIrqPercent() != null) && (cpuStat.getIrqPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Irq-Pct", cpuStat.getIrqPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getSoftIrqPercent() != null) && (cpuStat.getSoftIrqPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".SoftIrq-Pct", cpuStat.getSoftIrqPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getStealPercent() != null) && (cpuStat.getStealPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Steal-Pct", cpuStat.getStealPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getGuestPercent() != null) && (cpuStat.getGuestPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Guest-Pct", cpuStat.getGuestPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getGuestNicePercent() != null) && (cpuStat.getGuestNicePercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".GuestNice-Pct", cpuStat.getGuestNicePercent(), currentTimestampInSeconds));
-            if ((cpuStat.getExtraPercent() != null) && (cpuStat.getExtraPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Extra-Pct", cpuStat.getExtraPercent(), currentTimestampInSeconds));
-            if ((cpuStat.getUsedPercent() != null) && (cpuStat.getUsedPercent().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Used-Pct", cpuStat.getUsedPercent(), currentTimestampInSeconds));
+            if (cpuStat.getUserPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".User-Pct", cpuStat.getUserPercent(), currentTimestampInSeconds));
+            if (cpuStat.getNicePercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Nice-Pct", cpuStat.getNicePercent(), currentTimestampInSeconds));
+            if (cpuStat.getSystemPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".System-Pct", cpuStat.getSystemPercent(), currentTimestampInSeconds));
+            if (cpuStat.getIdlePercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Idle-Pct", cpuStat.getIdlePercent(), currentTimestampInSeconds));
+            if (cpuStat.getIowaitPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Iowait-Pct", cpuStat.getIowaitPercent(), currentTimestampInSeconds));
+            if (cpuStat.getIrqPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Irq-Pct", cpuStat.getIrqPercent(), currentTimestampInSeconds));
+            if (cpuStat.getSoftIrqPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".SoftIrq-Pct", cpuStat.getSoftIrqPercent(), currentTimestampInSeconds));
+            if (cpuStat.getStealPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Steal-Pct", cpuStat.getStealPercent(), currentTimestampInSeconds));
+            if (cpuStat.getGuestPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Guest-Pct", cpuStat.getGuestPercent(), currentTimestampInSeconds));
+            if (cpuStat.getGuestNicePercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".GuestNice-Pct", cpuStat.getGuestNicePercent(), currentTimestampInSeconds));
+            if (cpuStat.getExtraPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Extra-Pct", cpuStat.getExtraPercent(), currentTimestampInSeconds));
+            if (cpuStat.getUsedPercent() >= 0) graphiteMetrics.add(new GraphiteMetric(cpuName + ".Used-Pct", cpuStat.getUsedPercent(), currentTimestampInSeconds));
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
@@ -1,11 +1,6 @@
 package com.pearson.statspoller.internal_metric_collectors.linux.Cpu;
 
-import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import com.pearson.statspoller.utilities.math_utils.MathUtilities;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author Jeffrey Schmidt
@@ -17,39 +12,26 @@ import org.slf4j.LoggerFactory;
  */
 public class CpuStat_Delta {
 
-    private static final Logger logger = LoggerFactory.getLogger(CpuStat_Delta.class.getName());
-
-    private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
-    private static final int SCALE = 7;
-    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+    // percentages are rounded to 5 decimal places
+    private static final double FRACTION_ROUNDING_FACTOR = 10000000;
+    private static final double PERCENT_ROUNDING_FACTOR = 100000;
 
     private final String cpuName_;
-    private final BigDecimal rawUser_;
-    private final BigDecimal rawNice_;
-    private final BigDecimal rawSystem_;
-    private final BigDecimal rawIdle_;
-    private final BigDecimal rawIowait_;
-    private final BigDecimal rawIrq_;
-    private final BigDecimal rawSoftIrq_;
-    private final BigDecimal rawSteal_;
-    private final BigDecimal rawGuest_;
-    private final BigDecimal rawGuestNice_;
-    private final BigDecimal rawExtra_;
-
-    private final BigDecimal sumCpuStats_;
-
-    private BigDecimal userPercent_;
-    private BigDecimal nicePercent_;
-    private BigDecimal systemPercent_;
-    private BigDecimal idlePercent_;
-    private BigDecimal iowaitPercent_;
-    private BigDecimal irqPercent_;
-    private BigDecimal softIrqPercent_;
-    private BigDecimal stealPercent_;
-    private BigDecimal guestPercent_;
-    private BigDecimal guestNicePercent_;
-    private BigDecimal extraPercent_;
-    private BigDecimal usedPercent_;
+    
+    // a negative value means that the field wasn't available (ex- older kernels don't have every field)
+    private final long rawUser_;
+    private final long rawNice_;
+    private final long rawSystem_;
+    private final long rawIdle_;
+    private final long rawIowait_;
+    private final long rawIrq_;
+    private final long rawSoftIrq_;
+    private final long rawSteal_;
+    private final long rawGuest_;
+    private final long rawGuestNice_;
+    private final long rawExtra_;
+
+    private final long sumCpuStats_;
 
     public CpuStat_Delta(String cpuName,
             String rawUser, String rawNice, String rawSystem, String rawIdle,
@@ -58,25 +40,25 @@ public class CpuStat_Delta {
 
         this.cpuName_ = cpuName;
 
-        this.rawUser_ = MathUtilities.safeGetBigDecimal(rawUser);
-        this.rawNice_ = MathUtilities.safeGetBigDecimal(rawNice);
-        this.rawSystem_ = MathUtilities.safeGetBigDecimal(rawSystem);
-        this.rawIdle_ = MathUtilities.safeGetBigDecimal(rawIdle);
-        this.rawIowait_ = MathUtilities.safeGetBigDecimal(rawIowait);
-        this.rawIrq_ = MathUtilities.safeGetBigDecimal(rawIrq);
-        this.rawSoftIrq_ = MathUtilities.safeGetBigDecimal(rawSoftIrq);
-        this.rawSteal_ = MathUtilities.safeGetBigDecimal(rawSteal);
-        this.rawGuest_ = MathUtilities.safeGetBigDecimal(rawGuest);
-        this.rawGuestNice_ = MathUtilities.safeGetBigDecimal(rawGuestNice);
+        this.rawUser_ = MathUtilities.safeGetLong(rawUser, -1);
+        this.rawNice_ = MathUtilities.safeGetLong(rawNice, -1);
+        this.rawSystem_ = MathUtilities.safeGetLong(rawSystem, -1);
+        this.rawIdle_ = MathUtilities.safeGetLong(rawIdle, -1);
+        this.rawIowait_ = MathUtilities.safeGetLong(rawIowait, -1);
+        this.rawIrq_ = MathUtilities.safeGetLong(rawIrq, -1);
+        this.rawSoftIrq_ = MathUtilities.safeGetLong(rawSoftIrq, -1);
+        this.rawSteal_ = MathUtilities.safeGetLong(rawSteal, -1);
+        this.rawGuest_ = MathUtilities.safeGetLong(rawGuest, -1);
+        this.rawGuestNice_ = MathUtilities.safeGetLong(rawGuestNice, -1);
 
         if (rawExtraFields != null) {
-            BigDecimal rawExtra = BigDecimal.ZERO;
+            long rawExtra = 0;
 
             for (String rawExtraField : rawExtraFields) {
                 if (rawExtraField != null) {
-                    BigDecimal rawExtraField_BigDecimal = MathUtilities.safeGetBigDecimal(rawExtraField);
-                    if (rawExtraField_BigDecimal != null) {
-                        rawExtra = rawExtra.add(rawExtraField_BigDecimal);
+                    long rawExtraField_Long = MathUtilities.safeGetLong(rawExtraField, -1);
+                    if (rawExtraField_Long >= 0) {
+                        rawExtra += rawExtraField_Long;
                     }
                 }
             }
@@ -84,245 +66,92 @@ public class CpuStat_Delta {
             rawExtra_ = rawExtra;
         }
         else {
-            rawExtra_ = null;
+            rawExtra_ = -1;
         }
 
         sumCpuStats_ = sumCpuStats();
     }
 
-    private BigDecimal sumCpuStats() {
+    private long sumCpuStats() {
 
-        BigDecimal sumCpuStats = new BigDecimal(0);
+        long sumCpuStats = 0;
 
-        if (rawUser_ != null) sumCpuStats = sumCpuStats.add(rawUser_);
-        if (rawNice_ != null) sumCpuStats = sumCpuStats.add(rawNice_);
-        if (rawSystem_ != null) sumCpuStats = sumCpuStats.add(rawSystem_);
-        if (rawIdle_ != null) sumCpuStats = sumCpuStats.add(rawIdle_);
-        if (rawIowait_ != null) sumCpuStats = sumCpuStats.add(rawIowait_);
-        if (rawIrq_ != null) sumCpuStats = sumCpuStats.add(rawIrq_);
-        if (rawSoftIrq_ != null) sumCpuStats = sumCpuStats.add(rawSoftIrq_);
-        if (rawSteal_ != null) sumCpuStats = sumCpuStats.add(rawSteal_);
-        if (rawGuest_ != null) sumCpuStats = sumCpuStats.add(rawGuest_);
-        if (rawGuestNice_ != null) sumCpuStats = sumCpuStats.add(rawGuestNice_);
-        if (rawExtra_ != null) sumCpuStats = sumCpuStats.add(rawExtra_);
+        if (rawUser_ > 0) sumCpuStats += rawUser_;
+        if (rawNice_ > 0) sumCpuStats += rawNice_;
+        if (rawSystem_ > 0) sumCpuStats += rawSystem_;
+        if (rawIdle_ > 0) sumCpuStats += rawIdle_;
+        if (rawIowait_ > 0) sumCpuStats += rawIowait_;
+        if (rawIrq_ > 0) sumCpuStats += rawIrq_;
+        if (rawSoftIrq_ > 0) sumCpuStats += rawSoftIrq_;
+        if (rawSteal_ > 0) sumCpuStats += rawSteal_;
+        if (rawGuest_ > 0) sumCpuStats += rawGuest_;
+        if (rawGuestNice_ > 0) sumCpuStats += rawGuestNice_;
+        if (rawExtra_ > 0) sumCpuStats += rawExtra_;
 
         return sumCpuStats;
     }
 
-    public BigDecimal getUserPercent() {
+    /*
+    Returns NaN if the percentage can't be computed
+    */
+    private double getPercent(long rawValue) {
         
-        if (userPercent_ != null) return userPercent_;
-        if ((rawUser_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            userPercent_ = rawUser_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return userPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+        if ((rawValue < 0) || (sumCpuStats_ <= 0)) return Double.NaN;
+        
+        // same rounding as the fraction being rounded (half-up) to 7 decimal places, then multiplied by 100
+        return Math.round((rawValue * FRACTION_ROUNDING_FACTOR) / sumCpuStats_) / PERCENT_ROUNDING_FACTOR;
     }
-
-    public BigDecimal getNicePercent() {
-
-        if (nicePercent_ != null) return nicePercent_;
-        if ((rawNice_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            nicePercent_ = rawNice_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return nicePercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    
+    public double getUserPercent() {
+        return getPercent(rawUser_);
     }
 
-    public BigDecimal getSystemPercent() {
-        
-        if (systemPercent_ != null) return systemPercent_;
-        if ((rawSystem_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            systemPercent_ = rawSystem_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return systemPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getNicePercent() {
+        return getPercent(rawNice_);
     }
 
-    public BigDecimal getIdlePercent() {
-
-        if (idlePercent_ != null) return idlePercent_;
-        if ((rawIdle_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            idlePercent_ = rawIdle_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return idlePercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getSystemPercent() {
+        return getPercent(rawSystem_);
     }
 
-    public BigDecimal getIowaitPercent() {
-
-        if (iowaitPercent_ != null) return iowaitPercent_;
-        if ((rawIowait_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            iowaitPercent_ = rawIowait_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return iowaitPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getIdlePercent() {
+        return getPercent(rawIdle_);
     }
 
-    public BigDecimal getIrqPercent() {
-
-        if (irqPercent_ != null) return irqPercent_;
-        if ((rawIrq_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            irqPercent_ = rawIrq_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return irqPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getIowaitPercent() {
+        return getPercent(rawIowait_);
     }
 
-    public BigDecimal getSoftIrqPercent() {
-
-        if (softIrqPercent_ != null) return softIrqPercent_;
-        if ((rawSoftIrq_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            softIrqPercent_ = rawSoftIrq_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return softIrqPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getIrqPercent() {
+        return getPercent(rawIrq_);
     }
 
-    public BigDecimal getStealPercent() {
-
-        if (stealPercent_ != null) return stealPercent_;
-        if ((rawSteal_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            stealPercent_ = rawSteal_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return stealPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getSoftIrqPercent() {
+        return getPercent(rawSoftIrq_);
     }
 
-    public BigDecimal getGuestPercent() {
-        
-        if (guestPercent_ != null) return guestPercent_;
-        if ((rawGuest_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            guestPercent_ = rawGuest_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return guestPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getStealPercent() {
+        return getPercent(rawSteal_);
     }
 
-    public BigDecimal getGuestNicePercent() {
-
-        if (guestNicePercent_ != null) return guestNicePercent_;
-        if ((rawGuestNice_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            guestNicePercent_ = rawGuestNice_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return guestNicePercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getGuestPercent() {
+        return getPercent(rawGuest_);
     }
 
-    public BigDecimal getExtraPercent() {
-
-        if (extraPercent_ != null) return extraPercent_;
-        if ((rawExtra_ == null) || (sumCpuStats_ == null)) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
-
-        try {
-            extraPercent_ = rawExtra_.divide(sumCpuStats_, SCALE, ROUNDING_MODE).multiply(ONE_HUNDRED);
-            return extraPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getGuestNicePercent() {
+        return getPercent(rawGuestNice_);
     }
 
-    public BigDecimal getUsedPercent() {
-
-        if (usedPercent_ != null) return usedPercent_;
-        if (getIdlePercent() == null) return null;
-
-        boolean isSumCpuStatsEqualToZero = MathUtilities.areBigDecimalsNumericallyEqual(sumCpuStats_, BigDecimal.ZERO);
-        if (isSumCpuStatsEqualToZero) return null;
+    public double getExtraPercent() {
+        return getPercent(rawExtra_);
+    }
 
-        try {
-            usedPercent_ = ONE_HUNDRED.subtract(getIdlePercent());
-            return usedPercent_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getUsedPercent() {
+        
+        double idlePercent = getIdlePercent();
+        if (Double.isNaN(idlePercent)) return Double.NaN;
+        
+        return 100 - idlePercent;
     }
 
     public String getFormattedCpuName() {
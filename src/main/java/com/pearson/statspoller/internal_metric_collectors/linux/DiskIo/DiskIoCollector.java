@@ -7,7 +7,6 @@ import com.pearson.statspoller.utilities.core_utils.Threads;
 import com.pearson.statspoller.utilities.file_utils.FileIo;
 import java.io.BufferedReader;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -51,6 +50,8 @@ public class DiskIoCollector extends InternalCollectorFramework implements Runna
                     "MetricsCollected=" + graphiteMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
@@ -225,10 +226,10 @@ public class DiskIoCollector extends InternalCollectorFramework implements Runna
 
                 for (int i = 3; i < rawDiskStats_DelimtedBySpace_Current.length; i++) {
                     try {
-                        BigDecimal previousValue = new BigDecimal(rawDiskStats_DelimtedBySpace_Previous[i]);
-                        BigDecimal currentValue = new BigDecimal(rawDiskStats_DelimtedBySpace_Current[i]);
-                        BigDecimal deltaValue = currentValue.subtract(previousValue);
-                        rawDiskStats_Delta.append(deltaValue.stripTrailingZeros().toPlainString()).append(" ");
+                        long previousValue = Long.parseLong(rawDiskStats_DelimtedBySpace_Previous[i]);
+                        long currentValue = Long.parseLong(rawDiskStats_DelimtedBySpace_Current[i]);
+                        long deltaValue = currentValue - previousValue;
+                        rawDiskStats_Delta.append(deltaValue).append(" ");
                     }
                     catch (Exception e) {
                         logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
@@ -265,16 +266,16 @@ public class DiskIoCollector extends InternalCollectorFramework implements Runna
             if (diskStat.getDeviceName() == null) return graphiteMetrics;
             
             String deviceName = diskStat.getDeviceName();
-            if ((diskStat.getReadRequestsPerSecond() != null) && (diskStat.getReadRequestsPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Requests|Second", diskStat.getReadRequestsPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getBytesReadPerSecond() != null) && (diskStat.getBytesReadPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Bytes|Second", diskStat.getBytesReadPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getMegabytesReadPerSecond() != null) && (diskStat.getMegabytesReadPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Megabytes|Second", diskStat.getMegabytesReadPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getReadRequestAverageTimeInMilliseconds() != null) && (diskStat.getReadRequestAverageTimeInMilliseconds().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-AvgRequestTime|Millisecond", diskStat.getReadRequestAverageTimeInMilliseconds(), currentTimestampInSeconds));
-            if ((diskStat.getWriteRequestsPerSecond() != null) && (diskStat.getWriteRequestsPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Requests|Second", diskStat.getWriteRequestsPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getBytesWrittenPerSecond() != null) && (diskStat.getBytesWrittenPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Bytes|Second", diskStat.getBytesWrittenPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getMegabytesWrittenPerSecond() != null) && (diskStat.getMegabytesWrittenPerSecond().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Megabytes|Second", diskStat.getMegabytesWrittenPerSecond(), currentTimestampInSeconds));
-            if ((diskStat.getWriteRequestAverageTimeInMilliseconds() != null) && (diskStat.getWriteRequestAverageTimeInMilliseconds().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-AvgRequestTime|Millisecond", diskStat.getWriteRequestAverageTimeInMilliseconds(), currentTimestampInSeconds));
-            if ((diskStat.getAverageRequestTimeInMilliseconds() != null) && (diskStat.getAverageRequestTimeInMilliseconds().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".AverageRequestTime|Millisecond", diskStat.getAverageRequestTimeInMilliseconds(), currentTimestampInSeconds));
-            if ((diskStat.getAverageQueueLength() != null) && (diskStat.getAverageQueueLength().compareTo(BigDecimal.ZERO) != -1)) graphiteMetrics.add(new GraphiteMetric(deviceName + ".AverageQueueLength", diskStat.getAverageQueueLength(), currentTimestampInSeconds));
+            if (diskStat.getReadRequestsPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Requests|Second", diskStat.getReadRequestsPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getBytesReadPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Bytes|Second", diskStat.getBytesReadPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getMegabytesReadPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-Megabytes|Second", diskStat.getMegabytesReadPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getReadRequestAverageTimeInMilliseconds() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Read-AvgRequestTime|Millisecond", diskStat.getReadRequestAverageTimeInMilliseconds(), currentTimestampInSeconds));
+            if (diskStat.getWriteRequestsPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Requests|Second", diskStat.getWriteRequestsPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getBytesWrittenPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Bytes|Second", diskStat.getBytesWrittenPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getMegabytesWrittenPerSecond() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-Megabytes|Second", diskStat.getMegabytesWrittenPerSecond(), currentTimestampInSeconds));
+            if (diskStat.getWriteRequestAverageTimeInMilliseconds() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".Write-AvgRequestTime|Millisecond", diskStat.getWriteRequestAverageTimeInMilliseconds(), currentTimestampInSeconds));
+            if (diskStat.getAverageRequestTimeInMilliseconds() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".AverageRequestTime|Millisecond", diskStat.getAverageRequestTimeInMilliseconds(), currentTimestampInSeconds));
+            if (diskStat.getAverageQueueLength() >= 0) graphiteMetrics.add(new GraphiteMetric(deviceName + ".AverageQueueLength", diskStat.getAverageQueueLength(), currentTimestampInSeconds));
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
@@ -1,11 +1,6 @@
 package com.pearson.statspoller.internal_metric_collectors.linux.DiskIo;
 
-import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import com.pearson.statspoller.utilities.math_utils.MathUtilities;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * @author Jeffrey Schmidt
@@ -26,204 +21,117 @@ import org.slf4j.LoggerFactory;
  */
 public class DiskIoStat_Delta {
     
-    private static final Logger logger = LoggerFactory.getLogger(DiskIoStat_Delta.class.getName());
-
-    private static final BigDecimal ONE_THOUSAND = new BigDecimal("1000");
-    private static final BigDecimal FIVE_HUNDRED_TWELVE = new BigDecimal("512");
-    private static final BigDecimal BYTES_TO_MEGABYTES_DIVISOR = new BigDecimal("1048576");
-    private static final int SCALE = 7;
-    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+    private static final double ONE_THOUSAND = 1000;
+    private static final double FIVE_HUNDRED_TWELVE = 512;
+    private static final double BYTES_TO_MEGABYTES_DIVISOR = 1048576;
+    
+    // ratios are rounded (half-up) to 7 decimal places
+    private static final double ROUNDING_FACTOR = 10000000;
     
-    private final BigDecimal millisecondsBetweenSamples_;
+    private final long millisecondsBetweenSamples_;
     private final String deviceName_;
-    private final BigDecimal numReadsCompleted_;
-    private final BigDecimal numReadsMerged_;
-    private final BigDecimal numSectorsRead_;
-    private final BigDecimal numMillisecondsSpentReading_;
-    private final BigDecimal numWritesCompleted_;
-    private final BigDecimal numWritesMerged_;
-    private final BigDecimal numSectorsWritten_;
-    private final BigDecimal numMillisecondsSpentWriting_;
-    private final BigDecimal numIosCurrentInProgress_;
-    private final BigDecimal numMillisecondsSpentDoingIo_;
-    private final BigDecimal weightedNumMillisecondsSpentDoingIo_;
-
-    private BigDecimal readRequestsPerSecond_;
-    private BigDecimal readBytesPerSecond_;
-    private BigDecimal readMegabytesPerSecond_;
-    private BigDecimal readRequestAverageTimeInMilliseconds_;
-    private BigDecimal writeRequestsPerSecond_;
-    private BigDecimal writeBytesPerSecond_;
-    private BigDecimal writeMegabytesPerSecond_;
-    private BigDecimal writeRequestAverageTimeInMilliseconds_;
-    private BigDecimal averageRequestTimeInMilliseconds_;
-    private BigDecimal averageQueueLength_;
+    
+    // a negative value means that the field wasn't available
+    private final long numReadsCompleted_;
+    private final long numReadsMerged_;
+    private final long numSectorsRead_;
+    private final long numMillisecondsSpentReading_;
+    private final long numWritesCompleted_;
+    private final long numWritesMerged_;
+    private final long numSectorsWritten_;
+    private final long numMillisecondsSpentWriting_;
+    private final long numIosCurrentInProgress_;
+    private final long numMillisecondsSpentDoingIo_;
+    private final long weightedNumMillisecondsSpentDoingIo_;
     
     public DiskIoStat_Delta(long millisecondsBetweenSamples, String deviceName,
             String numReadsCompleted, String numReadsMerged, String numSectorsRead, String numMillisecondsSpentReading,
             String numWritesCompleted, String numWritesMerged, String numSectorsWritten, String numMillisecondsSpentWriting,
             String numIosCurrentInProgress, String numMillisecondsSpentDoingIo, String weightedNumMillisecondsSpentDoingIo) {
 
-        this.millisecondsBetweenSamples_ = new BigDecimal(millisecondsBetweenSamples);
+        this.millisecondsBetweenSamples_ = millisecondsBetweenSamples;
         
         this.deviceName_ = deviceName;
-        this.numReadsCompleted_ = MathUtilities.safeGetBigDecimal(numReadsCompleted);
-        this.numReadsMerged_ = MathUtilities.safeGetBigDecimal(numReadsMerged);
-        this.numSectorsRead_ = MathUtilities.safeGetBigDecimal(numSectorsRead);
-        this.numMillisecondsSpentReading_ = MathUtilities.safeGetBigDecimal(numMillisecondsSpentReading);
-        this.numWritesCompleted_ = MathUtilities.safeGetBigDecimal(numWritesCompleted);
-        this.numWritesMerged_ = MathUtilities.safeGetBigDecimal(numWritesMerged);
-        this.numSectorsWritten_ = MathUtilities.safeGetBigDecimal(numSectorsWritten);
-        this.numMillisecondsSpentWriting_ = MathUtilities.safeGetBigDecimal(numMillisecondsSpentWriting);
-        this.numIosCurrentInProgress_ = MathUtilities.safeGetBigDecimal(numIosCurrentInProgress);
-        this.numMillisecondsSpentDoingIo_ = MathUtilities.safeGetBigDecimal(numMillisecondsSpentDoingIo);
-        this.weightedNumMillisecondsSpentDoingIo_ = MathUtilities.safeGetBigDecimal(weightedNumMillisecondsSpentDoingIo);
+        this.numReadsCompleted_ = MathUtilities.safeGetLong(numReadsCompleted, -1);
+        this.numReadsMerged_ = MathUtilities.safeGetLong(numReadsMerged, -1);
+        this.numSectorsRead_ = MathUtilities.safeGetLong(numSectorsRead, -1);
+        this.numMillisecondsSpentReading_ = MathUtilities.safeGetLong(numMillisecondsSpentReading, -1);
+        this.numWritesCompleted_ = MathUtilities.safeGetLong(numWritesCompleted, -1);
+        this.numWritesMerged_ = MathUtilities.safeGetLong(numWritesMerged, -1);
+        this.numSectorsWritten_ = MathUtilities.safeGetLong(numSectorsWritten, -1);
+        this.numMillisecondsSpentWriting_ = MathUtilities.safeGetLong(numMillisecondsSpentWriting, -1);
+        this.numIosCurrentInProgress_ = MathUtilities.safeGetLong(numIosCurrentInProgress, -1);
+        this.numMillisecondsSpentDoingIo_ = MathUtilities.safeGetLong(numMillisecondsSpentDoingIo, -1);
+        this.weightedNumMillisecondsSpentDoingIo_ = MathUtilities.safeGetLong(weightedNumMillisecondsSpentDoingIo, -1);
     }
 
+    /*
+    Returns numerator / denominator, rounded to 7 decimal places. 
+    Returns 0 if the denominator isn't positive, & NaN if the numerator wasn't available.
+    */
+    private static double getRoundedRatio(long numerator, long denominator) {
+        if (numerator < 0) return Double.NaN;
+        if (denominator <= 0) return 0;
+        return getRounded(((double) numerator) / denominator);
+    }
+    
+    private static double getRounded(double value) {
+        return Math.round(value * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+    }
+    
     public String getDeviceName() {
         return deviceName_;
     }
     
-    public BigDecimal getReadRequestsPerSecond() {
-        if (readRequestsPerSecond_ != null) return readRequestsPerSecond_;
-        
-        try {
-            if (millisecondsBetweenSamples_.compareTo(BigDecimal.ZERO) <= 0) readRequestsPerSecond_ = BigDecimal.ZERO;
-            else readRequestsPerSecond_ = numReadsCompleted_.divide(millisecondsBetweenSamples_, SCALE, ROUNDING_MODE).multiply(ONE_THOUSAND);
-            return readRequestsPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    /*
+    All of the 'get' methods for stats return NaN if the stat can't be computed
+    */
+    public double getReadRequestsPerSecond() {
+        return getRoundedRatio(numReadsCompleted_, millisecondsBetweenSamples_) * ONE_THOUSAND;
     }
     
-    public BigDecimal getBytesReadPerSecond() {
-        if (readBytesPerSecond_ != null) return readBytesPerSecond_;
-        
-        try {
-            if (millisecondsBetweenSamples_.compareTo(BigDecimal.ZERO) <= 0) readBytesPerSecond_ = BigDecimal.ZERO;
-            else readBytesPerSecond_ = numSectorsRead_.divide(millisecondsBetweenSamples_, SCALE, ROUNDING_MODE).multiply(ONE_THOUSAND).multiply(FIVE_HUNDRED_TWELVE);
-            return readBytesPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getBytesReadPerSecond() {
+        return getRoundedRatio(numSectorsRead_, millisecondsBetweenSamples_) * ONE_THOUSAND * FIVE_HUNDRED_TWELVE;
     }
     
-    public BigDecimal getMegabytesReadPerSecond() {
-        if (readMegabytesPerSecond_ != null) return readMegabytesPerSecond_;
-        
-        try {
-            readMegabytesPerSecond_ = getBytesReadPerSecond().divide(BYTES_TO_MEGABYTES_DIVISOR, SCALE, ROUNDING_MODE);
-            return readMegabytesPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getMegabytesReadPerSecond() {
+        return getRounded(getBytesReadPerSecond() / BYTES_TO_MEGABYTES_DIVISOR);
     }
     
-    public BigDecimal getReadRequestAverageTimeInMilliseconds() {
-        if (readRequestAverageTimeInMilliseconds_ != null) return readRequestAverageTimeInMilliseconds_;
-        
-        try {
-            if (numReadsCompleted_.compareTo(BigDecimal.ZERO) <= 0) readRequestAverageTimeInMilliseconds_ = BigDecimal.ZERO;
-            else readRequestAverageTimeInMilliseconds_ = numMillisecondsSpentReading_.divide(numReadsCompleted_, SCALE, ROUNDING_MODE);
-            return readRequestAverageTimeInMilliseconds_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getReadRequestAverageTimeInMilliseconds() {
+        if (numReadsCompleted_ == 0) return 0;
+        return getRoundedRatio(numMillisecondsSpentReading_, numReadsCompleted_);
     }
     
-    public BigDecimal getWriteRequestsPerSecond() {
-        if (writeRequestsPerSecond_ != null) return writeRequestsPerSecond_;
-        
-        try {
-            writeRequestsPerSecond_ = numWritesCompleted_.divide(millisecondsBetweenSamples_, SCALE, ROUNDING_MODE).multiply(ONE_THOUSAND);
-            return writeRequestsPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getWriteRequestsPerSecond() {
+        return getRoundedRatio(numWritesCompleted_, millisecondsBetweenSamples_) * ONE_THOUSAND;
     }
 
-    public BigDecimal getBytesWrittenPerSecond() {
-        if (writeBytesPerSecond_ != null) return writeBytesPerSecond_;
-        
-        try {
-            if (millisecondsBetweenSamples_.compareTo(BigDecimal.ZERO) <= 0) writeBytesPerSecond_ = BigDecimal.ZERO;
-            else writeBytesPerSecond_ = numSectorsWritten_.divide(millisecondsBetweenSamples_, SCALE, ROUNDING_MODE).multiply(ONE_THOUSAND).multiply(FIVE_HUNDRED_TWELVE);
-            return writeBytesPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getBytesWrittenPerSecond() {
+        return getRoundedRatio(numSectorsWritten_, millisecondsBetweenSamples_) * ONE_THOUSAND * FIVE_HUNDRED_TWELVE;
     }
     
-    public BigDecimal getMegabytesWrittenPerSecond() {
-        if (writeMegabytesPerSecond_ != null) return writeMegabytesPerSecond_;
-        
-        try {
-            writeMegabytesPerSecond_ = getBytesWrittenPerSecond().divide(BYTES_TO_MEGABYTES_DIVISOR, SCALE, ROUNDING_MODE);
-            return writeMegabytesPerSecond_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getMegabytesWrittenPerSecond() {
+        return getRounded(getBytesWrittenPerSecond() / BYTES_TO_MEGABYTES_DIVISOR);
     }
     
-    public BigDecimal getWriteRequestAverageTimeInMilliseconds() {
-        if (writeRequestAverageTimeInMilliseconds_ != null) return writeRequestAverageTimeInMilliseconds_;
-        
-        try {
-            if (numWritesCompleted_.compareTo(BigDecimal.ZERO) <= 0) writeRequestAverageTimeInMilliseconds_ = BigDecimal.ZERO;
-            else writeRequestAverageTimeInMilliseconds_ = numMillisecondsSpentWriting_.divide(numWritesCompleted_, SCALE, ROUNDING_MODE);
-            
-            return writeRequestAverageTimeInMilliseconds_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getWriteRequestAverageTimeInMilliseconds() {
+        if (numWritesCompleted_ == 0) return 0;
+        return getRoundedRatio(numMillisecondsSpentWriting_, numWritesCompleted_);
     }
     
-    public BigDecimal getAverageRequestTimeInMilliseconds() {
-        if (averageRequestTimeInMilliseconds_ != null) return averageRequestTimeInMilliseconds_;
+    public double getAverageRequestTimeInMilliseconds() {
+        
+        if ((numMillisecondsSpentReading_ < 0) || (numMillisecondsSpentWriting_ < 0) || (numReadsCompleted_ < 0) || (numWritesCompleted_ < 0)) return Double.NaN;
         
-        try {
-            BigDecimal sumMillisecondsActive = numMillisecondsSpentReading_.add(numMillisecondsSpentWriting_);
-            BigDecimal sumIosCompleted = numReadsCompleted_.add(numWritesCompleted_);
-            
-            if (sumIosCompleted.compareTo(BigDecimal.ZERO) <= 0) averageRequestTimeInMilliseconds_ = BigDecimal.ZERO;
-            else averageRequestTimeInMilliseconds_ = sumMillisecondsActive.divide(sumIosCompleted, SCALE, ROUNDING_MODE);
-            
-            return averageRequestTimeInMilliseconds_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+        long sumMillisecondsActive = numMillisecondsSpentReading_ + numMillisecondsSpentWriting_;
+        long sumIosCompleted = numReadsCompleted_ + numWritesCompleted_;
+        
+        return getRoundedRatio(sumMillisecondsActive, sumIosCompleted);
     }
                 
-    public BigDecimal getAverageQueueLength() {
-        if (averageQueueLength_ != null) return averageQueueLength_;
-        
-        try {
-            if (millisecondsBetweenSamples_.compareTo(BigDecimal.ZERO) <= 0) averageQueueLength_ = BigDecimal.ZERO;
-            else averageQueueLength_ = weightedNumMillisecondsSpentDoingIo_.divide(millisecondsBetweenSamples_, SCALE, ROUNDING_MODE);
-            return averageQueueLength_;
-        }
-        catch (Exception e) {
-            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
-            return null;
-        }
+    public double getAverageQueueLength() {
+        return getRoundedRatio(weightedNumMillisecondsSpentDoingIo_, millisecondsBetweenSamples_);
     }
     
 }
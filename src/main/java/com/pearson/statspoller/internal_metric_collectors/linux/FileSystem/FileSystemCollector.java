@@ -57,6 +57,8 @@ public class FileSystemCollector extends InternalCollectorFramework implements R
                     "MetricsCollected=" + graphiteMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
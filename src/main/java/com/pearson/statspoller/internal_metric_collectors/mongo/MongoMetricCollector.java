@@ -105,6 +105,8 @@ public class MongoMetricCollector extends InternalCollectorFramework implements
                     + ", MetricsCollected=" + graphiteMetrics.size()
                     + ", MetricCollectionTime=" + routineTimeElapsed);
 
+            recordCollectionTime(routineTimeElapsed);
+
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) {
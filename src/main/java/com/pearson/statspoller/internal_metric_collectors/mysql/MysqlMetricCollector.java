@@ -91,6 +91,8 @@ public class MysqlMetricCollector extends InternalCollectorFramework implements
                     ", MetricsCollected=" + openTsdbMetrics.size() +
                     ", MetricCollectionTime=" + routineTimeElapsed);
             
+            recordCollectionTime(routineTimeElapsed);
+            
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) Threads.sleepMilliseconds(sleepTimeInMs);
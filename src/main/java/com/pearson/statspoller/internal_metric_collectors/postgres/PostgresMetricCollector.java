@@ -86,6 +86,8 @@ public class PostgresMetricCollector extends InternalCollectorFramework implemen
                     + ", MetricsCollected=" + openTsdbMetrics.size()
                     + ", MetricCollectionTime=" + routineTimeElapsed);
 
+            recordCollectionTime(routineTimeElapsed);
+
             long sleepTimeInMs = getCollectionInterval() - routineTimeElapsed;
 
             if (sleepTimeInMs >= 0) {
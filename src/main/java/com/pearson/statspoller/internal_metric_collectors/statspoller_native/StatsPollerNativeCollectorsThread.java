@@ -1,9 +1,18 @@
 package com.pearson.statspoller.internal_metric_collectors.statspoller_native;
 
+import com.pearson.statspoller.globals.AgentInstrumentation;
+import com.pearson.statspoller.globals.ApplicationConfiguration;
 import com.pearson.statspoller.globals.GlobalVariables;
 import com.pearson.statspoller.internal_metric_collectors.InternalCollectorFramework;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.output.CircuitBreaker;
+import com.pearson.statspoller.output.MetricMemoryBudget;
+import com.pearson.statspoller.output.MetricRelabeler;
+import com.pearson.statspoller.output.UnchangedMetricSuppressor;
+import com.pearson.statspoller.output.OutputMetricsThread;
+import com.pearson.statspoller.output.OutputModuleScheduler;
 import com.pearson.statspoller.utilities.core_utils.Threads;
+import com.pearson.statspoller.utilities.math_utils.AtomicHistogram;
 import com.pearson.statspoller.utilities.math_utils.MathUtilities;
 import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
@@ -74,6 +83,11 @@ public class StatsPollerNativeCollectorsThread extends InternalCollectorFramewor
 
             graphiteMetrics.add(getStatsPollerAvailabilityMetric());
             graphiteMetrics.add(getStatsPollerVersionMetric());
+            graphiteMetrics.addAll(getOutputModuleCircuitBreakerMetrics());
+            graphiteMetrics.add(getStatsPollerTransmitErrorCountMetric());
+            graphiteMetrics.addAll(getQueueMetrics());
+            graphiteMetrics.addAll(getCollectorInstrumentationMetrics());
+            graphiteMetrics.addAll(getOutputModuleInstrumentationMetrics());
 
             // output graphite metrics
             super.outputGraphiteMetrics(graphiteMetrics);
@@ -84,6 +98,7 @@ public class StatsPollerNativeCollectorsThread extends InternalCollectorFramewor
             else logger.debug(outputStatusString);
             
             long readMetricsTimeElapsed = System.currentTimeMillis() - readMetricsTimeStart;
+            recordCollectionTime(readMetricsTimeElapsed);
             
             long sleepTime = getCollectionInterval() - readMetricsTimeElapsed;
             
@@ -109,12 +124,137 @@ public class StatsPollerNativeCollectorsThread extends InternalCollectorFramewor
         return graphiteMetric;
     }
     
+    /*
+    The state of each output module's circuit breaker. State: 0=closed (sending normally), 1=half-open (probing the endpoint), 2=open (skipping the endpoint).
+    */
+    private List<GraphiteMetric> getOutputModuleCircuitBreakerMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        if (!ApplicationConfiguration.isOutputCircuitBreakerEnabled()) return graphiteMetrics;
+        
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        
+        for (OutputModuleScheduler outputModuleScheduler : OutputMetricsThread.getOutputModuleSchedulers()) {
+            CircuitBreaker circuitBreaker = outputModuleScheduler.getCircuitBreaker();
+            if (circuitBreaker == null) continue;
+            
+            String metricPrefix = "Agent.OutputModule." + circuitBreaker.getOutputModuleUniqueId() + ".CircuitBreaker-";
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "State", new BigDecimal(circuitBreaker.getState()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "ConsecutiveFailures", new BigDecimal(circuitBreaker.getNumConsecutiveFailures()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "TimesOpened", new BigDecimal(circuitBreaker.getNumTimesOpened()), timestamp));
+        }
+        
+        return graphiteMetrics;
+    }
+    
     private GraphiteMetric getStatsPollerTransmitErrorCountMetric() {
         int timestamp = (int) (System.currentTimeMillis() / 1000);
         GraphiteMetric graphiteMetric = new GraphiteMetric("Agent.Transmit-Errors", new BigDecimal(GlobalVariables.metricTransmitErrorCount.get()), timestamp);
         return graphiteMetric;
     }
     
+    /*
+    Metrics that were dropped before they could be output -- because an ingestion queue was full, because a relabel rule dropped them, or because their value hadn't changed. Counts are cumulative.
+    */
+    private List<GraphiteMetric> getQueueMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        
+        graphiteMetrics.add(new GraphiteMetric("Agent.Queue.Graphite-Dropped-Metrics", new BigDecimal(GlobalVariables.graphiteMetrics.getNumDroppedMetrics()), timestamp));
+        graphiteMetrics.add(new GraphiteMetric("Agent.Queue.OpenTsdb-Dropped-Metrics", new BigDecimal(GlobalVariables.openTsdbMetrics.getNumDroppedMetrics()), timestamp));
+        
+        MetricMemoryBudget metricMemoryBudget = ApplicationConfiguration.getMetricMemoryBudget();
+        if (metricMemoryBudget != null) {
+            graphiteMetrics.add(new GraphiteMetric("Agent.Queue.Queued-Bytes", new BigDecimal(metricMemoryBudget.getNumBytes()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric("Agent.Queue.Max-Queued-Bytes", new BigDecimal(metricMemoryBudget.getMaxBytes()), timestamp));
+        }
+        
+        MetricRelabeler metricRelabeler = ApplicationConfiguration.getMetricRelabeler();
+        if (metricRelabeler != null) {
+            graphiteMetrics.add(new GraphiteMetric("Agent.Relabel.Dropped-Metrics", new BigDecimal(metricRelabeler.getNumDroppedMetrics()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric("Agent.Relabel.Rewritten-Metrics", new BigDecimal(metricRelabeler.getNumRewrittenMetrics()), timestamp));
+        }
+        
+        UnchangedMetricSuppressor unchangedMetricSuppressor = ApplicationConfiguration.getUnchangedMetricSuppressor();
+        if (unchangedMetricSuppressor != null) {
+            graphiteMetrics.add(new GraphiteMetric("Agent.Output.Suppressed-Unchanged-Metrics", new BigDecimal(unchangedMetricSuppressor.getNumSuppressedMetrics()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric("Agent.Output.Tracked-Series", new BigDecimal(unchangedMetricSuppressor.getNumSeries()), timestamp));
+        }
+        
+        return graphiteMetrics;
+    }
+    
+    /*
+    How long each collector's collection routines took (since the last time these metrics were output), how many metrics each collector has produced, 
+    & how many of its metrics were dropped by the ingestion queues.
+    */
+    private List<GraphiteMetric> getCollectorInstrumentationMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        
+        for (AgentInstrumentation.CollectorInstrumentation collectorInstrumentation : AgentInstrumentation.getCollectorInstrumentations()) {
+            String metricPrefix = "Agent.Collector." + collectorInstrumentation.getCollectorName().replace('.', '-') + ".";
+            graphiteMetrics.addAll(getHistogramMetrics(metricPrefix + "Collection-Time-Ms", collectorInstrumentation.getCollectionTimeInMs(), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Metrics-Produced", new BigDecimal(collectorInstrumentation.getNumMetricsProduced()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Dropped-Metrics", new BigDecimal(collectorInstrumentation.getNumDroppedMetrics()), timestamp));
+            if (ApplicationConfiguration.getMetricMemoryBudget() != null) {
+                graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Queued-Bytes", new BigDecimal(collectorInstrumentation.getNumQueuedBytes()), timestamp));
+            }
+        }
+        
+        return graphiteMetrics;
+    }
+    
+    /*
+    How long each output module's sends took (since the last time these metrics were output), & cumulative counts of what each output module has sent.
+    */
+    private List<GraphiteMetric> getOutputModuleInstrumentationMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        
+        for (AgentInstrumentation.OutputModuleInstrumentation outputModuleInstrumentation : AgentInstrumentation.getOutputModuleInstrumentations()) {
+            String metricPrefix = "Agent.OutputModule." + outputModuleInstrumentation.getOutputModuleUniqueId() + ".";
+            graphiteMetrics.addAll(getHistogramMetrics(metricPrefix + "Send-Time-Ms", outputModuleInstrumentation.getSendTimeInMs(), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Sends", new BigDecimal(outputModuleInstrumentation.getNumSends()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Send-Failures", new BigDecimal(outputModuleInstrumentation.getNumFailedSends()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Send-Retries", new BigDecimal(outputModuleInstrumentation.getNumRetryAttempts()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Metrics-Sent", new BigDecimal(outputModuleInstrumentation.getNumMetricsSent()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Bytes-Sent", new BigDecimal(outputModuleInstrumentation.getNumBytesSent()), timestamp));
+        }
+        
+        for (OutputModuleScheduler outputModuleScheduler : OutputMetricsThread.getOutputModuleSchedulers()) {
+            String metricPrefix = "Agent.OutputModule." + outputModuleScheduler.getOutputModuleUniqueId() + ".";
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Backlog-Batches", new BigDecimal(outputModuleScheduler.getBacklogSize()), timestamp));
+            graphiteMetrics.add(new GraphiteMetric(metricPrefix + "Dropped-Batches", new BigDecimal(outputModuleScheduler.getNumDroppedBatches()), timestamp));
+        }
+        
+        return graphiteMetrics;
+    }
+    
+    /*
+    Takes (& resets) the histogram. If nothing was recorded since the last time, then only the count (0) is output.
+    */
+    private List<GraphiteMetric> getHistogramMetrics(String metricPrefix, AtomicHistogram atomicHistogram, int timestamp) {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        AtomicHistogram.Snapshot snapshot = atomicHistogram.getSnapshotAndReset();
+        
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".Count", new BigDecimal(snapshot.getCount()), timestamp));
+        if (snapshot.getCount() == 0) return graphiteMetrics;
+        
+        BigDecimal average = MathUtilities.smartBigDecimalScaleChange(new BigDecimal(snapshot.getAverage()), SCALE, ROUNDING_MODE);
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".Avg", average, timestamp));
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".P50", new BigDecimal(snapshot.getPercentile(50)), timestamp));
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".P90", new BigDecimal(snapshot.getPercentile(90)), timestamp));
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".P99", new BigDecimal(snapshot.getPercentile(99)), timestamp));
+        graphiteMetrics.add(new GraphiteMetric(metricPrefix + ".Max", new BigDecimal(snapshot.getMax()), timestamp));
+        
+        return graphiteMetrics;
+    }
+    
     private List<GraphiteMetric> getSystemMetrics() {
         
         List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
@@ -14,6 +14,9 @@ public interface GenericMetricFormat {
     public String getMetricKey();
         
     public BigDecimal getMetricValueBigDecimal();
+    
+    // returns NaN if the metric value is null
+    public double getMetricValueDouble();
 
     public String getMetricValueString();
     
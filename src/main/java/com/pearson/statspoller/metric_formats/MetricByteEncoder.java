@@ -0,0 +1,326 @@
+package com.pearson.statspoller.metric_formats;
+
+import com.pearson.statspoller.utilities.math_utils.MathUtilities;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the pieces of a metric (metric paths, tags, values, timestamps) straight into a ByteBuffer as UTF-8, without creating any intermediate Strings.
+ * The output is byte-for-byte identical to encoding the String-based format methods (ex- getGraphiteFormatString) as UTF-8.
+ *
+ * Sanitizing is done with precomputed ASCII lookup tables. Non-ASCII characters are handled the same way as the String-based sanitizers handle them.
+ * All methods throw a BufferOverflowException if the ByteBuffer runs out of space. The ByteBuffer's position is undefined after an overflow.
+ *
+ * @author Jeffrey Schmidt
+ */
+public final class MetricByteEncoder {
+    
+    private static final byte[] NULL_BYTES = {'n', 'u', 'l', 'l'};
+    private static final byte[] LONG_MIN_VALUE_BYTES = {'-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8'};
+    
+    private static final long[] POWERS_OF_TEN = getPowersOfTen();
+    
+    // index=ascii character. true if OpenTSDB allows the character in a metric, tag key, or tag value.
+    private static final boolean[] OPENTSDB_ALLOWED_CHARACTERS = getOpenTsdbAllowedCharacters();
+    
+    // index=ascii character. the replacement for the character when graphite 'substitute characters' is enabled (null = no replacement).
+    private static final byte[][] GRAPHITE_CHARACTER_SUBSTITUTIONS = getGraphiteCharacterSubstitutions();
+    
+    private MetricByteEncoder() {}
+    
+    /*
+    Writes a long as ASCII digits. Same output as Long.toString.
+    */
+    public static void writeLong(ByteBuffer byteBuffer, long value) {
+        
+        if (value == Long.MIN_VALUE) {
+            byteBuffer.put(LONG_MIN_VALUE_BYTES);
+            return;
+        }
+        
+        if (value < 0) {
+            byteBuffer.put((byte) '-');
+            value = -value;
+        }
+        
+        int numDigits = getNumDigits(value);
+        int position = byteBuffer.position();
+        if (byteBuffer.remaining() < numDigits) throw new BufferOverflowException();
+        
+        for (int i = (position + numDigits - 1); i >= position; i--) {
+            byteBuffer.put(i, (byte) ('0' + (value % 10)));
+            value = value / 10;
+        }
+        
+        byteBuffer.position(position + numDigits);
+    }
+    
+    /*
+    Writes a BigDecimal as a plain (non-scientific notation) number with no trailing zeros. Same output as MathUtilities.getFastPlainStringWithNoTrailingZeros.
+    Values that fit in a long (after scaling) are written without creating a String. Anything else falls back to the String-based method.
+    */
+    public static void writeDecimal(ByteBuffer byteBuffer, BigDecimal value) {
+        
+        if (value == null) {
+            byteBuffer.put(NULL_BYTES);
+            return;
+        }
+        
+        int scale = value.scale();
+        
+        if ((scale >= 0) && (scale < POWERS_OF_TEN.length) && (value.precision() < 19)) {
+            long unscaledValue = (scale == 0) ? value.longValue() : value.unscaledValue().longValue();
+            writeScaledLong(byteBuffer, unscaledValue, scale);
+            return;
+        }
+        
+        writeUtf8(byteBuffer, MathUtilities.getFastPlainStringWithNoTrailingZeros(value));
+    }
+    
+    /*
+    Writes a double with (at most) 15 significant digits. Same output as MathUtilities.getFastPlainStringWithNoTrailingZeros(MathUtilities.getBigDecimalFromDouble(value)).
+    NaN & infinite values are written as "null".
+    */
+    public static void writeDouble(ByteBuffer byteBuffer, double value) {
+        
+        int scale = MathUtilities.getDoubleScale(value);
+        
+        if (scale >= 0) writeScaledLong(byteBuffer, MathUtilities.getDoubleUnscaledValue(value, scale), scale);
+        else writeDecimal(byteBuffer, MathUtilities.getBigDecimalFromDouble(value));
+    }
+    
+    /*
+    Writes 'unscaledValue / 10^scale' as a plain number with no trailing zeros.
+    */
+    public static void writeScaledLong(ByteBuffer byteBuffer, long unscaledValue, int scale) {
+        
+        while ((scale > 0) && ((unscaledValue % 10) == 0)) {
+            unscaledValue = unscaledValue / 10;
+            scale--;
+        }
+        
+        if ((scale == 0) || (unscaledValue == Long.MIN_VALUE) || (scale >= POWERS_OF_TEN.length)) {
+            if (scale == 0) writeLong(byteBuffer, unscaledValue);
+            else writeUtf8(byteBuffer, MathUtilities.getFastPlainStringWithNoTrailingZeros(BigDecimal.valueOf(unscaledValue, scale)));
+            return;
+        }
+        
+        if (unscaledValue < 0) {
+            byteBuffer.put((byte) '-');
+            unscaledValue = -unscaledValue;
+        }
+        
+        long integerPart = unscaledValue / POWERS_OF_TEN[scale];
+        long fractionalPart = unscaledValue % POWERS_OF_TEN[scale];
+        
+        writeLong(byteBuffer, integerPart);
+        byteBuffer.put((byte) '.');
+        
+        // left-pad the fractional part with zeros. trailing zeros were already removed, so the last digit is never a zero.
+        for (int i = getNumDigits(fractionalPart); i < scale; i++) byteBuffer.put((byte) '0');
+        writeLong(byteBuffer, fractionalPart);
+    }
+    
+    /*
+    Writes a String as UTF-8. A null String is written as "null" (same as String concatenation).
+    */
+    public static void writeUtf8(ByteBuffer byteBuffer, String string) {
+        
+        if (string == null) {
+            byteBuffer.put(NULL_BYTES);
+            return;
+        }
+        
+        writeUtf8(byteBuffer, string, 0, string.length());
+    }
+    
+    /*
+    Writes the characters of 'string' from 'start' (inclusive) to 'end' (exclusive) as UTF-8.
+    */
+    public static void writeUtf8(ByteBuffer byteBuffer, String string, int start, int end) {
+        
+        for (int i = start; i < end; i++) {
+            char character = string.charAt(i);
+            
+            if (character < 128) byteBuffer.put((byte) character);
+            else i = writeUtf8Character(byteBuffer, string, i, end);
+        }
+    }
+    
+    /*
+    Same output as GraphiteMetric.getGraphiteSanitizedString (encoded as UTF-8), for the characters of 'string' from 'start' (inclusive) to 'end' (exclusive).
+    A null String is written as "null".
+    */
+    public static void writeGraphiteSanitized(ByteBuffer byteBuffer, String string, int start, int end, boolean sanitizeMetric, boolean substituteCharacters) {
+        
+        if (string == null) {
+            byteBuffer.put(NULL_BYTES);
+            return;
+        }
+        
+        if (!sanitizeMetric && !substituteCharacters) {
+            writeUtf8(byteBuffer, string, start, end);
+            return;
+        }
+        
+        for (int i = start; i < end; i++) {
+            char character = string.charAt(i);
+            
+            // non-ascii characters are never sanitized or substituted
+            if (character >= 128) {
+                i = writeUtf8Character(byteBuffer, string, i, end);
+                continue;
+            }
+            
+            // back-to-back '.' characters are merged into a single '.'
+            if (sanitizeMetric && (character == '.')) {
+                if (((i + 1) == end) || (string.charAt(i + 1) != '.')) byteBuffer.put((byte) '.');
+                continue;
+            }
+            
+            if (substituteCharacters && (GRAPHITE_CHARACTER_SUBSTITUTIONS[character] != null)) {
+                byteBuffer.put(GRAPHITE_CHARACTER_SUBSTITUTIONS[character]);
+                continue;
+            }
+            
+            byteBuffer.put((byte) character);
+        }
+    }
+    
+    /*
+    Same output as OpenTsdbMetric.getOpenTsdbSanitizedString (encoded as UTF-8), for the characters of 'string' from 'start' (inclusive) to 'end' (exclusive).
+    A null String is written as "null".
+    */
+    public static void writeOpenTsdbSanitized(ByteBuffer byteBuffer, String string, int start, int end) {
+        
+        if (string == null) {
+            byteBuffer.put(NULL_BYTES);
+            return;
+        }
+        
+        for (int i = start; i < end; i++) {
+            char character = string.charAt(i);
+            
+            if (character < 128) {
+                if (OPENTSDB_ALLOWED_CHARACTERS[character]) byteBuffer.put((byte) character);
+            }
+            else if (Character.isLetterOrDigit(character)) {
+                writeUtf8Character(byteBuffer, string, i, end);
+            }
+        }
+    }
+    
+    /*
+    Same output as InfluxdbMetric_v2.getInfluxdbV2EscapedMeasurement (escapeEquals=false) or InfluxdbMetric_v2.getInfluxdbV2EscapedTagString (escapeEquals=true),
+    encoded as UTF-8, for the characters of 'string' from 'start' (inclusive) to 'end' (exclusive).
+    */
+    public static void writeInfluxdbV2Escaped(ByteBuffer byteBuffer, String string, int start, int end, boolean escapeEquals) {
+        
+        for (int i = start; i < end; i++) {
+            char character = string.charAt(i);
+            
+            if (character >= 128) {
+                i = writeUtf8Character(byteBuffer, string, i, end);
+            }
+            else if ((character == ',') || (character == ' ') || (escapeEquals && (character == '='))) {
+                byteBuffer.put((byte) '\\');
+                byteBuffer.put((byte) character);
+            }
+            else if ((character == '\n') || (character == '\r')) {
+                byteBuffer.put((byte) '\\');
+                byteBuffer.put((byte) ' ');
+            }
+            else {
+                byteBuffer.put((byte) character);
+            }
+        }
+    }
+    
+    /*
+    Writes the (non-ascii) character at 'index' as UTF-8. Surrogate pairs are combined into a single code point.
+    Returns the index of the last character that was consumed. Unpaired surrogates are written as '?' (same as String.getBytes).
+    */
+    private static int writeUtf8Character(ByteBuffer byteBuffer, String string, int index, int end) {
+        
+        char character = string.charAt(index);
+        
+        if (character < 0x80) {
+            byteBuffer.put((byte) character);
+        }
+        else if (character < 0x800) {
+            byteBuffer.put((byte) (0xC0 | (character >> 6)));
+            byteBuffer.put((byte) (0x80 | (character & 0x3F)));
+        }
+        else if (Character.isHighSurrogate(character) && ((index + 1) < end) && Character.isLowSurrogate(string.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(character, string.charAt(index + 1));
+            byteBuffer.put((byte) (0xF0 | (codePoint >> 18)));
+            byteBuffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            byteBuffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            byteBuffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            return index + 1;
+        }
+        else if (Character.isSurrogate(character)) {
+            byteBuffer.put((byte) '?');
+        }
+        else {
+            byteBuffer.put((byte) (0xE0 | (character >> 12)));
+            byteBuffer.put((byte) (0x80 | ((character >> 6) & 0x3F)));
+            byteBuffer.put((byte) (0x80 | (character & 0x3F)));
+        }
+        
+        return index;
+    }
+    
+    private static int getNumDigits(long nonNegativeValue) {
+        
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            if (nonNegativeValue < POWERS_OF_TEN[i]) return i;
+        }
+        
+        return 19;
+    }
+    
+    private static long[] getPowersOfTen() {
+        
+        long[] powersOfTen = new long[19];
+        
+        powersOfTen[0] = 1;
+        for (int i = 1; i < powersOfTen.length; i++) powersOfTen[i] = powersOfTen[i - 1] * 10;
+        
+        return powersOfTen;
+    }
+    
+    private static boolean[] getOpenTsdbAllowedCharacters() {
+        
+        boolean[] openTsdbAllowedCharacters = new boolean[128];
+        
+        for (char character = 0; character < 128; character++) {
+            openTsdbAllowedCharacters[character] = Character.isLetterOrDigit(character) ||
+                    (character == '-') || (character == '_') || (character == '.') || (character == '/');
+        }
+        
+        return openTsdbAllowedCharacters;
+    }
+    
+    private static byte[][] getGraphiteCharacterSubstitutions() {
+        
+        byte[][] graphiteCharacterSubstitutions = new byte[128][];
+        
+        graphiteCharacterSubstitutions['%'] = new byte[] {'P', 'c', 't'};
+        graphiteCharacterSubstitutions[' '] = new byte[] {'_'};
+        
+        byte[] pipe = new byte[] {'|'};
+        graphiteCharacterSubstitutions['\\'] = pipe;
+        graphiteCharacterSubstitutions['/'] = pipe;
+        graphiteCharacterSubstitutions['['] = pipe;
+        graphiteCharacterSubstitutions[']'] = pipe;
+        graphiteCharacterSubstitutions['{'] = pipe;
+        graphiteCharacterSubstitutions['}'] = pipe;
+        graphiteCharacterSubstitutions['('] = pipe;
+        graphiteCharacterSubstitutions[')'] = pipe;
+        
+        return graphiteCharacterSubstitutions;
+    }
+
+}
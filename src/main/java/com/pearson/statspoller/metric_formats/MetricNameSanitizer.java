@@ -0,0 +1,178 @@
+package com.pearson.statspoller.metric_formats;
+
+import com.pearson.statspoller.utilities.string_utils.BoundedStringCache;
+
+/**
+ * The String-based Graphite & OpenTSDB name sanitizers (see GraphiteMetric.getGraphiteSanitizedString & OpenTsdbMetric.getOpenTsdbSanitizedString).
+ *
+ * The set of metric names that StatsPoller outputs is mostly the same from one output interval to the next, so sanitized names are cached (raw name -> sanitized name).
+ * Names that don't need any sanitizing are cached as themselves, so they never cost a new String.
+ * On a cache miss, characters are checked against precomputed ASCII bitmaps. Non-ASCII characters are handled the same way as before.
+ *
+ * @author Jeffrey Schmidt
+ */
+public final class MetricNameSanitizer {
+    
+    // enough for the stable set of series of a busy host, with room to spare. each cache holds at most twice this many names.
+    private static final int MAX_CACHED_NAMES = 50000;
+    
+    // bit 'c' is set if ascii character 'c' is allowed, unchanged, in an OpenTSDB metric, tag key, or tag value
+    private static final long[] OPENTSDB_ALLOWED_CHARACTERS_BITMAP = getOpenTsdbAllowedCharactersBitmap();
+    
+    // bit 'c' is set if ascii character 'c' is replaced when graphite 'substitute characters' is enabled
+    private static final long[] GRAPHITE_SUBSTITUTED_CHARACTERS_BITMAP = getGraphiteSubstitutedCharactersBitmap();
+    
+    private static final BoundedStringCache openTsdbSanitizedNames_ = new BoundedStringCache(MAX_CACHED_NAMES);
+    private static final BoundedStringCache graphiteSanitizedNames_ = new BoundedStringCache(MAX_CACHED_NAMES);
+    private static final BoundedStringCache graphiteSubstitutedNames_ = new BoundedStringCache(MAX_CACHED_NAMES);
+    private static final BoundedStringCache graphiteSanitizedAndSubstitutedNames_ = new BoundedStringCache(MAX_CACHED_NAMES);
+    
+    private MetricNameSanitizer() {}
+    
+    /*
+    Sanitizes a Graphite metric path. The rules are documented on GraphiteMetric.getGraphiteSanitizedString.
+    */
+    public static String getGraphiteSanitizedString(String unsanitizedInput, boolean sanitizeMetric, boolean substituteCharacters) {
+        
+        if (unsanitizedInput == null) return null;
+        if (!sanitizeMetric && !substituteCharacters) return unsanitizedInput;
+        
+        BoundedStringCache sanitizedNames;
+        if (sanitizeMetric && substituteCharacters) sanitizedNames = graphiteSanitizedAndSubstitutedNames_;
+        else if (sanitizeMetric) sanitizedNames = graphiteSanitizedNames_;
+        else sanitizedNames = graphiteSubstitutedNames_;
+        
+        String sanitizedInput = sanitizedNames.get(unsanitizedInput);
+        if (sanitizedInput != null) return sanitizedInput;
+        
+        sanitizedInput = sanitizeGraphiteString(unsanitizedInput, sanitizeMetric, substituteCharacters);
+        sanitizedNames.put(unsanitizedInput, sanitizedInput);
+        
+        return sanitizedInput;
+    }
+    
+    /*
+    Removes every character that OpenTSDB doesn't allow in a metric, tag key, or tag value. Letters & digits (including non-ASCII ones), '-', '_', '.', & '/' are kept.
+    */
+    public static String getOpenTsdbSanitizedString(String unsanitizedInput) {
+        
+        if (unsanitizedInput == null) return null;
+        
+        String sanitizedInput = openTsdbSanitizedNames_.get(unsanitizedInput);
+        if (sanitizedInput != null) return sanitizedInput;
+        
+        sanitizedInput = sanitizeOpenTsdbString(unsanitizedInput);
+        openTsdbSanitizedNames_.put(unsanitizedInput, sanitizedInput);
+        
+        return sanitizedInput;
+    }
+    
+    public static boolean isOpenTsdbAllowedCharacter(char character) {
+        if (character < 128) return isBitSet(OPENTSDB_ALLOWED_CHARACTERS_BITMAP, character);
+        return Character.isLetterOrDigit(character);
+    }
+    
+    private static String sanitizeGraphiteString(String unsanitizedInput, boolean sanitizeMetric, boolean substituteCharacters) {
+        
+        int length = unsanitizedInput.length();
+        int firstChangedIndex = -1;
+        
+        // most names are already clean. find the first character that changes (if any) before building anything.
+        for (int i = 0; (i < length) && (firstChangedIndex == -1); i++) {
+            char character = unsanitizedInput.charAt(i);
+            if (character >= 128) continue;
+            
+            if (sanitizeMetric && (character == '.') && ((i + 1) < length) && (unsanitizedInput.charAt(i + 1) == '.')) firstChangedIndex = i;
+            else if (substituteCharacters && isBitSet(GRAPHITE_SUBSTITUTED_CHARACTERS_BITMAP, character)) firstChangedIndex = i;
+        }
+        
+        if (firstChangedIndex == -1) return unsanitizedInput;
+        
+        StringBuilder sanitizedInput = new StringBuilder(length + 8);
+        sanitizedInput.append(unsanitizedInput, 0, firstChangedIndex);
+        
+        for (int i = firstChangedIndex; i < length; i++) {
+            char character = unsanitizedInput.charAt(i);
+            
+            // non-ascii characters are never sanitized or substituted
+            if (character >= 128) {
+                sanitizedInput.append(character);
+                continue;
+            }
+            
+            // back-to-back '.' characters are merged into a single '.'
+            if (sanitizeMetric && (character == '.')) {
+                if (((i + 1) == length) || (unsanitizedInput.charAt(i + 1) != '.')) sanitizedInput.append('.');
+                continue;
+            }
+            
+            if (substituteCharacters && isBitSet(GRAPHITE_SUBSTITUTED_CHARACTERS_BITMAP, character)) {
+                if (character == '%') sanitizedInput.append("Pct");
+                else if (character == ' ') sanitizedInput.append('_');
+                else sanitizedInput.append('|');
+                continue;
+            }
+            
+            sanitizedInput.append(character);
+        }
+        
+        return sanitizedInput.toString();
+    }
+    
+    private static String sanitizeOpenTsdbString(String unsanitizedInput) {
+        
+        int length = unsanitizedInput.length();
+        int firstChangedIndex = -1;
+        
+        for (int i = 0; i < length; i++) {
+            if (!isOpenTsdbAllowedCharacter(unsanitizedInput.charAt(i))) {
+                firstChangedIndex = i;
+                break;
+            }
+        }
+        
+        if (firstChangedIndex == -1) return unsanitizedInput;
+        
+        StringBuilder sanitizedInput = new StringBuilder(length);
+        sanitizedInput.append(unsanitizedInput, 0, firstChangedIndex);
+        
+        for (int i = firstChangedIndex + 1; i < length; i++) {
+            char character = unsanitizedInput.charAt(i);
+            if (isOpenTsdbAllowedCharacter(character)) sanitizedInput.append(character);
+        }
+        
+        return sanitizedInput.toString();
+    }
+    
+    private static boolean isBitSet(long[] bitmap, char character) {
+        return (bitmap[character >>> 6] & (1L << character)) != 0;
+    }
+    
+    private static void setBit(long[] bitmap, char character) {
+        bitmap[character >>> 6] |= (1L << character);
+    }
+    
+    private static long[] getOpenTsdbAllowedCharactersBitmap() {
+        
+        long[] bitmap = new long[2];
+        
+        for (char character = 0; character < 128; character++) {
+            if (Character.isLetterOrDigit(character) || (character == '-') || (character == '_') || (character == '.') || (character == '/')) {
+                setBit(bitmap, character);
+            }
+        }
+        
+        return bitmap;
+    }
+    
+    private static long[] getGraphiteSubstitutedCharactersBitmap() {
+        
+        long[] bitmap = new long[2];
+        
+        char[] substitutedCharacters = {'%', ' ', '\\', '/', '[', ']', '{', '}', '(', ')'};
+        for (char character : substitutedCharacters) setBit(bitmap, character);
+        
+        return bitmap;
+    }
+
+}
@@ -1,23 +1,208 @@
 package com.pearson.statspoller.metric_formats;
 
+import com.pearson.statspoller.output.EncodedMetricBatch;
+import com.pearson.statspoller.output.MetricEncodingCache;
+import com.pearson.statspoller.output.MetricSpool;
+import com.pearson.statspoller.utilities.web_utils.HttpRequest;
+import com.pearson.statspoller.utilities.web_utils.HttpRequestExecutor;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * @author Jeffrey Schmidt
  */
 public abstract class SendMetricsToOutputModuleThread implements Runnable {
     
+    private static final Logger logger = LoggerFactory.getLogger(SendMetricsToOutputModuleThread.class.getName());
+    
     protected String threadId_;
     protected String outputEndpoint_ = null;
-    protected boolean isShuttingDown_ = false;
+    protected volatile boolean isShuttingDown_ = false;
     protected boolean isFinished_ = false;
     
+    protected MetricSpool metricSpool_ = null;
+    protected int maxSpoolReplayMessagesPerInterval_ = 0;
+    
+    protected MetricEncodingCache metricEncodingCache_ = null;
+    
+    // the number of messages that a http-based output module may have in flight at the same time
+    protected int maxConcurrentHttpRequests_ = 1;
+    
+    // the executor of the http requests that are currently being sent (if any). shutdown aborts it.
+    protected volatile HttpRequestExecutor httpRequestExecutor_ = null;
+    
+    // if the circuit is open, then the endpoint is assumed to be down. nothing is sent to it, & messages are spooled (if spooling is enabled).
+    protected volatile boolean isCircuitOpen_ = false;
+    
+    // set if the endpoint couldn't be connected to (or the connection failed while sending)
+    protected volatile boolean didEncounterUnreachableEndpoint_ = false;
+    
+    // set if the send (or part of it) failed. read by the output module's scheduler after this thread finishes.
+    protected volatile boolean didSendFail_ = false;
+    
+    // what this thread sent, for the agent's own metrics (see AgentInstrumentation). only written by this thread.
+    private volatile long numBytesSent_ = 0;
+    private volatile long numRetryAttempts_ = 0;
+    
     public abstract void shutdown();
     
     public abstract boolean isFinished();
     
+    /*
+    Output modules that support spooling override this method.
+    It is called (only) while replaying spooled messages, & should return true if the message was successfully sent to the output endpoint.
+    */
+    protected boolean sendSpooledMessage(byte[] message) {
+        return false;
+    }
+    
+    /*
+    If set, then encoded metrics are taken from (& shared through) the cache, rather than being encoded by this thread.
+    */
+    public void setMetricEncodingCache(MetricEncodingCache metricEncodingCache) {
+        this.metricEncodingCache_ = metricEncodingCache;
+    }
+    
+    public void setMaxConcurrentHttpRequests(int maxConcurrentHttpRequests) {
+        this.maxConcurrentHttpRequests_ = (maxConcurrentHttpRequests < 1) ? 1 : maxConcurrentHttpRequests;
+    }
+    
+    public void setCircuitOpen(boolean isCircuitOpen) {
+        this.isCircuitOpen_ = isCircuitOpen;
+    }
+    
+    public void setMetricSpool(MetricSpool metricSpool, int maxSpoolReplayMessagesPerInterval) {
+        this.metricSpool_ = metricSpool;
+        this.maxSpoolReplayMessagesPerInterval_ = maxSpoolReplayMessagesPerInterval;
+    }
+    
+    protected boolean isSpoolReplayPending() {
+        return (metricSpool_ != null) && (maxSpoolReplayMessagesPerInterval_ > 0) && !metricSpool_.isEmpty();
+    }
+    
+    /*
+    Writes a message that couldn't be sent to the output endpoint to the spool, so that it can be sent later.
+    The message is 'length' bytes of 'message', starting at 'offset'. Returns true if the message was spooled.
+    */
+    protected boolean spoolMessage(byte[] message, int offset, int length) {
+        if ((metricSpool_ == null) || (message == null) || (length <= 0)) return false;
+        return metricSpool_.append(message, offset, length);
+    }
+    
+    /*
+    Adds to the bytes sent & retries that this thread will report.
+    */
+    protected void recordSendStats(long numBytesSent, long numRetryAttempts) {
+        if (numBytesSent > 0) numBytesSent_ += numBytesSent;
+        if (numRetryAttempts > 0) numRetryAttempts_ += numRetryAttempts;
+    }
+    
+    protected void recordSendStats(HttpRequest httpRequest) {
+        if (httpRequest == null) return;
+        recordSendStats(httpRequest.getNumBytesSent(), httpRequest.getRetryAttemptCounter());
+    }
+    
+    protected void recordSendStats(List<HttpRequest> httpRequests) {
+        if (httpRequests == null) return;
+        for (HttpRequest httpRequest : httpRequests) recordSendStats(httpRequest);
+    }
+    
+    /*
+    Sends the http requests (up to 'maxConcurrentHttpRequests_' at once) for a http-based output module, then spools the messages that
+    couldn't be delivered because the endpoint was unreachable (or because this thread is shutting down, or the circuit is open).
+    Request 'i' must hold records ['i * maxMetricsPerMessage', '(i + 1) * maxMetricsPerMessage') of 'batch'.
+    Messages are spooled uncompressed -- as a json array of the records if 'isJsonArray', otherwise as the records themselves.
+    If the endpoint was reachable, then some of the previously spooled messages are replayed.
+    Returns true if every request was successful.
+    */
+    protected boolean sendHttpRequests(List<HttpRequest> httpRequests, EncodedMetricBatch batch, int maxMetricsPerMessage, boolean isJsonArray, String outputName) {
+        
+        boolean isAllSendSuccess = true;
+        int numSpooledMessages = 0;
+        
+        // no new messages are started after a connection error
+        HttpRequestExecutor httpRequestExecutor = new HttpRequestExecutor(maxConcurrentHttpRequests_);
+        httpRequestExecutor_ = httpRequestExecutor;
+        // if the circuit is open, then the endpoint is assumed to be down. no requests are made, so every message is spooled (if spooling is enabled).
+        if (isShuttingDown_ || isCircuitOpen_) httpRequestExecutor.abort();
+        
+        if (!httpRequestExecutor.makeRequests(httpRequests)) isAllSendSuccess = false;
+        boolean isConnectionError = httpRequestExecutor.didEncounterConnectionError();
+        if (isConnectionError) didEncounterUnreachableEndpoint_ = true;
+        if (isConnectionError) logger.error("Aborting " + outputName + " output. Couldn't connect to " + outputName + " endpoint. Endpoint=\"" + outputEndpoint_ + "\"");
+        recordSendStats(httpRequests);
+        
+        for (int i = 0; (i < httpRequests.size()) && (metricSpool_ != null); i++) {
+            HttpRequest httpRequest = httpRequests.get(i);
+            if (!httpRequestExecutor.isRetryableFailure(httpRequest)) continue;
+            
+            int fromRecordIndex = i * maxMetricsPerMessage;
+            int toRecordIndex = Math.min(fromRecordIndex + maxMetricsPerMessage, batch.getNumRecords());
+            byte[] message = isJsonArray ? MetricEncodingCache.getJsonArray(batch, fromRecordIndex, toRecordIndex) : MetricEncodingCache.getRecords(batch, fromRecordIndex, toRecordIndex);
+            if (spoolMessage(message, 0, message.length)) numSpooledMessages++;
+        }
+        
+        // only messages that failed due to the endpoint being unreachable are spooled. messages that the endpoint rejected would just be rejected again.
+        logSpooledMessages(numSpooledMessages);
+        
+        // the endpoint is reachable, so send some of the previously spooled messages
+        if (!isConnectionError) replaySpooledMessages();
+        
+        return isAllSendSuccess;
+    }
+    
+    protected void logSpooledMessages(int numSpooledMessages) {
+        
+        if ((metricSpool_ == null) || (numSpooledMessages <= 0)) return;
+        
+        logger.warn("ThreadId=" + threadId_ + ", Destination=\"" + outputEndpoint_ + "\", SpooledMessages=" + numSpooledMessages +
+                ", SpoolSizeInBytes=" + metricSpool_.getSpoolSizeInBytes());
+    }
+    
+    /*
+    Sends (up to) 'maxSpoolReplayMessagesPerInterval_' spooled messages to the output endpoint, oldest first.
+    Messages are only removed from the spool after they have been successfully sent. Replay stops at the first failure.
+    Returns the number of spooled messages that were sent.
+    */
+    protected int replaySpooledMessages() {
+        
+        if (!isSpoolReplayPending() || isShuttingDown_ || isCircuitOpen_) return 0;
+        
+        // only one thread may replay a spool at a time. otherwise the same messages could be sent (& committed) twice.
+        if (!metricSpool_.getReplayLock().tryLock()) return 0;
+        
+        int numReplayedMessages = 0;
+        
+        try {
+            List<MetricSpool.SpooledRecord> spooledMessages = metricSpool_.peek(maxSpoolReplayMessagesPerInterval_);
+            MetricSpool.Position replayedPosition = null;
+            
+            for (MetricSpool.SpooledRecord spooledMessage : spooledMessages) {
+                if (isShuttingDown_) break;
+                if (!sendSpooledMessage(spooledMessage.getRecord())) break;
+                replayedPosition = spooledMessage.getEndPosition();
+                numReplayedMessages++;
+            }
+            
+            metricSpool_.commit(replayedPosition);
+        }
+        finally {
+            metricSpool_.getReplayLock().unlock();
+        }
+        
+        if (numReplayedMessages > 0) {
+            logger.info("ThreadId=" + threadId_ + ", Destination=\"" + outputEndpoint_ + "\", ReplayedSpooledMessages=" + numReplayedMessages +
+                    ", SpoolSizeInBytes=" + metricSpool_.getSpoolSizeInBytes());
+        }
+        
+        return numReplayedMessages;
+    }
+    
     public String getOutputEndpoint() {
         return outputEndpoint_;
     }
-
+    
     public String getThreadId() {
         return threadId_;
     }
@@ -25,5 +210,29 @@ public abstract class SendMetricsToOutputModuleThread implements Runnable {
     public boolean isShuttingDown() {
         return isShuttingDown_;
     }
+
+    public boolean isCircuitOpen() {
+        return isCircuitOpen_;
+    }
+
+    public boolean didEncounterUnreachableEndpoint() {
+        return didEncounterUnreachableEndpoint_;
+    }
+    
+    public boolean didSendFail() {
+        return didSendFail_;
+    }
     
+    public long getNumBytesSent() {
+        return numBytesSent_;
+    }
+    
+    public long getNumRetryAttempts() {
+        return numRetryAttempts_;
+    }
+    
+    public MetricSpool getMetricSpool() {
+        return metricSpool_;
+    }
+
 }
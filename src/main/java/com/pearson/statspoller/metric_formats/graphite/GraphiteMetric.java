@@ -1,10 +1,16 @@
 package com.pearson.statspoller.metric_formats.graphite;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import com.pearson.statspoller.metric_formats.GenericMetricFormat;
+import com.pearson.statspoller.metric_formats.MetricByteEncoder;
+import com.pearson.statspoller.metric_formats.MetricNameSanitizer;
+import com.pearson.statspoller.metric_formats.influxdb.Common;
 import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v1;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v2;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetric_v2;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetricFormat;
 import com.pearson.statspoller.utilities.math_utils.MathUtilities;
@@ -18,14 +24,22 @@ import org.slf4j.LoggerFactory;
 /**
  * @author Jeffrey Schmidt
  */
-public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricFormat, GenericMetricFormat, InfluxdbMetricFormat_v1 {
+public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricFormat, GenericMetricFormat, InfluxdbMetricFormat_v1, InfluxdbMetricFormat_v2 {
     
     private static final Logger logger = LoggerFactory.getLogger(GraphiteMetric.class.getName());
     
     private long hashKey_ = -1;
     
+    // metric values are stored as a primitive long or double when possible, so that creating a metric doesn't require creating a BigDecimal
+    private static final byte VALUE_TYPE_BIG_DECIMAL = 0;
+    private static final byte VALUE_TYPE_LONG = 1;
+    private static final byte VALUE_TYPE_DOUBLE = 2;
+    
     private final String metricPath_;
     private final BigDecimal metricValue_;
+    private final long metricValueLong_;
+    private final double metricValueDouble_;
+    private final byte metricValueType_;
     private final long metricTimestamp_;
     private final long metricReceivedTimestampInMilliseconds_;
         
@@ -33,39 +47,65 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
     
     // metricTimestamp is assumed to be in seconds
     public GraphiteMetric(String metricPath, BigDecimal metricValue, int metricTimestamp) {
-        this.metricPath_ = metricPath;
-        this.metricValue_ = metricValue;
-        this.metricTimestamp_ = metricTimestamp;
-        this.metricReceivedTimestampInMilliseconds_ = ((long) metricTimestamp) * 1000;
-        
-        this.isMetricTimestampInSeconds_ = true;
+        this(metricPath, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, metricTimestamp, ((long) metricTimestamp) * 1000, true);
     }
     
     // metricTimestamp is assumed to be in seconds
     public GraphiteMetric(String metricPath, BigDecimal metricValue, int metricTimestamp, long metricReceivedTimestampInMilliseconds) {
-        this.metricPath_ = metricPath;
-        this.metricValue_ = metricValue;
-        this.metricTimestamp_ = metricTimestamp;
-        this.metricReceivedTimestampInMilliseconds_ = metricReceivedTimestampInMilliseconds;
-        
-        this.isMetricTimestampInSeconds_ = true;
+        this(metricPath, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, metricTimestamp, metricReceivedTimestampInMilliseconds, true);
     }
     
     // metricTimestamp is assumed to be in milliseconds
     public GraphiteMetric(String metricPath, BigDecimal metricValue, long metricTimestamp, long metricReceivedTimestampInMilliseconds) {
+        this(metricPath, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, metricTimestamp, metricReceivedTimestampInMilliseconds, false);
+    }
+    
+    // metricTimestamp is assumed to be in seconds
+    public GraphiteMetric(String metricPath, long metricValue, int metricTimestamp) {
+        this(metricPath, null, metricValue, 0, VALUE_TYPE_LONG, metricTimestamp, ((long) metricTimestamp) * 1000, true);
+    }
+    
+    // metricTimestamp is assumed to be in seconds. a NaN or infinite metricValue is treated as a null metric value.
+    public GraphiteMetric(String metricPath, double metricValue, int metricTimestamp) {
+        this(metricPath, null, 0, metricValue, VALUE_TYPE_DOUBLE, metricTimestamp, ((long) metricTimestamp) * 1000, true);
+    }
+    
+    private GraphiteMetric(String metricPath, BigDecimal metricValue, long metricValueLong, double metricValueDouble, byte metricValueType, 
+            long metricTimestamp, long metricReceivedTimestampInMilliseconds, boolean isMetricTimestampInSeconds) {
         this.metricPath_ = metricPath;
         this.metricValue_ = metricValue;
+        this.metricValueLong_ = metricValueLong;
+        this.metricValueDouble_ = metricValueDouble;
+        this.metricValueType_ = metricValueType;
         this.metricTimestamp_ = metricTimestamp;
         this.metricReceivedTimestampInMilliseconds_ = metricReceivedTimestampInMilliseconds;
         
-        this.isMetricTimestampInSeconds_ = false;
+        this.isMetricTimestampInSeconds_ = isMetricTimestampInSeconds;
+    }
+    
+    /*
+    Returns a copy of this metric, with a different metric path. The metric value is shared with this metric (primitive values stay primitive).
+    The copy's timestamp is in seconds.
+    */
+    public GraphiteMetric getCopyWithMetricPath(String metricPath) {
+        int metricTimestampInSeconds = getMetricTimestampInSeconds();
+        return new GraphiteMetric(metricPath, metricValue_, metricValueLong_, metricValueDouble_, metricValueType_, 
+                metricTimestampInSeconds, ((long) metricTimestampInSeconds) * 1000, true);
+    }
+
+    /*
+    Returns a copy of this metric, with a different metric path. Unlike getCopyWithMetricPath, the timestamps are left exactly as they are.
+    */
+    public GraphiteMetric getRenamedCopy(String metricPath) {
+        return new GraphiteMetric(metricPath, metricValue_, metricValueLong_, metricValueDouble_, metricValueType_,
+                metricTimestamp_, metricReceivedTimestampInMilliseconds_, isMetricTimestampInSeconds_);
     }
     
     @Override
     public int hashCode() {
         return new HashCodeBuilder(11, 13)
                 .append(metricPath_)
-                .append(metricValue_)
+                .append(getMetricValue())
                 .append(metricTimestamp_)
                 .append(metricReceivedTimestampInMilliseconds_)
                 .append(isMetricTimestampInSeconds_)
@@ -80,11 +120,13 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         
         GraphiteMetric graphiteMetric = (GraphiteMetric) obj;
         
+        BigDecimal metricValue = getMetricValue();
+        
         boolean isMetricValueEqual = false;
-        if ((metricValue_ != null) && (graphiteMetric.getMetricValue() != null)) {
-            isMetricValueEqual = metricValue_.compareTo(graphiteMetric.getMetricValue()) == 0;
+        if ((metricValue != null) && (graphiteMetric.getMetricValue() != null)) {
+            isMetricValueEqual = metricValue.compareTo(graphiteMetric.getMetricValue()) == 0;
         }
-        else if (metricValue_ == null) {
+        else if (metricValue == null) {
             isMetricValueEqual = graphiteMetric.getMetricValue() == null;
         }
         
@@ -120,6 +162,27 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return stringBuilder.toString();
     }
     
+    /*
+    Writes the same output as 'getGraphiteFormatString' (encoded as UTF-8) directly into the byte buffer, without creating any intermediate Strings.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeGraphiteFormatBytes(ByteBuffer byteBuffer, boolean sanitizeMetric, boolean substituteCharacters) {
+        MetricByteEncoder.writeGraphiteSanitized(byteBuffer, metricPath_, 0, (metricPath_ == null) ? 0 : metricPath_.length(), sanitizeMetric, substituteCharacters);
+        byteBuffer.put((byte) ' ');
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, getMetricTimestampInSeconds());
+    }
+    
+    /*
+    Writes the metric value the same way as 'getMetricValueString'. Primitive values are written without creating a BigDecimal or a String.
+    */
+    private void writeMetricValueBytes(ByteBuffer byteBuffer) {
+        if (metricValueType_ == VALUE_TYPE_LONG) MetricByteEncoder.writeLong(byteBuffer, metricValueLong_);
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) MetricByteEncoder.writeDouble(byteBuffer, metricValueDouble_);
+        else MetricByteEncoder.writeDecimal(byteBuffer, metricValue_);
+    }
+    
     @Override
     public String getOpenTsdbTelnetFormatString(boolean sanitizeMetric) {
         return getOpenTsdbTelnetFormatString(sanitizeMetric, null, null);
@@ -138,6 +201,31 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return stringBuilder.toString();
     }
     
+    /*
+    Writes the same output as 'getOpenTsdbTelnetFormatString' (encoded as UTF-8) directly into the byte buffer, without creating any intermediate Strings.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeOpenTsdbTelnetFormatBytes(ByteBuffer byteBuffer, boolean sanitizeMetric, String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue) {
+        
+        if (sanitizeMetric) MetricByteEncoder.writeOpenTsdbSanitized(byteBuffer, metricPath_, 0, (metricPath_ == null) ? 0 : metricPath_.length());
+        else MetricByteEncoder.writeUtf8(byteBuffer, metricPath_);
+        
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, getMetricTimestampInSeconds());
+        byteBuffer.put((byte) ' ');
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        
+        if (defaultOpenTsdbTagKey == null) {
+            MetricByteEncoder.writeUtf8(byteBuffer, "Format=Graphite");
+        }
+        else {
+            MetricByteEncoder.writeUtf8(byteBuffer, defaultOpenTsdbTagKey);
+            byteBuffer.put((byte) '=');
+            MetricByteEncoder.writeUtf8(byteBuffer, defaultOpenTsdbTagValue);
+        }
+    }
+    
     @Override
     public String getOpenTsdbJsonFormatString(boolean sanitizeMetric) {
         return getOpenTsdbJsonFormatString(sanitizeMetric, null, null);
@@ -148,7 +236,7 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
                 
         if ((metricPath_ == null) || metricPath_.isEmpty()) return null;
         if (getMetricTimestampInSeconds() < 0) return null;
-        if ((getMetricValue() == null)) return null;
+        if (isMetricValueNull()) return null;
         
         StringBuilder openTsdbJson = new StringBuilder();
 
@@ -175,7 +263,7 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
 
         if ((metricPath_ == null) || metricPath_.isEmpty()) return null;
         if (metricTimestamp_ < 0) return null;
-        if ((getMetricValue() == null)) return null;
+        if (isMetricValueNull()) return null;
 
         StringBuilder influxdbJson = new StringBuilder();
 
@@ -197,6 +285,46 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return influxdbJson.toString();
     }
     
+    @Override
+    public String getInfluxdbV2LineFormatString() {
+        return getInfluxdbV2LineFormatString(Common.TIMESTAMP_PRECISION_NANOSECONDS);
+    }
+    
+    /*
+    The metric path is the measurement, & the metric value is written to a single float field named 'value'. Graphite metrics have no tags.
+    */
+    @Override
+    public String getInfluxdbV2LineFormatString(byte timePrecisionCode) {
+        
+        if ((metricPath_ == null) || metricPath_.isEmpty()) return null;
+        if (metricTimestamp_ < 0) return null;
+        if (isMetricValueNull()) return null;
+        
+        StringBuilder influxdbLine = new StringBuilder();
+        
+        influxdbLine.append(InfluxdbMetric_v2.getInfluxdbV2EscapedMeasurement(metricPath_));
+        influxdbLine.append(" value=").append(getMetricValueString());
+        influxdbLine.append(" ").append(InfluxdbMetric_v2.getMetricTimestampFromMilliseconds(timePrecisionCode, getMetricTimestampInMilliseconds()));
+        
+        return influxdbLine.toString();
+    }
+    
+    /*
+    Writes the same output as 'getInfluxdbV2LineFormatString' (encoded as UTF-8) directly into the byte buffer, without creating any intermediate Strings.
+    Nothing is written for metrics that 'getInfluxdbV2LineFormatString' would return null for.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeInfluxdbV2LineFormatBytes(ByteBuffer byteBuffer, byte timePrecisionCode) {
+        
+        if ((metricPath_ == null) || metricPath_.isEmpty() || (metricTimestamp_ < 0) || isMetricValueNull()) return;
+        
+        MetricByteEncoder.writeInfluxdbV2Escaped(byteBuffer, metricPath_, 0, metricPath_.length(), false);
+        MetricByteEncoder.writeUtf8(byteBuffer, " value=");
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, InfluxdbMetric_v2.getMetricTimestampFromMilliseconds(timePrecisionCode, getMetricTimestampInMilliseconds()));
+    }
+    
     /*
     @param  unsanitizedInput  The input is expected to be a Graphite 'metric path'.
     
@@ -206,57 +334,11 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
     @param  'substituteCharacters'  When set to true: a few special characters will be turned into characters that Graphite can handle. 
     % -> Pct
     (){}[]/\ -> |
+    
+    Sanitized metric paths are cached (see MetricNameSanitizer).
     */
     public static String getGraphiteSanitizedString(String unsanitizedInput, boolean sanitizeMetric, boolean substituteCharacters) {
-
-        if (unsanitizedInput == null) return null;
-        if (!sanitizeMetric && !substituteCharacters) return unsanitizedInput;
-        
-        StringBuilder sanitizedInput = new StringBuilder();
-
-        for (int i = 0; i < unsanitizedInput.length(); i++) {
-            char character = unsanitizedInput.charAt(i);
-
-            if (substituteCharacters && Character.isLetterOrDigit(character)) {
-                sanitizedInput.append(character);
-                continue;
-            }
-
-            if (sanitizeMetric && (character == '.')) {
-                int iPlusOne = i + 1;
-                
-                if (((iPlusOne < unsanitizedInput.length()) && (unsanitizedInput.charAt(iPlusOne) != '.')) || (iPlusOne == unsanitizedInput.length())) {
-                    sanitizedInput.append(character);
-                    continue;
-                }
-            }
-
-            if (substituteCharacters) {
-                if (character == '%') {
-                    sanitizedInput.append("Pct");
-                    continue;
-                }
-                
-                if (character == ' ') {
-                    sanitizedInput.append("_");
-                    continue;
-                }
-                
-                if ((character == '\\') || (character == '/') || 
-                        (character == '[') || (character == ']') || 
-                        (character == '{') || (character == '}') ||
-                        (character == '(') || (character == ')')) {
-                    sanitizedInput.append("|");
-                    continue;
-                }
-
-            }
-            
-            if (sanitizeMetric && (character != '.')) sanitizedInput.append(character);
-            else if (!sanitizeMetric) sanitizedInput.append(character);
-        }
-        
-        return sanitizedInput.toString();
+        return MetricNameSanitizer.getGraphiteSanitizedString(unsanitizedInput, sanitizeMetric, substituteCharacters);
     }
     
     public static GraphiteMetric parseGraphiteMetric(String unparsedMetric, String metricPrefix, long metricReceivedTimestampInMilliseconds) {
@@ -382,17 +464,38 @@ public class GraphiteMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return getMetricPath();
     }
     
+    /*
+    For metrics that were created with a primitive value, a new BigDecimal is created on every call.
+    */
     public BigDecimal getMetricValue() {
-        return metricValue_;
+        if (metricValueType_ == VALUE_TYPE_LONG) return BigDecimal.valueOf(metricValueLong_);
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) return MathUtilities.getBigDecimalFromDouble(metricValueDouble_);
+        else return metricValue_;
     }
     
     @Override
     public BigDecimal getMetricValueBigDecimal() {
-        return metricValue_;
+        return getMetricValue();
+    }
+    
+    @Override
+    public double getMetricValueDouble() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return metricValueLong_;
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) return metricValueDouble_;
+        else if (metricValue_ == null) return Double.NaN;
+        else return metricValue_.doubleValue();
+    }
+    
+    public boolean isMetricValueNull() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return false;
+        if (metricValueType_ == VALUE_TYPE_DOUBLE) return Double.isNaN(metricValueDouble_) || Double.isInfinite(metricValueDouble_);
+        return metricValue_ == null;
     }
     
     @Override
     public String getMetricValueString() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return Long.toString(metricValueLong_);
+        if (metricValueType_ == VALUE_TYPE_DOUBLE) return MathUtilities.getFastPlainStringWithNoTrailingZeros(MathUtilities.getBigDecimalFromDouble(metricValueDouble_));
         if (metricValue_ == null) return null;
         return MathUtilities.getFastPlainStringWithNoTrailingZeros(metricValue_);
     }
@@ -0,0 +1,61 @@
+package com.pearson.statspoller.metric_formats.graphite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of Graphite (carbon) endpoints that the metrics are spread across, rather than copied to.
+ * Each metric goes to exactly one shard, picked by a consistent hash of its metric path, so a metric path always lands on the same endpoint.
+ *
+ * Each shard is sent to like a regular Graphite output module -- it has its own persistent connection, send queue, spool, & circuit breaker.
+ * Shards should only be added to the end of the list. Doing so only moves the metric paths that now belong to the new shard.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class GraphiteShardedOutputModule {
+    
+    private static final Logger logger = LoggerFactory.getLogger(GraphiteShardedOutputModule.class.getName());
+    
+    private final boolean isOutputEnabled_;
+    private final List<GraphiteOutputModule> shardOutputModules_;
+    private final String uniqueId_;
+    
+    public GraphiteShardedOutputModule(boolean isOutputEnabled, List<String> hosts, List<Integer> ports, int numSendRetryAttempts,
+            int maxMetricsPerMessage, boolean sanitizeMetrics, boolean substituteCharacters, String uniqueId) {
+        this.isOutputEnabled_ = isOutputEnabled;
+        this.uniqueId_ = uniqueId;
+        
+        List<GraphiteOutputModule> shardOutputModules = new ArrayList<>();
+        
+        for (int i = 0; (hosts != null) && (ports != null) && (i < hosts.size()) && (i < ports.size()); i++) {
+            GraphiteOutputModule shardOutputModule = new GraphiteOutputModule(isOutputEnabled, hosts.get(i), ports.get(i),
+                    numSendRetryAttempts, maxMetricsPerMessage, sanitizeMetrics, substituteCharacters, uniqueId + "-Shard-" + (i + 1));
+            shardOutputModules.add(shardOutputModule);
+        }
+        
+        this.shardOutputModules_ = Collections.unmodifiableList(shardOutputModules);
+    }
+    
+    public boolean isOutputEnabled() {
+        return isOutputEnabled_;
+    }
+    
+    public int getNumShards() {
+        return shardOutputModules_.size();
+    }
+    
+    /*
+    The shards, in hash order. Shard 'i' receives the metrics whose metric path hashes to 'i'.
+    */
+    public List<GraphiteOutputModule> getShardOutputModules() {
+        return shardOutputModules_;
+    }
+    
+    public String getUniqueId() {
+        return uniqueId_;
+    }
+
+}
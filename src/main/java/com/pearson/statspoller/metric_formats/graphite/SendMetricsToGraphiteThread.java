@@ -1,8 +1,11 @@
 package com.pearson.statspoller.metric_formats.graphite;
 
 import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
-import java.util.List;
+import com.pearson.statspoller.output.EncodedMetricBatch;
+import com.pearson.statspoller.output.MetricEncodingCache;
 import com.pearson.statspoller.utilities.network_utils.TcpClient;
+import com.pearson.statspoller.utilities.network_utils.TcpConnectionManager;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +25,13 @@ public class SendMetricsToGraphiteThread extends SendMetricsToOutputModuleThread
     private final int numSendRetries_;
     private final int maxMetricsPerMessage_;
     
+    private TcpConnectionManager tcpConnectionManager_ = null;
+    private TcpClient tcpClient_ = null;
+    
+    // if this thread sends to one shard of a sharded graphite output module, then only the metrics that hash to this shard are sent
+    private int numShards_ = 1;
+    private int shardIndex_ = 0;
+    
     public SendMetricsToGraphiteThread(List<? extends GraphiteMetricFormat> graphiteMetrics, boolean sanitizeMetrics, boolean substituteCharacters,
             String graphiteHost, int graphitePort, int connectTimeoutInMs, int numSendRetries, int maxMetricsPerMessage, String threadId) {
         this.graphiteMetrics_ = graphiteMetrics;
@@ -45,11 +55,12 @@ public class SendMetricsToGraphiteThread extends SendMetricsToOutputModuleThread
             return;
         }
         
-        if ((graphiteMetrics_ == null) || graphiteMetrics_.isEmpty()) return;
+        if (((graphiteMetrics_ == null) || graphiteMetrics_.isEmpty()) && !isSpoolReplayPending()) return;
         
         long sendToGraphiteTimeStart = System.currentTimeMillis();
 
         boolean isSendSuccess = sendMetricsToGraphite();
+        if (!isSendSuccess) didSendFail_ = true;
 
         long sendToGraphiteTimeElasped = System.currentTimeMillis() - sendToGraphiteTimeStart;
 
@@ -72,77 +83,133 @@ public class SendMetricsToGraphiteThread extends SendMetricsToOutputModuleThread
         return isFinished_;
     }
     
+    public void setTcpConnectionManager(TcpConnectionManager tcpConnectionManager) {
+        this.tcpConnectionManager_ = tcpConnectionManager;
+    }
+    
+    /*
+    Only send the metrics whose metric path consistently hashes to shard 'shardIndex' (of 'numShards').
+    */
+    public void setShard(int numShards, int shardIndex) {
+        if ((numShards < 1) || (shardIndex < 0) || (shardIndex >= numShards)) return;
+        
+        this.numShards_ = numShards;
+        this.shardIndex_ = shardIndex;
+    }
+    
     private boolean sendMetricsToGraphite() {
         
-        if ((graphiteMetrics_ == null) || graphiteMetrics_.isEmpty() || (graphiteHost_ == null) || (graphiteHost_.isEmpty()) || 
+        if ((graphiteMetrics_ == null) || (graphiteHost_ == null) || (graphiteHost_.isEmpty()) || 
                 (graphitePort_ < 0) || (graphitePort_ > 65535) || (numSendRetries_ < 0) || isShuttingDown_)  {
             return false;
         }
         
         boolean isSendAllSuccess = true;
         
-        // connect to graphite
-        TcpClient tcpClient = new TcpClient(graphiteHost_, graphitePort_, true, connectTimeoutInMs_);
-        int retryCounter = 0;
-        while (!tcpClient.isConnected() && (retryCounter < numSendRetries_) && !isShuttingDown_) {
-            tcpClient.reset();
-            retryCounter++;
+        // encode the metrics (or reuse the encoding that another graphite output module already did)
+        EncodedMetricBatch graphiteBatch;
+        if (numShards_ > 1) {
+            graphiteBatch = (metricEncodingCache_ != null) ? 
+                    metricEncodingCache_.getGraphiteShardBatch(graphiteMetrics_, sanitizeMetrics_, substituteCharacters_, numShards_, shardIndex_) :
+                    MetricEncodingCache.shardGraphiteBatch(MetricEncodingCache.encodeGraphite(graphiteMetrics_, sanitizeMetrics_, substituteCharacters_), numShards_)[shardIndex_];
         }
-        
-        // if connecting to graphite failed, give up
-        if (!tcpClient.isConnected()) {
-            logger.error("Error creating TCP connection to Graphite. Endpoint=\"" + outputEndpoint_ + "\"");
-            tcpClient.close();
-            return false;
+        else {
+            graphiteBatch = (metricEncodingCache_ != null) ? 
+                metricEncodingCache_.getGraphiteBatch(graphiteMetrics_, sanitizeMetrics_, substituteCharacters_) :
+                MetricEncodingCache.encodeGraphite(graphiteMetrics_, sanitizeMetrics_, substituteCharacters_);
         }
         
-        // build multi-metric messages & send to graphite
-        int i = 0;
-        StringBuilder multiMetricMessage = new StringBuilder();
-        for (GraphiteMetricFormat graphiteMetric : graphiteMetrics_) {
-            if (isShuttingDown_) {
-                isSendAllSuccess = false;
-                continue;
+        int maxMetricsPerMessage = (maxMetricsPerMessage_ > 0) ? maxMetricsPerMessage_ : 1;
+        
+        // connect to graphite (or reuse the existing connection). if the circuit is open, then graphite is assumed to be down & isn't connected to.
+        TcpClient tcpClient = isCircuitOpen_ ? null : getConnectedTcpClient();
+        boolean isConnected = (tcpClient != null) && tcpClient.isConnected();
+        boolean isConnectionHealthy = false;
+        
+        // a managed connection stays locked until it is released, so it is released no matter how sending ends (ex- an exception, or this thread being abandoned)
+        try {
+            // if connecting to graphite failed, spool the messages (if spooling is enabled) & give up
+            if (!isConnected && !isCircuitOpen_) {
+                logger.error("Error creating TCP connection to Graphite. Endpoint=\"" + outputEndpoint_ + "\"");
+                didEncounterUnreachableEndpoint_ = true;
             }
             
-            if (i == maxMetricsPerMessage_) {     
-                String graphiteMessage = multiMetricMessage.toString();
-                if (!graphiteMessage.isEmpty()) {   
-                    boolean isSendSuccess = sendGraphiteMessage(tcpClient, numSendRetries_, multiMetricMessage.toString());
-                    if (!isSendSuccess) isSendAllSuccess = false;
+            if (!isConnected) isSendAllSuccess = false;
+            
+            // send multi-metric messages to graphite. messages that couldn't be sent are spooled (if spooling is enabled).
+            // each message is a range of lines from the encoded batch, so messages are sent (& spooled) without being re-encoded.
+            // once a message fails (all of its retries included), the rest of the batch is spooled without trying to send it.
+            int numSpooledMessages = 0;
+            for (int i = 0; i < graphiteBatch.getNumRecords(); i += maxMetricsPerMessage) {
+                int messageOffset = graphiteBatch.getRecordOffset(i);
+                int messageLength = graphiteBatch.getLength(i, Math.min(i + maxMetricsPerMessage, graphiteBatch.getNumRecords()));
+                
+                boolean isSendAttempted = isConnected && isSendAllSuccess && !isShuttingDown_;
+                boolean isSendSuccess = isSendAttempted && sendGraphiteMessage(tcpClient, numSendRetries_, graphiteBatch.getBytes(), messageOffset, messageLength);
+                
+                if (isSendAttempted && !isSendSuccess) didEncounterUnreachableEndpoint_ = true;
+                
+                if (!isSendSuccess) {
+                    if (spoolMessage(graphiteBatch.getBytes(), messageOffset, messageLength)) numSpooledMessages++;
+                    isSendAllSuccess = false;
                 }
-
-                multiMetricMessage = new StringBuilder();
-                i = 0;
-            }
-
-            multiMetricMessage.append(graphiteMetric.getGraphiteFormatString(sanitizeMetrics_, substituteCharacters_)).append("\n");
-            i++;
-        }
-
-        String finalGraphiteMessage = multiMetricMessage.toString();
-        if (!finalGraphiteMessage.isEmpty()) {   
-            if (!isShuttingDown_) {
-                boolean isSendSuccess = sendGraphiteMessage(tcpClient, numSendRetries_, finalGraphiteMessage);
-                if (!isSendSuccess) isSendAllSuccess = false;
             }
-            else {
-                isSendAllSuccess = false;
+            
+            logSpooledMessages(numSpooledMessages);
+            
+            if (!isConnected) return false;
+            
+            // graphite is reachable, so send some of the previously spooled messages
+            if (isSendAllSuccess) {
+                tcpClient_ = tcpClient;
+                replaySpooledMessages();
             }
-        }     
-     
-        // disconnect from graphite
-        tcpClient.close();
-        
-        return isSendAllSuccess;
+            
+            isConnectionHealthy = isSendAllSuccess;
+            
+            return isSendAllSuccess;
+        }
+        finally {
+            // disconnect from graphite (or keep the connection open for the next output interval)
+            tcpClient_ = null;
+            releaseTcpClient(tcpClient, isConnectionHealthy);
+        }
     }
+    
+    private TcpClient getConnectedTcpClient() {
+        
+        if (tcpConnectionManager_ != null) {
+            return tcpConnectionManager_.acquire(connectTimeoutInMs_, numSendRetries_);
+        }
         
-    private boolean sendGraphiteMessage(TcpClient tcpClient, int numSendRetries, String graphiteMessage) {
+        TcpClient tcpClient = new TcpClient(graphiteHost_, graphitePort_, true, connectTimeoutInMs_);
+        int retryCounter = 0;
+        while (!tcpClient.isConnected() && (retryCounter < numSendRetries_) && !isShuttingDown_) {
+            tcpClient.reset();
+            retryCounter++;
+        }
+        
+        return tcpClient;
+    }
+    
+    private void releaseTcpClient(TcpClient tcpClient, boolean isConnectionHealthy) {
+        if (tcpConnectionManager_ != null) tcpConnectionManager_.release(tcpClient, isConnectionHealthy);
+        else if (tcpClient != null) tcpClient.close();
+    }
+    
+    @Override
+    protected boolean sendSpooledMessage(byte[] graphiteMessage) {
+        if (tcpClient_ == null) return false;
+        return sendGraphiteMessage(tcpClient_, numSendRetries_, graphiteMessage, 0, graphiteMessage.length);
+    }
+    
+    private boolean sendGraphiteMessage(TcpClient tcpClient, int numSendRetries, byte[] graphiteMessage, int offset, int length) {
         
         boolean isSendSuccess = true;
         
         if (tcpClient.isConnected()) {
-            boolean isSendSucess = tcpClient.send(graphiteMessage, numSendRetries, false, true);
+            boolean isSendSucess = tcpClient.send(graphiteMessage, offset, length, numSendRetries, false, true);
+            recordSendStats(isSendSucess ? length : 0, tcpClient.getNumRetriesOfLastSend());
 
             if (!isSendSucess) {
                 logger.error("Error sending a message to Graphite. Endpoint=\"" + outputEndpoint_ + "\"");
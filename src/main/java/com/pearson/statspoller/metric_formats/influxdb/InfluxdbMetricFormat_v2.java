@@ -7,4 +7,6 @@ public interface InfluxdbMetricFormat_v2 {
     
     public String getInfluxdbV2LineFormatString();
     
+    public String getInfluxdbV2LineFormatString(byte timePrecisionCode);
+
 }
@@ -130,6 +130,65 @@ public class InfluxdbMetric_v2 {
         else return time;
     }
     
+    /*
+    Converts a timestamp in milliseconds to the specified precision (the inverse of 'getMetricTimestampInMilliseconds').
+    */
+    public static long getMetricTimestampFromMilliseconds(byte timePrecisionCode, long timeInMilliseconds) {
+        if (timePrecisionCode == Common.TIMESTAMP_PRECISION_NANOSECONDS) return (timeInMilliseconds * 1000000);
+        else if (timePrecisionCode == Common.TIMESTAMP_PRECISION_MICROSECONDS) return (timeInMilliseconds * 1000);
+        else if (timePrecisionCode == Common.TIMESTAMP_PRECISION_MILLISECONDS) return timeInMilliseconds;
+        else if (timePrecisionCode == Common.TIMESTAMP_PRECISION_SECONDS) return (timeInMilliseconds / 1000);
+        else if (timePrecisionCode == Common.TIMESTAMP_PRECISION_MINUTES) return (timeInMilliseconds / 60000);
+        else if (timePrecisionCode == Common.TIMESTAMP_PRECISION_HOURS) return (timeInMilliseconds / 3600000);
+        else return timeInMilliseconds;
+    }
+    
+    /*
+    Escapes an InfluxDB line protocol measurement name. Commas & spaces are escaped with a backslash.
+    Line breaks can't be represented in the line protocol, so they are turned into (escaped) spaces.
+    */
+    public static String getInfluxdbV2EscapedMeasurement(String measurement) {
+        return getInfluxdbV2EscapedString(measurement, false);
+    }
+    
+    /*
+    Escapes an InfluxDB line protocol tag key, tag value, or field key. Commas, equals signs, & spaces are escaped with a backslash.
+    Line breaks can't be represented in the line protocol, so they are turned into (escaped) spaces.
+    */
+    public static String getInfluxdbV2EscapedTagString(String tagString) {
+        return getInfluxdbV2EscapedString(tagString, true);
+    }
+    
+    private static String getInfluxdbV2EscapedString(String unescapedInput, boolean escapeEquals) {
+        
+        if (unescapedInput == null) return null;
+        
+        boolean isEscapingRequired = false;
+        
+        for (int i = 0; i < unescapedInput.length(); i++) {
+            char character = unescapedInput.charAt(i);
+            
+            if ((character == ',') || (character == ' ') || (character == '\n') || (character == '\r') || (escapeEquals && (character == '='))) {
+                isEscapingRequired = true;
+                break;
+            }
+        }
+        
+        if (!isEscapingRequired) return unescapedInput;
+        
+        StringBuilder escapedString = new StringBuilder(unescapedInput.length() + 8);
+        
+        for (int i = 0; i < unescapedInput.length(); i++) {
+            char character = unescapedInput.charAt(i);
+            
+            if ((character == ',') || (character == ' ') || (escapeEquals && (character == '='))) escapedString.append('\\').append(character);
+            else if ((character == '\n') || (character == '\r')) escapedString.append("\\ ");
+            else escapedString.append(character);
+        }
+        
+        return escapedString.toString();
+    }
+    
     public static String getInfluxdbJson(InfluxdbMetricFormat_v1 influxdbMetric) {
         
         if (influxdbMetric == null) return null;
@@ -249,6 +249,12 @@ public class InfluxdbStandardizedMetric implements GraphiteMetricFormat, OpenTsd
         return metricValue_;
     }
     
+    @Override
+    public double getMetricValueDouble() {
+        if (metricValue_ == null) return Double.NaN;
+        return metricValue_.doubleValue();
+    }
+    
     public long getMetricTimestamp() {
         return metricTimestamp_;
     }
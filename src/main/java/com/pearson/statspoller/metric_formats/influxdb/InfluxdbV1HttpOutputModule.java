@@ -1,5 +1,9 @@
 package com.pearson.statspoller.metric_formats.influxdb;
 
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,37 +15,81 @@ public class InfluxdbV1HttpOutputModule {
     private static final Logger logger = LoggerFactory.getLogger(InfluxdbV1HttpOutputModule.class.getName());
     
     private final boolean isOutputEnabled_;
-    private final String url_;
+    private final String urlString_;
     private final int numSendRetryAttempts_;
     private final int maxMetricsPerMessage_;
+    private final String databaseName_;
+    private final String username_;
+    private final String password_;
     private final String uniqueId_;
     
-    public InfluxdbV1HttpOutputModule(boolean isOutputEnabled, String url, int numSendRetryAttempts, int maxMetricsPerMessage, String uniqueId) {
+    private URL url_;
+    
+    public InfluxdbV1HttpOutputModule(boolean isOutputEnabled, String url, int numSendRetryAttempts, int maxMetricsPerMessage,
+            String databaseName, String username, String password, String uniqueId) {
         this.isOutputEnabled_ = isOutputEnabled;
-        this.url_ = url;
+        this.urlString_ = url;
         this.numSendRetryAttempts_ = numSendRetryAttempts;
         this.maxMetricsPerMessage_ = maxMetricsPerMessage;
+        this.databaseName_ = databaseName;
+        this.username_ = username;
+        this.password_ = password;
         this.uniqueId_ = uniqueId;
+        
+        try {
+            url_ = new URL(url);
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            url_ = null;
+        }
     }
-
+    
+    /*
+    The value of the 'Authorization' header for HTTP basic auth. Null if no username is configured.
+    */
+    public String getHttpBasicAuthValue() {
+        
+        if ((username_ == null) || username_.isEmpty()) return null;
+        
+        String credentials = username_ + ":" + ((password_ == null) ? "" : password_);
+        return "Basic " + Base64.encodeBase64String(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+    
     public boolean isOutputEnabled() {
         return isOutputEnabled_;
     }
-
-    public String getUrl() {
+    
+    public URL getUrl() {
         return url_;
     }
-
+    
+    public String getUrlString() {
+        return urlString_;
+    }
+    
     public int getNumSendRetryAttempts() {
         return numSendRetryAttempts_;
     }
-
+    
     public int getMaxMetricsPerMessage() {
         return maxMetricsPerMessage_;
     }
     
+    public String getDatabaseName() {
+        return databaseName_;
+    }
+    
+    public String getUsername() {
+        return username_;
+    }
+    
+    public String getPassword() {
+        return password_;
+    }
+    
     public String getUniqueId() {
         return uniqueId_;
     }
-    
+
 }
@@ -7,9 +7,12 @@ import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.google.common.collect.Lists;
 import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
+import com.pearson.statspoller.output.EncodedMetricBatch;
+import com.pearson.statspoller.output.MetricEncodingCache;
 import com.pearson.statspoller.utilities.web_utils.HttpRequest;
+import com.pearson.statspoller.utilities.web_utils.HttpRequestExecutor;
+import java.util.ArrayList;
 
 /**
  * @author Jeffrey Schmidt
@@ -83,7 +86,7 @@ public class SendMetricsToInfluxdbV1Thread extends SendMetricsToOutputModuleThre
         }
         
         if (isNativeInfluxdbMetrics && ((nativeInfluxdbMetrics_ == null) || nativeInfluxdbMetrics_.isEmpty())) return;
-        if (!isNativeInfluxdbMetrics && ((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty())) return;
+        if (!isNativeInfluxdbMetrics && ((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty()) && !isSpoolReplayPending()) return;
 
         long sendToInfluxdbTimeStart = System.currentTimeMillis();
         boolean isSendSuccess;
@@ -96,6 +99,8 @@ public class SendMetricsToInfluxdbV1Thread extends SendMetricsToOutputModuleThre
             isSendSuccess = sendNonNativeMetricsToInfluxdb_HTTP(influxdbHttpHeaderProperties);
         }
 
+        if (!isSendSuccess) didSendFail_ = true;
+
         long sendToInfluxdbTimeElasped = System.currentTimeMillis() - sendToInfluxdbTimeStart;
 
         String outputString = "ThreadId=" + threadId_ + ", Destination=\"" + outputEndpoint_ + 
@@ -112,6 +117,11 @@ public class SendMetricsToInfluxdbV1Thread extends SendMetricsToOutputModuleThre
         isShuttingDown_ = true;
         
         try {
+            HttpRequestExecutor httpRequestExecutor = httpRequestExecutor_;
+            if (httpRequestExecutor != null) {
+                httpRequestExecutor.abort();
+            }
+            
             if (currentHttpRequest_ != null) {
                 currentHttpRequest_.setContinueRetrying(false);
                 currentHttpRequest_.closeResources();
@@ -132,50 +142,50 @@ public class SendMetricsToInfluxdbV1Thread extends SendMetricsToOutputModuleThre
     */
     private boolean sendNonNativeMetricsToInfluxdb_HTTP(Map<String,String> influxdbHttpHeaderProperties) {
               
-        if ((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty()) {
+        if (((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty()) && !isSpoolReplayPending()) {
             return true;
         } 
         
-        if ((influxdbBaseUrl_ == null) || (maxMetricsPerMessage_ <= 0) || (numSendRetries_ < 0) || (connectTimeoutInMs_ < 0) || (readTimeoutInMs_ < 0) || isShuttingDown_) {
+        if ((influxdbMetrics_ == null) || (influxdbBaseUrl_ == null) || (maxMetricsPerMessage_ <= 0) || (numSendRetries_ < 0) || 
+                (connectTimeoutInMs_ < 0) || (readTimeoutInMs_ < 0) || isShuttingDown_) {
             return false;
         } 
         
-        boolean isAllSendSuccess = true;
+        String influxdbFullUrl = createInfluxdbUrl(outputEndpoint_, defaultDatabaseName_);
         
-        List influxdbMetricsList = influxdbMetrics_;
-        List<List<? extends InfluxdbMetricFormat_v1>> partitionedList = Lists.partition(influxdbMetricsList, maxMetricsPerMessage_);
+        // encode the metrics (or reuse the encoding that another influxdb output module already did)
+        EncodedMetricBatch influxdbJsonBatch = (metricEncodingCache_ != null) ?
+                metricEncodingCache_.getInfluxdbV1JsonBatch(influxdbMetrics_) : MetricEncodingCache.encodeInfluxdbV1Json(influxdbMetrics_);
         
-        for (List influxdbStandardizedMetricsPartitionedList : partitionedList) {
-            if (isShuttingDown_) {
-                isAllSendSuccess = false;
-                continue;
-            }
-            
-            String influxdbMetricJson = InfluxdbMetric_v1.getInfluxdbJson(influxdbStandardizedMetricsPartitionedList);
-            
-            if (influxdbMetricJson != null) {
-                String influxdbFullUrl = createInfluxdbUrl(outputEndpoint_, defaultDatabaseName_);
-                
-                HttpRequest httpRequest = new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, influxdbMetricJson, 
-                        "UTF-8", "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
-                
-                currentHttpRequest_ = httpRequest;
-                httpRequest.makeRequest();
-                
-                if (httpRequest.didEncounterConnectionError() && httpRequest.didHitRetryAttemptLimit() && !httpRequest.isHttpRequestSuccess()) {
-                    isAllSendSuccess = false;
-                    logger.error("Aborting InfluxDB V1 output. Couldn't connect to InfluxDB HTTP endpoint. Endpoint=\"" + outputEndpoint_ + "\"");
-                    break;
-                }
-                
-                if (!httpRequest.isHttpRequestSuccess()) isAllSendSuccess = false;
-            }
-            else {
-                isAllSendSuccess = false;
-            }
+        List<HttpRequest> httpRequests = new ArrayList<>();
+        
+        for (int i = 0; i < influxdbJsonBatch.getNumRecords(); i += maxMetricsPerMessage_) {
+            int toRecordIndex = Math.min(i + maxMetricsPerMessage_, influxdbJsonBatch.getNumRecords());
+            httpRequests.add(new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, MetricEncodingCache.getJsonArray(influxdbJsonBatch, i, toRecordIndex), 
+                    "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true));
         }
         
-        return isAllSendSuccess;
+        // up to 'maxConcurrentHttpRequests_' messages are in flight at once. messages that couldn't be delivered are spooled.
+        return sendHttpRequests(httpRequests, influxdbJsonBatch, maxMetricsPerMessage_, true, "InfluxDB V1");
+    }
+    
+    /*
+    Spooled messages are JSON arrays of non-native metrics, so they are always sent to the 'default' database.
+    */
+    @Override
+    protected boolean sendSpooledMessage(byte[] message) {
+        
+        if (isShuttingDown_ || isNativeInfluxdbMetrics || (influxdbBaseUrl_ == null)) return false;
+        
+        HttpRequest httpRequest = new HttpRequest(createInfluxdbUrl(outputEndpoint_, defaultDatabaseName_), getInfluxdbHttpHeaderProperties(defaultDatabaseHttpAuthValue_), 
+                message, "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
+        
+        currentHttpRequest_ = httpRequest;
+        httpRequest.makeRequest();
+        recordSendStats(httpRequest);
+        
+        // if influxdb received the message, but rejected it, then there is no point in keeping it in the spool
+        return httpRequest.isHttpRequestSuccess() || !httpRequest.didEncounterConnectionError();
     }
     
     /*
@@ -210,6 +220,7 @@ public class SendMetricsToInfluxdbV1Thread extends SendMetricsToOutputModuleThre
                 
                 currentHttpRequest_ = httpRequest;
                 httpRequest.makeRequest();
+                recordSendStats(httpRequest);
                 
                 if (httpRequest.didEncounterConnectionError() && httpRequest.didHitRetryAttemptLimit() && !httpRequest.isHttpRequestSuccess()) {
                     isAllSendSuccess = false;
@@ -0,0 +1,208 @@
+package com.pearson.statspoller.metric_formats.influxdb;
+
+import com.pearson.statspoller.utilities.web_utils.HttpUtils;
+import java.util.List;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
+import com.pearson.statspoller.output.EncodedMetricBatch;
+import com.pearson.statspoller.output.MetricEncodingCache;
+import com.pearson.statspoller.utilities.web_utils.GzipHttpBodyWriter;
+import com.pearson.statspoller.utilities.web_utils.HttpRequest;
+import com.pearson.statspoller.utilities.web_utils.HttpRequestExecutor;
+
+/**
+ * Sends metrics to InfluxDB's '/write' api, in the InfluxDB line protocol.
+ * Each message is a block of (up to 'maxMetricsPerMessage') newline separated lines, optionally gzip compressed while it is streamed to InfluxDB.
+ * 
+ * @author Jeffrey Schmidt
+ */
+public class SendMetricsToInfluxdbV2Thread extends SendMetricsToOutputModuleThread {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SendMetricsToInfluxdbV2Thread.class.getName());
+    
+    private final List<? extends InfluxdbMetricFormat_v2> influxdbMetrics_;
+    private final URL influxdbBaseUrl_;
+    private final String databaseName_;
+    private final String databaseHttpAuthValue_;
+    private final byte timePrecisionCode_;
+    private final boolean isGzipEnabled_;
+    private final int connectTimeoutInMs_;
+    private final int readTimeoutInMs_;
+    private final int numSendRetries_;
+    private final int maxMetricsPerMessage_;
+    
+    private HttpRequest currentHttpRequest_ = null;
+    
+    public SendMetricsToInfluxdbV2Thread(List<? extends InfluxdbMetricFormat_v2> influxdbMetrics, URL influxdbBaseUrl, 
+            String databaseName, String databaseHttpAuthValue, byte timePrecisionCode, boolean isGzipEnabled,
+            int connectTimeoutInMs, int readTimeoutInMs, int numSendRetries, int maxMetricsPerMessage, String threadId) {
+        this.influxdbMetrics_ = influxdbMetrics;
+        this.influxdbBaseUrl_ = influxdbBaseUrl;
+        this.databaseName_ = databaseName;
+        this.databaseHttpAuthValue_ = databaseHttpAuthValue;
+        this.timePrecisionCode_ = timePrecisionCode;
+        this.isGzipEnabled_ = isGzipEnabled;
+        this.connectTimeoutInMs_ = connectTimeoutInMs;
+        this.readTimeoutInMs_ = readTimeoutInMs;
+        this.numSendRetries_ = numSendRetries;
+        this.maxMetricsPerMessage_ = maxMetricsPerMessage;
+        this.threadId_ = threadId;
+        
+        if (influxdbBaseUrl_ != null) this.outputEndpoint_ = influxdbBaseUrl_.toExternalForm();
+    }
+    
+    @Override
+    public void run() {
+        
+        if (isShuttingDown_) {
+            isFinished_ = true;
+            return;
+        }
+        
+        if (((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty()) && !isSpoolReplayPending()) return;
+        
+        long sendToInfluxdbTimeStart = System.currentTimeMillis();
+        
+        boolean isSendSuccess = sendMetricsToInfluxdb_HTTP();
+        if (!isSendSuccess) didSendFail_ = true;
+        
+        long sendToInfluxdbTimeElasped = System.currentTimeMillis() - sendToInfluxdbTimeStart;
+        
+        String outputString = "ThreadId=" + threadId_ + ", Destination=\"" + outputEndpoint_ + 
+                            "\", SendToInfluxdbHttpSuccess=" + isSendSuccess + ", SendToInfluxdbTime=" + sendToInfluxdbTimeElasped;                 
+        
+        logger.info(outputString);
+        
+        isFinished_ = true;
+    }
+    
+    @Override
+    public void shutdown() {
+        logger.warn("ThreadId=" + threadId_ + ", Destination=\"" + outputEndpoint_ + "\", Action=ForceShutdown");
+        isShuttingDown_ = true;
+        
+        try {
+            HttpRequestExecutor httpRequestExecutor = httpRequestExecutor_;
+            if (httpRequestExecutor != null) {
+                httpRequestExecutor.abort();
+            }
+            
+            if (currentHttpRequest_ != null) {
+                currentHttpRequest_.setContinueRetrying(false);
+                currentHttpRequest_.closeResources();
+                currentHttpRequest_ = null;
+            }
+        }
+        catch (Exception e) {}
+    }
+    
+    @Override
+    public boolean isFinished() {
+        return isFinished_;
+    }
+    
+    /*
+    Merges several metrics together & sends to InfluxDB in larger, multi-metric, HTTP POSTs.
+    */
+    private boolean sendMetricsToInfluxdb_HTTP() {
+        
+        if (((influxdbMetrics_ == null) || influxdbMetrics_.isEmpty()) && !isSpoolReplayPending()) {
+            return true;
+        } 
+        
+        if ((influxdbMetrics_ == null) || (influxdbBaseUrl_ == null) || (maxMetricsPerMessage_ <= 0) || (numSendRetries_ < 0) || 
+                (connectTimeoutInMs_ < 0) || (readTimeoutInMs_ < 0) || isShuttingDown_) {
+            return false;
+        } 
+        
+        String influxdbFullUrl = createInfluxdbUrl(outputEndpoint_, databaseName_, timePrecisionCode_);
+        Map<String,String> influxdbHttpHeaderProperties = getInfluxdbHttpHeaderProperties(databaseHttpAuthValue_, isGzipEnabled_);
+        
+        // encode the metrics (or reuse the encoding that another influxdb output module already did)
+        EncodedMetricBatch influxdbLineBatch = (metricEncodingCache_ != null) ?
+                metricEncodingCache_.getInfluxdbV2LineBatch(influxdbMetrics_, timePrecisionCode_) : MetricEncodingCache.encodeInfluxdbV2Line(influxdbMetrics_, timePrecisionCode_);
+        
+        List<HttpRequest> httpRequests = new ArrayList<>();
+        
+        for (int i = 0; i < influxdbLineBatch.getNumRecords(); i += maxMetricsPerMessage_) {
+            int toRecordIndex = Math.min(i + maxMetricsPerMessage_, influxdbLineBatch.getNumRecords());
+            
+            if (isGzipEnabled_) {
+                httpRequests.add(new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, new GzipHttpBodyWriter(MetricEncodingCache.getRecordsHttpBodyWriter(influxdbLineBatch, i, toRecordIndex)), 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true));
+            }
+            else {
+                httpRequests.add(new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, MetricEncodingCache.getRecords(influxdbLineBatch, i, toRecordIndex), 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true));
+            }
+        }
+        
+        // up to 'maxConcurrentHttpRequests_' messages are in flight at once. messages that couldn't be delivered are spooled.
+        return sendHttpRequests(httpRequests, influxdbLineBatch, maxMetricsPerMessage_, false, "InfluxDB V2");
+    }
+    
+    /*
+    Spooled messages are uncompressed line protocol lines. They are compressed (if gzip is enabled) when they are replayed.
+    */
+    @Override
+    protected boolean sendSpooledMessage(byte[] message) {
+        
+        if (isShuttingDown_ || (influxdbBaseUrl_ == null)) return false;
+        
+        String influxdbFullUrl = createInfluxdbUrl(outputEndpoint_, databaseName_, timePrecisionCode_);
+        Map<String,String> influxdbHttpHeaderProperties = getInfluxdbHttpHeaderProperties(databaseHttpAuthValue_, isGzipEnabled_);
+        
+        HttpRequest httpRequest;
+        if (isGzipEnabled_) httpRequest = new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, new GzipHttpBodyWriter(message), 
+                "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
+        else httpRequest = new HttpRequest(influxdbFullUrl, influxdbHttpHeaderProperties, message, 
+                "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
+        
+        currentHttpRequest_ = httpRequest;
+        httpRequest.makeRequest();
+        recordSendStats(httpRequest);
+        
+        // if influxdb received the message, but rejected it, then there is no point in keeping it in the spool
+        return httpRequest.isHttpRequestSuccess() || !httpRequest.didEncounterConnectionError();
+    }
+    
+    /*
+    Creates a url for InfluxDB's '/write' api. Example: http://localhost:8086/write?db=statspoller&precision=ms
+    */
+    protected static String createInfluxdbUrl(String baseUrl, String databaseName, byte timePrecisionCode) {
+        
+        if ((databaseName == null) || (baseUrl == null)) {
+            return null;
+        }
+        
+        StringBuilder influxdbUrl = new StringBuilder();
+        
+        // create the base url
+        influxdbUrl.append(baseUrl);
+        if (!baseUrl.endsWith("/")) influxdbUrl.append("/");
+        
+        // add the influxdb database name & timestamp precision to the url
+        influxdbUrl.append("write?db=").append(HttpUtils.urlEncode(databaseName, "UTF-8"));
+        
+        String timePrecisionString = InfluxdbMetric_v2.getTimePrecisionStringFromTimePrecisionCode(timePrecisionCode);
+        if (timePrecisionString != null) influxdbUrl.append("&precision=").append(timePrecisionString);
+        
+        return influxdbUrl.toString();
+    }
+    
+    protected static Map<String,String> getInfluxdbHttpHeaderProperties(String databaseHttpAuthValue, boolean isGzipEnabled) {
+        Map<String,String> influxdbHttpHeaderProperties = new HashMap<>();
+        
+        if (databaseHttpAuthValue != null) influxdbHttpHeaderProperties.put("Authorization", databaseHttpAuthValue);         
+        influxdbHttpHeaderProperties.put("Content-Type", "text/plain; charset=utf-8");
+        if (isGzipEnabled) influxdbHttpHeaderProperties.put("Content-Encoding", "gzip");
+        
+        return influxdbHttpHeaderProperties;
+    }
+
+}
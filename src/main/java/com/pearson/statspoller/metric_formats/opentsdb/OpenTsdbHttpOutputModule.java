@@ -17,16 +17,23 @@ public class OpenTsdbHttpOutputModule {
     private final int numSendRetryAttempts_;
     private final int maxMetricsPerMessage_;
     private final boolean sanitizeMetrics_;
+    private final boolean isGzipEnabled_;
     private final String uniqueId_;
     
     private URL url_;
 
     public OpenTsdbHttpOutputModule(boolean isOutputEnabled, String url, int numSendRetryAttempts, int maxMetricsPerMessage, boolean sanitizeMetrics, String uniqueId) {
+        this(isOutputEnabled, url, numSendRetryAttempts, maxMetricsPerMessage, sanitizeMetrics, false, uniqueId);
+    }
+    
+    public OpenTsdbHttpOutputModule(boolean isOutputEnabled, String url, int numSendRetryAttempts, int maxMetricsPerMessage, boolean sanitizeMetrics, 
+            boolean isGzipEnabled, String uniqueId) {
         this.isOutputEnabled_ = isOutputEnabled;
         this.urlString_ = url;
         this.numSendRetryAttempts_ = numSendRetryAttempts;
         this.maxMetricsPerMessage_ = maxMetricsPerMessage;
         this.sanitizeMetrics_ = sanitizeMetrics;
+        this.isGzipEnabled_ = isGzipEnabled;
         this.uniqueId_ = uniqueId;
         
         try {
@@ -62,6 +69,10 @@ public class OpenTsdbHttpOutputModule {
         return sanitizeMetrics_;
     }
     
+    public boolean isGzipEnabled() {
+        return isGzipEnabled_;
+    }
+    
     public String getUniqueId() {
         return uniqueId_;
     }
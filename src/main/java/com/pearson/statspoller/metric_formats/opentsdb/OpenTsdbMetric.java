@@ -5,12 +5,18 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.pearson.statspoller.metric_formats.GenericMetricFormat;
+import com.pearson.statspoller.metric_formats.MetricByteEncoder;
+import com.pearson.statspoller.metric_formats.MetricNameSanitizer;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetricFormat;
+import com.pearson.statspoller.metric_formats.influxdb.Common;
 import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v1;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v2;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetric_v2;
 import com.pearson.statspoller.utilities.math_utils.MathUtilities;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -22,14 +28,22 @@ import org.slf4j.LoggerFactory;
 /**
  * @author Jeffrey Schmidt
  */
-public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricFormat, GenericMetricFormat, InfluxdbMetricFormat_v1 {
+public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricFormat, GenericMetricFormat, InfluxdbMetricFormat_v1, InfluxdbMetricFormat_v2 {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenTsdbMetric.class.getName());
     
+    // metric values are stored as a primitive long or double when possible, so that creating a metric doesn't require creating a BigDecimal
+    private static final byte VALUE_TYPE_BIG_DECIMAL = 0;
+    private static final byte VALUE_TYPE_LONG = 1;
+    private static final byte VALUE_TYPE_DOUBLE = 2;
+    
     private long hashKey_ = -1;
     
     private final long metricTimestamp_;
     private final BigDecimal metricValue_;
+    private final long metricValueLong_;
+    private final double metricValueDouble_;
+    private final byte metricValueType_;
     private final boolean isTimestampInMilliseconds_;
     private long metricReceivedTimestampInMilliseconds_ = -1;
     
@@ -37,33 +51,34 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
     private final int metricLength_;  // 'metric' refers to the OpenTSDB 'metric name' 
 
     public OpenTsdbMetric(String metric, long metricTimestampInMilliseconds, BigDecimal metricValue, List<OpenTsdbTag> tags) {
-        this.metricTimestamp_ = metricTimestampInMilliseconds;
-        this.metricValue_ = metricValue;
-        this.isTimestampInMilliseconds_ = true;
-        this.metricReceivedTimestampInMilliseconds_ = metricTimestampInMilliseconds;
-        
-        this.metricKey_ = createAndGetMetricKey(metric, tags);
-        
-        if (metric != null) this.metricLength_ = metric.length();
-        else this.metricLength_ = -1;
+        this(metric, metricTimestampInMilliseconds, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, tags, true, metricTimestampInMilliseconds);
     }
     
     public OpenTsdbMetric(String metric, int metricTimestampInSeconds, BigDecimal metricValue, List<OpenTsdbTag> tags) {
-        this.metricTimestamp_ = metricTimestampInSeconds;
-        this.metricValue_ = metricValue;
-        this.isTimestampInMilliseconds_ = false;
-        this.metricReceivedTimestampInMilliseconds_ = metricTimestampInSeconds * 1000;
-        
-        this.metricKey_ = createAndGetMetricKey(metric, tags);
-        
-        if (metric != null) this.metricLength_ = metric.length();
-        else this.metricLength_ = -1;
+        this(metric, metricTimestampInSeconds, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, tags, false, metricTimestampInSeconds * 1000);
     }
     
     public OpenTsdbMetric(String metric, long metricTimestamp, BigDecimal metricValue, List<OpenTsdbTag> tags, 
             boolean isTimestampInMilliseconds, long metricReceivedTimestampInMilliseconds) {
+        this(metric, metricTimestamp, metricValue, 0, 0, VALUE_TYPE_BIG_DECIMAL, tags, isTimestampInMilliseconds, metricReceivedTimestampInMilliseconds);
+    }
+    
+    public OpenTsdbMetric(String metric, long metricTimestampInMilliseconds, long metricValue, List<OpenTsdbTag> tags) {
+        this(metric, metricTimestampInMilliseconds, null, metricValue, 0, VALUE_TYPE_LONG, tags, true, metricTimestampInMilliseconds);
+    }
+    
+    // a NaN or infinite metricValue is treated as a null metric value
+    public OpenTsdbMetric(String metric, long metricTimestampInMilliseconds, double metricValue, List<OpenTsdbTag> tags) {
+        this(metric, metricTimestampInMilliseconds, null, 0, metricValue, VALUE_TYPE_DOUBLE, tags, true, metricTimestampInMilliseconds);
+    }
+    
+    private OpenTsdbMetric(String metric, long metricTimestamp, BigDecimal metricValue, long metricValueLong, double metricValueDouble, byte metricValueType, 
+            List<OpenTsdbTag> tags, boolean isTimestampInMilliseconds, long metricReceivedTimestampInMilliseconds) {
         this.metricTimestamp_ = metricTimestamp;
         this.metricValue_ = metricValue;
+        this.metricValueLong_ = metricValueLong;
+        this.metricValueDouble_ = metricValueDouble;
+        this.metricValueType_ = metricValueType;
         this.isTimestampInMilliseconds_ = isTimestampInMilliseconds;
         this.metricReceivedTimestampInMilliseconds_ = metricReceivedTimestampInMilliseconds;
         
@@ -73,6 +88,86 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         else this.metricLength_ = -1;
     }
 
+    // used when the metric key has already been built (ex- by prefixing another metric's key). 'metricLength' is the length of the metric name at the start of the key.
+    private OpenTsdbMetric(String metricKey, int metricLength, long metricTimestamp, BigDecimal metricValue, long metricValueLong, double metricValueDouble, 
+            byte metricValueType, boolean isTimestampInMilliseconds, long metricReceivedTimestampInMilliseconds) {
+        this.metricTimestamp_ = metricTimestamp;
+        this.metricValue_ = metricValue;
+        this.metricValueLong_ = metricValueLong;
+        this.metricValueDouble_ = metricValueDouble;
+        this.metricValueType_ = metricValueType;
+        this.isTimestampInMilliseconds_ = isTimestampInMilliseconds;
+        this.metricReceivedTimestampInMilliseconds_ = metricReceivedTimestampInMilliseconds;
+        
+        this.metricKey_ = metricKey;
+        this.metricLength_ = metricLength;
+    }
+    
+    /*
+    Returns a copy of this metric, with 'metricPrefix' in front of the metric name. 'prefixedMetricKey' must be 'metricPrefix' + this metric's metric key.
+    The tags aren't re-parsed or re-sorted, & the metric value is shared with this metric (primitive values stay primitive).
+    The copy's timestamp is in milliseconds.
+    */
+    public OpenTsdbMetric getCopyWithMetricPrefix(String metricPrefix, String prefixedMetricKey) {
+        
+        if ((metricKey_ == null) || (metricLength_ < 0) || (metricPrefix == null) || (prefixedMetricKey == null)) return null;
+        
+        long metricTimestampInMilliseconds = getMetricTimestampInMilliseconds();
+        
+        return new OpenTsdbMetric(prefixedMetricKey, metricPrefix.length() + metricLength_, metricTimestampInMilliseconds, 
+                metricValue_, metricValueLong_, metricValueDouble_, metricValueType_, true, metricTimestampInMilliseconds);
+    }
+
+    /*
+    Returns this metric's metric key, but with a different metric name. Ex- "cpu.Usage : host=a" -> "Cpu-Usage : host=a".
+    */
+    public String getMetricKeyWithMetric(String metric) {
+
+        if ((metricKey_ == null) || (metricLength_ < 0) || (metricLength_ > metricKey_.length()) || (metric == null)) return null;
+
+        StringBuilder metricKey = new StringBuilder(metric.length() + metricKey_.length() - metricLength_);
+        metricKey.append(metric).append(metricKey_, metricLength_, metricKey_.length());
+
+        return metricKey.toString();
+    }
+
+    /*
+    Returns a copy of this metric, with a different metric name. 'metricKey' must be the output of getMetricKeyWithMetric(metric), so that the tags aren't re-parsed or re-sorted.
+    The metric value is shared with this metric (primitive values stay primitive), & the timestamps are unchanged.
+    */
+    public OpenTsdbMetric getCopyWithMetric(String metric, String metricKey) {
+
+        if ((metricKey_ == null) || (metricLength_ < 0) || (metric == null) || (metricKey == null)) return null;
+
+        return new OpenTsdbMetric(metricKey, metric.length(), metricTimestamp_, metricValue_, metricValueLong_, metricValueDouble_,
+                metricValueType_, isTimestampInMilliseconds_, metricReceivedTimestampInMilliseconds_);
+    }
+
+    /*
+    Returns this metric's metric key, with 'metricSuffix' right after the metric name. Ex- "cpu.Usage : host=a" -> "cpu.Usage.max : host=a".
+    */
+    public String getSuffixedMetricKey(String metricSuffix) {
+
+        if ((metricKey_ == null) || (metricLength_ < 0) || (metricLength_ > metricKey_.length()) || (metricSuffix == null)) return null;
+
+        StringBuilder suffixedMetricKey = new StringBuilder(metricKey_.length() + metricSuffix.length());
+        suffixedMetricKey.append(metricKey_, 0, metricLength_).append(metricSuffix).append(metricKey_, metricLength_, metricKey_.length());
+
+        return suffixedMetricKey.toString();
+    }
+
+    /*
+    Returns a new metric with the same tags as this metric, but with 'metricSuffix' after the metric name, & with a different timestamp & value.
+    'suffixedMetricKey' must be the output of getSuffixedMetricKey(metricSuffix), so that the tags aren't re-parsed or re-sorted.
+    */
+    public OpenTsdbMetric getCopyWithMetricSuffix(String metricSuffix, String suffixedMetricKey, long metricTimestampInMilliseconds, double metricValue) {
+
+        if ((metricKey_ == null) || (metricLength_ < 0) || (metricSuffix == null) || (suffixedMetricKey == null)) return null;
+
+        return new OpenTsdbMetric(suffixedMetricKey, metricLength_ + metricSuffix.length(), metricTimestampInMilliseconds,
+                null, 0, metricValue, VALUE_TYPE_DOUBLE, true, metricTimestampInMilliseconds);
+    }
+
     public final String createAndGetMetricKey(String metric, List<OpenTsdbTag> tags) {
 
         if (metricKey_ != null) return metricKey_;
@@ -114,31 +209,11 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
     }
     
     /*
-    The input is expected to be an OpenTSDB metric, an OpenTSDB tag key, or an OpenTSDB tag value
+    The input is expected to be an OpenTSDB metric, an OpenTSDB tag key, or an OpenTSDB tag value.
+    Sanitized names are cached (see MetricNameSanitizer).
     */
     public static String getOpenTsdbSanitizedString(String unsanitizedInput) {
-
-        if (unsanitizedInput == null) {
-            return null;
-        }
-
-        StringBuilder sanitizedInput = new StringBuilder();
- 
-        for (int i = 0; i < unsanitizedInput.length(); i++) {
-            char character = unsanitizedInput.charAt(i);
-                    
-            if (Character.isLetterOrDigit(character)) {
-                sanitizedInput.append(character);
-                continue;
-            }
-            
-            if ((character == '-') || (character == '_') || (character == '.') || (character == '/')) {
-                sanitizedInput.append(character);
-                continue;
-            }
-        }
-
-        return sanitizedInput.toString();
+        return MetricNameSanitizer.getOpenTsdbSanitizedString(unsanitizedInput);
     }
 
     @Override
@@ -157,6 +232,21 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return stringBuilder.toString();
     }
     
+    /*
+    Writes the same output as 'getGraphiteFormatString' (encoded as UTF-8) directly into the byte buffer, without creating any intermediate Strings.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeGraphiteFormatBytes(ByteBuffer byteBuffer, boolean sanitizeMetric, boolean substituteCharacters) {
+        
+        if ((metricKey_ == null) || (metricLength_ < 0)) MetricByteEncoder.writeUtf8(byteBuffer, null);
+        else MetricByteEncoder.writeGraphiteSanitized(byteBuffer, metricKey_, 0, Math.min(metricLength_, metricKey_.length()), sanitizeMetric, substituteCharacters);
+        
+        byteBuffer.put((byte) ' ');
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, getMetricTimestampInSeconds());
+    }
+    
     @Override
     public String getOpenTsdbTelnetFormatString(boolean sanitizeMetric) {
         return getOpenTsdbTelnetFormatString(sanitizeMetric, null, null);
@@ -186,6 +276,126 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return stringBuilder.toString();
     }
     
+    /*
+    Writes the same output as 'getOpenTsdbTelnetFormatString' (encoded as UTF-8) directly into the byte buffer.
+    The metric & tags are written straight out of the metric key, so no intermediate Strings (or OpenTsdbTag objects) are created.
+    Uncommon metrics (ex- duplicate tag keys, tags without values) fall back to the String-based method so that the output is always identical.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeOpenTsdbTelnetFormatBytes(ByteBuffer byteBuffer, boolean sanitizeMetric, String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue) {
+        
+        if (!isTelnetFormatBytesSupported(defaultOpenTsdbTagKey, defaultOpenTsdbTagValue)) {
+            MetricByteEncoder.writeUtf8(byteBuffer, getOpenTsdbTelnetFormatString(sanitizeMetric, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue));
+            return;
+        }
+        
+        if (sanitizeMetric) MetricByteEncoder.writeOpenTsdbSanitized(byteBuffer, metricKey_, 0, metricLength_);
+        else MetricByteEncoder.writeUtf8(byteBuffer, metricKey_, 0, metricLength_);
+        
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, metricTimestamp_);
+        byteBuffer.put((byte) ' ');
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        
+        // the tags in the metric key are formatted as "metric : tagKey1=tagValue1 tagKey2=tagValue2"
+        boolean isFirstTag = true;
+        int tagStart = metricLength_ + 3;
+        
+        while (tagStart < metricKey_.length()) {
+            int tagEnd = metricKey_.indexOf(' ', tagStart);
+            if (tagEnd < 0) tagEnd = metricKey_.length();
+            
+            if (tagEnd > tagStart) {
+                if (!isFirstTag) byteBuffer.put((byte) ' ');
+                writeTelnetTag(byteBuffer, metricKey_, tagStart, metricKey_.indexOf('=', tagStart), tagEnd, sanitizeMetric);
+                isFirstTag = false;
+            }
+            
+            tagStart = tagEnd + 1;
+        }
+        
+        if (defaultOpenTsdbTagKey != null) {
+            byteBuffer.put((byte) ' ');
+            writeTelnetTag(byteBuffer, defaultOpenTsdbTagKey, 0, defaultOpenTsdbTagKey.length(), defaultOpenTsdbTagKey.length(), sanitizeMetric);
+            byteBuffer.put((byte) '=');
+            if (sanitizeMetric) MetricByteEncoder.writeOpenTsdbSanitized(byteBuffer, defaultOpenTsdbTagValue, 0, defaultOpenTsdbTagValue.length());
+            else MetricByteEncoder.writeUtf8(byteBuffer, defaultOpenTsdbTagValue);
+        }
+    }
+    
+    /*
+    Writes the metric value the same way as 'getMetricValueString'. Primitive values are written without creating a BigDecimal or a String.
+    */
+    private void writeMetricValueBytes(ByteBuffer byteBuffer) {
+        if (metricValueType_ == VALUE_TYPE_LONG) MetricByteEncoder.writeLong(byteBuffer, metricValueLong_);
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) MetricByteEncoder.writeDouble(byteBuffer, metricValueDouble_);
+        else MetricByteEncoder.writeDecimal(byteBuffer, metricValue_);
+    }
+    
+    /*
+    Writes a "tagKey=tagValue" tag. If 'equalsIndex' == 'end', then only the tag key is written.
+    */
+    private static void writeTelnetTag(ByteBuffer byteBuffer, String string, int start, int equalsIndex, int end, boolean sanitizeMetric) {
+        
+        if (sanitizeMetric) MetricByteEncoder.writeOpenTsdbSanitized(byteBuffer, string, start, equalsIndex);
+        else MetricByteEncoder.writeUtf8(byteBuffer, string, start, equalsIndex);
+        
+        if (equalsIndex == end) return;
+        
+        byteBuffer.put((byte) '=');
+        
+        if (sanitizeMetric) MetricByteEncoder.writeOpenTsdbSanitized(byteBuffer, string, equalsIndex + 1, end);
+        else MetricByteEncoder.writeUtf8(byteBuffer, string, equalsIndex + 1, end);
+    }
+    
+    /*
+    Returns true if the metric key has at least one tag, & every tag in the metric key is a well-formed "tagKey=tagValue" pair with no duplicate tag keys.
+    Those are the only metrics that 'writeOpenTsdbTelnetFormatBytes' writes directly. Everything else takes the String-based path.
+    */
+    private boolean isTelnetFormatBytesSupported(String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue) {
+        
+        if ((metricKey_ == null) || isMetricValueNull() || (metricLength_ < 1) || ((metricLength_ + 3) >= metricKey_.length())) return false;
+        
+        if ((defaultOpenTsdbTagKey != null) && ((defaultOpenTsdbTagKey.indexOf('=') >= 0) || 
+                (defaultOpenTsdbTagValue == null) || defaultOpenTsdbTagValue.isEmpty())) {
+            return false;
+        }
+        
+        int numTags = 0;
+        int tagStart = metricLength_ + 3;
+        
+        while (tagStart < metricKey_.length()) {
+            int tagEnd = metricKey_.indexOf(' ', tagStart);
+            if (tagEnd < 0) tagEnd = metricKey_.length();
+            
+            if (tagEnd > tagStart) {
+                numTags++;
+                int equalsIndex = metricKey_.indexOf('=', tagStart);
+                if ((equalsIndex < 0) || (equalsIndex >= (tagEnd - 1))) return false;
+                
+                // check for a duplicate tag key in the previous tags
+                int tagKeyLength = equalsIndex - tagStart;
+                int previousTagStart = metricLength_ + 3;
+                
+                while (previousTagStart < tagStart) {
+                    int previousTagEnd = metricKey_.indexOf(' ', previousTagStart);
+                    
+                    if ((previousTagEnd > previousTagStart) && (metricKey_.indexOf('=', previousTagStart) == (previousTagStart + tagKeyLength)) &&
+                            metricKey_.regionMatches(previousTagStart, metricKey_, tagStart, tagKeyLength)) {
+                        return false;
+                    }
+                    
+                    previousTagStart = previousTagEnd + 1;
+                }
+            }
+            
+            tagStart = tagEnd + 1;
+        }
+        
+        return numTags > 0;
+    }
+    
     @Override
     public String getOpenTsdbJsonFormatString(boolean sanitizeMetric) {
         return getOpenTsdbJsonFormatString(sanitizeMetric, null, null);
@@ -200,7 +410,7 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
 
         if ((metric == null) || metric.isEmpty()) return null;
         if (metricTimestamp_ < 0) return null;
-        if ((getMetricValue() == null)) return null;
+        if (isMetricValueNull()) return null;
         
         StringBuilder openTsdbJson = new StringBuilder();
 
@@ -244,7 +454,7 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
 
         if ((metric == null) || metric.isEmpty()) return null;
         if (metricTimestamp_ < 0) return null;
-        if ((getMetricValue() == null)) return null;
+        if (isMetricValueNull()) return null;
 
         StringBuilder influxdbJson = new StringBuilder();
 
@@ -289,6 +499,85 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         return influxdbJson.toString();
     }
     
+    @Override
+    public String getInfluxdbV2LineFormatString() {
+        return getInfluxdbV2LineFormatString(Common.TIMESTAMP_PRECISION_NANOSECONDS);
+    }
+    
+    /*
+    The OpenTSDB metric is the measurement, the OpenTSDB tags are the InfluxDB tags (in metric key order), 
+    & the metric value is written to a single float field named 'value'. Tags with an empty key or value are left out (InfluxDB doesn't allow them).
+    */
+    @Override
+    public String getInfluxdbV2LineFormatString(byte timePrecisionCode) {
+        
+        String metric = getMetric();
+        
+        if ((metric == null) || metric.isEmpty()) return null;
+        if (metricTimestamp_ < 0) return null;
+        if (isMetricValueNull()) return null;
+        
+        List<OpenTsdbTag> openTsdbTags = getMetricTagsFromMetricKey();
+        
+        StringBuilder influxdbLine = new StringBuilder();
+        
+        influxdbLine.append(InfluxdbMetric_v2.getInfluxdbV2EscapedMeasurement(metric));
+        
+        if (openTsdbTags != null) {
+            for (OpenTsdbTag tag : openTsdbTags) {
+                if ((tag.getTagKey() == null) || tag.getTagKey().isEmpty() || (tag.getTagValue() == null) || tag.getTagValue().isEmpty()) continue;
+                influxdbLine.append(",").append(InfluxdbMetric_v2.getInfluxdbV2EscapedTagString(tag.getTagKey()));
+                influxdbLine.append("=").append(InfluxdbMetric_v2.getInfluxdbV2EscapedTagString(tag.getTagValue()));
+            }
+        }
+        
+        influxdbLine.append(" value=").append(getMetricValueString());
+        influxdbLine.append(" ").append(InfluxdbMetric_v2.getMetricTimestampFromMilliseconds(timePrecisionCode, getMetricTimestampInMilliseconds()));
+        
+        return influxdbLine.toString();
+    }
+    
+    /*
+    Writes the same output as 'getInfluxdbV2LineFormatString' (encoded as UTF-8) directly into the byte buffer.
+    The measurement & tags are written straight out of the metric key. Uncommon metrics fall back to the String-based method (same as the telnet format).
+    Nothing is written for metrics that 'getInfluxdbV2LineFormatString' would return null for.
+    Throws a BufferOverflowException if the byte buffer doesn't have enough space.
+    */
+    public void writeInfluxdbV2LineFormatBytes(ByteBuffer byteBuffer, byte timePrecisionCode) {
+        
+        if (!isTelnetFormatBytesSupported(null, null) || (metricTimestamp_ < 0)) {
+            String influxdbLine = getInfluxdbV2LineFormatString(timePrecisionCode);
+            if (influxdbLine != null) MetricByteEncoder.writeUtf8(byteBuffer, influxdbLine);
+            return;
+        }
+        
+        MetricByteEncoder.writeInfluxdbV2Escaped(byteBuffer, metricKey_, 0, metricLength_, false);
+        
+        // the tags in the metric key are formatted as "metric : tagKey1=tagValue1 tagKey2=tagValue2"
+        int tagStart = metricLength_ + 3;
+        
+        while (tagStart < metricKey_.length()) {
+            int tagEnd = metricKey_.indexOf(' ', tagStart);
+            if (tagEnd < 0) tagEnd = metricKey_.length();
+            
+            int equalsIndex = metricKey_.indexOf('=', tagStart);
+            
+            if ((tagEnd > tagStart) && (equalsIndex > tagStart)) {
+                byteBuffer.put((byte) ',');
+                MetricByteEncoder.writeInfluxdbV2Escaped(byteBuffer, metricKey_, tagStart, equalsIndex, true);
+                byteBuffer.put((byte) '=');
+                MetricByteEncoder.writeInfluxdbV2Escaped(byteBuffer, metricKey_, equalsIndex + 1, tagEnd, true);
+            }
+            
+            tagStart = tagEnd + 1;
+        }
+        
+        MetricByteEncoder.writeUtf8(byteBuffer, " value=");
+        writeMetricValueBytes(byteBuffer);
+        byteBuffer.put((byte) ' ');
+        MetricByteEncoder.writeLong(byteBuffer, InfluxdbMetric_v2.getMetricTimestampFromMilliseconds(timePrecisionCode, getMetricTimestampInMilliseconds()));
+    }
+    
     public static String getOpenTsdbJson(List<? extends OpenTsdbMetricFormat> openTsdbFormatMetrics, boolean sanitizeMetrics) {
         return getOpenTsdbJson(openTsdbFormatMetrics, sanitizeMetrics, null, null);
     }
@@ -696,19 +985,40 @@ public class OpenTsdbMetric implements GraphiteMetricFormat, OpenTsdbMetricForma
         else return (metricTimestamp_ * 1000);
     }
     
+    /*
+    For metrics that were created with a primitive value, a new BigDecimal is created on every call.
+    */
     public BigDecimal getMetricValue() {
-        return metricValue_;
+        if (metricValueType_ == VALUE_TYPE_LONG) return BigDecimal.valueOf(metricValueLong_);
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) return MathUtilities.getBigDecimalFromDouble(metricValueDouble_);
+        else return metricValue_;
+    }
+    
+    public boolean isMetricValueNull() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return false;
+        if (metricValueType_ == VALUE_TYPE_DOUBLE) return Double.isNaN(metricValueDouble_) || Double.isInfinite(metricValueDouble_);
+        return metricValue_ == null;
     }
     
     @Override
     public String getMetricValueString() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return Long.toString(metricValueLong_);
+        if (metricValueType_ == VALUE_TYPE_DOUBLE) return MathUtilities.getFastPlainStringWithNoTrailingZeros(MathUtilities.getBigDecimalFromDouble(metricValueDouble_));
         if (metricValue_ == null) return null;
         return MathUtilities.getFastPlainStringWithNoTrailingZeros(metricValue_);
     }
     
     @Override
     public BigDecimal getMetricValueBigDecimal() {
-        return metricValue_;
+        return getMetricValue();
+    }
+    
+    @Override
+    public double getMetricValueDouble() {
+        if (metricValueType_ == VALUE_TYPE_LONG) return metricValueLong_;
+        else if (metricValueType_ == VALUE_TYPE_DOUBLE) return metricValueDouble_;
+        else if (metricValue_ == null) return Double.NaN;
+        else return metricValue_.doubleValue();
     }
 
     public List<OpenTsdbTag> getTags() {
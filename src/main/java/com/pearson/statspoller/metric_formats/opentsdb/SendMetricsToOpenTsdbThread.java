@@ -2,14 +2,19 @@ package com.pearson.statspoller.metric_formats.opentsdb;
 
 import java.util.List;
 import com.pearson.statspoller.utilities.network_utils.TcpClient;
+import com.pearson.statspoller.utilities.network_utils.TcpConnectionManager;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.google.common.collect.Lists;
 import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
+import com.pearson.statspoller.output.EncodedMetricBatch;
+import com.pearson.statspoller.output.MetricEncodingCache;
+import com.pearson.statspoller.utilities.web_utils.GzipHttpBodyWriter;
 import com.pearson.statspoller.utilities.web_utils.HttpRequest;
+import com.pearson.statspoller.utilities.web_utils.HttpRequestExecutor;
+import java.util.ArrayList;
 
 /**
  * @author Jeffrey Schmidt
@@ -21,6 +26,9 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
     private static final Map<String,String> OPENTSDB_HTTP_HEADER_PROPERTIES = getOpenTsdbHttpHeaderProperties();
     private static final Map<String,String> OPENTSDB_HTTP_HEADER_PROPERTIES_GZIP = getOpenTsdbHttpHeaderProperties_Gzip();
     
+    // opentsdb telnet 'put' lines are written to the socket (& spooled) in groups of this many lines
+    private static final int MAX_METRICS_PER_TELNET_MESSAGE = 1000;
+    
     private final List<? extends OpenTsdbMetricFormat> openTsdbMetrics_;
     private final boolean sanitizeMetrics_;
     private final String defaultOpenTsdbTagKey_;
@@ -32,8 +40,11 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
     private final int readTimeoutInMs_;
     private final int numSendRetries_;
     private final int maxMetricsPerMessage_;
+    private final boolean isGzipEnabled_;
     
     private HttpRequest currentHttpRequest_ = null;
+    private TcpConnectionManager tcpConnectionManager_ = null;
+    private TcpClient tcpClient_ = null;
     
     // constructor for outputting to opentsdb telnet
     public SendMetricsToOpenTsdbThread(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, 
@@ -50,6 +61,7 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         this.readTimeoutInMs_ = -1;
         this.numSendRetries_ = numSendRetries;
         this.maxMetricsPerMessage_ = -1;
+        this.isGzipEnabled_ = false;
         this.threadId_ = threadId;
         
         this.outputEndpoint_ = openTsdbHost_ + ":" + openTsdbPort_;
@@ -59,6 +71,15 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
     public SendMetricsToOpenTsdbThread(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, 
             boolean sanitizeMetrics, String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue, 
             URL openTsdbUrl, int connectTimeoutInMs, int readTimeoutInMs, int numSendRetries, int maxMetricsPerMessage, String threadId) {
+        this(openTsdbMetrics, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue, openTsdbUrl, connectTimeoutInMs, readTimeoutInMs, 
+                numSendRetries, maxMetricsPerMessage, false, threadId);
+    }
+    
+    // constructor for outputting to opentsdb http. if gzip is enabled, the json is gzip compressed as it is streamed to opentsdb.
+    public SendMetricsToOpenTsdbThread(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, 
+            boolean sanitizeMetrics, String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue, 
+            URL openTsdbUrl, int connectTimeoutInMs, int readTimeoutInMs, int numSendRetries, int maxMetricsPerMessage, 
+            boolean isGzipEnabled, String threadId) {
         this.openTsdbMetrics_ = openTsdbMetrics;
         this.sanitizeMetrics_ = sanitizeMetrics;
         this.defaultOpenTsdbTagKey_ = defaultOpenTsdbTagKey;
@@ -70,6 +91,7 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         this.readTimeoutInMs_ = readTimeoutInMs;
         this.numSendRetries_ = numSendRetries;
         this.maxMetricsPerMessage_ = maxMetricsPerMessage;
+        this.isGzipEnabled_ = isGzipEnabled;
         this.threadId_ = threadId;
         
         if (openTsdbUrl != null) this.outputEndpoint_ = openTsdbUrl_.toExternalForm();
@@ -83,7 +105,7 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
             return;
         }
         
-        if ((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) return;
+        if (((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) && !isSpoolReplayPending()) return;
         
         long sendToOpenTsdbTimeStart = System.currentTimeMillis();
 
@@ -92,6 +114,8 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         else if (openTsdbUrl_ != null) isSendSuccess = sendMetricsToOpenTsdb_HTTP();
         else return;
 
+        if (!isSendSuccess) didSendFail_ = true;
+
         long sendToOpenTsdbTimeElasped = System.currentTimeMillis() - sendToOpenTsdbTimeStart;
 
         String outputString = "";         
@@ -117,6 +141,11 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         isShuttingDown_ = true;
         
         try {
+            HttpRequestExecutor httpRequestExecutor = httpRequestExecutor_;
+            if (httpRequestExecutor != null) {
+                httpRequestExecutor.abort();
+            }
+            
             if (currentHttpRequest_ != null) {
                 currentHttpRequest_.setContinueRetrying(false);
                 currentHttpRequest_.closeResources();
@@ -131,9 +160,13 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         return isFinished_;
     }
     
+    public void setTcpConnectionManager(TcpConnectionManager tcpConnectionManager) {
+        this.tcpConnectionManager_ = tcpConnectionManager;
+    }
+    
     private boolean sendMetricsToOpenTsdb_Telnet() {
 
-        if ((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) {
+        if (((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) && !isSpoolReplayPending()) {
             return true;
         } 
         
@@ -143,87 +176,165 @@ public class SendMetricsToOpenTsdbThread extends SendMetricsToOutputModuleThread
         
         boolean isSendAllSuccess = true;
         
-        // connect to opentsdb
-        TcpClient tcpClient = new TcpClient(openTsdbHost_, openTsdbPort_, true, connectTimeoutInMs_);
-        int retryCounter = 0;
-        while (!tcpClient.isConnected() && (retryCounter < numSendRetries_) && !isShuttingDown_) {
-            tcpClient.reset();
-            retryCounter++;
-        }
+        // encode the metrics (or reuse the encoding that another opentsdb telnet output module already did)
+        EncodedMetricBatch openTsdbTelnetBatch = (metricEncodingCache_ != null) ?
+                metricEncodingCache_.getOpenTsdbTelnetBatch(openTsdbMetrics_, sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_) :
+                MetricEncodingCache.encodeOpenTsdbTelnet(openTsdbMetrics_, sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_);
         
-        // if connecting to opentsdb failed, give up
-        if (!tcpClient.isConnected()) {
-            logger.error("Error creating TCP connection to OpenTSDB telnet. Endpoint=\"" + outputEndpoint_ + "\"");
-            tcpClient.close();
-            return false;
-        }
+        // connect to opentsdb (or reuse the existing connection). if the circuit is open, then opentsdb is assumed to be down & isn't connected to.
+        TcpClient tcpClient = isCircuitOpen_ ? null : getConnectedTcpClient();
+        boolean isConnected = (tcpClient != null) && tcpClient.isConnected();
+        boolean isConnectionHealthy = false;
         
-        // send metrics to opentsdb
-        for (OpenTsdbMetricFormat openTsdbMetric : openTsdbMetrics_) {
-            if (isShuttingDown_) {
-                isSendAllSuccess = false;
-                continue;
+        // a managed connection stays locked until it is released, so it is released no matter how sending ends (ex- an exception, or this thread being abandoned)
+        try {
+            // if connecting to opentsdb failed, spool the metrics (if spooling is enabled) & give up
+            if (!isConnected && !isCircuitOpen_) {
+                logger.error("Error creating TCP connection to OpenTSDB telnet. Endpoint=\"" + outputEndpoint_ + "\"");
+                didEncounterUnreachableEndpoint_ = true;
             }
             
-            boolean isSendSucess = tcpClient.send("put " + openTsdbMetric.getOpenTsdbTelnetFormatString(sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_) + "\n", 
-                    numSendRetries_, false, false);
-
-            if (!isSendSucess) {
-                logger.error("Error sending message to OpenTSDB telnet. Endpoint=\"" + outputEndpoint_ + "\"");
-                isSendAllSuccess = false;
+            if (!isConnected) isSendAllSuccess = false;
+            
+            // send metrics to opentsdb. metrics that couldn't be sent are spooled (if spooling is enabled).
+            // each message is a range of 'put' lines from the encoded batch, so messages are sent (& spooled) without being re-encoded.
+            // once a message fails (all of its retries included), the rest of the batch is spooled without trying to send it.
+            int numSpooledMessages = 0;
+            for (int i = 0; i < openTsdbTelnetBatch.getNumRecords(); i += MAX_METRICS_PER_TELNET_MESSAGE) {
+                int messageOffset = openTsdbTelnetBatch.getRecordOffset(i);
+                int messageLength = openTsdbTelnetBatch.getLength(i, Math.min(i + MAX_METRICS_PER_TELNET_MESSAGE, openTsdbTelnetBatch.getNumRecords()));
+                
+                boolean isSendAttempted = isConnected && isSendAllSuccess && !isShuttingDown_;
+                boolean isSendSuccess = isSendAttempted && 
+                        tcpClient.send(openTsdbTelnetBatch.getBytes(), messageOffset, messageLength, numSendRetries_, false, false);
+                if (isSendAttempted) recordSendStats(isSendSuccess ? messageLength : 0, tcpClient.getNumRetriesOfLastSend());
+                
+                if (isSendAttempted && !isSendSuccess) {
+                    logger.error("Error sending message to OpenTSDB telnet. Endpoint=\"" + outputEndpoint_ + "\"");
+                    didEncounterUnreachableEndpoint_ = true;
+                }
+                
+                if (!isSendSuccess) {
+                    if (spoolMessage(openTsdbTelnetBatch.getBytes(), messageOffset, messageLength)) numSpooledMessages++;
+                    isSendAllSuccess = false;
+                }
             }
+            
+            logSpooledMessages(numSpooledMessages);
+            
+            if (!isConnected) return false;
+            
+            // opentsdb is reachable, so send some of the previously spooled messages
+            if (isSendAllSuccess) {
+                tcpClient_ = tcpClient;
+                replaySpooledMessages();
+            }
+            
+            isConnectionHealthy = isSendAllSuccess;
+            
+            return isSendAllSuccess;
+        }
+        finally {
+            // disconnect from opentsdb (or keep the connection open for the next output interval)
+            tcpClient_ = null;
+            releaseTcpClient(tcpClient, isConnectionHealthy);
+        }
+    }
+    
+    private TcpClient getConnectedTcpClient() {
+        
+        if (tcpConnectionManager_ != null) {
+            return tcpConnectionManager_.acquire(connectTimeoutInMs_, numSendRetries_);
         }
         
-        // disconnect from opentsdb
-        tcpClient.close();
+        TcpClient tcpClient = new TcpClient(openTsdbHost_, openTsdbPort_, true, connectTimeoutInMs_);
+        int retryCounter = 0;
+        while (!tcpClient.isConnected() && (retryCounter < numSendRetries_) && !isShuttingDown_) {
+            tcpClient.reset();
+            retryCounter++;
+        }
         
-        return isSendAllSuccess;
+        return tcpClient;
+    }
+    
+    private void releaseTcpClient(TcpClient tcpClient, boolean isConnectionHealthy) {
+        if (tcpConnectionManager_ != null) tcpConnectionManager_.release(tcpClient, isConnectionHealthy);
+        else if (tcpClient != null) tcpClient.close();
     }
     
     private boolean sendMetricsToOpenTsdb_HTTP() {
       
-        if ((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) {
+        if (((openTsdbMetrics_ == null) || openTsdbMetrics_.isEmpty()) && !isSpoolReplayPending()) {
             return true;
         } 
         
-        if ((outputEndpoint_ == null) || (maxMetricsPerMessage_ <= 0) || (numSendRetries_ < 0) || (connectTimeoutInMs_ < 0) || (readTimeoutInMs_ < 0) || isShuttingDown_) {
+        if ((openTsdbMetrics_ == null) || (outputEndpoint_ == null) || (maxMetricsPerMessage_ <= 0) || (numSendRetries_ < 0) || 
+                (connectTimeoutInMs_ < 0) || (readTimeoutInMs_ < 0) || isShuttingDown_) {
             return false;
         } 
         
-        boolean isAllSendSuccess = true;
         
-        List openTsdbMetricsList = openTsdbMetrics_;
-        List<List<? extends OpenTsdbMetricFormat>> partitionedList = Lists.partition(openTsdbMetricsList, maxMetricsPerMessage_);
-                
-        for (List openTsdbMetricsPartitionedList : partitionedList) {
-            if (isShuttingDown_) {
-                isAllSendSuccess = false;
-                continue;
+        // encode the metrics (or reuse the encoding that another opentsdb http output module already did)
+        EncodedMetricBatch openTsdbJsonBatch = (metricEncodingCache_ != null) ?
+                metricEncodingCache_.getOpenTsdbJsonBatch(openTsdbMetrics_, sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_) :
+                MetricEncodingCache.encodeOpenTsdbJson(openTsdbMetrics_, sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_);
+        
+        // gzip mode streams the json straight out of the encoded batch, so the json array is only built if the message needs to be spooled
+        List<HttpRequest> httpRequests = new ArrayList<>();
+        
+        for (int i = 0; i < openTsdbJsonBatch.getNumRecords(); i += maxMetricsPerMessage_) {
+            int toRecordIndex = Math.min(i + maxMetricsPerMessage_, openTsdbJsonBatch.getNumRecords());
+            
+            if (isGzipEnabled_) {
+                httpRequests.add(new HttpRequest(outputEndpoint_, OPENTSDB_HTTP_HEADER_PROPERTIES_GZIP, new GzipHttpBodyWriter(MetricEncodingCache.getJsonArrayHttpBodyWriter(openTsdbJsonBatch, i, toRecordIndex)), 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true));
+            }
+            else {
+                httpRequests.add(new HttpRequest(outputEndpoint_, OPENTSDB_HTTP_HEADER_PROPERTIES, MetricEncodingCache.getJsonArray(openTsdbJsonBatch, i, toRecordIndex), 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true));
             }
+        }
+        
+        // up to 'maxConcurrentHttpRequests_' messages are in flight at once. messages that couldn't be delivered are spooled.
+        return sendHttpRequests(httpRequests, openTsdbJsonBatch, maxMetricsPerMessage_, true, "OpenTSDB HTTP");
+    }
+    
+    @Override
+    protected boolean sendSpooledMessage(byte[] message) {
+        
+        if (isShuttingDown_) return false;
+        
+        if (openTsdbHost_ != null) {
+            if (tcpClient_ == null) return false;
             
-            String openTsdbMetricJson = OpenTsdbMetric.getOpenTsdbJson(openTsdbMetricsPartitionedList, sanitizeMetrics_, defaultOpenTsdbTagKey_, defaultOpenTsdbTagValue_);
+            boolean isSendSuccess = tcpClient_.send(message, 0, message.length, numSendRetries_, false, true);
+            recordSendStats(isSendSuccess ? message.length : 0, tcpClient_.getNumRetriesOfLastSend());
+            if (!isSendSuccess) logger.error("Error sending message to OpenTSDB telnet. Endpoint=\"" + outputEndpoint_ + "\"");
             
-            if (openTsdbMetricJson != null) {
-                HttpRequest httpRequest = new HttpRequest(outputEndpoint_, OPENTSDB_HTTP_HEADER_PROPERTIES, openTsdbMetricJson, 
-                        "UTF-8", "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
-                
-                currentHttpRequest_ = httpRequest;
-                httpRequest.makeRequest();
-                
-                if (httpRequest.didEncounterConnectionError() && httpRequest.didHitRetryAttemptLimit() && !httpRequest.isHttpRequestSuccess()) {
-                    isAllSendSuccess = false;
-                    logger.error("Aborting OpenTSDB HTTP output. Couldn't connect to OpenTSDB endpoint. Endpoint=\"" + outputEndpoint_ + "\"");
-                    break;
-                }
-                
-                if (!httpRequest.isHttpRequestSuccess()) isAllSendSuccess = false;
+            return isSendSuccess;
+        }
+        else if (openTsdbUrl_ != null) {
+            // spooled messages are always uncompressed json
+            HttpRequest httpRequest;
+            
+            if (isGzipEnabled_) {
+                httpRequest = new HttpRequest(outputEndpoint_, OPENTSDB_HTTP_HEADER_PROPERTIES_GZIP, new GzipHttpBodyWriter(message), 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
             }
             else {
-                isAllSendSuccess = false;
+                httpRequest = new HttpRequest(outputEndpoint_, OPENTSDB_HTTP_HEADER_PROPERTIES, message, 
+                        "POST", connectTimeoutInMs_, readTimeoutInMs_, numSendRetries_, true);
             }
+            
+            currentHttpRequest_ = httpRequest;
+            httpRequest.makeRequest();
+            recordSendStats(httpRequest);
+            
+            // if opentsdb received the message, but rejected it, then there is no point in keeping it in the spool
+            return httpRequest.isHttpRequestSuccess() || !httpRequest.didEncounterConnectionError();
         }
         
-        return isAllSendSuccess;
+        return false;
     }
 
     protected static Map<String,String> getOpenTsdbHttpHeaderProperties() {
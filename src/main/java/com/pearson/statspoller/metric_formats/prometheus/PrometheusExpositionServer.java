@@ -0,0 +1,147 @@
+package com.pearson.statspoller.metric_formats.prometheus;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves a PrometheusMetricIndex at '/metrics', in the Prometheus text exposition format, so that Prometheus can scrape StatsPoller.
+ * 
+ * Responses use chunked transfer encoding & are written to the connection as the index is iterated, so the size of a scrape's response doesn't affect memory usage.
+ * Scrapes are handled on a small, dedicated thread pool, & never block metric collection or output.
+ * 
+ * @author Jeffrey Schmidt
+ */
+public class PrometheusExpositionServer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusExpositionServer.class.getName());
+    
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private static final int NUM_SCRAPE_THREADS = 2;
+    private static final int RESPONSE_BUFFER_SIZE_IN_BYTES = 65536;
+    
+    private final PrometheusMetricIndex prometheusMetricIndex_;
+    private final int port_;
+    
+    private HttpServer httpServer_ = null;
+    private ExecutorService executorService_ = null;
+    
+    public PrometheusExpositionServer(PrometheusMetricIndex prometheusMetricIndex, int port) {
+        this.prometheusMetricIndex_ = prometheusMetricIndex;
+        this.port_ = port;
+    }
+    
+    /*
+    Returns true if the server was started (or was already running).
+    */
+    public synchronized boolean start() {
+        
+        if (httpServer_ != null) return true;
+        if (prometheusMetricIndex_ == null) return false;
+        
+        try {
+            executorService_ = Executors.newFixedThreadPool(NUM_SCRAPE_THREADS, getThreadFactory());
+            
+            httpServer_ = HttpServer.create(new InetSocketAddress(port_), 0);
+            httpServer_.createContext("/metrics", new ExpositionHandler());
+            httpServer_.setExecutor(executorService_);
+            httpServer_.start();
+            
+            logger.info("Prometheus exposition endpoint started. Port=" + getPort());
+            
+            return true;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            stop();
+            return false;
+        }
+    }
+    
+    public synchronized void stop() {
+        
+        try {
+            if (httpServer_ != null) httpServer_.stop(0);
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        
+        if (executorService_ != null) executorService_.shutdownNow();
+        
+        httpServer_ = null;
+        executorService_ = null;
+    }
+    
+    /*
+    The port that the server is listening on. Useful when the server was created with port 0 (any free port).
+    */
+    public synchronized int getPort() {
+        if (httpServer_ == null) return port_;
+        else return httpServer_.getAddress().getPort();
+    }
+    
+    private final class ExpositionHandler implements HttpHandler {
+        
+        @Override
+        public void handle(HttpExchange httpExchange) throws IOException {
+            
+            try {
+                String requestMethod = httpExchange.getRequestMethod();
+                
+                if (!"GET".equalsIgnoreCase(requestMethod) && !"HEAD".equalsIgnoreCase(requestMethod)) {
+                    httpExchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                
+                httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                
+                if ("HEAD".equalsIgnoreCase(requestMethod)) {
+                    httpExchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                
+                // response length 0 = chunked transfer encoding
+                httpExchange.sendResponseHeaders(200, 0);
+                
+                OutputStream outputStream = new BufferedOutputStream(httpExchange.getResponseBody(), RESPONSE_BUFFER_SIZE_IN_BYTES);
+                prometheusMetricIndex_.writeExpositionFormat(outputStream);
+                outputStream.flush();
+            }
+            catch (Exception e) {
+                logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+            finally {
+                httpExchange.close();
+            }
+        }
+    
+    }
+    
+    private static ThreadFactory getThreadFactory() {
+        
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PrometheusExpositionServer-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
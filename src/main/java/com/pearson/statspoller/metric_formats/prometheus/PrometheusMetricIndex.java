@@ -0,0 +1,274 @@
+package com.pearson.statspoller.metric_formats.prometheus;
+
+import com.pearson.statspoller.metric_formats.MetricByteEncoder;
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recent value (& timestamp) of every metric series that StatsPoller has output, so that they can be served in the Prometheus text exposition format.
+ * 
+ * Each series' Prometheus name & labels are built (& UTF-8 encoded) once, when the series is first seen. After that, updating a series only sets its value & timestamp,
+ * & rendering a series only copies its pre-encoded bytes. Metrics that map to the same Prometheus series (ex- 'a.b' & 'a_b') share a single series.
+ * 
+ * Updates are expected to come from a single thread (the output thread). Rendering can happen on any thread, at the same time as updates, without locking.
+ * 
+ * @author Jeffrey Schmidt
+ */
+public class PrometheusMetricIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusMetricIndex.class.getName());
+    
+    // values are written as plain numbers with (at most) 15 significant digits, so a value can be up to 341 bytes long (ex- -4.9E-324 is "-0." + 323 zeros + 15 digits).
+    // the timestamp is at most 20 bytes, & there are 2 spaces & a line feed.
+    private static final int MAX_VALUE_LENGTH = 341;
+    private static final int MAX_TIMESTAMP_LENGTH = 20;
+    
+    // the value & timestamp of a single line of the exposition format are written to this much space, before being copied to the output stream
+    private static final int MAX_VALUE_AND_TIMESTAMP_LENGTH = MAX_VALUE_LENGTH + MAX_TIMESTAMP_LENGTH + 3;
+    
+    // k=metric key, v=series. lets repeat metrics skip building their prometheus series name.
+    private final ConcurrentHashMap<String,Series> seriesByMetricKey_ = new ConcurrentHashMap<>();
+    
+    // k=prometheus series name (name + labels), v=series
+    private final ConcurrentHashMap<String,Series> seriesBySeriesName_ = new ConcurrentHashMap<>();
+    
+    /*
+    Sets the latest value of each metric's series. Only GraphiteMetric & OpenTsdbMetric objects are indexed. Metrics with null/NaN values are skipped.
+    */
+    public void updateMetrics(List<?> metrics) {
+        
+        if (metrics == null) return;
+        
+        long currentTimeInMs = System.currentTimeMillis();
+        
+        for (Object metric : metrics) {
+            try {
+                if (metric instanceof GraphiteMetric) {
+                    GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+                    if (graphiteMetric.isMetricValueNull()) continue;
+                    
+                    Series series = getSeries(graphiteMetric.getMetricKey(), metric);
+                    if (series != null) series.update(graphiteMetric.getMetricValueDouble(), graphiteMetric.getMetricTimestampInMilliseconds(), currentTimeInMs);
+                }
+                else if (metric instanceof OpenTsdbMetric) {
+                    OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+                    if (openTsdbMetric.isMetricValueNull()) continue;
+                    
+                    Series series = getSeries(openTsdbMetric.getMetricKey(), metric);
+                    if (series != null) series.update(openTsdbMetric.getMetricValueDouble(), openTsdbMetric.getMetricTimestampInMilliseconds(), currentTimeInMs);
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+    }
+    
+    private Series getSeries(String metricKey, Object metric) {
+        
+        if (metricKey == null) return null;
+        
+        Series series = seriesByMetricKey_.get(metricKey);
+        if (series != null) return series;
+        
+        String seriesName = null;
+        if (metric instanceof GraphiteMetric) seriesName = getPrometheusSeriesName((GraphiteMetric) metric);
+        else if (metric instanceof OpenTsdbMetric) seriesName = getPrometheusSeriesName((OpenTsdbMetric) metric);
+        if (seriesName == null) return null;
+        
+        series = seriesBySeriesName_.get(seriesName);
+        
+        if (series == null) {
+            Series newSeries = new Series(seriesName.getBytes(StandardCharsets.UTF_8));
+            Series existingSeries = seriesBySeriesName_.putIfAbsent(seriesName, newSeries);
+            series = (existingSeries != null) ? existingSeries : newSeries;
+        }
+        
+        seriesByMetricKey_.put(metricKey, series);
+        
+        return series;
+    }
+    
+    /*
+    Removes every series that hasn't been updated in the last 'maxSeriesAgeInMs' milliseconds. Keeps series from metrics that stopped being collected from living forever.
+    */
+    public void removeExpiredSeries(long maxSeriesAgeInMs) {
+        
+        if (maxSeriesAgeInMs <= 0) return;
+        
+        long oldestAllowedUpdateTimeInMs = System.currentTimeMillis() - maxSeriesAgeInMs;
+        
+        Iterator<Map.Entry<String,Series>> seriesIterator = seriesBySeriesName_.entrySet().iterator();
+        while (seriesIterator.hasNext()) {
+            if (seriesIterator.next().getValue().lastUpdatedTimestampInMs_ < oldestAllowedUpdateTimeInMs) seriesIterator.remove();
+        }
+        
+        Iterator<Map.Entry<String,Series>> metricKeyIterator = seriesByMetricKey_.entrySet().iterator();
+        while (metricKeyIterator.hasNext()) {
+            if (metricKeyIterator.next().getValue().lastUpdatedTimestampInMs_ < oldestAllowedUpdateTimeInMs) metricKeyIterator.remove();
+        }
+    }
+    
+    /*
+    Writes every series in the Prometheus text exposition format (version 0.0.4) -- one "name{labels} value timestamp" line per series.
+    Series are written straight to the output stream as they are iterated, so the response is never fully held in memory. 
+    The caller is expected to buffer the output stream.
+    */
+    public void writeExpositionFormat(OutputStream outputStream) throws IOException {
+        
+        ByteBuffer valueAndTimestampBuffer = ByteBuffer.allocate(MAX_VALUE_AND_TIMESTAMP_LENGTH);
+        
+        for (Series series : seriesBySeriesName_.values()) {
+            // read the timestamp first. if an update is in progress, the value is never older than the timestamp.
+            long timestampInMs = series.timestampInMs_;
+            double value = series.value_;
+            
+            valueAndTimestampBuffer.clear();
+            valueAndTimestampBuffer.put((byte) ' ');
+            MetricByteEncoder.writeDouble(valueAndTimestampBuffer, value);
+            valueAndTimestampBuffer.put((byte) ' ');
+            MetricByteEncoder.writeLong(valueAndTimestampBuffer, timestampInMs);
+            valueAndTimestampBuffer.put((byte) '\n');
+            
+            outputStream.write(series.seriesNameBytes_);
+            outputStream.write(valueAndTimestampBuffer.array(), 0, valueAndTimestampBuffer.position());
+        }
+    }
+    
+    public int getNumSeries() {
+        return seriesBySeriesName_.size();
+    }
+    
+    public void clear() {
+        seriesByMetricKey_.clear();
+        seriesBySeriesName_.clear();
+    }
+    
+    /*
+    A Graphite metric path becomes the Prometheus metric name. Graphite metrics have no labels.
+    */
+    protected static String getPrometheusSeriesName(GraphiteMetric graphiteMetric) {
+        return getPrometheusSanitizedName(graphiteMetric.getMetricPath(), true);
+    }
+    
+    /*
+    An OpenTSDB metric becomes the Prometheus metric name, & the OpenTSDB tags become Prometheus labels.
+    Tags whose (sanitized) key is a duplicate of an earlier tag's key are left out, since Prometheus doesn't allow duplicate label names.
+    */
+    protected static String getPrometheusSeriesName(OpenTsdbMetric openTsdbMetric) {
+        
+        String metricName = getPrometheusSanitizedName(openTsdbMetric.getMetric(), true);
+        if (metricName == null) return null;
+        
+        List<OpenTsdbTag> openTsdbTags = openTsdbMetric.getTags();
+        if ((openTsdbTags == null) || openTsdbTags.isEmpty()) return metricName;
+        
+        StringBuilder seriesName = new StringBuilder(metricName.length() + (openTsdbTags.size() * 24));
+        seriesName.append(metricName).append('{');
+        
+        Set<String> labelNames = new HashSet<>();
+        
+        for (OpenTsdbTag openTsdbTag : openTsdbTags) {
+            String labelName = getPrometheusSanitizedName(openTsdbTag.getTagKey(), false);
+            if ((labelName == null) || (openTsdbTag.getTagValue() == null) || !labelNames.add(labelName)) continue;
+            
+            if (labelNames.size() > 1) seriesName.append(',');
+            seriesName.append(labelName).append("=\"");
+            appendEscapedLabelValue(seriesName, openTsdbTag.getTagValue());
+            seriesName.append('"');
+        }
+        
+        if (labelNames.isEmpty()) return metricName;
+        
+        seriesName.append('}');
+        
+        return seriesName.toString();
+    }
+    
+    /*
+    Prometheus metric names must match [a-zA-Z_:][a-zA-Z0-9_:]*, & label names must match [a-zA-Z_][a-zA-Z0-9_]*.
+    Invalid characters are replaced with '_'. Names that start with a digit are prefixed with '_'. Returns null for null/empty input.
+    */
+    protected static String getPrometheusSanitizedName(String unsanitizedName, boolean isMetricName) {
+        
+        if ((unsanitizedName == null) || unsanitizedName.isEmpty()) return null;
+        
+        StringBuilder sanitizedName = null;
+        
+        for (int i = 0; i < unsanitizedName.length(); i++) {
+            char character = unsanitizedName.charAt(i);
+            
+            boolean isValidCharacter = ((character >= 'a') && (character <= 'z')) || ((character >= 'A') && (character <= 'Z')) || 
+                    ((character >= '0') && (character <= '9')) || (character == '_') || (isMetricName && (character == ':'));
+            
+            if (isValidCharacter && (sanitizedName == null)) continue;
+            
+            if (sanitizedName == null) {
+                sanitizedName = new StringBuilder(unsanitizedName.length() + 1);
+                sanitizedName.append(unsanitizedName, 0, i);
+            }
+            
+            sanitizedName.append(isValidCharacter ? character : '_');
+        }
+        
+        String name = (sanitizedName == null) ? unsanitizedName : sanitizedName.toString();
+        
+        char firstCharacter = name.charAt(0);
+        if ((firstCharacter >= '0') && (firstCharacter <= '9')) name = "_" + name;
+        
+        return name;
+    }
+    
+    /*
+    Label values can contain any UTF-8 character. Backslashes, double-quotes, & line feeds are escaped.
+    */
+    private static void appendEscapedLabelValue(StringBuilder stringBuilder, String labelValue) {
+        
+        for (int i = 0; i < labelValue.length(); i++) {
+            char character = labelValue.charAt(i);
+            
+            if (character == '\\') stringBuilder.append("\\\\");
+            else if (character == '"') stringBuilder.append("\\\"");
+            else if (character == '\n') stringBuilder.append("\\n");
+            else stringBuilder.append(character);
+        }
+    }
+    
+    private static final class Series {
+        
+        private final byte[] seriesNameBytes_;
+        
+        private volatile double value_;
+        private volatile long timestampInMs_;
+        private volatile long lastUpdatedTimestampInMs_;
+        
+        private Series(byte[] seriesNameBytes) {
+            this.seriesNameBytes_ = seriesNameBytes;
+        }
+        
+        /*
+        The value is set before the timestamp, so a reader that reads the timestamp first never pairs a new timestamp with an old value.
+        */
+        private void update(double value, long timestampInMs, long currentTimeInMs) {
+            value_ = value;
+            timestampInMs_ = timestampInMs;
+            lastUpdatedTimestampInMs_ = currentTimeInMs;
+        }
+    
+    }
+
+}
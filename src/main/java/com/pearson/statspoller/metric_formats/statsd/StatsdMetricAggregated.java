@@ -173,6 +173,12 @@ public class StatsdMetricAggregated implements GraphiteMetricFormat, OpenTsdbMet
         return metricValue_;
     }
     
+    @Override
+    public double getMetricValueDouble() {
+        if (metricValue_ == null) return Double.NaN;
+        return metricValue_.doubleValue();
+    }
+    
     @Override
     public String getMetricValueString() {
         if (metricValue_ == null) return null;
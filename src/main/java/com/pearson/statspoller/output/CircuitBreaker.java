@@ -0,0 +1,110 @@
+package com.pearson.statspoller.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks whether an output module's endpoint is reachable, so that a dead endpoint fails fast instead of costing a full set of connection timeouts every send.
+ *
+ * Closed    : Sends go to the endpoint as normal.
+ * Open      : After 'failureThreshold' consecutive failed sends, the endpoint is assumed to be down. Sends skip the endpoint (& spool, if spooling is enabled).
+ * Half-open : Once the open time has elapsed, a single probe send is let through. If it works, the breaker closes.
+ *             If it fails, the breaker re-opens & the open time doubles (up to the max open time).
+ *
+ * @author Jeffrey Schmidt
+ */
+public class CircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class.getName());
+    
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_HALF_OPEN = 1;
+    public static final int STATE_OPEN = 2;
+    
+    private final String outputModuleUniqueId_;
+    private final int failureThreshold_;
+    private final long minOpenTimeInMs_;
+    private final long maxOpenTimeInMs_;
+    
+    private int state_ = STATE_CLOSED;
+    private int numConsecutiveFailures_ = 0;
+    private long openTimeInMs_ = 0;
+    private long nextProbeTimestampInMs_ = 0;
+    private long numTimesOpened_ = 0;
+    
+    public CircuitBreaker(String outputModuleUniqueId, int failureThreshold, long minOpenTimeInMs, long maxOpenTimeInMs) {
+        this.outputModuleUniqueId_ = outputModuleUniqueId;
+        this.failureThreshold_ = (failureThreshold < 1) ? 1 : failureThreshold;
+        this.minOpenTimeInMs_ = (minOpenTimeInMs < 0) ? 0 : minOpenTimeInMs;
+        this.maxOpenTimeInMs_ = (maxOpenTimeInMs < minOpenTimeInMs_) ? minOpenTimeInMs_ : maxOpenTimeInMs;
+    }
+    
+    /*
+    Returns true if the next send should go to the endpoint.
+    When the breaker is open & its open time has elapsed, this moves it to half-open & lets the caller's send through as the probe.
+    */
+    public synchronized boolean isSendAllowed() {
+        
+        if (state_ == STATE_CLOSED) return true;
+        
+        if ((state_ == STATE_OPEN) && (System.currentTimeMillis() >= nextProbeTimestampInMs_)) {
+            state_ = STATE_HALF_OPEN;
+            logger.info("Circuit breaker is half-open, probing endpoint. OutputModule=" + outputModuleUniqueId_);
+            return true;
+        }
+        
+        return false;
+    }
+    
+    public synchronized void recordSuccess() {
+        
+        if (state_ != STATE_CLOSED) {
+            logger.info("Circuit breaker closed, endpoint is reachable. OutputModule=" + outputModuleUniqueId_);
+        }
+        
+        state_ = STATE_CLOSED;
+        numConsecutiveFailures_ = 0;
+        openTimeInMs_ = 0;
+    }
+    
+    public synchronized void recordFailure() {
+        
+        numConsecutiveFailures_++;
+        
+        if (state_ == STATE_HALF_OPEN) {
+            openTimeInMs_ = Math.min(maxOpenTimeInMs_, Math.max(minOpenTimeInMs_, openTimeInMs_ * 2));
+            open();
+        }
+        else if ((state_ == STATE_CLOSED) && (numConsecutiveFailures_ >= failureThreshold_)) {
+            openTimeInMs_ = minOpenTimeInMs_;
+            open();
+        }
+    }
+    
+    private void open() {
+        
+        state_ = STATE_OPEN;
+        nextProbeTimestampInMs_ = System.currentTimeMillis() + openTimeInMs_;
+        numTimesOpened_++;
+        
+        logger.warn("Circuit breaker opened, skipping endpoint. OutputModule=" + outputModuleUniqueId_ +
+                ", ConsecutiveFailures=" + numConsecutiveFailures_ + ", NextProbeInMs=" + openTimeInMs_);
+    }
+    
+    public synchronized int getState() {
+        return state_;
+    }
+    
+    public synchronized int getNumConsecutiveFailures() {
+        return numConsecutiveFailures_;
+    }
+    
+    public synchronized long getNumTimesOpened() {
+        return numTimesOpened_;
+    }
+    
+    public String getOutputModuleUniqueId() {
+        return outputModuleUniqueId_;
+    }
+
+}
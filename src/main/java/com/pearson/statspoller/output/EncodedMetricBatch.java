@@ -0,0 +1,139 @@
+package com.pearson.statspoller.output;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An immutable batch of metrics that have already been encoded into an output format (ex- Graphite lines, OpenTSDB JSON objects).
+ *
+ * All of the encoded metrics (records) are stored back-to-back in a single byte array.
+ * The offsets array marks where each record starts, so output modules can slice the batch into messages of any size without re-encoding.
+ * A single batch can be safely shared by every output module that uses the same output format & settings.
+ *
+ * @author Jeffrey Schmidt
+ */
+public final class EncodedMetricBatch {
+    
+    private final byte[] bytes_;
+    private final int[] recordOffsets_;
+    private final int numRecords_;
+    
+    private EncodedMetricBatch(byte[] bytes, int[] recordOffsets, int numRecords) {
+        this.bytes_ = bytes;
+        this.recordOffsets_ = recordOffsets;
+        this.numRecords_ = numRecords;
+    }
+    
+    public int getNumRecords() {
+        return numRecords_;
+    }
+    
+    public boolean isEmpty() {
+        return numRecords_ == 0;
+    }
+    
+    /*
+    The returned array is shared, & must not be modified.
+    */
+    public byte[] getBytes() {
+        return bytes_;
+    }
+    
+    public int getRecordOffset(int recordIndex) {
+        return recordOffsets_[recordIndex];
+    }
+    
+    /*
+    The number of bytes used by the records from 'fromRecordIndex' (inclusive) to 'toRecordIndex' (exclusive).
+    */
+    public int getLength(int fromRecordIndex, int toRecordIndex) {
+        return recordOffsets_[toRecordIndex] - recordOffsets_[fromRecordIndex];
+    }
+    
+    public String getRecordAsString(int recordIndex) {
+        return new String(bytes_, recordOffsets_[recordIndex], getLength(recordIndex, recordIndex + 1), StandardCharsets.UTF_8);
+    }
+    
+    public static class Builder {
+        
+        private byte[] bytes_;
+        private int[] recordOffsets_;
+        private int numRecords_ = 0;
+        private int length_ = 0;
+        
+        // a reusable view of 'bytes_', so that encoders can write records directly into the batch
+        private ByteBuffer byteBuffer_ = null;
+        
+        public Builder(int expectedNumRecords, int expectedRecordLength) {
+            this.bytes_ = new byte[Math.max(16, expectedNumRecords * expectedRecordLength)];
+            this.recordOffsets_ = new int[Math.max(1, expectedNumRecords) + 1];
+        }
+        
+        public Builder addRecord(String record) {
+            if (record == null) return this;
+            return addRecord(record.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        public Builder addRecord(byte[] record) {
+            if (record == null) return this;
+            return addRecord(record, 0, record.length);
+        }
+        
+        public Builder addRecord(byte[] record, int offset, int length) {
+            if ((record == null) || (length <= 0)) return this;
+            
+            ensureCapacity(length);
+            System.arraycopy(record, offset, bytes_, length_, length);
+            length_ += length;
+            
+            return endRecord();
+        }
+        
+        /*
+        Returns a ByteBuffer that is positioned at the end of the batch, with at least 'requiredFreeSpace' bytes of space.
+        Write a single record into it, then call 'endRecord(byteBuffer)'. If the record doesn't fit, call this again with a larger 'requiredFreeSpace' & rewrite the record.
+        The same ByteBuffer object is reused until the batch grows.
+        */
+        public ByteBuffer getBuffer(int requiredFreeSpace) {
+            ensureCapacity(requiredFreeSpace);
+            
+            if ((byteBuffer_ == null) || (byteBuffer_.array() != bytes_)) byteBuffer_ = ByteBuffer.wrap(bytes_);
+            
+            byteBuffer_.limit(bytes_.length);
+            byteBuffer_.position(length_);
+            
+            return byteBuffer_;
+        }
+        
+        /*
+        Ends a record that was written into the ByteBuffer returned by 'getBuffer'. Empty records are ignored.
+        */
+        public Builder endRecord(ByteBuffer byteBuffer) {
+            if (byteBuffer.position() <= length_) return this;
+            
+            length_ = byteBuffer.position();
+            return endRecord();
+        }
+        
+        private Builder endRecord() {
+            if ((numRecords_ + 2) > recordOffsets_.length) recordOffsets_ = Arrays.copyOf(recordOffsets_, recordOffsets_.length * 2);
+            numRecords_++;
+            recordOffsets_[numRecords_] = length_;
+            return this;
+        }
+        
+        private void ensureCapacity(int requiredFreeSpace) {
+            if ((length_ + requiredFreeSpace) <= bytes_.length) return;
+            
+            int newCapacity = Math.max(bytes_.length * 2, length_ + requiredFreeSpace);
+            bytes_ = Arrays.copyOf(bytes_, newCapacity);
+        }
+        
+        public EncodedMetricBatch build() {
+            return new EncodedMetricBatch(bytes_, recordOffsets_, numRecords_);
+        }
+    
+    }
+
+}
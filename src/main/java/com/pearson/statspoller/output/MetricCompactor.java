@@ -0,0 +1,221 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.pearson.statspoller.utilities.math_utils.MathUtilities;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compacts the metrics of a single output interval down to one metric per series.
+ *
+ * Collectors that run faster than the output interval (or that re-read the same data) put several points for the same series in the same output interval.
+ * Most backends only keep one point per series per interval, so the extra points are just extra bytes on the wire.
+ *
+ * A series is a Graphite metric path, or an OpenTSDB metric + tags. Graphite & OpenTSDB series are kept apart, even if their keys are the same.
+ * The compacted metrics keep the order in which their series were first seen.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricCompactor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricCompactor.class.getName());
+    
+    public static final int COMPACTION_MODE_OFF = 0;
+    public static final int COMPACTION_MODE_LAST = 1;  // keep the point with the newest timestamp
+    public static final int COMPACTION_MODE_MIN = 2;   // keep the point with the smallest value
+    public static final int COMPACTION_MODE_MAX = 3;   // keep the point with the largest value
+    public static final int COMPACTION_MODE_AVG = 4;   // keep the average value, at the newest point's timestamp
+    
+    /*
+    Returns the compaction mode code of a compaction mode name ('off', 'last', 'min', 'max', 'avg'). Returns -1 if the name isn't recognized.
+    */
+    public static int getCompactionModeCode(String compactionModeName) {
+        
+        if (compactionModeName == null) return -1;
+        
+        String compactionMode = compactionModeName.trim();
+        
+        if (compactionMode.equalsIgnoreCase("off") || compactionMode.equalsIgnoreCase("false")) return COMPACTION_MODE_OFF;
+        else if (compactionMode.equalsIgnoreCase("last")) return COMPACTION_MODE_LAST;
+        else if (compactionMode.equalsIgnoreCase("min")) return COMPACTION_MODE_MIN;
+        else if (compactionMode.equalsIgnoreCase("max")) return COMPACTION_MODE_MAX;
+        else if (compactionMode.equalsIgnoreCase("avg")) return COMPACTION_MODE_AVG;
+        
+        return -1;
+    }
+    
+    /*
+    Returns one metric per series. Metrics that aren't GraphiteMetric or OpenTsdbMetric objects (or that have no series key) are passed through untouched.
+    If no series had more than one metric, then the input list itself is returned.
+    */
+    public static List<?> compactMetrics(List<?> metrics, int compactionMode) {
+        
+        if ((metrics == null) || (metrics.size() < 2) || (compactionMode == COMPACTION_MODE_OFF)) return metrics;
+        
+        try {
+            HashMap<String,CompactedSeries> graphiteSeriesByKey = new HashMap<>((int) (metrics.size() / 0.75f) + 1);
+            HashMap<String,CompactedSeries> openTsdbSeriesByKey = new HashMap<>((int) (metrics.size() / 0.75f) + 1);
+            List<CompactedSeries> compactedSeriesList = new ArrayList<>();
+            
+            for (Object metric : metrics) {
+                String seriesKey = getSeriesKey(metric);
+                
+                if (seriesKey == null) {
+                    compactedSeriesList.add(new CompactedSeries(metric));
+                    continue;
+                }
+                
+                HashMap<String,CompactedSeries> compactedSeriesByKey = (metric instanceof GraphiteMetric) ? graphiteSeriesByKey : openTsdbSeriesByKey;
+                CompactedSeries compactedSeries = compactedSeriesByKey.get(seriesKey);
+                
+                if (compactedSeries == null) {
+                    compactedSeries = new CompactedSeries(metric);
+                    compactedSeriesByKey.put(seriesKey, compactedSeries);
+                    compactedSeriesList.add(compactedSeries);
+                }
+                else compactedSeries.add(metric);
+            }
+            
+            if (compactedSeriesList.size() == metrics.size()) return metrics;
+            
+            List<Object> compactedMetrics = new ArrayList<>(compactedSeriesList.size());
+            
+            for (CompactedSeries compactedSeries : compactedSeriesList) {
+                Object compactedMetric = compactedSeries.getCompactedMetric(compactionMode);
+                if (compactedMetric != null) compactedMetrics.add(compactedMetric);
+            }
+            
+            return compactedMetrics;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return metrics;
+        }
+    }
+    
+    private static String getSeriesKey(Object metric) {
+        
+        if (metric instanceof GraphiteMetric) return ((GraphiteMetric) metric).getMetricPath();
+        else if (metric instanceof OpenTsdbMetric) return ((OpenTsdbMetric) metric).getMetricKey();
+        
+        return null;
+    }
+    
+    private static long getMetricTimestampInMilliseconds(Object metric) {
+        
+        if (metric instanceof GraphiteMetric) return ((GraphiteMetric) metric).getMetricTimestampInMilliseconds();
+        else if (metric instanceof OpenTsdbMetric) return ((OpenTsdbMetric) metric).getMetricTimestampInMilliseconds();
+        
+        return 0;
+    }
+    
+    // returns NaN if the metric value is null
+    private static double getMetricValueDouble(Object metric) {
+        
+        if (metric instanceof GraphiteMetric) return ((GraphiteMetric) metric).getMetricValueDouble();
+        else if (metric instanceof OpenTsdbMetric) return ((OpenTsdbMetric) metric).getMetricValueDouble();
+        
+        return Double.NaN;
+    }
+    
+    /*
+    Returns a copy of a metric (same series & timestamps), but with a different value.
+    */
+    private static Object getMetricWithValue(Object metric, double metricValue) {
+        
+        BigDecimal metricValueBigDecimal = MathUtilities.getBigDecimalFromDouble(metricValue);
+        
+        if (metric instanceof GraphiteMetric) {
+            GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+            
+            if (graphiteMetric.isMetricTimestampInSeconds()) {
+                return new GraphiteMetric(graphiteMetric.getMetricPath(), metricValueBigDecimal, (int) graphiteMetric.getMetricTimestamp(),
+                        graphiteMetric.getMetricReceivedTimestampInMilliseconds());
+            }
+            else {
+                return new GraphiteMetric(graphiteMetric.getMetricPath(), metricValueBigDecimal, graphiteMetric.getMetricTimestamp(),
+                        graphiteMetric.getMetricReceivedTimestampInMilliseconds());
+            }
+        }
+        else if (metric instanceof OpenTsdbMetric) {
+            OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+            
+            return new OpenTsdbMetric(openTsdbMetric.getMetric(), openTsdbMetric.getMetricTimestamp(), metricValueBigDecimal, openTsdbMetric.getTags(),
+                    openTsdbMetric.isTimestampInMilliseconds(), openTsdbMetric.getMetricReceivedTimestampInMilliseconds());
+        }
+        
+        return metric;
+    }
+    
+    /*
+    The points of a single series, reduced to what each compaction mode needs as they are added.
+    */
+    private static class CompactedSeries {
+        
+        private int numMetrics_ = 0;
+        private Object lastMetric_ = null;
+        private long lastMetricTimestampInMs_ = Long.MIN_VALUE;
+        
+        // only metrics with non-null values count towards min/max/avg
+        private int numValues_ = 0;
+        private double valueSum_ = 0;
+        private Object minMetric_ = null;
+        private double minValue_ = Double.NaN;
+        private Object maxMetric_ = null;
+        private double maxValue_ = Double.NaN;
+        
+        public CompactedSeries(Object metric) {
+            add(metric);
+        }
+        
+        public final void add(Object metric) {
+            
+            numMetrics_++;
+            
+            // the newest point wins. if timestamps are tied, the point that was collected last wins.
+            long metricTimestampInMs = getMetricTimestampInMilliseconds(metric);
+            if ((lastMetric_ == null) || (metricTimestampInMs >= lastMetricTimestampInMs_)) {
+                lastMetric_ = metric;
+                lastMetricTimestampInMs_ = metricTimestampInMs;
+            }
+            
+            double metricValue = getMetricValueDouble(metric);
+            if (Double.isNaN(metricValue) || Double.isInfinite(metricValue)) return;
+            
+            numValues_++;
+            valueSum_ += metricValue;
+            
+            if ((minMetric_ == null) || (metricValue < minValue_)) {
+                minMetric_ = metric;
+                minValue_ = metricValue;
+            }
+            
+            if ((maxMetric_ == null) || (metricValue > maxValue_)) {
+                maxMetric_ = metric;
+                maxValue_ = metricValue;
+            }
+        }
+        
+        public Object getCompactedMetric(int compactionMode) {
+            
+            if ((numMetrics_ == 1) || (numValues_ == 0)) return lastMetric_;
+            
+            if (compactionMode == COMPACTION_MODE_MIN) return minMetric_;
+            else if (compactionMode == COMPACTION_MODE_MAX) return maxMetric_;
+            else if (compactionMode == COMPACTION_MODE_AVG) {
+                if (numValues_ == 1) return (minMetric_ == lastMetric_) ? lastMetric_ : getMetricWithValue(lastMetric_, minValue_);
+                return getMetricWithValue(lastMetric_, valueSum_ / numValues_);
+            }
+            
+            return lastMetric_;
+        }
+    
+    }
+
+}
@@ -0,0 +1,460 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetricFormat;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v1;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v2;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetricFormat;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.pearson.statspoller.utilities.math_utils.MathUtilities;
+import com.pearson.statspoller.utilities.web_utils.HttpBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes the metrics for a single output interval once per output format (& format settings), then shares the encoded bytes with every output module that needs them.
+ * Without this, each output module would re-encode every metric (ex- 3 Graphite output modules = 3x the sanitizing, string building, & number formatting).
+ *
+ * A MetricEncodingCache is only valid for the list of metrics that it was created with.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricEncodingCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricEncodingCache.class.getName());
+    
+    // GraphiteMetric & OpenTsdbMetric are written straight into the batch. the batch always has at least this much free space before a metric is written.
+    private static final int MIN_FREE_SPACE_PER_RECORD = 1024;
+    
+    private static final byte[] PUT_BYTES = {'p', 'u', 't', ' '};
+    
+    /*
+    Encodes a batch of metrics, for 'getOrEncodeBatch' to cache.
+    */
+    private interface BatchEncoder {
+        public EncodedMetricBatch encode();
+    }
+    
+    private final List<?> metrics_;
+    
+    // k=output format + format settings, v=the encoded metrics
+    private final ConcurrentHashMap<String,EncodedMetricBatch> encodedMetricBatches_ = new ConcurrentHashMap<>();
+    
+    // k=output format + format settings, v=lock object. ensures that each encoding is only done once, even if several output threads ask for it at the same time.
+    private final ConcurrentHashMap<String,Object> encodingLocks_ = new ConcurrentHashMap<>();
+    
+    public MetricEncodingCache(List<?> metrics) {
+        this.metrics_ = metrics;
+    }
+    
+    public EncodedMetricBatch getGraphiteBatch(final List<? extends GraphiteMetricFormat> graphiteMetrics, final boolean sanitizeMetrics, 
+            final boolean substituteCharacters) {
+        
+        if (graphiteMetrics != metrics_) return encodeGraphite(graphiteMetrics, sanitizeMetrics, substituteCharacters);
+        
+        String cacheKey = "Graphite:" + sanitizeMetrics + ":" + substituteCharacters;
+        
+        return getOrEncodeBatch(cacheKey, cacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                return encodeGraphite(graphiteMetrics, sanitizeMetrics, substituteCharacters);
+            }
+        });
+    }
+    
+    /*
+    The Graphite lines that belong to one shard of a sharded Graphite output module. The batch is split into all of its shards at once, & every shard's lines are cached.
+    */
+    public EncodedMetricBatch getGraphiteShardBatch(final List<? extends GraphiteMetricFormat> graphiteMetrics, final boolean sanitizeMetrics, 
+            final boolean substituteCharacters, final int numShards, final int shardIndex) {
+        
+        if (graphiteMetrics != metrics_) return shardGraphiteBatch(encodeGraphite(graphiteMetrics, sanitizeMetrics, substituteCharacters), numShards)[shardIndex];
+        
+        final String shardsCacheKey = "GraphiteShard:" + sanitizeMetrics + ":" + substituteCharacters + ":" + numShards;
+        
+        // every shard is encoded under the same lock, so the batch is only split once
+        return getOrEncodeBatch(shardsCacheKey + ":" + shardIndex, shardsCacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                EncodedMetricBatch[] shardBatches = shardGraphiteBatch(getGraphiteBatch(graphiteMetrics, sanitizeMetrics, substituteCharacters), numShards);
+                for (int i = 0; i < shardBatches.length; i++) encodedMetricBatches_.put(shardsCacheKey + ":" + i, shardBatches[i]);
+                return shardBatches[shardIndex];
+            }
+        });
+    }
+    
+    public EncodedMetricBatch getOpenTsdbTelnetBatch(final List<? extends OpenTsdbMetricFormat> openTsdbMetrics, final boolean sanitizeMetrics,
+            final String defaultOpenTsdbTagKey, final String defaultOpenTsdbTagValue) {
+        
+        if (openTsdbMetrics != metrics_) return encodeOpenTsdbTelnet(openTsdbMetrics, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+        
+        String cacheKey = "OpenTsdbTelnet:" + sanitizeMetrics + ":" + defaultOpenTsdbTagKey + "=" + defaultOpenTsdbTagValue;
+        
+        return getOrEncodeBatch(cacheKey, cacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                return encodeOpenTsdbTelnet(openTsdbMetrics, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+            }
+        });
+    }
+    
+    public EncodedMetricBatch getOpenTsdbJsonBatch(final List<? extends OpenTsdbMetricFormat> openTsdbMetrics, final boolean sanitizeMetrics,
+            final String defaultOpenTsdbTagKey, final String defaultOpenTsdbTagValue) {
+        
+        if (openTsdbMetrics != metrics_) return encodeOpenTsdbJson(openTsdbMetrics, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+        
+        String cacheKey = "OpenTsdbJson:" + sanitizeMetrics + ":" + defaultOpenTsdbTagKey + "=" + defaultOpenTsdbTagValue;
+        
+        return getOrEncodeBatch(cacheKey, cacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                return encodeOpenTsdbJson(openTsdbMetrics, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+            }
+        });
+    }
+    
+    public EncodedMetricBatch getInfluxdbV1JsonBatch(final List<? extends InfluxdbMetricFormat_v1> influxdbMetrics) {
+        
+        if (influxdbMetrics != metrics_) return encodeInfluxdbV1Json(influxdbMetrics);
+        
+        String cacheKey = "InfluxdbV1Json";
+        
+        return getOrEncodeBatch(cacheKey, cacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                return encodeInfluxdbV1Json(influxdbMetrics);
+            }
+        });
+    }
+    
+    public EncodedMetricBatch getInfluxdbV2LineBatch(final List<? extends InfluxdbMetricFormat_v2> influxdbMetrics, final byte timePrecisionCode) {
+        
+        if (influxdbMetrics != metrics_) return encodeInfluxdbV2Line(influxdbMetrics, timePrecisionCode);
+        
+        String cacheKey = "InfluxdbV2Line:" + timePrecisionCode;
+        
+        return getOrEncodeBatch(cacheKey, cacheKey, new BatchEncoder() {
+            @Override
+            public EncodedMetricBatch encode() {
+                return encodeInfluxdbV2Line(influxdbMetrics, timePrecisionCode);
+            }
+        });
+    }
+    
+    /*
+    Returns the cached batch for 'cacheKey', or encodes (& caches) it. 
+    Encodings that share an 'encodingLockKey' are done one at a time, & each one is only done once (even if several output threads ask for it at the same time).
+    */
+    private EncodedMetricBatch getOrEncodeBatch(String cacheKey, String encodingLockKey, BatchEncoder batchEncoder) {
+        
+        EncodedMetricBatch encodedMetricBatch = encodedMetricBatches_.get(cacheKey);
+        if (encodedMetricBatch != null) return encodedMetricBatch;
+        
+        synchronized (getEncodingLock(encodingLockKey)) {
+            encodedMetricBatch = encodedMetricBatches_.get(cacheKey);
+            
+            if (encodedMetricBatch == null) {
+                encodedMetricBatch = batchEncoder.encode();
+                encodedMetricBatches_.put(cacheKey, encodedMetricBatch);
+            }
+        }
+        
+        return encodedMetricBatch;
+    }
+    
+    private Object getEncodingLock(String cacheKey) {
+        Object lock = new Object();
+        Object existingLock = encodingLocks_.putIfAbsent(cacheKey, lock);
+        return (existingLock != null) ? existingLock : lock;
+    }
+    
+    /*
+    Each record is a single Graphite line, including the trailing newline.
+    */
+    public static EncodedMetricBatch encodeGraphite(List<? extends GraphiteMetricFormat> graphiteMetrics, boolean sanitizeMetrics, boolean substituteCharacters) {
+        
+        if (graphiteMetrics == null) return new EncodedMetricBatch.Builder(0, 0).build();
+        
+        EncodedMetricBatch.Builder builder = new EncodedMetricBatch.Builder(graphiteMetrics.size(), 64);
+        
+        for (GraphiteMetricFormat graphiteMetric : graphiteMetrics) {
+            try {
+                if (graphiteMetric == null) continue;
+                
+                if ((graphiteMetric instanceof GraphiteMetric) || (graphiteMetric instanceof OpenTsdbMetric)) {
+                    for (int requiredFreeSpace = MIN_FREE_SPACE_PER_RECORD; ; requiredFreeSpace = requiredFreeSpace * 2) {
+                        ByteBuffer byteBuffer = builder.getBuffer(requiredFreeSpace);
+                        
+                        try {
+                            if (graphiteMetric instanceof GraphiteMetric) ((GraphiteMetric) graphiteMetric).writeGraphiteFormatBytes(byteBuffer, sanitizeMetrics, substituteCharacters);
+                            else ((OpenTsdbMetric) graphiteMetric).writeGraphiteFormatBytes(byteBuffer, sanitizeMetrics, substituteCharacters);
+                            byteBuffer.put((byte) '\n');
+                            builder.endRecord(byteBuffer);
+                            break;
+                        }
+                        catch (BufferOverflowException e) {}
+                    }
+                }
+                else {
+                    builder.addRecord(graphiteMetric.getGraphiteFormatString(sanitizeMetrics, substituteCharacters) + "\n");
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /*
+    Splits a batch of Graphite lines into 'numShards' batches. Each line goes to the shard that its metric path consistently hashes to (jump hash of the path's FNV-1a hash),
+    so a metric path always lands on the same shard. The lines are copied as-is (they aren't re-encoded).
+    */
+    public static EncodedMetricBatch[] shardGraphiteBatch(EncodedMetricBatch graphiteBatch, int numShards) {
+        
+        if (numShards < 1) numShards = 1;
+        
+        EncodedMetricBatch.Builder[] builders = new EncodedMetricBatch.Builder[numShards];
+        int expectedNumRecordsPerShard = (graphiteBatch.getNumRecords() / numShards) + 1;
+        int expectedRecordLength = graphiteBatch.isEmpty() ? 0 : (graphiteBatch.getLength(0, graphiteBatch.getNumRecords()) / graphiteBatch.getNumRecords()) + 1;
+        for (int i = 0; i < numShards; i++) builders[i] = new EncodedMetricBatch.Builder(expectedNumRecordsPerShard, expectedRecordLength);
+        
+        byte[] bytes = graphiteBatch.getBytes();
+        
+        for (int i = 0; i < graphiteBatch.getNumRecords(); i++) {
+            int recordOffset = graphiteBatch.getRecordOffset(i);
+            int recordLength = graphiteBatch.getLength(i, i + 1);
+            
+            // the metric path is everything before the first space
+            int metricPathLength = 0;
+            while ((metricPathLength < recordLength) && (bytes[recordOffset + metricPathLength] != ' ')) metricPathLength++;
+            
+            int shardIndex = MathUtilities.getJumpConsistentHash(MathUtilities.getFnv1a64Hash(bytes, recordOffset, metricPathLength), numShards);
+            builders[shardIndex].addRecord(bytes, recordOffset, recordLength);
+        }
+        
+        EncodedMetricBatch[] shardBatches = new EncodedMetricBatch[numShards];
+        for (int i = 0; i < numShards; i++) shardBatches[i] = builders[i].build();
+        
+        return shardBatches;
+    }
+    
+    /*
+    Each record is a single OpenTSDB telnet 'put' line, including the trailing newline.
+    */
+    public static EncodedMetricBatch encodeOpenTsdbTelnet(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, boolean sanitizeMetrics,
+            String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue) {
+        
+        if (openTsdbMetrics == null) return new EncodedMetricBatch.Builder(0, 0).build();
+        
+        EncodedMetricBatch.Builder builder = new EncodedMetricBatch.Builder(openTsdbMetrics.size(), 96);
+        
+        for (OpenTsdbMetricFormat openTsdbMetric : openTsdbMetrics) {
+            try {
+                if (openTsdbMetric == null) continue;
+                
+                if ((openTsdbMetric instanceof OpenTsdbMetric) || (openTsdbMetric instanceof GraphiteMetric)) {
+                    for (int requiredFreeSpace = MIN_FREE_SPACE_PER_RECORD; ; requiredFreeSpace = requiredFreeSpace * 2) {
+                        ByteBuffer byteBuffer = builder.getBuffer(requiredFreeSpace);
+                        
+                        try {
+                            byteBuffer.put(PUT_BYTES);
+                            if (openTsdbMetric instanceof OpenTsdbMetric) ((OpenTsdbMetric) openTsdbMetric).writeOpenTsdbTelnetFormatBytes(byteBuffer, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+                            else ((GraphiteMetric) openTsdbMetric).writeOpenTsdbTelnetFormatBytes(byteBuffer, sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue);
+                            byteBuffer.put((byte) '\n');
+                            builder.endRecord(byteBuffer);
+                            break;
+                        }
+                        catch (BufferOverflowException e) {}
+                    }
+                }
+                else {
+                    builder.addRecord("put " + openTsdbMetric.getOpenTsdbTelnetFormatString(sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue) + "\n");
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /*
+    Each record is a single OpenTSDB JSON object (no separators). Use 'getJsonArray' to build a JSON array out of a range of records.
+    */
+    public static EncodedMetricBatch encodeOpenTsdbJson(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, boolean sanitizeMetrics,
+            String defaultOpenTsdbTagKey, String defaultOpenTsdbTagValue) {
+        
+        if (openTsdbMetrics == null) return new EncodedMetricBatch.Builder(0, 0).build();
+        
+        EncodedMetricBatch.Builder builder = new EncodedMetricBatch.Builder(openTsdbMetrics.size(), 128);
+        
+        for (OpenTsdbMetricFormat openTsdbMetric : openTsdbMetrics) {
+            try {
+                if (openTsdbMetric == null) continue;
+                builder.addRecord(openTsdbMetric.getOpenTsdbJsonFormatString(sanitizeMetrics, defaultOpenTsdbTagKey, defaultOpenTsdbTagValue));
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /*
+    Each record is a single InfluxDB (v1 / 0.8 'series' api) JSON object (no separators). Metrics that can't be expressed in InfluxDB's format are skipped.
+    Use 'getJsonArray' to build a JSON array out of a range of records.
+    */
+    public static EncodedMetricBatch encodeInfluxdbV1Json(List<? extends InfluxdbMetricFormat_v1> influxdbMetrics) {
+        
+        if (influxdbMetrics == null) return new EncodedMetricBatch.Builder(0, 0).build();
+        
+        EncodedMetricBatch.Builder builder = new EncodedMetricBatch.Builder(influxdbMetrics.size(), 128);
+        
+        for (InfluxdbMetricFormat_v1 influxdbMetric : influxdbMetrics) {
+            try {
+                if (influxdbMetric == null) continue;
+                builder.addRecord(influxdbMetric.getInfluxdbV1JsonFormatString());
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /*
+    Each record is a single InfluxDB line protocol line, including the trailing newline. Metrics that can't be expressed in the line protocol are skipped.
+    Since the records are newline terminated, any contiguous range of records is a valid line protocol message (see 'getRecords' & 'writeRecords').
+    */
+    public static EncodedMetricBatch encodeInfluxdbV2Line(List<? extends InfluxdbMetricFormat_v2> influxdbMetrics, byte timePrecisionCode) {
+        
+        if (influxdbMetrics == null) return new EncodedMetricBatch.Builder(0, 0).build();
+        
+        EncodedMetricBatch.Builder builder = new EncodedMetricBatch.Builder(influxdbMetrics.size(), 96);
+        
+        for (InfluxdbMetricFormat_v2 influxdbMetric : influxdbMetrics) {
+            try {
+                if (influxdbMetric == null) continue;
+                
+                if ((influxdbMetric instanceof GraphiteMetric) || (influxdbMetric instanceof OpenTsdbMetric)) {
+                    for (int requiredFreeSpace = MIN_FREE_SPACE_PER_RECORD; ; requiredFreeSpace = requiredFreeSpace * 2) {
+                        ByteBuffer byteBuffer = builder.getBuffer(requiredFreeSpace);
+                        int recordStartPosition = byteBuffer.position();
+                        
+                        try {
+                            if (influxdbMetric instanceof GraphiteMetric) ((GraphiteMetric) influxdbMetric).writeInfluxdbV2LineFormatBytes(byteBuffer, timePrecisionCode);
+                            else ((OpenTsdbMetric) influxdbMetric).writeInfluxdbV2LineFormatBytes(byteBuffer, timePrecisionCode);
+                            if (byteBuffer.position() > recordStartPosition) byteBuffer.put((byte) '\n');
+                            builder.endRecord(byteBuffer);
+                            break;
+                        }
+                        catch (BufferOverflowException e) {}
+                    }
+                }
+                else {
+                    String influxdbLine = influxdbMetric.getInfluxdbV2LineFormatString(timePrecisionCode);
+                    if (influxdbLine != null) builder.addRecord(influxdbLine + "\n");
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /*
+    Builds a JSON array out of the JSON object records from 'fromRecordIndex' (inclusive) to 'toRecordIndex' (exclusive).
+    */
+    public static byte[] getJsonArray(EncodedMetricBatch jsonBatch, int fromRecordIndex, int toRecordIndex) {
+        
+        int numRecords = toRecordIndex - fromRecordIndex;
+        int recordsLength = jsonBatch.getLength(fromRecordIndex, toRecordIndex);
+        byte[] jsonArray = new byte[recordsLength + Math.max(0, numRecords - 1) + 2];
+        
+        int position = 0;
+        jsonArray[position++] = '[';
+        
+        for (int i = fromRecordIndex; i < toRecordIndex; i++) {
+            int recordLength = jsonBatch.getLength(i, i + 1);
+            System.arraycopy(jsonBatch.getBytes(), jsonBatch.getRecordOffset(i), jsonArray, position, recordLength);
+            position += recordLength;
+            if ((i + 1) != toRecordIndex) jsonArray[position++] = ',';
+        }
+        
+        jsonArray[position] = ']';
+        
+        return jsonArray;
+    }
+    
+    /*
+    Writes the same JSON array as 'getJsonArray' to an output stream, without building the array in memory.
+    */
+    public static void writeJsonArray(EncodedMetricBatch jsonBatch, int fromRecordIndex, int toRecordIndex, OutputStream outputStream) throws IOException {
+        
+        outputStream.write('[');
+        
+        for (int i = fromRecordIndex; i < toRecordIndex; i++) {
+            outputStream.write(jsonBatch.getBytes(), jsonBatch.getRecordOffset(i), jsonBatch.getLength(i, i + 1));
+            if ((i + 1) != toRecordIndex) outputStream.write(',');
+        }
+        
+        outputStream.write(']');
+    }
+
+    /*
+    Returns a HTTP body writer that streams the same JSON array as 'getJsonArray' (ex- through a GzipHttpBodyWriter), without building the array in memory.
+    */
+    public static HttpBodyWriter getJsonArrayHttpBodyWriter(final EncodedMetricBatch jsonBatch, final int fromRecordIndex, final int toRecordIndex) {
+        
+        return new HttpBodyWriter() {
+            @Override
+            public void writeHttpBody(OutputStream outputStream) throws IOException {
+                writeJsonArray(jsonBatch, fromRecordIndex, toRecordIndex, outputStream);
+            }
+        };
+    }
+
+    /*
+    Copies the records from 'fromRecordIndex' (inclusive) to 'toRecordIndex' (exclusive), with no separators. Records are stored contiguously, so this is a single copy.
+    */
+    public static byte[] getRecords(EncodedMetricBatch batch, int fromRecordIndex, int toRecordIndex) {
+        int fromOffset = batch.getRecordOffset(fromRecordIndex);
+        return Arrays.copyOfRange(batch.getBytes(), fromOffset, fromOffset + batch.getLength(fromRecordIndex, toRecordIndex));
+    }
+
+    /*
+    Writes the same bytes as 'getRecords' to an output stream, without copying them.
+    */
+    public static void writeRecords(EncodedMetricBatch batch, int fromRecordIndex, int toRecordIndex, OutputStream outputStream) throws IOException {
+        outputStream.write(batch.getBytes(), batch.getRecordOffset(fromRecordIndex), batch.getLength(fromRecordIndex, toRecordIndex));
+    }
+
+    /*
+    Returns a HTTP body writer that streams the same bytes as 'getRecords' (ex- through a GzipHttpBodyWriter), without copying them.
+    */
+    public static HttpBodyWriter getRecordsHttpBodyWriter(final EncodedMetricBatch batch, final int fromRecordIndex, final int toRecordIndex) {
+        
+        return new HttpBodyWriter() {
+            @Override
+            public void writeHttpBody(OutputStream outputStream) throws IOException {
+                writeRecords(batch, fromRecordIndex, toRecordIndex, outputStream);
+            }
+        };
+    }
+
+}
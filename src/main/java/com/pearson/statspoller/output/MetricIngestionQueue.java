@@ -0,0 +1,429 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.globals.AgentInstrumentation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded, lock-free, multi-producer/single-consumer queue that metric collectors put metrics into, and that the output thread drains.
+ *
+ * Producers push onto a linked stack using compare-and-set. The consumer takes the entire stack in a single atomic swap,
+ * then reverses it so that metrics are returned in the order that they were added.
+ * The queue is bounded by a number of metrics, & optionally by a memory budget (see MetricMemoryBudget) -- the estimated bytes of all queued metrics,
+ * & of each collector's queued metrics. If a limit is reached, then the budget's overflow policy decides which metrics are dropped (& counted).
+ * Without a memory budget, newly added metrics are dropped.
+ * If a relabeler is set, metrics are relabeled (dropped/renamed) before they are added, on the producer's thread.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricIngestionQueue<T> {
+    
+    // when making room, this fraction (1/n) of the limit is freed up in addition to what is needed
+    private static final int EXTRA_ROOM_DIVISOR = 10;
+    
+    private final AtomicReference<Node<T>> head_ = new AtomicReference<>(null);
+    private final AtomicInteger size_ = new AtomicInteger(0);
+    private final AtomicLong numDroppedMetrics_ = new AtomicLong(0);
+    
+    // only one thread at a time drops queued metrics to make room (see evictMetrics)
+    private final Object evictionLock_ = new Object();
+    
+    private volatile int maxSize_;
+    private volatile MetricRelabeler metricRelabeler_ = null;
+    private volatile MetricMemoryBudget metricMemoryBudget_ = null;
+    
+    public MetricIngestionQueue(int maxSize) {
+        this.maxSize_ = maxSize;
+    }
+    
+    public boolean offer(T metric) {
+        return offer(metric, null);
+    }
+    
+    /*
+    Returns false if the metric was dropped (because the queue is full), or if the relabeler dropped the metric.
+    'collectorInstrumentation' is the collector that produced the metric. It can be null, in which case no per-collector limit applies.
+    */
+    public boolean offer(T metric, AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        if (metric == null) return false;
+        
+        MetricRelabeler metricRelabeler = metricRelabeler_;
+        if (metricRelabeler != null) {
+            metric = metricRelabeler.relabelMetric(metric);
+            if (metric == null) return false;
+        }
+        
+        // a single metric is added as a single node, without building a batch around it
+        MetricMemoryBudget metricMemoryBudget = metricMemoryBudget_;
+        int[] sizesInBytes = (metricMemoryBudget == null) ? null : new int[] {MetricMemoryBudget.getEstimatedSizeInBytes(metric)};
+        
+        if (reserveRoom(sizesInBytes, 1, metricMemoryBudget, collectorInstrumentation) == 0) return false;
+        
+        Node<T> node = new Node<>(metric, (sizesInBytes == null) ? 0 : sizesInBytes[0], collectorInstrumentation);
+        push(node, node);
+        
+        return true;
+    }
+    
+    public int offerAll(List<? extends T> metrics) {
+        return offerAll(metrics, null);
+    }
+    
+    /*
+    Adds a batch of metrics with a single compare-and-set.
+    Returns the number of metrics that were added. If the queue fills up, then the overflow policy decides which metrics are dropped.
+    'collectorInstrumentation' is the collector that produced the metrics. It can be null, in which case no per-collector limit applies.
+    */
+    public int offerAll(List<? extends T> metrics, AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        if ((metrics == null) || metrics.isEmpty()) return 0;
+        
+        MetricRelabeler metricRelabeler = metricRelabeler_;
+        if (metricRelabeler != null) {
+            metrics = metricRelabeler.relabelMetrics(metrics);
+            if ((metrics == null) || metrics.isEmpty()) return 0;
+        }
+        
+        MetricMemoryBudget metricMemoryBudget = metricMemoryBudget_;
+        
+        // the estimated size of each (non-null) metric. only needed if there is a memory budget.
+        int[] sizesInBytes = (metricMemoryBudget == null) ? null : new int[metrics.size()];
+        int numMetrics = 0;
+        
+        for (T metric : metrics) {
+            if (metric == null) continue;
+            if (sizesInBytes != null) sizesInBytes[numMetrics] = MetricMemoryBudget.getEstimatedSizeInBytes(metric);
+            numMetrics++;
+        }
+        
+        if (numMetrics == 0) return 0;
+        
+        int numMetricsToAdd = reserveRoom(sizesInBytes, numMetrics, metricMemoryBudget, collectorInstrumentation);
+        if (numMetricsToAdd == 0) return 0;
+        
+        // build a chain of nodes (the newest metric first), then splice it onto the top of the stack
+        Node<T> chainHead = null;
+        Node<T> chainTail = null;
+        int numMetricsAdded = 0;
+        
+        for (T metric : metrics) {
+            if (numMetricsAdded == numMetricsToAdd) break;
+            if (metric == null) continue;
+            
+            int sizeInBytes = (sizesInBytes == null) ? 0 : sizesInBytes[numMetricsAdded];
+            Node<T> node = new Node<>(metric, sizeInBytes, collectorInstrumentation);
+            node.next_ = chainHead;
+            chainHead = node;
+            if (chainTail == null) chainTail = node;
+            numMetricsAdded++;
+        }
+        
+        push(chainHead, chainTail);
+        
+        return numMetricsAdded;
+    }
+    
+    /*
+    Reserves room for as many of the first 'numMetrics' metrics as will fit (making room per the overflow policy, if needed), & counts the rest as dropped.
+    Returns the number of metrics that room was reserved for.
+    */
+    private int reserveRoom(int[] sizesInBytes, int numMetrics, MetricMemoryBudget metricMemoryBudget, 
+            AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        int numMetricsToAdd = reserve(sizesInBytes, 0, numMetrics, metricMemoryBudget, collectorInstrumentation);
+        
+        // the queue (or the collector) is full. make room for the rest of the metrics by dropping queued metrics, then try again.
+        if ((numMetricsToAdd < numMetrics) && (metricMemoryBudget != null) && (metricMemoryBudget.getOverflowPolicy() != MetricMemoryBudget.OVERFLOW_POLICY_DROP_NEWEST)) {
+            makeRoom(sizesInBytes, numMetricsToAdd, numMetrics, metricMemoryBudget, collectorInstrumentation);
+            numMetricsToAdd += reserve(sizesInBytes, numMetricsToAdd, numMetrics, metricMemoryBudget, collectorInstrumentation);
+        }
+        
+        int numDroppedMetrics = numMetrics - numMetricsToAdd;
+        if (numDroppedMetrics > 0) {
+            numDroppedMetrics_.addAndGet(numDroppedMetrics);
+            if (collectorInstrumentation != null) collectorInstrumentation.recordDroppedMetrics(numDroppedMetrics);
+        }
+        
+        return numMetricsToAdd;
+    }
+    
+    /*
+    Splices a chain of nodes (linked from 'chainHead' to 'chainTail') onto the top of the stack.
+    */
+    private void push(Node<T> chainHead, Node<T> chainTail) {
+        
+        Node<T> head;
+        do {
+            head = head_.get();
+            chainTail.next_ = head;
+        } while (!head_.compareAndSet(head, chainHead));
+    }
+    
+    /*
+    Reserves room (in the queue, & in the memory budget) for as many of the metrics from 'start' to 'end' as will fit, in order. 
+    Returns the number of metrics that room was reserved for.
+    */
+    private int reserve(int[] sizesInBytes, int start, int end, MetricMemoryBudget metricMemoryBudget, 
+            AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        int numMetricsToReserve;
+        while (true) {
+            int currentSize = size_.get();
+            numMetricsToReserve = Math.max(0, Math.min(end - start, maxSize_ - currentSize));
+            if (size_.compareAndSet(currentSize, currentSize + numMetricsToReserve)) break;
+        }
+        
+        if ((metricMemoryBudget == null) || (numMetricsToReserve == 0)) return numMetricsToReserve;
+        
+        long numBytesWanted = 0;
+        for (int i = start; i < (start + numMetricsToReserve); i++) numBytesWanted += sizesInBytes[i];
+        
+        // a collector's own limit is checked, but not reserved, so concurrent adds from the same collector can overshoot it by a batch
+        if ((collectorInstrumentation != null) && (metricMemoryBudget.getMaxBytesPerCollector() > 0)) {
+            long numCollectorBytesAvailable = metricMemoryBudget.getMaxBytesPerCollector() - collectorInstrumentation.getNumQueuedBytes();
+            numBytesWanted = Math.max(0, Math.min(numBytesWanted, numCollectorBytesAvailable));
+        }
+        
+        long numBytesReserved = metricMemoryBudget.reserveBytes(numBytesWanted);
+        
+        int numMetricsReserved = 0;
+        long numBytesUsed = 0;
+        while ((numMetricsReserved < numMetricsToReserve) && ((numBytesUsed + sizesInBytes[start + numMetricsReserved]) <= numBytesReserved)) {
+            numBytesUsed += sizesInBytes[start + numMetricsReserved];
+            numMetricsReserved++;
+        }
+        
+        // give back what the metrics that didn't fit had reserved
+        metricMemoryBudget.releaseBytes(numBytesReserved - numBytesUsed);
+        if (numMetricsReserved < numMetricsToReserve) size_.addAndGet(numMetricsReserved - numMetricsToReserve);
+        if (collectorInstrumentation != null) collectorInstrumentation.recordQueuedBytes(numBytesUsed);
+        
+        return numMetricsReserved;
+    }
+    
+    /*
+    Drops queued metrics (per the overflow policy) to make room for the metrics from 'start' to 'end'. 
+    Some extra room is made, so that room doesn't need to be made on every add while the queue stays full.
+    If the collector is over its own limit, then its metrics are dropped. If the queue is over its limits, then any of this queue's metrics can be dropped.
+    */
+    private void makeRoom(int[] sizesInBytes, int start, int end, MetricMemoryBudget metricMemoryBudget, 
+            AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        int numMetricsNeeded = end - start;
+        long numBytesNeeded = 0;
+        for (int i = start; i < end; i++) numBytesNeeded += sizesInBytes[i];
+        
+        long maxBytesPerCollector = metricMemoryBudget.getMaxBytesPerCollector();
+        if ((collectorInstrumentation != null) && (maxBytesPerCollector > 0)) {
+            long numCollectorBytesOver = collectorInstrumentation.getNumQueuedBytes() + numBytesNeeded - maxBytesPerCollector;
+            if (numCollectorBytesOver > 0) {
+                evictMetrics(0, numCollectorBytesOver + (maxBytesPerCollector / EXTRA_ROOM_DIVISOR), metricMemoryBudget, collectorInstrumentation);
+            }
+        }
+        
+        int numMetricsOver = size_.get() + numMetricsNeeded - maxSize_;
+        long numBytesOver = metricMemoryBudget.getNumBytes() + numBytesNeeded - metricMemoryBudget.getMaxBytes();
+        if ((numMetricsOver > 0) || (numBytesOver > 0)) {
+            int numMetricsToFree = (numMetricsOver > 0) ? (numMetricsOver + (maxSize_ / EXTRA_ROOM_DIVISOR)) : 0;
+            long numBytesToFree = (numBytesOver > 0) ? (numBytesOver + (metricMemoryBudget.getMaxBytes() / EXTRA_ROOM_DIVISOR)) : 0;
+            evictMetrics(numMetricsToFree, numBytesToFree, metricMemoryBudget, null);
+        }
+    }
+    
+    /*
+    Drops queued metrics until at least 'numMetricsToFree' metrics & 'numBytesToFree' bytes are freed (or until there is nothing left to drop).
+    drop_oldest drops the oldest metrics. sample drops metrics at random from across the whole queue.
+    If 'collectorInstrumentation' isn't null, then only that collector's metrics are dropped.
+    
+    The whole stack is taken (like a drain), the dropped nodes are unlinked, & the rest are spliced back on top of the stack.
+    Metrics that were added while this was happening end up below the spliced metrics, so they are output slightly out of order.
+    */
+    private void evictMetrics(int numMetricsToFree, long numBytesToFree, MetricMemoryBudget metricMemoryBudget, 
+            AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+        
+        synchronized (evictionLock_) {
+            Node<T> node = head_.getAndSet(null);
+            if (node == null) return;
+            
+            int numEligibleMetrics = 0;
+            long numEligibleBytes = 0;
+            for (Node<T> current = node; current != null; current = current.next_) {
+                if ((collectorInstrumentation != null) && (current.collectorInstrumentation_ != collectorInstrumentation)) continue;
+                numEligibleMetrics++;
+                numEligibleBytes += current.sizeInBytes_;
+            }
+            
+            boolean isSample = (metricMemoryBudget.getOverflowPolicy() == MetricMemoryBudget.OVERFLOW_POLICY_SAMPLE);
+            double evictFraction = Math.max(getFraction(numMetricsToFree, numEligibleMetrics), getFraction(numBytesToFree, numEligibleBytes));
+            
+            // drop_oldest keeps the newest metrics that fit (the stack is newest first), & drops everything older
+            int numMetricsToKeep = numEligibleMetrics - numMetricsToFree;
+            long numBytesToKeep = numEligibleBytes - numBytesToFree;
+            int numMetricsKept = 0;
+            long numBytesKept = 0;
+            boolean isEvictingRemainder = false;
+            
+            Node<T> keptHead = null;
+            Node<T> keptTail = null;
+            int numEvictedMetrics = 0;
+            long numEvictedBytes = 0;
+            
+            Node<T> current = node;
+            while (current != null) {
+                Node<T> next = current.next_;
+                boolean isEligible = (collectorInstrumentation == null) || (current.collectorInstrumentation_ == collectorInstrumentation);
+                boolean isEvicted = false;
+                
+                if (isEligible && isSample) {
+                    isEvicted = ThreadLocalRandom.current().nextDouble() < evictFraction;
+                }
+                else if (isEligible) {
+                    if (!isEvictingRemainder) isEvictingRemainder = ((numMetricsKept + 1) > numMetricsToKeep) || ((numBytesKept + current.sizeInBytes_) > numBytesToKeep);
+                    isEvicted = isEvictingRemainder;
+                    
+                    if (!isEvicted) {
+                        numMetricsKept++;
+                        numBytesKept += current.sizeInBytes_;
+                    }
+                }
+                
+                if (isEvicted) {
+                    numEvictedMetrics++;
+                    numEvictedBytes += current.sizeInBytes_;
+                    
+                    if (current.collectorInstrumentation_ != null) {
+                        current.collectorInstrumentation_.recordQueuedBytes(-current.sizeInBytes_);
+                        current.collectorInstrumentation_.recordDroppedMetrics(1);
+                    }
+                }
+                else {
+                    current.next_ = null;
+                    if (keptTail == null) keptHead = current;
+                    else keptTail.next_ = current;
+                    keptTail = current;
+                }
+                
+                current = next;
+            }
+            
+            size_.addAndGet(-numEvictedMetrics);
+            numDroppedMetrics_.addAndGet(numEvictedMetrics);
+            metricMemoryBudget.releaseBytes(numEvictedBytes);
+            
+            if (keptHead != null) push(keptHead, keptTail);
+        }
+    }
+    
+    private static double getFraction(long numerator, long denominator) {
+        if (numerator <= 0) return 0;
+        if (denominator <= 0) return 1;
+        return (double) numerator / denominator;
+    }
+    
+    /*
+    Removes & returns every metric that is currently in the queue (oldest first).
+    */
+    public List<T> drain() {
+        
+        Node<T> node = head_.getAndSet(null);
+        if (node == null) return new ArrayList<>();
+        
+        // count the metrics, & give back their bytes. consecutive nodes are usually from the same collector, so each collector's bytes are given back in runs.
+        int numMetrics = 0;
+        long numBytes = 0;
+        AgentInstrumentation.CollectorInstrumentation collectorInstrumentation = null;
+        long numCollectorBytes = 0;
+        
+        for (Node<T> current = node; current != null; current = current.next_) {
+            numMetrics++;
+            if (current.sizeInBytes_ == 0) continue;
+            
+            numBytes += current.sizeInBytes_;
+            
+            if (current.collectorInstrumentation_ != collectorInstrumentation) {
+                if (collectorInstrumentation != null) collectorInstrumentation.recordQueuedBytes(-numCollectorBytes);
+                collectorInstrumentation = current.collectorInstrumentation_;
+                numCollectorBytes = 0;
+            }
+            
+            numCollectorBytes += current.sizeInBytes_;
+        }
+        
+        if (collectorInstrumentation != null) collectorInstrumentation.recordQueuedBytes(-numCollectorBytes);
+        
+        size_.addAndGet(-numMetrics);
+        MetricMemoryBudget metricMemoryBudget = metricMemoryBudget_;
+        if (metricMemoryBudget != null) metricMemoryBudget.releaseBytes(numBytes);
+        
+        List<T> metrics = new ArrayList<>(numMetrics);
+        for (int i = 0; i < numMetrics; i++) metrics.add(null);
+        
+        int i = numMetrics - 1;
+        for (Node<T> current = node; current != null; current = current.next_) {
+            metrics.set(i, current.value_);
+            i--;
+        }
+        
+        return metrics;
+    }
+    
+    public boolean isEmpty() {
+        return head_.get() == null;
+    }
+    
+    public int size() {
+        return size_.get();
+    }
+    
+    public int getMaxSize() {
+        return maxSize_;
+    }
+    
+    public void setMaxSize(int maxSize) {
+        this.maxSize_ = maxSize;
+    }
+    
+    public MetricRelabeler getMetricRelabeler() {
+        return metricRelabeler_;
+    }
+    
+    public void setMetricRelabeler(MetricRelabeler metricRelabeler) {
+        this.metricRelabeler_ = metricRelabeler;
+    }
+    
+    public MetricMemoryBudget getMetricMemoryBudget() {
+        return metricMemoryBudget_;
+    }
+    
+    /*
+    Should be set before metrics are added. Metrics that were queued before it was set aren't counted against it.
+    */
+    public void setMetricMemoryBudget(MetricMemoryBudget metricMemoryBudget) {
+        this.metricMemoryBudget_ = metricMemoryBudget;
+    }
+    
+    public long getNumDroppedMetrics() {
+        return numDroppedMetrics_.get();
+    }
+    
+    private static final class Node<T> {
+        
+        private final T value_;
+        private final int sizeInBytes_;
+        private final AgentInstrumentation.CollectorInstrumentation collectorInstrumentation_;
+        private Node<T> next_;
+        
+        private Node(T value, int sizeInBytes, AgentInstrumentation.CollectorInstrumentation collectorInstrumentation) {
+            this.value_ = value;
+            this.sizeInBytes_ = sizeInBytes;
+            this.collectorInstrumentation_ = collectorInstrumentation;
+        }
+    
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the (estimated) heap that queued metrics can use, shared by the ingestion queues (see MetricIngestionQueue).
+ * There is a limit for all queued metrics, & an optional limit for the metrics of any one collector -- so that one runaway collector (ex- JMX with thousands of MBeans)
+ * can't use up the whole budget. When a limit is reached, the overflow policy decides what is dropped:
+ *   drop_newest : the metrics that are being added are dropped.
+ *   drop_oldest : the oldest queued metrics are dropped to make room.
+ *   sample      : queued metrics are dropped at random (spread evenly across the backlog) to make room, so the backlog still covers the whole stall, at a lower resolution.
+ *
+ * Sizes are estimates of each metric's retained heap (the metric object, its strings, & its queue node), on a 64-bit JVM with compressed references.
+ * Strings are counted at 2 bytes per character, & strings that are shared between metrics (ex- cached metric names) are counted for every metric,
+ * so the estimates err on the high side.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricMemoryBudget {
+    
+    public static final int OVERFLOW_POLICY_DROP_NEWEST = 0;
+    public static final int OVERFLOW_POLICY_DROP_OLDEST = 1;
+    public static final int OVERFLOW_POLICY_SAMPLE = 2;
+    
+    // object header + fields, rounded up to 8 bytes
+    private static final int QUEUE_NODE_SIZE_IN_BYTES = 32;
+    private static final int GRAPHITE_METRIC_SIZE_IN_BYTES = 64;
+    private static final int OPENTSDB_METRIC_SIZE_IN_BYTES = 72;
+    private static final int UNKNOWN_METRIC_SIZE_IN_BYTES = 256;
+    private static final int STRING_SIZE_IN_BYTES = 24;
+    private static final int ARRAY_HEADER_SIZE_IN_BYTES = 16;
+    
+    private final long maxBytes_;
+    private final long maxBytesPerCollector_;
+    private final int overflowPolicy_;
+    
+    private final AtomicLong numBytes_ = new AtomicLong(0);
+    
+    /*
+    'maxBytesPerCollector' : 0 means that collectors don't have their own limit (only the overall limit applies).
+    */
+    public MetricMemoryBudget(long maxBytes, long maxBytesPerCollector, int overflowPolicy) {
+        this.maxBytes_ = Math.max(1, maxBytes);
+        this.maxBytesPerCollector_ = Math.max(0, maxBytesPerCollector);
+        this.overflowPolicy_ = overflowPolicy;
+    }
+    
+    /*
+    Returns the overflow policy code of an overflow policy name ('drop_newest', 'drop_oldest', 'sample'). Returns -1 if the name isn't recognized.
+    */
+    public static int getOverflowPolicyCode(String overflowPolicyName) {
+        
+        if (overflowPolicyName == null) return -1;
+        
+        String overflowPolicy = overflowPolicyName.trim();
+        
+        if (overflowPolicy.equalsIgnoreCase("drop_newest")) return OVERFLOW_POLICY_DROP_NEWEST;
+        else if (overflowPolicy.equalsIgnoreCase("drop_oldest")) return OVERFLOW_POLICY_DROP_OLDEST;
+        else if (overflowPolicy.equalsIgnoreCase("sample")) return OVERFLOW_POLICY_SAMPLE;
+        
+        return -1;
+    }
+    
+    /*
+    The estimated heap that a queued metric retains, including its queue node.
+    */
+    public static int getEstimatedSizeInBytes(Object metric) {
+        
+        if (metric instanceof GraphiteMetric) {
+            return QUEUE_NODE_SIZE_IN_BYTES + GRAPHITE_METRIC_SIZE_IN_BYTES + getEstimatedSizeInBytes(((GraphiteMetric) metric).getMetricPath());
+        }
+        else if (metric instanceof OpenTsdbMetric) {
+            return QUEUE_NODE_SIZE_IN_BYTES + OPENTSDB_METRIC_SIZE_IN_BYTES + getEstimatedSizeInBytes(((OpenTsdbMetric) metric).getMetricKey());
+        }
+        else return QUEUE_NODE_SIZE_IN_BYTES + UNKNOWN_METRIC_SIZE_IN_BYTES;
+    }
+    
+    private static int getEstimatedSizeInBytes(String string) {
+        if (string == null) return 0;
+        return STRING_SIZE_IN_BYTES + ((ARRAY_HEADER_SIZE_IN_BYTES + (2 * string.length()) + 7) & ~7);
+    }
+    
+    /*
+    Reserves as many bytes as are available, up to 'numBytes'. Returns the number of bytes that were reserved.
+    */
+    protected long reserveBytes(long numBytes) {
+        
+        while (true) {
+            long currentNumBytes = numBytes_.get();
+            long numBytesToReserve = Math.max(0, Math.min(numBytes, maxBytes_ - currentNumBytes));
+            if (numBytes_.compareAndSet(currentNumBytes, currentNumBytes + numBytesToReserve)) return numBytesToReserve;
+        }
+    }
+    
+    protected void releaseBytes(long numBytes) {
+        if (numBytes != 0) numBytes_.addAndGet(-numBytes);
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes_;
+    }
+    
+    public long getMaxBytesPerCollector() {
+        return maxBytesPerCollector_;
+    }
+    
+    public int getOverflowPolicy() {
+        return overflowPolicy_;
+    }
+    
+    /*
+    The estimated bytes of all queued metrics.
+    */
+    public long getNumBytes() {
+        return numBytes_.get();
+    }
+
+}
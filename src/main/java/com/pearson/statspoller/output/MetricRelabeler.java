@@ -0,0 +1,299 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drops, keeps, & renames metrics as they are queued for output, using an ordered list of regex rules (see 'metric_relabel_rule').
+ *
+ * Rules are matched against the metric name (a Graphite metric path, or an OpenTSDB metric name -- tags are never changed), & are applied in order.
+ * A 'drop' rule drops metrics whose name matches. A 'keep' rule drops metrics whose name doesn't match. A 'rewrite' rule renames metrics whose name matches.
+ * Later rules see the name that earlier rewrites produced. Regexes must match the entire name.
+ *
+ * The rules are only evaluated the first time a series is seen. The outcome is cached by series key (Graphite metric path, or OpenTSDB metric key),
+ * so for a series that has already been seen, relabeling costs a single hash lookup.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricRelabeler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricRelabeler.class.getName());
+    
+    public static final byte ACTION_DROP = 1;
+    public static final byte ACTION_KEEP = 2;
+    public static final byte ACTION_REWRITE = 3;
+    
+    // a source that outputs more distinct series than this (ex- names with embedded ids) has the cache emptied, rather than growing forever
+    private static final int MAX_CACHED_SERIES = 200000;
+    
+    private static final RelabelOutcome OUTCOME_UNCHANGED = new RelabelOutcome(false, null, null);
+    private static final RelabelOutcome OUTCOME_DROP = new RelabelOutcome(true, null, null);
+    
+    private final List<RelabelRule> relabelRules_;
+    
+    // k=series key, v=what the rules do to that series
+    private final ConcurrentHashMap<String,RelabelOutcome> relabelOutcomes_ = new ConcurrentHashMap<>();
+    
+    private final AtomicLong numDroppedMetrics_ = new AtomicLong(0);
+    private final AtomicLong numRewrittenMetrics_ = new AtomicLong(0);
+    
+    public MetricRelabeler(List<RelabelRule> relabelRules) {
+        List<RelabelRule> relabelRulesLocal = new ArrayList<>();
+        
+        if (relabelRules != null) {
+            for (RelabelRule relabelRule : relabelRules) {
+                if (relabelRule != null) relabelRulesLocal.add(relabelRule);
+            }
+        }
+        
+        this.relabelRules_ = Collections.unmodifiableList(relabelRulesLocal);
+    }
+    
+    /*
+    Returns the metrics, minus the dropped ones, with renamed metrics replaced by renamed copies.
+    If no metric was dropped or renamed, then the input list itself is returned.
+    */
+    public <T> List<T> relabelMetrics(List<T> metrics) {
+        
+        if ((metrics == null) || metrics.isEmpty() || relabelRules_.isEmpty()) return metrics;
+        
+        List<T> relabeledMetrics = null;
+        
+        for (int i = 0; i < metrics.size(); i++) {
+            T metric = metrics.get(i);
+            T relabeledMetric = relabelMetric(metric);
+            
+            if ((relabeledMetric == metric) && (relabeledMetrics == null)) continue;
+            
+            // the first dropped or renamed metric. everything before it is unchanged.
+            if (relabeledMetrics == null) {
+                relabeledMetrics = new ArrayList<>(metrics.size());
+                for (int j = 0; j < i; j++) relabeledMetrics.add(metrics.get(j));
+            }
+            
+            if (relabeledMetric != null) relabeledMetrics.add(relabeledMetric);
+        }
+        
+        return (relabeledMetrics == null) ? metrics : relabeledMetrics;
+    }
+    
+    /*
+    Returns the metric itself (if the rules don't change it), a renamed copy of the metric, or null if the metric is dropped.
+    Metrics that aren't GraphiteMetric or OpenTsdbMetric objects are returned untouched.
+    A renamed copy is the same class as the metric it was copied from, so it can take the metric's place in a list of the metric's type.
+    */
+    @SuppressWarnings("unchecked")
+    public <T> T relabelMetric(T metric) {
+        return (T) getRelabeledMetric(metric);
+    }
+    
+    private Object getRelabeledMetric(Object metric) {
+        
+        if ((metric == null) || relabelRules_.isEmpty()) return metric;
+        
+        try {
+            if (metric instanceof GraphiteMetric) {
+                GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+                String seriesKey = graphiteMetric.getMetricPath();
+                if (seriesKey == null) return metric;
+                
+                RelabelOutcome relabelOutcome = relabelOutcomes_.get(seriesKey);
+                if (relabelOutcome == null) relabelOutcome = cacheRelabelOutcome(seriesKey, seriesKey, null);
+                
+                if (relabelOutcome == OUTCOME_UNCHANGED) return metric;
+                if (relabelOutcome.isDrop()) {
+                    numDroppedMetrics_.incrementAndGet();
+                    return null;
+                }
+                
+                numRewrittenMetrics_.incrementAndGet();
+                return graphiteMetric.getRenamedCopy(relabelOutcome.getMetricName());
+            }
+            else if (metric instanceof OpenTsdbMetric) {
+                OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+                String seriesKey = openTsdbMetric.getMetricKey();
+                if (seriesKey == null) return metric;
+                
+                RelabelOutcome relabelOutcome = relabelOutcomes_.get(seriesKey);
+                if (relabelOutcome == null) relabelOutcome = cacheRelabelOutcome(seriesKey, openTsdbMetric.getMetric(), openTsdbMetric);
+                
+                if (relabelOutcome == OUTCOME_UNCHANGED) return metric;
+                if (relabelOutcome.isDrop()) {
+                    numDroppedMetrics_.incrementAndGet();
+                    return null;
+                }
+                
+                OpenTsdbMetric renamedOpenTsdbMetric = openTsdbMetric.getCopyWithMetric(relabelOutcome.getMetricName(), relabelOutcome.getSeriesKey());
+                if (renamedOpenTsdbMetric == null) return metric;
+                
+                numRewrittenMetrics_.incrementAndGet();
+                return renamedOpenTsdbMetric;
+            }
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        
+        return metric;
+    }
+    
+    /*
+    Runs the rules against a series that hasn't been seen yet, & caches the outcome.
+    'openTsdbMetric' is only used to build the renamed OpenTSDB metric key. It is null for Graphite metrics.
+    */
+    private RelabelOutcome cacheRelabelOutcome(String seriesKey, String metricName, OpenTsdbMetric openTsdbMetric) {
+        
+        RelabelOutcome relabelOutcome;
+        String relabeledMetricName = getRelabeledMetricName(metricName);
+        
+        if (relabeledMetricName == null) relabelOutcome = OUTCOME_DROP;
+        else if (relabeledMetricName.equals(metricName)) relabelOutcome = OUTCOME_UNCHANGED;
+        else if (openTsdbMetric == null) relabelOutcome = new RelabelOutcome(false, relabeledMetricName, relabeledMetricName);
+        else relabelOutcome = new RelabelOutcome(false, relabeledMetricName, openTsdbMetric.getMetricKeyWithMetric(relabeledMetricName));
+        
+        if (relabelOutcomes_.size() >= MAX_CACHED_SERIES) relabelOutcomes_.clear();
+        relabelOutcomes_.put(seriesKey, relabelOutcome);
+        
+        return relabelOutcome;
+    }
+    
+    /*
+    Applies the rules, in order, to a metric name. Returns null if the metric is dropped.
+    */
+    private String getRelabeledMetricName(String metricName) {
+        
+        if (metricName == null) return null;
+        
+        String relabeledMetricName = metricName;
+        
+        for (RelabelRule relabelRule : relabelRules_) {
+            Matcher matcher = relabelRule.getPattern().matcher(relabeledMetricName);
+            boolean isMatch = matcher.matches();
+            
+            if ((relabelRule.getAction() == ACTION_DROP) && isMatch) return null;
+            else if ((relabelRule.getAction() == ACTION_KEEP) && !isMatch) return null;
+            else if ((relabelRule.getAction() == ACTION_REWRITE) && isMatch) relabeledMetricName = matcher.replaceFirst(relabelRule.getReplacement());
+            
+            if (relabeledMetricName.isEmpty()) return null;
+        }
+        
+        return relabeledMetricName;
+    }
+    
+    public int getNumRelabelRules() {
+        return relabelRules_.size();
+    }
+    
+    public long getNumDroppedMetrics() {
+        return numDroppedMetrics_.get();
+    }
+    
+    public long getNumRewrittenMetrics() {
+        return numRewrittenMetrics_.get();
+    }
+    
+    public int getNumCachedSeries() {
+        return relabelOutcomes_.size();
+    }
+    
+    /*
+    A single compiled rule. Use 'createRelabelRule' to build one from its configured text.
+    */
+    public static class RelabelRule {
+        
+        private final byte action_;
+        private final Pattern pattern_;
+        private final String replacement_;
+        
+        private RelabelRule(byte action, Pattern pattern, String replacement) {
+            this.action_ = action;
+            this.pattern_ = pattern;
+            this.replacement_ = replacement;
+        }
+        
+        /*
+        'action' is 'drop', 'keep', or 'rewrite'. 'replacement' is only used by 'rewrite' rules, & can reference regex groups ($1, $2, etc).
+        Returns null (& logs why) if the rule isn't valid.
+        */
+        public static RelabelRule createRelabelRule(String action, String regex, String replacement) {
+            
+            if ((action == null) || (regex == null) || regex.isEmpty()) {
+                logger.warn("Invalid relabel rule. An action & a regex are required.");
+                return null;
+            }
+            
+            byte actionCode;
+            if (action.trim().equalsIgnoreCase("drop")) actionCode = ACTION_DROP;
+            else if (action.trim().equalsIgnoreCase("keep")) actionCode = ACTION_KEEP;
+            else if (action.trim().equalsIgnoreCase("rewrite")) actionCode = ACTION_REWRITE;
+            else {
+                logger.warn("Invalid relabel rule action. Valid values are 'drop', 'keep', 'rewrite'. Action=" + action.trim());
+                return null;
+            }
+            
+            if ((actionCode == ACTION_REWRITE) && (replacement == null)) {
+                logger.warn("Invalid relabel rule. 'rewrite' rules require a replacement. Regex=" + regex);
+                return null;
+            }
+            
+            try {
+                Pattern pattern = Pattern.compile(regex);
+                return new RelabelRule(actionCode, pattern, replacement);
+            }
+            catch (Exception e) {
+                logger.warn("Invalid relabel rule regex. Regex=" + regex + ", Error=" + e.toString());
+                return null;
+            }
+        }
+        
+        public byte getAction() {
+            return action_;
+        }
+        
+        public Pattern getPattern() {
+            return pattern_;
+        }
+        
+        public String getReplacement() {
+            return replacement_;
+        }
+    
+    }
+    
+    private static class RelabelOutcome {
+        
+        private final boolean isDrop_;
+        private final String metricName_;
+        private final String seriesKey_;
+        
+        public RelabelOutcome(boolean isDrop, String metricName, String seriesKey) {
+            this.isDrop_ = isDrop;
+            this.metricName_ = metricName;
+            this.seriesKey_ = seriesKey;
+        }
+        
+        public boolean isDrop() {
+            return isDrop_;
+        }
+        
+        public String getMetricName() {
+            return metricName_;
+        }
+        
+        public String getSeriesKey() {
+            return seriesKey_;
+        }
+    
+    }
+
+}
@@ -0,0 +1,381 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable, append-only, on-disk queue of output messages (one spool per output module).
+ *
+ * Messages are stored in numbered segment files as length-prefixed records. New records are always appended to the newest segment.
+ * Records are read back oldest-first via peek, and are only removed from the spool once they are committed.
+ * A segment file is deleted once all of its records have been committed, or when the spool exceeds its maximum size (oldest segment first).
+ *
+ * Every peeked record carries its position in the spool (segment id + the offset just past the record), & commit takes a position rather than a record count.
+ * Segment ids only ever increase, so if segments are evicted between a peek & its commit, the commit only removes what is still in front of that position.
+ * It never removes newer records that weren't peeked.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class MetricSpool {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricSpool.class.getName());
+    
+    private static final String SEGMENT_FILENAME_EXTENSION = ".spool";
+    private static final int RECORD_HEADER_SIZE_IN_BYTES = 4;
+    
+    private final String spoolId_;
+    private final File spoolDirectory_;
+    private final long maxSpoolSizeInBytes_;
+    private final long maxSegmentSizeInBytes_;
+    
+    // key=segment id, value=segment size in bytes
+    private final TreeMap<Long,Long> segments_ = new TreeMap<>();
+    private long spoolSizeInBytes_ = 0;
+    
+    private FileChannel writeChannel_ = null;
+    private long writeSegmentId_ = -1;
+    
+    // the newest segment id that has been used. new segment ids are always larger, even if every segment has been deleted.
+    private long lastSegmentId_ = -1;
+    
+    // the position of the oldest uncommitted record in the oldest segment
+    private long readPosition_ = 0;
+    
+    private final ReentrantLock replayLock_ = new ReentrantLock();
+    
+    private long numEvictedSegments_ = 0;
+    private boolean isOpen_ = false;
+    
+    public MetricSpool(String spoolId, String spoolDirectory, long maxSpoolSizeInBytes, long maxSegmentSizeInBytes) {
+        this.spoolId_ = spoolId;
+        this.spoolDirectory_ = new File(spoolDirectory, spoolId);
+        this.maxSpoolSizeInBytes_ = maxSpoolSizeInBytes;
+        this.maxSegmentSizeInBytes_ = (maxSegmentSizeInBytes > maxSpoolSizeInBytes) ? maxSpoolSizeInBytes : maxSegmentSizeInBytes;
+        
+        open();
+    }
+    
+    /*
+    Finds any segments that were left behind by a previous run of StatsPoller. Data in these segments is replayed like any other spooled data.
+    */
+    private synchronized void open() {
+        
+        try {
+            if (!spoolDirectory_.exists() && !spoolDirectory_.mkdirs()) {
+                logger.error("Unable to create spool directory. SpoolId=\"" + spoolId_ + "\", Directory=\"" + spoolDirectory_.getAbsolutePath() + "\"");
+                return;
+            }
+            
+            File[] files = spoolDirectory_.listFiles();
+            
+            if (files != null) {
+                for (File file : files) {
+                    Long segmentId = getSegmentId(file);
+                    if (segmentId == null) continue;
+                    
+                    segments_.put(segmentId, file.length());
+                    spoolSizeInBytes_ += file.length();
+                    lastSegmentId_ = Math.max(lastSegmentId_, segmentId);
+                }
+            }
+            
+            isOpen_ = true;
+            
+            if (!segments_.isEmpty()) {
+                logger.info("Found existing spooled data. SpoolId=\"" + spoolId_ + "\", NumSegments=" + segments_.size() + ", SpoolSizeInBytes=" + spoolSizeInBytes_);
+            }
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+    }
+    
+    /*
+    Appends a record to the end of the spool. If the spool grows beyond its maximum size, then the oldest segments are evicted.
+    */
+    public boolean append(byte[] record) {
+        if (record == null) return true;
+        return append(record, 0, record.length);
+    }
+    
+    /*
+    Appends 'length' bytes of 'record', starting at 'offset', as a single record.
+    */
+    public synchronized boolean append(byte[] record, int offset, int length) {
+        
+        if ((record == null) || (length <= 0)) return true;
+        if (!isOpen_) return false;
+        
+        long recordSizeInBytes = RECORD_HEADER_SIZE_IN_BYTES + length;
+        if (recordSizeInBytes > maxSegmentSizeInBytes_) {
+            logger.warn("Record is too large to spool. SpoolId=\"" + spoolId_ + "\", RecordSizeInBytes=" + recordSizeInBytes);
+            return false;
+        }
+        
+        try {
+            if ((writeChannel_ == null) || ((segments_.get(writeSegmentId_) + recordSizeInBytes) > maxSegmentSizeInBytes_)) {
+                rollWriteSegment();
+            }
+            
+            ByteBuffer byteBuffer = ByteBuffer.allocate((int) recordSizeInBytes);
+            byteBuffer.putInt(length);
+            byteBuffer.put(record, offset, length);
+            byteBuffer.flip();
+            
+            while (byteBuffer.hasRemaining()) writeChannel_.write(byteBuffer);
+            
+            segments_.put(writeSegmentId_, segments_.get(writeSegmentId_) + recordSizeInBytes);
+            spoolSizeInBytes_ += recordSizeInBytes;
+            
+            evictOldestSegmentsIfOverMaxSize();
+            
+            return true;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return false;
+        }
+    }
+    
+    /*
+    Returns (up to) the oldest 'maxRecords' records in the spool, without removing them. 
+    Use 'commit' with the position of the last record that was sent to remove records after they have been sent.
+    */
+    public synchronized List<SpooledRecord> peek(int maxRecords) {
+        
+        List<SpooledRecord> records = new ArrayList<>();
+        if (!isOpen_ || (maxRecords <= 0) || segments_.isEmpty()) return records;
+        
+        Long segmentId = segments_.firstKey();
+        long position = readPosition_;
+        
+        while ((records.size() < maxRecords) && (segmentId != null)) {
+            FileChannel channel = null;
+            
+            try {
+                File segmentFile = getSegmentFile(segmentId);
+                if (segmentFile.exists()) channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ);
+                
+                while ((channel != null) && (records.size() < maxRecords)) {
+                    byte[] record = readRecord(channel, position, segments_.get(segmentId));
+                    if (record == null) break;
+                    
+                    position += RECORD_HEADER_SIZE_IN_BYTES + record.length;
+                    records.add(new SpooledRecord(record, new Position(segmentId, position)));
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+                break;
+            }
+            finally {
+                closeChannel(channel);
+            }
+            
+            segmentId = segments_.higherKey(segmentId);
+            position = 0;
+        }
+        
+        return records;
+    }
+    
+    /*
+    Removes every record in front of 'position' (the end position of the last record that was sent). Segments that have been fully consumed are deleted.
+    If the segments that the position refers to were evicted after they were peeked, then only what is still in front of the position is removed.
+    */
+    public synchronized void commit(Position position) {
+        
+        if (!isOpen_ || (position == null)) return;
+        
+        // segments older than the position's segment were fully peeked (& sent)
+        while (!segments_.isEmpty() && (segments_.firstKey() < position.getSegmentId())) deleteSegment(segments_.firstKey());
+        
+        // the position's segment was evicted. everything that is left is newer than what was peeked.
+        if (segments_.isEmpty() || (segments_.firstKey() != position.getSegmentId())) return;
+            
+        readPosition_ = Math.max(readPosition_, position.getOffset());
+        if (readPosition_ >= segments_.get(position.getSegmentId())) deleteSegment(position.getSegmentId());
+    }
+    
+    public synchronized boolean isEmpty() {
+        return segments_.isEmpty() || (spoolSizeInBytes_ - readPosition_ <= 0);
+    }
+    
+    public synchronized long getSpoolSizeInBytes() {
+        return spoolSizeInBytes_ - readPosition_;
+    }
+    
+    public synchronized long getNumEvictedSegments() {
+        return numEvictedSegments_;
+    }
+    
+    public ReentrantLock getReplayLock() {
+        return replayLock_;
+    }
+    
+    public String getSpoolId() {
+        return spoolId_;
+    }
+    
+    public synchronized void close() {
+        closeWriteChannel();
+        isOpen_ = false;
+    }
+    
+    private void rollWriteSegment() throws Exception {
+        closeWriteChannel();
+        
+        long segmentId = Math.max(lastSegmentId_ + 1, System.currentTimeMillis());
+        lastSegmentId_ = segmentId;
+        File segmentFile = getSegmentFile(segmentId);
+        
+        writeChannel_ = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writeSegmentId_ = segmentId;
+        segments_.put(segmentId, writeChannel_.size());
+    }
+    
+    private void evictOldestSegmentsIfOverMaxSize() {
+        
+        while ((spoolSizeInBytes_ > maxSpoolSizeInBytes_) && (segments_.size() > 1)) {
+            long oldestSegmentId = segments_.firstKey();
+            
+            logger.warn("Spool is full, evicting oldest segment. SpoolId=\"" + spoolId_ + "\", SegmentId=" + oldestSegmentId +
+                    ", SegmentSizeInBytes=" + segments_.get(oldestSegmentId));
+            
+            deleteSegment(oldestSegmentId);
+            numEvictedSegments_++;
+        }
+    }
+    
+    private void deleteSegment(long segmentId) {
+        
+        if ((!segments_.isEmpty()) && (segmentId == segments_.firstKey())) {
+            readPosition_ = 0;
+        }
+        
+        if (segmentId == writeSegmentId_) {
+            closeWriteChannel();
+        }
+        
+        Long segmentSizeInBytes = segments_.remove(segmentId);
+        if (segmentSizeInBytes != null) spoolSizeInBytes_ -= segmentSizeInBytes;
+        
+        File segmentFile = getSegmentFile(segmentId);
+        if (segmentFile.exists() && !segmentFile.delete()) {
+            logger.warn("Unable to delete spool segment. SpoolId=\"" + spoolId_ + "\", File=\"" + segmentFile.getAbsolutePath() + "\"");
+        }
+    }
+    
+    /*
+    Returns null if there isn't a complete record at the specified position.
+    A partially written record (for example, if StatsPoller crashed during a write) is treated as the end of the segment.
+    */
+    private static byte[] readRecord(FileChannel channel, long position, long segmentSizeInBytes) throws Exception {
+        
+        if ((position + RECORD_HEADER_SIZE_IN_BYTES) > segmentSizeInBytes) return null;
+        
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE_IN_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) return null;
+        }
+        header.flip();
+        
+        int recordLength = header.getInt();
+        if ((recordLength <= 0) || ((position + RECORD_HEADER_SIZE_IN_BYTES + recordLength) > segmentSizeInBytes)) return null;
+        
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + RECORD_HEADER_SIZE_IN_BYTES + record.position()) < 0) return null;
+        }
+        
+        return record.array();
+    }
+    
+    private void closeWriteChannel() {
+        closeChannel(writeChannel_);
+        writeChannel_ = null;
+        writeSegmentId_ = -1;
+    }
+    
+    private static void closeChannel(FileChannel channel) {
+        try {
+            if (channel != null) channel.close();
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+    }
+    
+    private File getSegmentFile(long segmentId) {
+        return new File(spoolDirectory_, String.format("%020d", segmentId) + SEGMENT_FILENAME_EXTENSION);
+    }
+    
+    private static Long getSegmentId(File file) {
+        
+        if ((file == null) || !file.isFile() || !file.getName().endsWith(SEGMENT_FILENAME_EXTENSION)) return null;
+        
+        try {
+            String segmentIdString = file.getName().substring(0, file.getName().length() - SEGMENT_FILENAME_EXTENSION.length());
+            return Long.valueOf(segmentIdString);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /*
+    A position in the spool -- a segment, & an offset in that segment.
+    */
+    public static final class Position {
+        
+        private final long segmentId_;
+        private final long offset_;
+        
+        public Position(long segmentId, long offset) {
+            this.segmentId_ = segmentId;
+            this.offset_ = offset;
+        }
+        
+        public long getSegmentId() {
+            return segmentId_;
+        }
+        
+        public long getOffset() {
+            return offset_;
+        }
+    
+    }
+    
+    /*
+    A peeked record, & the position just past it (commit this position once the record has been sent).
+    */
+    public static final class SpooledRecord {
+        
+        private final byte[] record_;
+        private final Position endPosition_;
+        
+        public SpooledRecord(byte[] record, Position endPosition) {
+            this.record_ = record;
+            this.endPosition_ = endPosition;
+        }
+        
+        public byte[] getRecord() {
+            return record_;
+        }
+        
+        public Position getEndPosition() {
+            return endPosition_;
+        }
+    
+    }
+
+}
@@ -3,19 +3,29 @@ package com.pearson.statspoller.output;
 import com.pearson.statspoller.globals.ApplicationConfiguration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import com.pearson.statspoller.globals.GlobalVariables;
+import com.pearson.statspoller.internal_metric_collectors.MetricRollup;
+import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteMetricFormat;
 import com.pearson.statspoller.metric_formats.graphite.GraphiteOutputModule;
+import com.pearson.statspoller.metric_formats.graphite.GraphiteShardedOutputModule;
 import com.pearson.statspoller.metric_formats.graphite.SendMetricsToGraphiteThread;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v1;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbMetricFormat_v2;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbV1HttpOutputModule;
+import com.pearson.statspoller.metric_formats.influxdb.InfluxdbV2HttpOutputModule;
+import com.pearson.statspoller.metric_formats.influxdb.SendMetricsToInfluxdbV1Thread;
+import com.pearson.statspoller.metric_formats.influxdb.SendMetricsToInfluxdbV2Thread;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbHttpOutputModule;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetricFormat;
 import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTelnetOutputModule;
 import com.pearson.statspoller.metric_formats.opentsdb.SendMetricsToOpenTsdbThread;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
-import com.pearson.statspoller.utilities.core_utils.Threads;
-import java.util.concurrent.TimeUnit;
+import com.pearson.statspoller.utilities.network_utils.TcpConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,158 +37,421 @@ public class OutputMetricsThread implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(OutputMetricsThread.class.getName());
     
     private boolean isFinished_ = false;
-    private static int maxOutputTimeForAnOutputModule_ = (int) (ApplicationConfiguration.getOutputInterval() - 2500);
-    private static int connectTimeoutForATcpOutputModule_ = (int) ((ApplicationConfiguration.getOutputInterval() - 3000) / 2);
-    private static int connectTimeoutForAHttpOutputModule_ = (int) ((ApplicationConfiguration.getOutputInterval() - 3000) / 3);
-    private static int readTimeoutForAHttpOutputModule_ = (int) (((ApplicationConfiguration.getOutputInterval() - 3000) * 2) / 3);
+    
+    // if a tcp output module can't connect to its endpoint, wait this long before trying again. the wait doubles (up to the max) on each consecutive failure.
+    private static final long MIN_TCP_RECONNECT_BACKOFF_IN_MS = 1000;
+    private static final long MAX_TCP_RECONNECT_BACKOFF_IN_MS = 300000;
+    
+    // k=output module unique id, v=the output module's spool
+    private static final Map<String,MetricSpool> metricSpools_ = new ConcurrentHashMap<>();
+    
+    // k=output module unique id, v=the output module's persistent tcp connection
+    private static final Map<String,TcpConnectionManager> tcpConnectionManagers_ = new ConcurrentHashMap<>();
+    
+    // every enabled output module's scheduler (send queue & send loop). created on the first output interval.
+    private static List<OutputModuleScheduler> outputModuleSchedulers_ = null;
+    
+    private static long previousNumDroppedGraphiteMetrics_ = 0;
+    private static long previousNumDroppedOpenTsdbMetrics_ = 0;
 
+    /*
+    Collects the metrics that were queued since the last output interval, & hands them to every output module's scheduler.
+    This doesn't wait for the output modules to send the metrics -- each output module sends on its own schedule.
+    */
     @Override
     public void run() {
-        // ensure that the threadpool stays alive for at least 2.5 seconds
-        if (maxOutputTimeForAnOutputModule_ < 2500) maxOutputTimeForAnOutputModule_ = 2500;
         
-        // ensure that at least 1 second is allowed to connect to the server (opentsdb telnet, graphite)
-        if (connectTimeoutForATcpOutputModule_ < 1000) connectTimeoutForATcpOutputModule_ = 1000;
+        List<Object> queuedMetrics = new ArrayList<>();
+        queuedMetrics.addAll(getCurrentGraphiteMetricsAndRemoveMetricsFromGlobal());
+        queuedMetrics.addAll(getCurrentOpenTsdbMetricsAndRemoveMetricsFromGlobal());
         
-        // ensure that at least 1 second is allowed to connect to the server (opentsdb http)
-        if (connectTimeoutForAHttpOutputModule_ < 1000) connectTimeoutForAHttpOutputModule_ = 1000;
+        // fast collectors that are rolled up output their statistics once per output interval, instead of every point.
+        // rolled up statistics don't go through the ingestion queues, so they are relabeled here.
+        List<Object> rolledUpMetrics = MetricRollup.flushRollups();
+        MetricRelabeler metricRelabeler = ApplicationConfiguration.getMetricRelabeler();
+        if (metricRelabeler != null) rolledUpMetrics = metricRelabeler.relabelMetrics(rolledUpMetrics);
+        queuedMetrics.addAll(rolledUpMetrics);
         
-        // ensure that at least 1 second is allowed for the server to reply to the http request (opentsdb http)
-        if (readTimeoutForAHttpOutputModule_ < 1000) readTimeoutForAHttpOutputModule_ = 1000;
+        List<?> metrics = queuedMetrics;
         
-        List metrics = new ArrayList<>();
-        metrics.addAll(getCurrentGraphiteMetricsAndRemoveMetricsFromGlobal());
-        metrics.addAll(getCurrentOpenTsdbMetricsAndRemoveMetricsFromGlobal());
+        // collectors that run faster than the output interval can queue several points per series. only keep one of them.
+        if (ApplicationConfiguration.getOutputCompactionMode() != MetricCompactor.COMPACTION_MODE_OFF) {
+            int numUncompactedMetrics = metrics.size();
+            metrics = MetricCompactor.compactMetrics(metrics, ApplicationConfiguration.getOutputCompactionMode());
+            
+            if (logger.isDebugEnabled() && (metrics.size() < numUncompactedMetrics)) {
+                logger.debug("Compacted metrics. UncompactedMetricCount=" + numUncompactedMetrics + ", CompactedMetricCount=" + metrics.size());
+            }
+        }
+
+        // keep the latest value of each series around for prometheus to scrape
+        if (ApplicationConfiguration.isPrometheusExpositionEnabled()) {
+            GlobalVariables.prometheusMetricIndex.updateMetrics(metrics);
+            GlobalVariables.prometheusMetricIndex.removeExpiredSeries(ApplicationConfiguration.getPrometheusExpositionSeriesMaxAge());
+        }
 
-        List<Thread> outputThreads = new ArrayList<>();
-        outputThreads.addAll(getSendMetricsToAllGraphiteOutputModuleThreads(metrics, "G-" + System.currentTimeMillis()));
-        outputThreads.addAll(getSendMetricsToAllOpentsdbTelnetOutputModuleThreads(metrics, "OTSDB-T-" + System.currentTimeMillis()));
-        outputThreads.addAll(getSendMetricsToAllOpentsdbHttpOutputModuleThreads(metrics, "OTSDB-H-" + System.currentTimeMillis()));
+        // change-only output -- points whose value hasn't changed since their series was last output are dropped (except for heartbeats).
+        // this is done after prometheus is updated, so that prometheus still sees every series.
+        UnchangedMetricSuppressor unchangedMetricSuppressor = ApplicationConfiguration.getUnchangedMetricSuppressor();
+        if (unchangedMetricSuppressor != null) {
+            int numUnsuppressedMetrics = metrics.size();
+            metrics = unchangedMetricSuppressor.suppressUnchangedMetrics(metrics);
+
+            if (logger.isDebugEnabled() && (metrics.size() < numUnsuppressedMetrics)) {
+                logger.debug("Suppressed unchanged metrics. MetricCount=" + numUnsuppressedMetrics + ", OutputMetricCount=" + metrics.size());
+            }
+        }
         
-        Threads.threadExecutorCachedPool(outputThreads, maxOutputTimeForAnOutputModule_, TimeUnit.MILLISECONDS);
+        // each metric is encoded once per output format, & the encoded bytes are shared by all output modules that use that format
+        MetricEncodingCache metricEncodingCache = new MetricEncodingCache(metrics);
+        
+        for (OutputModuleScheduler outputModuleScheduler : getOutputModuleSchedulers()) {
+            outputModuleScheduler.enqueue(metrics, metricEncodingCache);
+        }
         
         isFinished_ = true;
     }
     
-    public static List<Thread> getSendMetricsToAllGraphiteOutputModuleThreads(List<? extends GraphiteMetricFormat> graphiteMetrics, String threadId) {
+    /*
+    Returns the scheduler of every enabled output module (creating & starting them if necessary).
+    */
+    public static List<OutputModuleScheduler> getOutputModuleSchedulers() {
         
-        if ((graphiteMetrics == null) || graphiteMetrics.isEmpty() || (threadId == null) || threadId.isEmpty()) {
-            return new ArrayList<>();
+        synchronized (OutputMetricsThread.class) {
+            if (outputModuleSchedulers_ != null) return outputModuleSchedulers_;
+            
+            List<OutputModuleScheduler> outputModuleSchedulers = new ArrayList<>();
+            
+            try {
+                for (final GraphiteOutputModule graphiteOutputModule : ApplicationConfiguration.getGraphiteOutputModules()) {
+                    if (!graphiteOutputModule.isOutputEnabled()) continue;
+                    final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(graphiteOutputModule.getUniqueId());
+
+                    outputModuleSchedulers.add(new OutputModuleScheduler(graphiteOutputModule.getUniqueId(), "G-", outputModuleSchedule, 
+                            new OutputModuleScheduler.SendMetricsThreadFactory() {
+                        @Override
+                        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                            return getSendMetricsToGraphiteOutputModuleThread(graphiteOutputModule, getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                        }
+                    }, getCircuitBreaker(graphiteOutputModule.getUniqueId())));
+                }
+
+                // each shard of a sharded graphite output module is sent to on its own, but only gets the metrics that hash to it
+                for (GraphiteShardedOutputModule graphiteShardedOutputModule : ApplicationConfiguration.getGraphiteShardedOutputModules()) {
+                    if (!graphiteShardedOutputModule.isOutputEnabled()) continue;
+                    final int numShards = graphiteShardedOutputModule.getNumShards();
+                    
+                    for (int i = 0; i < numShards; i++) {
+                        final int shardIndex = i;
+                        final GraphiteOutputModule shardOutputModule = graphiteShardedOutputModule.getShardOutputModules().get(i);
+                        final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(shardOutputModule.getUniqueId());
+                        
+                        outputModuleSchedulers.add(new OutputModuleScheduler(shardOutputModule.getUniqueId(), "G-S" + (shardIndex + 1) + "-", outputModuleSchedule, 
+                                new OutputModuleScheduler.SendMetricsThreadFactory() {
+                            @Override
+                            public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                                SendMetricsToGraphiteThread sendMetricsToGraphiteThread = getSendMetricsToGraphiteOutputModuleThread(shardOutputModule, 
+                                        getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                                if (sendMetricsToGraphiteThread != null) sendMetricsToGraphiteThread.setShard(numShards, shardIndex);
+                                return sendMetricsToGraphiteThread;
+                            }
+                        }, getCircuitBreaker(shardOutputModule.getUniqueId())));
+                    }
+                }
+
+                for (final OpenTsdbTelnetOutputModule openTsdbTelnetOutputModule : ApplicationConfiguration.getOpenTsdbTelnetOutputModules()) {
+                    if (!openTsdbTelnetOutputModule.isOutputEnabled()) continue;
+                    final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(openTsdbTelnetOutputModule.getUniqueId());
+
+                    outputModuleSchedulers.add(new OutputModuleScheduler(openTsdbTelnetOutputModule.getUniqueId(), "OTSDB-T-", outputModuleSchedule, 
+                            new OutputModuleScheduler.SendMetricsThreadFactory() {
+                        @Override
+                        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                            return getSendMetricsToOpentsdbTelnetOutputModuleThread(openTsdbTelnetOutputModule, getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                        }
+                    }, getCircuitBreaker(openTsdbTelnetOutputModule.getUniqueId())));
+                }
+
+                for (final OpenTsdbHttpOutputModule openTsdbHttpOutputModule : ApplicationConfiguration.getOpenTsdbHttpOutputModules()) {
+                    if (!openTsdbHttpOutputModule.isOutputEnabled()) continue;
+                    final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(openTsdbHttpOutputModule.getUniqueId());
+
+                    outputModuleSchedulers.add(new OutputModuleScheduler(openTsdbHttpOutputModule.getUniqueId(), "OTSDB-H-", outputModuleSchedule, 
+                            new OutputModuleScheduler.SendMetricsThreadFactory() {
+                        @Override
+                        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                            return getSendMetricsToOpentsdbHttpOutputModuleThread(openTsdbHttpOutputModule, getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                        }
+                    }, getCircuitBreaker(openTsdbHttpOutputModule.getUniqueId())));
+                }
+
+                for (final InfluxdbV1HttpOutputModule influxdbV1HttpOutputModule : ApplicationConfiguration.getInfluxdbV1HttpOutputModules()) {
+                    if (!influxdbV1HttpOutputModule.isOutputEnabled()) continue;
+                    final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(influxdbV1HttpOutputModule.getUniqueId());
+
+                    outputModuleSchedulers.add(new OutputModuleScheduler(influxdbV1HttpOutputModule.getUniqueId(), "INFLUXDB-V1-", outputModuleSchedule, 
+                            new OutputModuleScheduler.SendMetricsThreadFactory() {
+                        @Override
+                        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                            return getSendMetricsToInfluxdbV1HttpOutputModuleThread(influxdbV1HttpOutputModule, getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                        }
+                    }, getCircuitBreaker(influxdbV1HttpOutputModule.getUniqueId())));
+                }
+
+                for (final InfluxdbV2HttpOutputModule influxdbV2HttpOutputModule : ApplicationConfiguration.getInfluxdbV2HttpOutputModules()) {
+                    if (!influxdbV2HttpOutputModule.isOutputEnabled()) continue;
+                    final OutputModuleSchedule outputModuleSchedule = ApplicationConfiguration.getOutputModuleSchedule(influxdbV2HttpOutputModule.getUniqueId());
+
+                    outputModuleSchedulers.add(new OutputModuleScheduler(influxdbV2HttpOutputModule.getUniqueId(), "INFLUXDB-V2-", outputModuleSchedule, 
+                            new OutputModuleScheduler.SendMetricsThreadFactory() {
+                        @Override
+                        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache) {
+                            return getSendMetricsToInfluxdbV2HttpOutputModuleThread(influxdbV2HttpOutputModule, getOutputMetrics(metrics), threadId, metricEncodingCache, outputModuleSchedule);
+                        }
+                    }, getCircuitBreaker(influxdbV2HttpOutputModule.getUniqueId())));
+                }
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+            
+            for (OutputModuleScheduler outputModuleScheduler : outputModuleSchedulers) outputModuleScheduler.start();
+            
+            outputModuleSchedulers_ = outputModuleSchedulers;
+            return outputModuleSchedulers_;
         }
+    }
+    
+    /*
+    The metrics that are output are GraphiteMetric & OpenTsdbMetric objects, & both of them implement every output format.
+    So the list of metrics that is queued for the output modules can be handed to any output module, as a list of that output module's metric format.
+    */
+    @SuppressWarnings("unchecked")
+    private static <T> List<? extends T> getOutputMetrics(List<?> metrics) {
+        return (List<? extends T>) metrics;
+    }
+    
+    /*
+    Returns a new circuit breaker for an output module. Returns null if circuit breakers are disabled.
+    */
+    private static CircuitBreaker getCircuitBreaker(String outputModuleUniqueId) {
+        
+        if (!ApplicationConfiguration.isOutputCircuitBreakerEnabled()) return null;
+        
+        return new CircuitBreaker(outputModuleUniqueId, ApplicationConfiguration.getOutputCircuitBreakerFailureThreshold(), 
+                ApplicationConfiguration.getOutputCircuitBreakerMinOpenTime(), ApplicationConfiguration.getOutputCircuitBreakerMaxOpenTime());
+    }
+    
+    /*
+    Returns the thread that sends the metrics to a graphite output module. Returns null if the output module is disabled, or if there is nothing to send.
+    */
+    public static SendMetricsToGraphiteThread getSendMetricsToGraphiteOutputModuleThread(GraphiteOutputModule graphiteOutputModule, 
+            List<? extends GraphiteMetricFormat> graphiteMetrics, String threadId, MetricEncodingCache metricEncodingCache, OutputModuleSchedule outputModuleSchedule) {
         
-        List<Thread> sendMetricsToGraphiteThreads = new ArrayList<>();
-        List<GraphiteOutputModule> graphiteOutuputModules = ApplicationConfiguration.getGraphiteOutputModules();
-        if ((graphiteOutuputModules == null) || graphiteOutuputModules.isEmpty()) return sendMetricsToGraphiteThreads;
+        if ((graphiteOutputModule == null) || !graphiteOutputModule.isOutputEnabled() || (graphiteMetrics == null) || (outputModuleSchedule == null)) return null;
             
         try { 
-            for (GraphiteOutputModule graphiteOutputModule : graphiteOutuputModules) {
-                if (!graphiteOutputModule.isOutputEnabled()) continue;
+            MetricSpool metricSpool = getMetricSpool(graphiteOutputModule.getUniqueId());
+            if (graphiteMetrics.isEmpty() && ((metricSpool == null) || metricSpool.isEmpty())) return null;
                 
-                SendMetricsToGraphiteThread sendMetricsToGraphiteThread = new SendMetricsToGraphiteThread(graphiteMetrics, 
-                        graphiteOutputModule.isSanitizeMetrics(), graphiteOutputModule.isSubstituteCharacters(),
-                        graphiteOutputModule.getHost(), graphiteOutputModule.getPort(), connectTimeoutForATcpOutputModule_,  
-                        graphiteOutputModule.getNumSendRetryAttempts(), graphiteOutputModule.getMaxMetricsPerMessage(), threadId);
+            SendMetricsToGraphiteThread sendMetricsToGraphiteThread = new SendMetricsToGraphiteThread(graphiteMetrics,
+                    graphiteOutputModule.isSanitizeMetrics(), graphiteOutputModule.isSubstituteCharacters(),
+                    graphiteOutputModule.getHost(), graphiteOutputModule.getPort(), outputModuleSchedule.getTcpConnectTimeoutInMs(),  
+                    graphiteOutputModule.getNumSendRetryAttempts(), graphiteOutputModule.getMaxMetricsPerMessage(), threadId);
+            sendMetricsToGraphiteThread.setMetricSpool(metricSpool, ApplicationConfiguration.getOutputSpoolMaxReplayMessagesPerInterval());
+            sendMetricsToGraphiteThread.setMetricEncodingCache(metricEncodingCache);
+            sendMetricsToGraphiteThread.setTcpConnectionManager(getTcpConnectionManager(graphiteOutputModule.getUniqueId(),
+                    graphiteOutputModule.getHost(), graphiteOutputModule.getPort(), outputModuleSchedule.getTcpConnectTimeoutInMs()));
             
-                Thread thread = new Thread(sendMetricsToGraphiteThread);
-                sendMetricsToGraphiteThreads.add(thread);
-            }
+            return sendMetricsToGraphiteThread;
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return null;
         }
-        
-        return sendMetricsToGraphiteThreads;
     }
     
-    public static List<Thread> getSendMetricsToAllOpentsdbTelnetOutputModuleThreads(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, String threadId) {
-        
-        if ((openTsdbMetrics == null) || openTsdbMetrics.isEmpty() || (threadId == null) || threadId.isEmpty()) {
-            return new ArrayList<>();
-        }
+    /*
+    Returns the thread that sends the metrics to an opentsdb telnet output module. Returns null if the output module is disabled, or if there is nothing to send.
+    */
+    public static SendMetricsToOpenTsdbThread getSendMetricsToOpentsdbTelnetOutputModuleThread(OpenTsdbTelnetOutputModule openTsdbTelnetOutputModule, 
+            List<? extends OpenTsdbMetricFormat> openTsdbMetrics, String threadId, MetricEncodingCache metricEncodingCache, OutputModuleSchedule outputModuleSchedule) {
         
-        List<Thread> sendMetricsToOpenTsdbTelnetThreads = new ArrayList<>();
-        List<OpenTsdbTelnetOutputModule> openTsdbTelnetOutputModules = ApplicationConfiguration.getOpenTsdbTelnetOutputModules();
-        if ((openTsdbTelnetOutputModules == null) || openTsdbTelnetOutputModules.isEmpty()) return sendMetricsToOpenTsdbTelnetThreads;
+        if ((openTsdbTelnetOutputModule == null) || !openTsdbTelnetOutputModule.isOutputEnabled() || (openTsdbMetrics == null) || (outputModuleSchedule == null)) return null;
             
         try { 
-            for (OpenTsdbTelnetOutputModule openTsdbTelnetOutputModule : openTsdbTelnetOutputModules) {
-                if (!openTsdbTelnetOutputModule.isOutputEnabled()) continue;
+            MetricSpool metricSpool = getMetricSpool(openTsdbTelnetOutputModule.getUniqueId());
+            if (openTsdbMetrics.isEmpty() && ((metricSpool == null) || metricSpool.isEmpty())) return null;
                 
-                SendMetricsToOpenTsdbThread sendMetricsToOpenTsdbThread = new SendMetricsToOpenTsdbThread(openTsdbMetrics, 
-                        openTsdbTelnetOutputModule.isSanitizeMetrics(), "SP_Host", ApplicationConfiguration.getHostname(),
-                        openTsdbTelnetOutputModule.getHost(), openTsdbTelnetOutputModule.getPort(), 
-                        connectTimeoutForATcpOutputModule_, openTsdbTelnetOutputModule.getNumSendRetryAttempts(), threadId);
+            SendMetricsToOpenTsdbThread sendMetricsToOpenTsdbThread = new SendMetricsToOpenTsdbThread(openTsdbMetrics,
+                    openTsdbTelnetOutputModule.isSanitizeMetrics(), "SP_Host", ApplicationConfiguration.getHostname(),
+                    openTsdbTelnetOutputModule.getHost(), openTsdbTelnetOutputModule.getPort(),
+                    outputModuleSchedule.getTcpConnectTimeoutInMs(), openTsdbTelnetOutputModule.getNumSendRetryAttempts(), threadId);
+            sendMetricsToOpenTsdbThread.setMetricSpool(metricSpool, ApplicationConfiguration.getOutputSpoolMaxReplayMessagesPerInterval());
+            sendMetricsToOpenTsdbThread.setMetricEncodingCache(metricEncodingCache);
+            sendMetricsToOpenTsdbThread.setTcpConnectionManager(getTcpConnectionManager(openTsdbTelnetOutputModule.getUniqueId(),
+                    openTsdbTelnetOutputModule.getHost(), openTsdbTelnetOutputModule.getPort(), outputModuleSchedule.getTcpConnectTimeoutInMs()));
 
-                Thread thread = new Thread(sendMetricsToOpenTsdbThread);
-                sendMetricsToOpenTsdbTelnetThreads.add(thread);
-            }
+            return sendMetricsToOpenTsdbThread;
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return null;
         }
-        
-        return sendMetricsToOpenTsdbTelnetThreads;
     }
     
-    public static List<Thread> getSendMetricsToAllOpentsdbHttpOutputModuleThreads(List<? extends OpenTsdbMetricFormat> openTsdbMetrics, String threadId) {
+    /*
+    Returns the thread that sends the metrics to an opentsdb http output module. Returns null if the output module is disabled, or if there is nothing to send.
+    */
+    public static SendMetricsToOpenTsdbThread getSendMetricsToOpentsdbHttpOutputModuleThread(OpenTsdbHttpOutputModule openTsdbHttpOutputModule, 
+            List<? extends OpenTsdbMetricFormat> openTsdbMetrics, String threadId, MetricEncodingCache metricEncodingCache, OutputModuleSchedule outputModuleSchedule) {
         
-        if ((openTsdbMetrics == null) || openTsdbMetrics.isEmpty() || (threadId == null) || threadId.isEmpty()) {
-            return new ArrayList<>();
+        if ((openTsdbHttpOutputModule == null) || !openTsdbHttpOutputModule.isOutputEnabled() || (openTsdbMetrics == null) || (outputModuleSchedule == null)) return null;
+            
+        try { 
+            MetricSpool metricSpool = getMetricSpool(openTsdbHttpOutputModule.getUniqueId());
+            if (openTsdbMetrics.isEmpty() && ((metricSpool == null) || metricSpool.isEmpty())) return null;
+                      
+            SendMetricsToOpenTsdbThread sendMetricsToOpenTsdbThread = new SendMetricsToOpenTsdbThread(openTsdbMetrics,
+                    openTsdbHttpOutputModule.isSanitizeMetrics(), "SP_Host", ApplicationConfiguration.getHostname(),
+                    openTsdbHttpOutputModule.getUrl(), outputModuleSchedule.getHttpConnectTimeoutInMs(), outputModuleSchedule.getHttpReadTimeoutInMs(), 
+                    openTsdbHttpOutputModule.getNumSendRetryAttempts(), openTsdbHttpOutputModule.getMaxMetricsPerMessage(),
+                    openTsdbHttpOutputModule.isGzipEnabled(), threadId);
+            sendMetricsToOpenTsdbThread.setMetricSpool(metricSpool, ApplicationConfiguration.getOutputSpoolMaxReplayMessagesPerInterval());
+            sendMetricsToOpenTsdbThread.setMetricEncodingCache(metricEncodingCache);
+            sendMetricsToOpenTsdbThread.setMaxConcurrentHttpRequests(ApplicationConfiguration.getOutputHttpMaxConcurrentRequests());
+
+            return sendMetricsToOpenTsdbThread;
         }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return null;
+        }
+    }
+    
+    /*
+    Returns the thread that sends the metrics to an influxdb v1 output module. Returns null if the output module is disabled, or if there is nothing to send.
+    */
+    public static SendMetricsToInfluxdbV1Thread getSendMetricsToInfluxdbV1HttpOutputModuleThread(InfluxdbV1HttpOutputModule influxdbV1HttpOutputModule, 
+            List<? extends InfluxdbMetricFormat_v1> influxdbMetrics, String threadId, MetricEncodingCache metricEncodingCache, OutputModuleSchedule outputModuleSchedule) {
         
-        List<Thread> sendMetricsToOpenTsdbHttpThreads = new ArrayList<>();
-        List<OpenTsdbHttpOutputModule> openTsdbHttpOutputModules = ApplicationConfiguration.getOpenTsdbHttpOutputModules();
-        if ((openTsdbHttpOutputModules == null) || openTsdbHttpOutputModules.isEmpty()) return sendMetricsToOpenTsdbHttpThreads;
+        if ((influxdbV1HttpOutputModule == null) || !influxdbV1HttpOutputModule.isOutputEnabled() || (influxdbMetrics == null) || (outputModuleSchedule == null)) return null;
             
         try { 
-            for (OpenTsdbHttpOutputModule openTsdbHttpOutputModule : openTsdbHttpOutputModules) {
-                if (!openTsdbHttpOutputModule.isOutputEnabled()) continue;
+            MetricSpool metricSpool = getMetricSpool(influxdbV1HttpOutputModule.getUniqueId());
+            if (influxdbMetrics.isEmpty() && ((metricSpool == null) || metricSpool.isEmpty())) return null;
                       
-                SendMetricsToOpenTsdbThread sendMetricsToOpenTsdbThread = new SendMetricsToOpenTsdbThread(openTsdbMetrics, 
-                        openTsdbHttpOutputModule.isSanitizeMetrics(), "SP_Host", ApplicationConfiguration.getHostname(),
-                        openTsdbHttpOutputModule.getUrl(), connectTimeoutForAHttpOutputModule_, readTimeoutForAHttpOutputModule_, 
-                        openTsdbHttpOutputModule.getNumSendRetryAttempts(), openTsdbHttpOutputModule.getMaxMetricsPerMessage(), 
-                        threadId);
-
-                Thread thread = new Thread(sendMetricsToOpenTsdbThread);
-                sendMetricsToOpenTsdbHttpThreads.add(thread);
-            }
+            SendMetricsToInfluxdbV1Thread sendMetricsToInfluxdbV1Thread = new SendMetricsToInfluxdbV1Thread(influxdbMetrics,
+                    influxdbV1HttpOutputModule.getUrl(), influxdbV1HttpOutputModule.getDatabaseName(), influxdbV1HttpOutputModule.getHttpBasicAuthValue(),
+                    outputModuleSchedule.getHttpConnectTimeoutInMs(), outputModuleSchedule.getHttpReadTimeoutInMs(), 
+                    influxdbV1HttpOutputModule.getNumSendRetryAttempts(), influxdbV1HttpOutputModule.getMaxMetricsPerMessage(), threadId);
+            sendMetricsToInfluxdbV1Thread.setMetricSpool(metricSpool, ApplicationConfiguration.getOutputSpoolMaxReplayMessagesPerInterval());
+            sendMetricsToInfluxdbV1Thread.setMetricEncodingCache(metricEncodingCache);
+            sendMetricsToInfluxdbV1Thread.setMaxConcurrentHttpRequests(ApplicationConfiguration.getOutputHttpMaxConcurrentRequests());
+
+            return sendMetricsToInfluxdbV1Thread;
         }
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return null;
         }
-        
-        return sendMetricsToOpenTsdbHttpThreads;
     }
     
-    private List<GraphiteMetric> getCurrentGraphiteMetricsAndRemoveMetricsFromGlobal() {
-
-        if ((GlobalVariables.graphiteMetrics == null) || GlobalVariables.graphiteMetrics.isEmpty()) {
-            return new ArrayList();
+    /*
+    Returns the thread that sends the metrics to an influxdb line protocol output module. Returns null if the output module is disabled, or if there is nothing to send.
+    */
+    public static SendMetricsToInfluxdbV2Thread getSendMetricsToInfluxdbV2HttpOutputModuleThread(InfluxdbV2HttpOutputModule influxdbV2HttpOutputModule, 
+            List<? extends InfluxdbMetricFormat_v2> influxdbMetrics, String threadId, MetricEncodingCache metricEncodingCache, OutputModuleSchedule outputModuleSchedule) {
+        
+        if ((influxdbV2HttpOutputModule == null) || !influxdbV2HttpOutputModule.isOutputEnabled() || (influxdbMetrics == null) || (outputModuleSchedule == null)) return null;
+        
+        try { 
+            MetricSpool metricSpool = getMetricSpool(influxdbV2HttpOutputModule.getUniqueId());
+            if (influxdbMetrics.isEmpty() && ((metricSpool == null) || metricSpool.isEmpty())) return null;
+                
+            SendMetricsToInfluxdbV2Thread sendMetricsToInfluxdbV2Thread = new SendMetricsToInfluxdbV2Thread(influxdbMetrics,
+                    influxdbV2HttpOutputModule.getUrl(), influxdbV2HttpOutputModule.getDatabaseName(), influxdbV2HttpOutputModule.getHttpBasicAuthValue(),
+                    influxdbV2HttpOutputModule.getTimePrecisionCode(), influxdbV2HttpOutputModule.isGzipEnabled(),
+                    outputModuleSchedule.getHttpConnectTimeoutInMs(), outputModuleSchedule.getHttpReadTimeoutInMs(), 
+                    influxdbV2HttpOutputModule.getNumSendRetryAttempts(), influxdbV2HttpOutputModule.getMaxMetricsPerMessage(), threadId);
+            sendMetricsToInfluxdbV2Thread.setMetricSpool(metricSpool, ApplicationConfiguration.getOutputSpoolMaxReplayMessagesPerInterval());
+            sendMetricsToInfluxdbV2Thread.setMetricEncodingCache(metricEncodingCache);
+            sendMetricsToInfluxdbV2Thread.setMaxConcurrentHttpRequests(ApplicationConfiguration.getOutputHttpMaxConcurrentRequests());
+                
+            return sendMetricsToInfluxdbV2Thread;
         }
-
-        List<GraphiteMetric> graphiteMetrics = new ArrayList<>(GlobalVariables.graphiteMetrics.values());
- 
-        for (GraphiteMetric graphiteMetric : graphiteMetrics) {
-            GlobalVariables.graphiteMetrics.remove(graphiteMetric.getHashKey());
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return null;
         }
-
-        return graphiteMetrics;
     }
     
-    private List<OpenTsdbMetric> getCurrentOpenTsdbMetricsAndRemoveMetricsFromGlobal() {
-
-        if ((GlobalVariables.openTsdbMetrics == null) || GlobalVariables.openTsdbMetrics.isEmpty()) {
-            return new ArrayList();
+    /*
+    Returns the spool for an output module (creating it if necessary). Returns null if output spooling is disabled.
+    */
+    public static MetricSpool getMetricSpool(String outputModuleUniqueId) {
+        
+        if (!ApplicationConfiguration.isOutputSpoolEnabled() || (outputModuleUniqueId == null)) return null;
+        
+        MetricSpool metricSpool = metricSpools_.get(outputModuleUniqueId);
+        if (metricSpool != null) return metricSpool;
+        
+        synchronized (metricSpools_) {
+            metricSpool = metricSpools_.get(outputModuleUniqueId);
+            
+            if (metricSpool == null) {
+                metricSpool = new MetricSpool(outputModuleUniqueId, ApplicationConfiguration.getOutputSpoolDirectory(), 
+                        ApplicationConfiguration.getOutputSpoolMaxSizeInBytes(), ApplicationConfiguration.getOutputSpoolSegmentSizeInBytes());
+                metricSpools_.put(outputModuleUniqueId, metricSpool);
+            }
         }
-
-        List<OpenTsdbMetric> openTsdbMetrics = new ArrayList<>(GlobalVariables.openTsdbMetrics.values());
- 
-        for (OpenTsdbMetric openTsdbMetric : openTsdbMetrics) {
-            GlobalVariables.openTsdbMetrics.remove(openTsdbMetric.getHashKey());
+        
+        return metricSpool;
+    }
+    
+    /*
+    Returns the persistent tcp connection for an output module (creating it if necessary). 
+    Returns null if persistent tcp connections are disabled, in which case a new connection is made (& closed) every output interval.
+    */
+    public static TcpConnectionManager getTcpConnectionManager(String outputModuleUniqueId, String host, int port, int connectTimeoutInMs) {
+        
+        if (!ApplicationConfiguration.isOutputPersistentTcpConnections() || (outputModuleUniqueId == null)) return null;
+        
+        TcpConnectionManager tcpConnectionManager = tcpConnectionManagers_.get(outputModuleUniqueId);
+        if (tcpConnectionManager != null) return tcpConnectionManager;
+        
+        synchronized (tcpConnectionManagers_) {
+            tcpConnectionManager = tcpConnectionManagers_.get(outputModuleUniqueId);
+            
+            if (tcpConnectionManager == null) {
+                tcpConnectionManager = new TcpConnectionManager(host, port, connectTimeoutInMs, 
+                        MIN_TCP_RECONNECT_BACKOFF_IN_MS, MAX_TCP_RECONNECT_BACKOFF_IN_MS);
+                tcpConnectionManagers_.put(outputModuleUniqueId, tcpConnectionManager);
+            }
         }
-
-        return openTsdbMetrics;
+        
+        return tcpConnectionManager;
+    }
+    
+    private List<GraphiteMetric> getCurrentGraphiteMetricsAndRemoveMetricsFromGlobal() {
+        logDroppedMetrics("Graphite", GlobalVariables.graphiteMetrics.getNumDroppedMetrics(), previousNumDroppedGraphiteMetrics_);
+        previousNumDroppedGraphiteMetrics_ = GlobalVariables.graphiteMetrics.getNumDroppedMetrics();
+        
+        return GlobalVariables.graphiteMetrics.drain();
+    }
+    
+    private List<OpenTsdbMetric> getCurrentOpenTsdbMetricsAndRemoveMetricsFromGlobal() {
+        logDroppedMetrics("OpenTSDB", GlobalVariables.openTsdbMetrics.getNumDroppedMetrics(), previousNumDroppedOpenTsdbMetrics_);
+        previousNumDroppedOpenTsdbMetrics_ = GlobalVariables.openTsdbMetrics.getNumDroppedMetrics();
+        
+        return GlobalVariables.openTsdbMetrics.drain();
+    }
+    
+    private static void logDroppedMetrics(String metricFormat, long numDroppedMetrics, long previousNumDroppedMetrics) {
+        if (numDroppedMetrics <= previousNumDroppedMetrics) return;
+        
+        logger.warn("Metric queue is full, metrics were dropped. MetricFormat=" + metricFormat + 
+                ", DroppedMetricCount=" + (numDroppedMetrics - previousNumDroppedMetrics) + ", TotalDroppedMetricCount=" + numDroppedMetrics);
     }
     
     public boolean isFinished() {
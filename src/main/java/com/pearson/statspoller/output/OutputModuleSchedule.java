@@ -0,0 +1,79 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.globals.ApplicationConfiguration;
+
+/**
+ * The send settings of a single output module: how often it sends, how long it waits on its endpoint,
+ * & how many batches of metrics it holds onto while its endpoint is slow or unavailable.
+ *
+ * Timeouts that aren't set are derived from the send interval, the same way they were when every output module shared the output interval.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class OutputModuleSchedule {
+    
+    // ensure that at least 1 second is allowed to connect to (& get a reply from) an endpoint
+    private static final int MIN_TIMEOUT_IN_MS = 1000;
+    
+    private final long sendIntervalInMs_;
+    private final int connectTimeoutInMs_;
+    private final int readTimeoutInMs_;
+    private final long maxSendTimeInMs_;
+    private final int maxBacklogBatches_;
+    
+    public OutputModuleSchedule(long sendIntervalInMs, int connectTimeoutInMs, int readTimeoutInMs, long maxSendTimeInMs, int maxBacklogBatches) {
+        this.sendIntervalInMs_ = sendIntervalInMs;
+        this.connectTimeoutInMs_ = connectTimeoutInMs;
+        this.readTimeoutInMs_ = readTimeoutInMs;
+        this.maxSendTimeInMs_ = maxSendTimeInMs;
+        this.maxBacklogBatches_ = (maxBacklogBatches < 1) ? 1 : maxBacklogBatches;
+    }
+    
+    /*
+    The connect timeout for a tcp output module (graphite, opentsdb telnet). Defaults to half of the send interval (minus some breathing room).
+    */
+    public int getTcpConnectTimeoutInMs() {
+        if (connectTimeoutInMs_ != ApplicationConfiguration.VALUE_NOT_SET_CODE) return Math.max(MIN_TIMEOUT_IN_MS, connectTimeoutInMs_);
+        return (int) Math.max(MIN_TIMEOUT_IN_MS, (sendIntervalInMs_ - 3000) / 2);
+    }
+    
+    /*
+    The connect timeout for a http output module (opentsdb http, influxdb). Defaults to a third of the send interval (minus some breathing room).
+    */
+    public int getHttpConnectTimeoutInMs() {
+        if (connectTimeoutInMs_ != ApplicationConfiguration.VALUE_NOT_SET_CODE) return Math.max(MIN_TIMEOUT_IN_MS, connectTimeoutInMs_);
+        return (int) Math.max(MIN_TIMEOUT_IN_MS, (sendIntervalInMs_ - 3000) / 3);
+    }
+    
+    /*
+    The read timeout for a http output module (opentsdb http, influxdb). Defaults to two thirds of the send interval (minus some breathing room).
+    */
+    public int getHttpReadTimeoutInMs() {
+        if (readTimeoutInMs_ != ApplicationConfiguration.VALUE_NOT_SET_CODE) return Math.max(MIN_TIMEOUT_IN_MS, readTimeoutInMs_);
+        return (int) Math.max(MIN_TIMEOUT_IN_MS, ((sendIntervalInMs_ - 3000) * 2) / 3);
+    }
+    
+    public long getSendIntervalInMs() {
+        return sendIntervalInMs_;
+    }
+    
+    public int getConnectTimeoutInMs() {
+        return connectTimeoutInMs_;
+    }
+    
+    public int getReadTimeoutInMs() {
+        return readTimeoutInMs_;
+    }
+    
+    /*
+    The longest that a single send may take before it is told to stop (unsent messages are spooled, if spooling is enabled). 0 means no limit.
+    */
+    public long getMaxSendTimeInMs() {
+        return maxSendTimeInMs_;
+    }
+    
+    public int getMaxBacklogBatches() {
+        return maxBacklogBatches_;
+    }
+
+}
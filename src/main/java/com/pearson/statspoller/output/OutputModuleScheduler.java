@@ -0,0 +1,281 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.globals.AgentInstrumentation;
+import com.pearson.statspoller.globals.GlobalVariables;
+import com.pearson.statspoller.metric_formats.SendMetricsToOutputModuleThread;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gives a single output module its own send queue & send loop.
+ *
+ * Every output interval, the batch of metrics that was collected is put on the queue of every output module's scheduler.
+ * Each scheduler sends its queued batches on its own thread, on its own send interval, with its own timeouts.
+ * A slow (or unreachable) endpoint only delays its own output module -- its batches wait in its queue while the other output modules carry on.
+ *
+ * The queue is bounded. If it is full, the oldest batch is dropped to make room for the newest one.
+ * If a send runs past the output module's max send time, it is told to stop, & its unsent messages are spooled (if spooling is enabled).
+ * A send that still hasn't stopped after MAX_SEND_SHUTDOWN_TIME_IN_MS is interrupted & abandoned (& counted as a failed send), so that it can't stall the output module.
+ *
+ * If the output module has a circuit breaker, then sends skip the endpoint while the breaker is open (their messages are spooled, if spooling is enabled).
+ *
+ * Every send that contacts the endpoint is recorded (time, bytes, retries, success) in the output module's AgentInstrumentation.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class OutputModuleScheduler implements Runnable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutputModuleScheduler.class.getName());
+    
+    // how long to wait for a send to wind down after it has been told to stop
+    private static final long MAX_SEND_SHUTDOWN_TIME_IN_MS = 30000;
+    
+    /*
+    Creates the thread that sends a batch of metrics to the output module's endpoint. Returns null if there is nothing to send.
+    */
+    public interface SendMetricsThreadFactory {
+        public SendMetricsToOutputModuleThread getSendMetricsThread(List<?> metrics, String threadId, MetricEncodingCache metricEncodingCache);
+    }
+    
+    private final String outputModuleUniqueId_;
+    private final String threadIdPrefix_;
+    private final OutputModuleSchedule outputModuleSchedule_;
+    private final SendMetricsThreadFactory sendMetricsThreadFactory_;
+    private final CircuitBreaker circuitBreaker_;
+    private final AgentInstrumentation.OutputModuleInstrumentation outputModuleInstrumentation_;
+    
+    private final Object lockObject_ = new Object();
+    private final ArrayDeque<MetricBatch> backlog_ = new ArrayDeque<>();
+    private long numDroppedBatches_ = 0;
+    private volatile boolean continueRunning_ = true;
+    private Thread schedulerThread_ = null;
+    
+    public OutputModuleScheduler(String outputModuleUniqueId, String threadIdPrefix, OutputModuleSchedule outputModuleSchedule,
+            SendMetricsThreadFactory sendMetricsThreadFactory, CircuitBreaker circuitBreaker) {
+        this.outputModuleUniqueId_ = outputModuleUniqueId;
+        this.threadIdPrefix_ = threadIdPrefix;
+        this.outputModuleSchedule_ = outputModuleSchedule;
+        this.sendMetricsThreadFactory_ = sendMetricsThreadFactory;
+        this.circuitBreaker_ = circuitBreaker;
+        this.outputModuleInstrumentation_ = AgentInstrumentation.getOutputModuleInstrumentation(outputModuleUniqueId);
+    }
+    
+    public synchronized void start() {
+        
+        if (schedulerThread_ != null) return;
+        
+        schedulerThread_ = new Thread(this, "OutputModuleScheduler-" + outputModuleUniqueId_);
+        schedulerThread_.setDaemon(true);
+        schedulerThread_.start();
+    }
+    
+    public void stop() {
+        
+        synchronized (lockObject_) {
+            continueRunning_ = false;
+            lockObject_.notifyAll();
+        }
+    }
+    
+    /*
+    Queues a batch of metrics to be sent on the output module's next send.
+    An empty batch is still queued, so that spooled messages are replayed even when no metrics were collected.
+    Returns false if the queue was full (in which case the oldest queued batch was dropped).
+    */
+    public boolean enqueue(List<?> metrics, MetricEncodingCache metricEncodingCache) {
+        
+        if (metrics == null) return true;
+        
+        boolean isBatchDropped = false;
+        long numDroppedBatches;
+        
+        synchronized (lockObject_) {
+            if (backlog_.size() >= outputModuleSchedule_.getMaxBacklogBatches()) {
+                backlog_.pollFirst();
+                numDroppedBatches_++;
+                isBatchDropped = true;
+            }
+            
+            backlog_.addLast(new MetricBatch(metrics, metricEncodingCache));
+            numDroppedBatches = numDroppedBatches_;
+            lockObject_.notifyAll();
+        }
+        
+        if (isBatchDropped) {
+            logger.warn("Output module backlog is full, the oldest batch of metrics was dropped. OutputModule=" + outputModuleUniqueId_ +
+                    ", MaxBacklogBatches=" + outputModuleSchedule_.getMaxBacklogBatches() + ", TotalDroppedBatchCount=" + numDroppedBatches);
+        }
+        
+        return !isBatchDropped;
+    }
+    
+    @Override
+    public void run() {
+        
+        long nextSendTimeInMs = System.currentTimeMillis();
+        
+        while (continueRunning_) {
+            List<MetricBatch> metricBatches = null;
+            
+            // wait until a batch is queued & the send interval has elapsed
+            synchronized (lockObject_) {
+                while (continueRunning_) {
+                    long timeUntilNextSendInMs = nextSendTimeInMs - System.currentTimeMillis();
+                    
+                    if (!backlog_.isEmpty() && (timeUntilNextSendInMs <= 0)) {
+                        metricBatches = new ArrayList<>(backlog_);
+                        backlog_.clear();
+                        break;
+                    }
+                    
+                    try {
+                        lockObject_.wait(backlog_.isEmpty() ? 0 : timeUntilNextSendInMs);
+                    }
+                    catch (InterruptedException e) {
+                        continueRunning_ = false;
+                    }
+                }
+            }
+            
+            if (!continueRunning_ || (metricBatches == null)) break;
+            
+            nextSendTimeInMs = System.currentTimeMillis() + outputModuleSchedule_.getSendIntervalInMs();
+            
+            for (int i = 0; (i < metricBatches.size()) && continueRunning_; i++) {
+                MetricBatch metricBatch = metricBatches.get(i);
+                
+                // an empty batch only exists to trigger spool replay. one replay per send is enough.
+                if (metricBatch.getMetrics().isEmpty() && (i < (metricBatches.size() - 1))) continue;
+                
+                sendMetricBatch(metricBatch);
+            }
+        }
+    }
+    
+    /*
+    Sends a batch of metrics on its own thread, & waits for it to finish.
+    If the send runs past the max send time, then it is told to stop, & this waits (up to MAX_SEND_SHUTDOWN_TIME_IN_MS) for it to wind down.
+    While the circuit breaker is open, the batch is spooled without contacting the endpoint (or skipped, if spooling is disabled).
+    */
+    private void sendMetricBatch(MetricBatch metricBatch) {
+        
+        try {
+            String threadId = threadIdPrefix_ + System.currentTimeMillis();
+            SendMetricsToOutputModuleThread sendMetricsThread = sendMetricsThreadFactory_.getSendMetricsThread(metricBatch.getMetrics(),
+                    threadId, metricBatch.getMetricEncodingCache());
+            if (sendMetricsThread == null) return;
+            
+            boolean isSendAllowed = (circuitBreaker_ == null) || circuitBreaker_.isSendAllowed();
+            
+            if (!isSendAllowed) {
+                if (sendMetricsThread.getMetricSpool() == null) {
+                    logger.debug("Circuit breaker is open, skipping batch. OutputModule=" + outputModuleUniqueId_ + ", MetricCount=" + metricBatch.getMetrics().size());
+                    return;
+                }
+                
+                sendMetricsThread.setCircuitOpen(true);
+            }
+            
+            long sendTimeStart = System.currentTimeMillis();
+            
+            Thread thread = new Thread(sendMetricsThread, "SendMetrics-" + outputModuleUniqueId_);
+            thread.start();
+            
+            if (outputModuleSchedule_.getMaxSendTimeInMs() > 0) thread.join(outputModuleSchedule_.getMaxSendTimeInMs());
+            else thread.join();
+            
+            boolean isSendTimedOut = thread.isAlive();
+            
+            if (isSendTimedOut) {
+                sendMetricsThread.shutdown();
+                thread.join(MAX_SEND_SHUTDOWN_TIME_IN_MS);
+                
+                if (thread.isAlive()) {
+                    thread.interrupt();
+                    logger.error("Send didn't stop after being shut down, abandoning it. OutputModule=" + outputModuleUniqueId_ + 
+                            ", ThreadId=" + threadId + ", MaxSendShutdownTimeInMs=" + MAX_SEND_SHUTDOWN_TIME_IN_MS);
+                }
+            }
+            
+            if ((circuitBreaker_ != null) && isSendAllowed) {
+                if (isSendTimedOut || sendMetricsThread.didEncounterUnreachableEndpoint()) circuitBreaker_.recordFailure();
+                else circuitBreaker_.recordSuccess();
+            }
+            
+            recordSend(metricBatch, sendMetricsThread, isSendAllowed, isSendTimedOut, System.currentTimeMillis() - sendTimeStart);
+        }
+        catch (InterruptedException e) {
+            continueRunning_ = false;
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+    }
+    
+    /*
+    Records the send in the output module's instrumentation, & counts failed sends as transmit errors.
+    Sends that skipped the endpoint (circuit open), & empty batches that had no spooled messages to replay, aren't recorded.
+    */
+    private void recordSend(MetricBatch metricBatch, SendMetricsToOutputModuleThread sendMetricsThread, boolean isSendAllowed, boolean isSendTimedOut, long sendTimeElapsed) {
+        
+        if (!isSendAllowed) return;
+        
+        boolean didSendFail = isSendTimedOut || sendMetricsThread.didEncounterUnreachableEndpoint() || sendMetricsThread.didSendFail();
+        if (!didSendFail && metricBatch.getMetrics().isEmpty() && (sendMetricsThread.getNumBytesSent() == 0)) return;
+        
+        if (didSendFail) GlobalVariables.metricTransmitErrorCount.incrementAndGet();
+        
+        outputModuleInstrumentation_.recordSend(sendTimeElapsed, didSendFail, metricBatch.getMetrics().size(), 
+                sendMetricsThread.getNumBytesSent(), sendMetricsThread.getNumRetryAttempts());
+    }
+    
+    public int getBacklogSize() {
+        synchronized (lockObject_) {
+            return backlog_.size();
+        }
+    }
+    
+    public long getNumDroppedBatches() {
+        synchronized (lockObject_) {
+            return numDroppedBatches_;
+        }
+    }
+    
+    public String getOutputModuleUniqueId() {
+        return outputModuleUniqueId_;
+    }
+    
+    public OutputModuleSchedule getOutputModuleSchedule() {
+        return outputModuleSchedule_;
+    }
+    
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker_;
+    }
+    
+    private static class MetricBatch {
+        
+        private final List<?> metrics_;
+        private final MetricEncodingCache metricEncodingCache_;
+        
+        public MetricBatch(List<?> metrics, MetricEncodingCache metricEncodingCache) {
+            this.metrics_ = metrics;
+            this.metricEncodingCache_ = metricEncodingCache;
+        }
+        
+        public List<?> getMetrics() {
+            return metrics_;
+        }
+        
+        public MetricEncodingCache getMetricEncodingCache() {
+            return metricEncodingCache_;
+        }
+    
+    }
+
+}
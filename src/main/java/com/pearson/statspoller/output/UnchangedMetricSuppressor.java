@@ -0,0 +1,235 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import com.pearson.statspoller.utilities.math_utils.MathUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Change-only output. Drops a point if its series was last output with the same value, so that series that never change (versions, sizes, config values)
+ * aren't sent every output interval. A heartbeat still outputs every series at least once every 'heartbeatIntervals' output intervals,
+ * so backends that expect regular points (or that expire series that go quiet) still get them.
+ *
+ * The last output value of each series is kept in a compact open-addressing table -- a 64-bit hash of the series key, a 64-bit hash of the value
+ * (as it is written on the wire), & the intervals that the series was last output & last seen in. That is roughly 50 bytes per series, & no per-series objects.
+ * Series that haven't been seen for a full heartbeat period are removed from the table (if they come back, their first point is always output).
+ *
+ * A series is a Graphite metric path, or an OpenTSDB metric + tags. Metrics that aren't GraphiteMetric or OpenTsdbMetric objects are never suppressed.
+ * Since only hashes are kept, two series (or two values) with the same 64-bit hash would be treated as one. This is rare enough to not matter,
+ * & the heartbeat puts a bound on how long a point could be wrongly suppressed. The same goes for a point that was output, but that an output module failed to deliver.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class UnchangedMetricSuppressor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UnchangedMetricSuppressor.class.getName());
+    
+    private static final int MIN_CAPACITY = 1024;
+    
+    // marks an empty slot in the table. a series whose hash is 0 is stored as 1.
+    private static final long EMPTY_SLOT = 0;
+    
+    // opentsdb series keys are mixed with this, so that a graphite series & an opentsdb series with the same key are different series
+    private static final long OPENTSDB_SERIES_SEED = 0x9E3779B97F4A7C15L;
+    
+    private final int heartbeatIntervals_;
+    private final AtomicLong numSuppressedMetrics_ = new AtomicLong(0);
+    
+    private long[] seriesHashes_;
+    private long[] valueHashes_;
+    private int[] lastOutputIntervals_;
+    private int[] lastSeenIntervals_;
+    private int numSeries_ = 0;
+    private int currentInterval_ = 0;
+    
+    public UnchangedMetricSuppressor(int heartbeatIntervals) {
+        this.heartbeatIntervals_ = Math.max(1, heartbeatIntervals);
+        allocateTable(MIN_CAPACITY);
+    }
+    
+    /*
+    Returns the metrics of one output interval, minus the points whose series was last output with the same value (& isn't due for a heartbeat).
+    Must be called once per output interval. If nothing was suppressed, then the input list itself is returned.
+    */
+    public synchronized <T> List<T> suppressUnchangedMetrics(List<T> metrics) {
+        
+        currentInterval_++;
+        
+        // forget series that haven't been seen for a full heartbeat period, so the table doesn't hold onto series that are gone
+        if ((currentInterval_ % heartbeatIntervals_) == 0) removeExpiredSeries();
+        
+        if ((metrics == null) || metrics.isEmpty()) return metrics;
+        
+        try {
+            List<T> outputMetrics = null;
+            
+            for (int i = 0; i < metrics.size(); i++) {
+                T metric = metrics.get(i);
+                boolean isOutput = isOutput(metric);
+                
+                if (!isOutput && (outputMetrics == null)) {
+                    outputMetrics = new ArrayList<>(metrics.size());
+                    for (int j = 0; j < i; j++) outputMetrics.add(metrics.get(j));
+                }
+                
+                if (isOutput && (outputMetrics != null)) outputMetrics.add(metric);
+            }
+            
+            if (outputMetrics == null) return metrics;
+            
+            numSuppressedMetrics_.addAndGet(metrics.size() - outputMetrics.size());
+            
+            return outputMetrics;
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return metrics;
+        }
+    }
+    
+    /*
+    Returns true if the metric should be output (& records it as the series' last output value). Returns false if it should be suppressed.
+    A point is recorded as output when it is handed to the output modules, not when an output module has delivered it -- each output module sends on its own
+    schedule, & a point can be delivered by some output modules but not others. So if a send fails & the point isn't spooled, then later points with the
+    same value are still suppressed. The series is output again when its value changes, or at its next heartbeat, whichever comes first.
+    */
+    private boolean isOutput(Object metric) {
+        
+        long seriesHash;
+        String metricValue;
+        
+        if (metric instanceof GraphiteMetric) {
+            GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+            if (graphiteMetric.getMetricPath() == null) return true;
+            seriesHash = MathUtilities.getFnv1a64Hash(graphiteMetric.getMetricPath());
+            metricValue = graphiteMetric.getMetricValueString();
+        }
+        else if (metric instanceof OpenTsdbMetric) {
+            OpenTsdbMetric openTsdbMetric = (OpenTsdbMetric) metric;
+            if (openTsdbMetric.getMetricKey() == null) return true;
+            seriesHash = MathUtilities.getFnv1a64Hash(openTsdbMetric.getMetricKey()) ^ OPENTSDB_SERIES_SEED;
+            metricValue = openTsdbMetric.getMetricValueString();
+        }
+        else return true;
+        
+        if (seriesHash == EMPTY_SLOT) seriesHash = 1;
+        long valueHash = (metricValue == null) ? 0 : MathUtilities.getFnv1a64Hash(metricValue);
+        
+        int slot = findSlot(seriesHashes_, seriesHash);
+        
+        // a new series
+        if (seriesHashes_[slot] == EMPTY_SLOT) {
+            seriesHashes_[slot] = seriesHash;
+            valueHashes_[slot] = valueHash;
+            lastOutputIntervals_[slot] = currentInterval_;
+            lastSeenIntervals_[slot] = currentInterval_;
+            numSeries_++;
+            
+            // keep the table at most half full, so that probe sequences stay short
+            if ((numSeries_ * 2) > seriesHashes_.length) resizeTable(seriesHashes_.length * 2);
+            
+            return true;
+        }
+        
+        lastSeenIntervals_[slot] = currentInterval_;
+        
+        // the heartbeat also bounds how long a point that was recorded as output, but never delivered, can go unrepeated
+        boolean isValueChanged = (valueHashes_[slot] != valueHash);
+        boolean isHeartbeatDue = (currentInterval_ - lastOutputIntervals_[slot]) >= heartbeatIntervals_;
+        if (!isValueChanged && !isHeartbeatDue) return false;
+        
+        valueHashes_[slot] = valueHash;
+        lastOutputIntervals_[slot] = currentInterval_;
+        
+        return true;
+    }
+    
+    /*
+    Linear probing. Returns the slot that holds the series, or the empty slot where it would go.
+    */
+    private static int findSlot(long[] seriesHashes, long seriesHash) {
+        
+        int mask = seriesHashes.length - 1;
+        int slot = (int) (seriesHash ^ (seriesHash >>> 32)) & mask;
+        
+        while ((seriesHashes[slot] != EMPTY_SLOT) && (seriesHashes[slot] != seriesHash)) slot = (slot + 1) & mask;
+        
+        return slot;
+    }
+    
+    private void removeExpiredSeries() {
+        
+        int numUnexpiredSeries = 0;
+        for (int i = 0; i < seriesHashes_.length; i++) {
+            if ((seriesHashes_[i] != EMPTY_SLOT) && !isExpired(i)) numUnexpiredSeries++;
+        }
+        
+        if (numUnexpiredSeries == numSeries_) return;
+        
+        int capacity = MIN_CAPACITY;
+        while (capacity < (numUnexpiredSeries * 2)) capacity *= 2;
+        
+        resizeTable(capacity);
+    }
+    
+    private boolean isExpired(int slot) {
+        return (currentInterval_ - lastSeenIntervals_[slot]) >= heartbeatIntervals_;
+    }
+    
+    /*
+    Rebuilds the table at a new capacity (a power of 2), leaving out expired series.
+    */
+    private void resizeTable(int capacity) {
+        
+        long[] seriesHashes = seriesHashes_;
+        long[] valueHashes = valueHashes_;
+        int[] lastOutputIntervals = lastOutputIntervals_;
+        int[] lastSeenIntervals = lastSeenIntervals_;
+        
+        allocateTable(capacity);
+        
+        for (int i = 0; i < seriesHashes.length; i++) {
+            if (seriesHashes[i] == EMPTY_SLOT) continue;
+            if ((currentInterval_ - lastSeenIntervals[i]) >= heartbeatIntervals_) continue;
+            
+            int slot = findSlot(seriesHashes_, seriesHashes[i]);
+            seriesHashes_[slot] = seriesHashes[i];
+            valueHashes_[slot] = valueHashes[i];
+            lastOutputIntervals_[slot] = lastOutputIntervals[i];
+            lastSeenIntervals_[slot] = lastSeenIntervals[i];
+            numSeries_++;
+        }
+    }
+    
+    private void allocateTable(int capacity) {
+        seriesHashes_ = new long[capacity];
+        valueHashes_ = new long[capacity];
+        lastOutputIntervals_ = new int[capacity];
+        lastSeenIntervals_ = new int[capacity];
+        numSeries_ = 0;
+    }
+    
+    public int getHeartbeatIntervals() {
+        return heartbeatIntervals_;
+    }
+    
+    /*
+    The number of points that have been suppressed (cumulative).
+    */
+    public long getNumSuppressedMetrics() {
+        return numSuppressedMetrics_.get();
+    }
+    
+    /*
+    The number of series in the last-output-value table.
+    */
+    public synchronized int getNumSeries() {
+        return numSeries_;
+    }
+
+}
@@ -3,7 +3,14 @@ package com.pearson.statspoller.utilities.file_utils;
 import com.pearson.statspoller.utilities.core_utils.Threads;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -611,6 +618,59 @@ public class FileIo {
         }
     }
     
+    /**
+     * Writes the bytes to a temporary file (in the same directory), then renames it over the destination file.
+     * Readers of the destination file see either the old contents or the new contents -- never a partially written file.
+     * If the file system doesn't support atomic renames, then a regular (replacing) rename is used.
+     * This is a quiet method.
+     */
+    public static boolean saveBytesToFileAtomically(String saveFilePathAndName, byte[] saveBytes) {
+        
+        if ((saveFilePathAndName == null) || saveFilePathAndName.isEmpty() || (saveBytes == null) || (saveBytes.length == 0)) {
+            return false;
+        }
+        
+        Path destinationPath = null, temporaryPath = null;
+        FileChannel fileChannel = null;
+        boolean isWriteSuccess = false;
+        
+        try {
+            destinationPath = Paths.get(saveFilePathAndName).toAbsolutePath();
+            temporaryPath = destinationPath.resolveSibling(destinationPath.getFileName().toString() + ".tmp");
+            
+            fileChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            
+            ByteBuffer byteBuffer = ByteBuffer.wrap(saveBytes);
+            while (byteBuffer.hasRemaining()) fileChannel.write(byteBuffer);
+            
+            fileChannel.close();
+            fileChannel = null;
+            
+            try {
+                Files.move(temporaryPath, destinationPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            isWriteSuccess = true;
+        }
+        catch (Exception e) {
+            logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        finally {
+            try {
+                if (fileChannel != null) fileChannel.close();
+                if (!isWriteSuccess && (temporaryPath != null)) Files.deleteIfExists(temporaryPath);
+            }
+            catch (Exception e){
+                logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+        
+        return isWriteSuccess;
+    }
+    
     public static String readFileToString(String filePath, String filename) {
         String filePathAndName = filePath + File.separator + filename;
         return readFileToString(filePathAndName);
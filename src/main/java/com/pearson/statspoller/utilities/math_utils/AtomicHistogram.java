@@ -0,0 +1,141 @@
+package com.pearson.statspoller.utilities.math_utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values (ex- latencies in milliseconds), for recording on hot paths from many threads.
+ *
+ * Values are counted in log-linear buckets -- every power of 2 is split into 8 buckets, so a percentile is accurate to within ~12.5% of its value.
+ * Recording a value is a few atomic increments, & never allocates or blocks.
+ *
+ * 'getSnapshotAndReset' reads & zeroes the histogram one bucket at a time. Values that are recorded while a snapshot is being taken
+ * end up in either that snapshot or the next one, so nothing is lost, but a single snapshot isn't a perfectly consistent cut.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class AtomicHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int NUM_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    // values below NUM_SUB_BUCKETS get a bucket each. every power of 2 above that gets NUM_SUB_BUCKETS buckets.
+    private static final int NUM_BUCKETS = NUM_SUB_BUCKETS + ((63 - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS);
+    
+    private final AtomicLongArray bucketCounts_ = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count_ = new AtomicLong(0);
+    private final AtomicLong sum_ = new AtomicLong(0);
+    private final AtomicLong max_ = new AtomicLong(0);
+    
+    /*
+    Records a value. Negative values are recorded as 0.
+    */
+    public void record(long value) {
+        
+        long localValue = (value < 0) ? 0 : value;
+        
+        bucketCounts_.incrementAndGet(getBucketIndex(localValue));
+        count_.incrementAndGet();
+        sum_.addAndGet(localValue);
+        
+        long max = max_.get();
+        while ((localValue > max) && !max_.compareAndSet(max, localValue)) max = max_.get();
+    }
+    
+    /*
+    Returns everything that has been recorded since the last snapshot, & starts over.
+    */
+    public Snapshot getSnapshotAndReset() {
+        
+        long count = count_.getAndSet(0);
+        long sum = sum_.getAndSet(0);
+        long max = max_.getAndSet(0);
+        
+        long[] bucketCounts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            if (bucketCounts_.get(i) != 0) bucketCounts[i] = bucketCounts_.getAndSet(i, 0);
+        }
+        
+        return new Snapshot(count, sum, max, bucketCounts);
+    }
+    
+    protected static int getBucketIndex(long value) {
+        
+        if (value < NUM_SUB_BUCKETS) return (int) value;
+        
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (NUM_SUB_BUCKETS - 1));
+        
+        return NUM_SUB_BUCKETS + ((exponent - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS) + subBucket;
+    }
+    
+    // the largest value that lands in the bucket
+    protected static long getBucketUpperBound(int bucketIndex) {
+        
+        if (bucketIndex < NUM_SUB_BUCKETS) return bucketIndex;
+        
+        int exponent = ((bucketIndex - NUM_SUB_BUCKETS) / NUM_SUB_BUCKETS) + SUB_BUCKET_BITS;
+        int subBucket = (bucketIndex - NUM_SUB_BUCKETS) % NUM_SUB_BUCKETS;
+        long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+        
+        return ((NUM_SUB_BUCKETS + subBucket + 1) * bucketWidth) - 1;
+    }
+    
+    /*
+    The values that were recorded between two calls to 'getSnapshotAndReset'.
+    */
+    public static class Snapshot {
+        
+        private final long count_;
+        private final long sum_;
+        private final long max_;
+        private final long[] bucketCounts_;
+        
+        private Snapshot(long count, long sum, long max, long[] bucketCounts) {
+            this.count_ = count;
+            this.sum_ = sum;
+            this.max_ = max;
+            this.bucketCounts_ = bucketCounts;
+        }
+        
+        public long getCount() {
+            return count_;
+        }
+        
+        public long getSum() {
+            return sum_;
+        }
+        
+        public long getMax() {
+            return max_;
+        }
+        
+        public double getAverage() {
+            if (count_ == 0) return 0;
+            return (double) sum_ / (double) count_;
+        }
+        
+        /*
+        Returns (an upper bound of) the value that 'percentile' percent of the recorded values are less than or equal to. Returns 0 if nothing was recorded.
+        */
+        public long getPercentile(double percentile) {
+            
+            long numBucketedValues = 0;
+            for (long bucketCount : bucketCounts_) numBucketedValues += bucketCount;
+            if (numBucketedValues == 0) return 0;
+            
+            long rank = (long) Math.ceil((percentile / 100) * numBucketedValues);
+            if (rank < 1) rank = 1;
+            
+            long numValuesSeen = 0;
+            for (int i = 0; i < bucketCounts_.length; i++) {
+                numValuesSeen += bucketCounts_[i];
+                if (numValuesSeen >= rank) return Math.min(getBucketUpperBound(i), max_);
+            }
+            
+            return max_;
+        }
+    
+    }
+
+}
@@ -21,6 +21,11 @@ public class MathUtilities {
     
     private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
     
+    // doubles are output with (at most) 15 significant digits. 15 digits is the most that a double can always represent exactly.
+    private static final int DOUBLE_SIGNIFICANT_DIGITS = 15;
+    private static final MathContext DOUBLE_MATH_CONTEXT = new MathContext(DOUBLE_SIGNIFICANT_DIGITS, RoundingMode.HALF_UP);
+    private static final double[] DOUBLE_POWERS_OF_TEN = getDoublePowersOfTen();
+    
     public static double computeSmallerNumber(double number1, double number2) {
         if (number1 <= number2) {
             return number1;
@@ -258,6 +263,24 @@ public class MathUtilities {
         return bigDecimal;
     }
 
+    /*
+    Returns 'defaultValue' if the input is null, or isn't a valid long
+    */
+    public static long safeGetLong(String numericString, long defaultValue) {
+        
+        if (numericString == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Long.parseLong(numericString);
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return defaultValue;
+        }
+    }
+    
     public static String getFastPlainStringWithNoTrailingZeros(BigDecimal bigDecimal) {
         
         if (bigDecimal == null) return null;
@@ -363,4 +386,121 @@ public class MathUtilities {
         return false;
     }
     
+    /*
+    Returns the number of decimal places that a double should be output with, so that it is output with (at most) 15 significant digits.
+    This hides binary floating point noise. Example: 0.1 + 0.2 = 0.30000000000000004 -> "0.3"
+    Returns -1 if the value can't be output as 'unscaledValue / 10^scale' with a long 'unscaledValue' (very large, very small, NaN, or infinite values).
+    */
+    public static int getDoubleScale(double value) {
+        
+        if (Double.isNaN(value) || Double.isInfinite(value)) return -1;
+        
+        double absoluteValue = Math.abs(value);
+        if (absoluteValue == 0) return 0;
+        
+        if (absoluteValue >= 1e15) {
+            if ((absoluteValue < 9e18) && (value == Math.rint(value))) return 0;
+            else return -1;
+        }
+        
+        if (absoluteValue < 1e-7) return -1;
+        
+        // the number of digits before the decimal point, or (for values under 1) the negated number of zeros right after the decimal point
+        int magnitude;
+        
+        if (absoluteValue >= 1) {
+            magnitude = 1;
+            while (absoluteValue >= DOUBLE_POWERS_OF_TEN[magnitude]) magnitude++;
+        }
+        else {
+            magnitude = 0;
+            while (absoluteValue < (1 / DOUBLE_POWERS_OF_TEN[1 - magnitude])) magnitude--;
+        }
+        
+        return Math.min(DOUBLE_POWERS_OF_TEN.length - 1, DOUBLE_SIGNIFICANT_DIGITS - magnitude);
+    }
+    
+    /*
+    'scale' is expected to come from 'getDoubleScale'
+    */
+    public static long getDoubleUnscaledValue(double value, int scale) {
+        return Math.round(value * DOUBLE_POWERS_OF_TEN[scale]);
+    }
+    
+    /*
+    Converts a double to a BigDecimal with (at most) 15 significant digits. See 'getDoubleScale'.
+    NaN & infinite values return null.
+    */
+    public static BigDecimal getBigDecimalFromDouble(double value) {
+        
+        if (Double.isNaN(value) || Double.isInfinite(value)) return null;
+        
+        int scale = getDoubleScale(value);
+        if (scale >= 0) return BigDecimal.valueOf(getDoubleUnscaledValue(value, scale), scale);
+        
+        return new BigDecimal(value, DOUBLE_MATH_CONTEXT);
+    }
+    
+    /*
+    64-bit FNV-1a hash of 'length' bytes of 'bytes', starting at 'offset'. Fast, & well distributed for short keys (ex- metric paths).
+    */
+    public static long getFnv1a64Hash(byte[] bytes, int offset, int length) {
+        
+        long hash = 0xcbf29ce484222325L;
+        
+        for (int i = offset; i < (offset + length); i++) {
+            hash ^= (bytes[i] & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        
+        return hash;
+    }
+    
+    /*
+    64-bit FNV-1a hash of a string's characters (each char is hashed as 2 bytes, low byte first). Avoids encoding the string to bytes first.
+    */
+    public static long getFnv1a64Hash(CharSequence charSequence) {
+        
+        long hash = 0xcbf29ce484222325L;
+        
+        for (int i = 0; i < charSequence.length(); i++) {
+            char character = charSequence.charAt(i);
+            hash ^= (character & 0xff);
+            hash *= 0x100000001b3L;
+            hash ^= (character >>> 8);
+            hash *= 0x100000001b3L;
+        }
+        
+        return hash;
+    }
+    
+    /*
+    Jump consistent hash (Lamping & Veach). Maps a key to one of 'numBuckets' buckets.
+    When the number of buckets grows from n to n+1, only ~1/(n+1) of the keys move (& they all move to the new bucket).
+    */
+    public static int getJumpConsistentHash(long key, int numBuckets) {
+        
+        if (numBuckets <= 1) return 0;
+        
+        long bucket = -1, nextBucket = 0;
+        
+        while (nextBucket < numBuckets) {
+            bucket = nextBucket;
+            key = key * 2862933555777941757L + 1;
+            nextBucket = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        
+        return (int) bucket;
+    }
+    
+    private static double[] getDoublePowersOfTen() {
+        
+        double[] powersOfTen = new double[19];
+        
+        powersOfTen[0] = 1;
+        for (int i = 1; i < powersOfTen.length; i++) powersOfTen[i] = powersOfTen[i - 1] * 10;
+        
+        return powersOfTen;
+    }
+    
 }
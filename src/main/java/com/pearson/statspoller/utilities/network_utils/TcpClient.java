@@ -3,9 +3,11 @@ package com.pearson.statspoller.utilities.network_utils;
 import com.pearson.statspoller.utilities.core_utils.StackTrace;
 import java.io.BufferedWriter;
 import java.io.DataOutputStream;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +26,9 @@ public final class TcpClient {
     private BufferedWriter bufferedWriter_ = null;
     
     private DataOutputStream dataOutputStream_ = null;
+    
+    // how many times the most recent 'send' (with retries) had to retry
+    private int numRetriesOfLastSend_ = 0;
             
     public TcpClient(String host, int port, boolean connectImmediately, int socketConnectionTimeoutInMs) {
         this.host_ = host;
@@ -97,8 +102,11 @@ public final class TcpClient {
     public boolean send(String dataString, int numRetries, boolean closeClientOnExit, boolean flushImmediately) {
         
         boolean isSendSucess = false;
+        numRetriesOfLastSend_ = 0;
         
         for (int i = 0; (i <= numRetries) && !isSendSucess; i++) {
+            if (i > 0) numRetriesOfLastSend_ = i;
+            
             if (!isSendSucess && !isConnected()) {
                 reset();
             }
@@ -136,6 +144,73 @@ public final class TcpClient {
         catch (Exception e) {
             logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
             isSendSuccess = false;
+            
+            // a socket whose write failed (ex- a broken pipe, or a reset connection) still reports that it is connected. 
+            // close it, so that the next attempt reconnects instead of writing to the same dead socket.
+            close();
+        } 
+        finally {
+            if (closeClientOnExit) {
+                close();
+            }
+        }
+        
+        return isSendSuccess;
+    }
+    
+    public boolean send(byte[] data, int offset, int length, int numRetries, boolean closeClientOnExit, boolean flushImmediately) {
+        
+        boolean isSendSucess = false;
+        numRetriesOfLastSend_ = 0;
+        
+        for (int i = 0; (i <= numRetries) && !isSendSucess; i++) {
+            if (i > 0) numRetriesOfLastSend_ = i;
+            
+            if (!isSendSucess && !isConnected()) {
+                reset();
+            }
+            
+            if (isConnected()) {
+                isSendSucess = send(data, offset, length, closeClientOnExit, flushImmediately);
+            }
+        }
+        
+        return isSendSucess;
+    }
+    
+    /*
+    Writes already-encoded bytes straight to the socket's output stream (no character encoding step).
+    Anything that is still buffered from the String-based 'send' methods is flushed first, so that data is sent in the order it was given to the TcpClient.
+    */
+    public boolean send(byte[] data, int offset, int length, boolean closeClientOnExit, boolean flushImmediately) {
+        
+        if (!isConnected()) {
+            return false;
+        }
+        
+        boolean isSendSuccess = false;
+        
+        try {
+            if ((socket_ != null) && (dataOutputStream_ != null) && (bufferedWriter_ != null) && (data != null)) {
+                bufferedWriter_.flush();
+                dataOutputStream_.write(data, offset, length);
+                
+                if (flushImmediately) {
+                    dataOutputStream_.flush();
+                }
+                
+                isSendSuccess = true;
+            }
+            else {
+                isSendSuccess = false;
+            }
+        } 
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            isSendSuccess = false;
+            
+            // the socket is dead, even though it still reports that it is connected (see the String 'send'). the next attempt reconnects.
+            close();
         } 
         finally {
             if (closeClientOnExit) {
@@ -146,6 +221,67 @@ public final class TcpClient {
         return isSendSuccess;
     }
     
+    public boolean flush() {
+        
+        if (!isConnected() || (bufferedWriter_ == null)) {
+            return false;
+        }
+        
+        try {
+            bufferedWriter_.flush();
+            if (dataOutputStream_ != null) dataOutputStream_.flush();
+            return true;
+        } 
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return false;
+        }
+    }
+    
+    /*
+    Checks whether the remote end has closed the connection (ex- a server that closes idle connections). 
+    Writing to a connection in this state can appear to succeed, even though the data will never be received.
+    A read on a connection that was closed by the remote end returns -1 immediately. A read on a healthy, idle, connection times out.
+    Any data that the remote end sent to us is discarded.
+    */
+    public boolean isRemoteClosed() {
+        
+        if (!isConnected()) {
+            return true;
+        }
+        
+        int originalSoTimeout = 0;
+        
+        try {
+            originalSoTimeout = socket_.getSoTimeout();
+            socket_.setSoTimeout(1);
+            
+            InputStream inputStream = socket_.getInputStream();
+            byte[] buffer = new byte[1024];
+            
+            while (true) {
+                int numBytesRead = inputStream.read(buffer);
+                if (numBytesRead == -1) return true;
+                if (inputStream.available() <= 0) return false;
+            }
+        }
+        catch (SocketTimeoutException e) {
+            return false;
+        }
+        catch (Exception e) {
+            logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            return true;
+        }
+        finally {
+            try {
+                if (socket_ != null) socket_.setSoTimeout(originalSoTimeout);
+            }
+            catch (Exception e) {
+                logger.debug(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            }
+        }
+    }
+    
     public boolean isConnected() {
         
         if (socket_ == null) {
@@ -178,4 +314,8 @@ public final class TcpClient {
         
     }
     
+    public int getNumRetriesOfLastSend() {
+        return numRetriesOfLastSend_;
+    }
+
 }
@@ -0,0 +1,168 @@
+package com.pearson.statspoller.utilities.network_utils;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a single, long-lived, TCP connection open to an endpoint so that it can be reused across output intervals.
+ *
+ * Only one thread may use the connection at a time (acquire -> use -> release).
+ * Before the connection is handed out, it is checked to see if the remote end closed it. If so, it is re-established.
+ * If the endpoint can't be connected to, then further connection attempts are delayed using an exponential backoff.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class TcpConnectionManager {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TcpConnectionManager.class.getName());
+    
+    private final String host_;
+    private final int port_;
+    private final int connectTimeoutInMs_;
+    private final long minReconnectBackoffInMs_;
+    private final long maxReconnectBackoffInMs_;
+    
+    private final ReentrantLock lock_ = new ReentrantLock();
+    
+    private TcpClient tcpClient_ = null;
+    private int numConsecutiveConnectFailures_ = 0;
+    private long nextConnectAttemptTimestampInMs_ = 0;
+    private long numConnects_ = 0;
+    
+    public TcpConnectionManager(String host, int port, int connectTimeoutInMs, long minReconnectBackoffInMs, long maxReconnectBackoffInMs) {
+        this.host_ = host;
+        this.port_ = port;
+        this.connectTimeoutInMs_ = connectTimeoutInMs;
+        this.minReconnectBackoffInMs_ = minReconnectBackoffInMs;
+        this.maxReconnectBackoffInMs_ = (maxReconnectBackoffInMs < minReconnectBackoffInMs) ? minReconnectBackoffInMs : maxReconnectBackoffInMs;
+    }
+    
+    /*
+    Returns a connected TcpClient, or null if a connection couldn't be established (or if another thread is still using the connection).
+    If a TcpClient is returned, then the caller must call 'release' when it is done with it.
+    */
+    public TcpClient acquire(long lockTimeoutInMs, int numConnectRetries) {
+        
+        try {
+            if (!lock_.tryLock(lockTimeoutInMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out waiting for a TCP connection that is in use by another thread. Endpoint=\"" + host_ + ":" + port_ + "\"");
+                return null;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        
+        try {
+            // reuse the existing connection, unless the remote end closed it
+            if ((tcpClient_ != null) && tcpClient_.isConnected() && !tcpClient_.isRemoteClosed()) {
+                return tcpClient_;
+            }
+            
+            if (tcpClient_ != null) {
+                logger.info("TCP connection was closed, reconnecting. Endpoint=\"" + host_ + ":" + port_ + "\"");
+                tcpClient_.close();
+                tcpClient_ = null;
+            }
+            
+            // don't hammer an endpoint that is down
+            if (System.currentTimeMillis() < nextConnectAttemptTimestampInMs_) {
+                logger.warn("Skipping TCP connection attempt due to reconnect backoff. Endpoint=\"" + host_ + ":" + port_ + "\", " +
+                        "NextConnectAttemptInMs=" + (nextConnectAttemptTimestampInMs_ - System.currentTimeMillis()));
+                lock_.unlock();
+                return null;
+            }
+            
+            TcpClient tcpClient = new TcpClient(host_, port_, true, connectTimeoutInMs_);
+            for (int i = 0; (i < numConnectRetries) && !tcpClient.isConnected(); i++) {
+                tcpClient.reset();
+            }
+            
+            if (tcpClient.isConnected()) {
+                tcpClient_ = tcpClient;
+                numConsecutiveConnectFailures_ = 0;
+                nextConnectAttemptTimestampInMs_ = 0;
+                numConnects_++;
+                return tcpClient_;
+            }
+            else {
+                tcpClient.close();
+                numConsecutiveConnectFailures_++;
+                nextConnectAttemptTimestampInMs_ = System.currentTimeMillis() + getReconnectBackoffInMs(numConsecutiveConnectFailures_);
+                lock_.unlock();
+                return null;
+            }
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+            if (lock_.isHeldByCurrentThread()) lock_.unlock();
+            return null;
+        }
+    }
+    
+    /*
+    Gives the connection back to the manager. If the caller encountered an error while using the connection, then the connection is closed.
+    */
+    public void release(TcpClient tcpClient, boolean isConnectionHealthy) {
+        
+        if (!lock_.isHeldByCurrentThread()) return;
+        
+        try {
+            if ((tcpClient != null) && (tcpClient == tcpClient_)) {
+                boolean isFlushSuccess = tcpClient_.flush();
+                
+                if (!isConnectionHealthy || !isFlushSuccess) {
+                    tcpClient_.close();
+                    tcpClient_ = null;
+                }
+            }
+        }
+        catch (Exception e) {
+            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+    
+    public void close() {
+        
+        lock_.lock();
+        
+        try {
+            if (tcpClient_ != null) tcpClient_.close();
+            tcpClient_ = null;
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+    
+    protected long getReconnectBackoffInMs(int numConsecutiveConnectFailures) {
+        
+        long reconnectBackoffInMs = minReconnectBackoffInMs_;
+        
+        for (int i = 1; (i < numConsecutiveConnectFailures) && (reconnectBackoffInMs < maxReconnectBackoffInMs_); i++) {
+            reconnectBackoffInMs = reconnectBackoffInMs * 2;
+        }
+        
+        return Math.min(reconnectBackoffInMs, maxReconnectBackoffInMs_);
+    }
+    
+    public String getHost() {
+        return host_;
+    }
+    
+    public int getPort() {
+        return port_;
+    }
+    
+    public long getNumConnects() {
+        return numConnects_;
+    }
+
+}
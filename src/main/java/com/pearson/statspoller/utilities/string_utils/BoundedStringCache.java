@@ -0,0 +1,72 @@
+package com.pearson.statspoller.utilities.string_utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe String to String cache that holds (roughly) the most recently used entries, & never holds more than 2 x 'maxSize' entries.
+ *
+ * Entries live in two generations. Lookups check the current generation, then the previous one (& move hits back into the current generation).
+ * When the current generation is full, it becomes the previous generation & the old previous generation is dropped.
+ * Entries that are used at least once per generation are never dropped, which approximates an LRU cache without locking on every lookup.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class BoundedStringCache {
+    
+    private final int maxSize_;
+    
+    private volatile ConcurrentHashMap<String,String> currentGeneration_ = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String,String> previousGeneration_ = new ConcurrentHashMap<>();
+    
+    public BoundedStringCache(int maxSize) {
+        this.maxSize_ = (maxSize < 1) ? 1 : maxSize;
+    }
+    
+    /*
+    Returns the cached value for 'key', or null if it isn't cached.
+    */
+    public String get(String key) {
+        
+        if (key == null) return null;
+        
+        String value = currentGeneration_.get(key);
+        if (value != null) return value;
+        
+        value = previousGeneration_.get(key);
+        if (value != null) put(key, value);
+        
+        return value;
+    }
+    
+    public void put(String key, String value) {
+        
+        if ((key == null) || (value == null)) return;
+        
+        if (currentGeneration_.size() >= maxSize_) startNewGeneration();
+        
+        currentGeneration_.put(key, value);
+    }
+    
+    private synchronized void startNewGeneration() {
+        
+        // another thread may have already started a new generation
+        if (currentGeneration_.size() < maxSize_) return;
+        
+        previousGeneration_ = currentGeneration_;
+        currentGeneration_ = new ConcurrentHashMap<>();
+    }
+    
+    public synchronized void clear() {
+        currentGeneration_ = new ConcurrentHashMap<>();
+        previousGeneration_ = new ConcurrentHashMap<>();
+    }
+    
+    public int size() {
+        return currentGeneration_.size() + previousGeneration_.size();
+    }
+    
+    public int getMaxSize() {
+        return maxSize_;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.pearson.statspoller.utilities.web_utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+/**
+ * Streams a HTTP request body through a gzip stream, into the connection's output stream.
+ * The body is compressed as it is written to the connection, so the compressed body is never fully held in memory.
+ *
+ * The body is either written by another HttpBodyWriter (ex- a range of records from a batch of encoded metrics), or is an already-built body (ex- a spooled message).
+ *
+ * @author Jeffrey Schmidt
+ */
+public final class GzipHttpBodyWriter implements HttpBodyWriter {
+    
+    // the size of the buffer that compressed data is staged in, before it is written to the http connection
+    private static final int GZIP_BUFFER_SIZE_IN_BYTES = 8192;
+    
+    private final HttpBodyWriter httpBodyWriter_;
+    private final byte[] httpBody_;
+    
+    public GzipHttpBodyWriter(HttpBodyWriter httpBodyWriter) {
+        this.httpBodyWriter_ = httpBodyWriter;
+        this.httpBody_ = null;
+    }
+    
+    public GzipHttpBodyWriter(byte[] httpBody) {
+        this.httpBodyWriter_ = null;
+        this.httpBody_ = httpBody;
+    }
+    
+    /*
+    Closing the gzip stream releases its (native) deflater right away. The close shield keeps the http connection's output stream open.
+    */
+    @Override
+    public void writeHttpBody(OutputStream outputStream) throws IOException {
+        
+        GzipParameters gzipParameters = new GzipParameters();
+        gzipParameters.setBufferSize(GZIP_BUFFER_SIZE_IN_BYTES);
+        
+        GzipCompressorOutputStream gzipCompressorOutputStream = new GzipCompressorOutputStream(CloseShieldOutputStream.wrap(outputStream), gzipParameters);
+        
+        try {
+            if (httpBodyWriter_ != null) httpBodyWriter_.writeHttpBody(gzipCompressorOutputStream);
+            else if (httpBody_ != null) gzipCompressorOutputStream.write(httpBody_);
+            
+            gzipCompressorOutputStream.finish();
+        }
+        finally {
+            gzipCompressorOutputStream.close();
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.pearson.statspoller.utilities.web_utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a HTTP request body directly to the connection's output stream (chunked transfer encoding), rather than building the whole body in memory first.
+ * HttpRequest calls 'writeHttpBody' once per attempt, so implementations must be able to write the same body more than once (for retries).
+ * Implementations must not close the output stream, but must finish any stream that they wrap around it (ex- write the gzip trailer) before returning.
+ *
+ * @author Jeffrey Schmidt
+ */
+public interface HttpBodyWriter {
+    
+    public void writeHttpBody(OutputStream outputStream) throws IOException;
+
+}
@@ -23,10 +23,14 @@ import org.slf4j.LoggerFactory;
 public class HttpRequest {
     
     private static final Logger logger = LoggerFactory.getLogger(HttpRequest.class.getName());
+    
+    // the chunk size used when the http body is streamed by a HttpBodyWriter
+    private static final int STREAMING_CHUNK_SIZE_IN_BYTES = 32768;
 
     private final String url_;
     private final Map<String,String> headerProperties_;
     private final byte[] httpBody_;
+    private final HttpBodyWriter httpBodyWriter_;
     private final String httpRequestMethod_;
     private final int connectTimeoutInMs_;
     private final int readTimeoutInMs_;
@@ -34,21 +38,25 @@ public class HttpRequest {
     private final boolean logErrorResponse_;
     
     private int retryAttemptCounter_ = -1;
-    private HttpURLConnection httpUrlConnection_ = null;
-    private DataOutputStream dataOutputStream_ = null;
-    private InputStreamReader inputStreamReader_ = null;
-    private BufferedReader bufferedReader_ = null;
     private String httpResponse_ = null;
     private boolean didEncounterConnectionError_ = false;
     private boolean isHttpRequestSuccess_ = false;
+    private boolean didMakeRequest_ = false;
+    private long numBytesSent_ = 0;
     
-    private boolean continueRetrying_ = true;
+    // another thread can abort the request (see 'closeResources' & 'setContinueRetrying'), so these are volatile
+    private volatile HttpURLConnection httpUrlConnection_ = null;
+    private volatile DataOutputStream dataOutputStream_ = null;
+    private volatile InputStreamReader inputStreamReader_ = null;
+    private volatile BufferedReader bufferedReader_ = null;
+    private volatile boolean continueRetrying_ = true;
     
     public HttpRequest(String url, Map<String,String> headerProperties, byte[] httpBody, String httpRequestMethod, 
             int connectTimeoutInMs, int readTimeoutInMs, int numRetries, boolean logErrorResponse){
         this.url_ = url;
         this.headerProperties_ = headerProperties;
         this.httpBody_ = httpBody;
+        this.httpBodyWriter_ = null;
         this.httpRequestMethod_ = httpRequestMethod;
         this.connectTimeoutInMs_ = connectTimeoutInMs;
         this.readTimeoutInMs_ = readTimeoutInMs;
@@ -66,6 +74,23 @@ public class HttpRequest {
         this.url_ = url;
         this.headerProperties_ = headerProperties;
         this.httpBody_ = httpBodyBytes;
+        this.httpBodyWriter_ = null;
+        this.httpRequestMethod_ = httpRequestMethod;
+        this.connectTimeoutInMs_ = connectTimeoutInMs;
+        this.readTimeoutInMs_ = readTimeoutInMs;
+        this.numRetries_ = numRetries;
+        this.logErrorResponse_ = logErrorResponse;
+    }
+    
+    /*
+    The http body is streamed to the server by 'httpBodyWriter' (using chunked transfer encoding), so the full body never needs to be held in memory.
+    */
+    public HttpRequest(String url, Map<String,String> headerProperties, HttpBodyWriter httpBodyWriter, String httpRequestMethod, 
+            int connectTimeoutInMs, int readTimeoutInMs, int numRetries, boolean logErrorResponse){
+        this.url_ = url;
+        this.headerProperties_ = headerProperties;
+        this.httpBody_ = null;
+        this.httpBodyWriter_ = httpBodyWriter;
         this.httpRequestMethod_ = httpRequestMethod;
         this.connectTimeoutInMs_ = connectTimeoutInMs;
         this.readTimeoutInMs_ = readTimeoutInMs;
@@ -107,6 +132,11 @@ public class HttpRequest {
         isHttpRequestSuccess_ = false;
         
         for (retryAttemptCounter_ = -1; (retryAttemptCounter_ < numRetries_) && !isHttpRequestSuccess_ && continueRetrying_; retryAttemptCounter_++) {
+            didMakeRequest_ = true;
+            
+            // the connection is only returned to the jvm's keep-alive cache if the response was fully read
+            boolean isConnectionReusable = false;
+            
             try {
                 boolean didEncounterError = false;
                 
@@ -117,7 +147,8 @@ public class HttpRequest {
                 httpUrlConnection_.setRequestMethod(httpRequestMethod_);
                 
                 if (httpRequestMethod_.equalsIgnoreCase("POST") || httpRequestMethod_.equalsIgnoreCase("PUT")) {
-                    if (httpBody_ != null) httpUrlConnection_.setRequestProperty("Content-Length", Integer.toString(httpBody_.length));
+                    if (httpBodyWriter_ != null) httpUrlConnection_.setChunkedStreamingMode(STREAMING_CHUNK_SIZE_IN_BYTES);
+                    else if (httpBody_ != null) httpUrlConnection_.setRequestProperty("Content-Length", Integer.toString(httpBody_.length));
                     else httpUrlConnection_.setRequestProperty("Content-Length", "0");
 
                     if (headerProperties_ != null) {
@@ -141,8 +172,18 @@ public class HttpRequest {
                 
                 if (httpRequestMethod_.equalsIgnoreCase("POST") || httpRequestMethod_.equalsIgnoreCase("PUT")) {
                     dataOutputStream_ = new DataOutputStream(httpUrlConnection_.getOutputStream());
-                    dataOutputStream_.write(httpBody_);
+                    if (httpBodyWriter_ != null) httpBodyWriter_.writeHttpBody(dataOutputStream_);
+                    else if (httpBody_ != null) dataOutputStream_.write(httpBody_);
                     dataOutputStream_.flush();
+                    
+                    // the body writer has finished (& closed) any compressor it wrapped around the stream, so a gzip body is counted including its trailer
+                    numBytesSent_ += dataOutputStream_.size();
+                    
+                    // a streamed (chunked) body is only complete once its output stream is closed. it can't be closed again after the response is read.
+                    if (httpBodyWriter_ != null) {
+                        dataOutputStream_.close();
+                        dataOutputStream_ = null;
+                    }
                 }
 
                 try {
@@ -164,23 +205,37 @@ public class HttpRequest {
                 
                 bufferedReader_ = new BufferedReader(inputStreamReader_);
                 httpResponse_ = CharStreams.toString(bufferedReader_);
+                isConnectionReusable = true;
                 if (!didEncounterError) isHttpRequestSuccess_ = true;
             }
             catch (Exception e) {
                 logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
             }
             finally {
-                closeResources();
+                closeResources(!isConnectionReusable);
             }
         }
         
         return httpResponse_;
     }
     
+    /*
+    Closes the request's streams & disconnects from the server. Can be used to abort an in-progress request.
+    */
     public void closeResources() {
-        if (dataOutputStream_ != null) {
+        closeResources(true);
+    }
+    
+    /*
+    If 'disconnect' is false, then the underlying connection is left open, so that the jvm's http keep-alive cache can reuse it for a later request to the same server.
+    */
+    private void closeResources(boolean disconnect) {
+        
+        // each field is read once, so a concurrent close (from a thread that is aborting the request) can't null it out between the check & the close
+        DataOutputStream dataOutputStream = dataOutputStream_;
+        if (dataOutputStream != null) {
             try {
-                dataOutputStream_.close();
+                dataOutputStream.close();
                 dataOutputStream_ = null;
             } 
             catch (Exception e) {
@@ -188,9 +243,10 @@ public class HttpRequest {
             }
         }
 
-        if (bufferedReader_ != null) {
+        BufferedReader bufferedReader = bufferedReader_;
+        if (bufferedReader != null) {
             try {
-                bufferedReader_.close();
+                bufferedReader.close();
                 bufferedReader_ = null;
             } 
             catch (Exception e) {
@@ -198,9 +254,10 @@ public class HttpRequest {
             }
         }
 
-        if (inputStreamReader_ != null) {
+        InputStreamReader inputStreamReader = inputStreamReader_;
+        if (inputStreamReader != null) {
             try {
-                inputStreamReader_.close();
+                inputStreamReader.close();
                 inputStreamReader_ = null;
             } 
             catch (Exception e) {
@@ -208,9 +265,13 @@ public class HttpRequest {
             }
         }
 
-        if (httpUrlConnection_ != null) {
+        HttpURLConnection httpUrlConnection = httpUrlConnection_;
+        if ((httpUrlConnection != null) && !disconnect) {
+            httpUrlConnection_ = null;
+        }
+        else if (httpUrlConnection != null) {
             try {
-                httpUrlConnection_.disconnect();
+                httpUrlConnection.disconnect();
                 httpUrlConnection_ = null;
             } 
             catch (Exception e) {
@@ -263,6 +324,13 @@ public class HttpRequest {
         return retryAttemptCounter_;
     }
     
+    /*
+    The number of http body bytes that were written to the server, summed over every attempt (including retries). Compressed bodies are counted compressed, including the gzip header & trailer.
+    */
+    public long getNumBytesSent() {
+        return numBytesSent_;
+    }
+    
     public HttpURLConnection getHttpUrlConnection() {
         return httpUrlConnection_;
     }
@@ -287,6 +355,13 @@ public class HttpRequest {
         return didEncounterConnectionError_;
     }
 
+    /*
+    False if no attempt was made to send the request (ex- it was aborted before it started).
+    */
+    public boolean didMakeRequest() {
+        return didMakeRequest_;
+    }
+    
     public boolean isHttpRequestSuccess() {
         return isHttpRequestSuccess_;
     }
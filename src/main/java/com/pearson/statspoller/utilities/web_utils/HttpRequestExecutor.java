@@ -0,0 +1,206 @@
+package com.pearson.statspoller.utilities.web_utils;
+
+import com.pearson.statspoller.utilities.core_utils.StackTrace;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes a list of HTTP requests (generally, to a single endpoint) with up to 'maxConcurrentRequests' of the requests in flight at the same time.
+ * The requests are made on a thread pool that is shared by all HttpRequestExecutors. Connections are reused through the JVM's HTTP keep-alive cache.
+ *
+ * Once a request fails because the endpoint couldn't be connected to, no more requests are started.
+ * Requests that were never started can be identified with HttpRequest.didMakeRequest.
+ *
+ * This class is NOT thread-safe (other than 'abort'). A single HttpRequestExecutor can be used to make several sequential lists of requests.
+ *
+ * @author Jeffrey Schmidt
+ */
+public class HttpRequestExecutor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HttpRequestExecutor.class.getName());
+    
+    private static final ExecutorService SHARED_EXECUTOR_SERVICE = Executors.newCachedThreadPool(getThreadFactory());
+    
+    private final int maxConcurrentRequests_;
+    
+    private final Set<HttpRequest> inFlightHttpRequests_ = ConcurrentHashMap.newKeySet();
+    private final Set<HttpRequest> abortedHttpRequests_ = ConcurrentHashMap.newKeySet();
+    private volatile boolean isAborted_ = false;
+    private boolean didEncounterConnectionError_ = false;
+    
+    public HttpRequestExecutor(int maxConcurrentRequests) {
+        this.maxConcurrentRequests_ = (maxConcurrentRequests < 1) ? 1 : maxConcurrentRequests;
+    }
+    
+    /*
+    Makes all of the requests. Blocks until every request that was started has finished (even if the executor is aborted, or the calling thread is interrupted),
+    so the outcome of every request is final once this returns. See 'isRetryableFailure'.
+    Returns false if any request failed, or wasn't made (because of a connection error, or because the executor was aborted).
+    */
+    public boolean makeRequests(List<HttpRequest> httpRequests) {
+        
+        didEncounterConnectionError_ = false;
+        
+        if ((httpRequests == null) || httpRequests.isEmpty()) return true;
+        
+        // no concurrency -- make the requests on the calling thread
+        if ((maxConcurrentRequests_ == 1) || (httpRequests.size() == 1)) {
+            boolean isAllRequestsSuccess = true;
+            
+            for (HttpRequest httpRequest : httpRequests) {
+                if (isAborted_ || didEncounterConnectionError_) {
+                    isAllRequestsSuccess = false;
+                    continue;
+                }
+                
+                inFlightHttpRequests_.add(httpRequest);
+                httpRequest.makeRequest();
+                inFlightHttpRequests_.remove(httpRequest);
+                
+                if (!isRequestSuccess(httpRequest)) isAllRequestsSuccess = false;
+            }
+            
+            return isAllRequestsSuccess;
+        }
+        
+        boolean isAllRequestsSuccess = true;
+        boolean isInterrupted = false;
+        CompletionService<HttpRequest> completionService = new ExecutorCompletionService<>(SHARED_EXECUTOR_SERVICE);
+        int nextRequestIndex = 0, numInFlightRequests = 0;
+        
+        while (true) {
+            while (!isAborted_ && !isInterrupted && !didEncounterConnectionError_ && (numInFlightRequests < maxConcurrentRequests_) && (nextRequestIndex < httpRequests.size())) {
+                final HttpRequest httpRequest = httpRequests.get(nextRequestIndex);
+                nextRequestIndex++;
+                
+                inFlightHttpRequests_.add(httpRequest);
+                completionService.submit(new Callable<HttpRequest>() {
+                    @Override
+                    public HttpRequest call() {
+                        try {
+                            httpRequest.makeRequest();
+                        }
+                        catch (Exception e) {
+                            logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+                        }
+                        
+                        return httpRequest;
+                    }
+                });
+                numInFlightRequests++;
+            }
+            
+            if (numInFlightRequests == 0) break;
+            
+            // even after an abort (or an interrupt), every in-flight request is waited for. otherwise a request could still succeed after the caller gave up on it (& spooled it).
+            try {
+                Future<HttpRequest> finishedRequestFuture = completionService.take();
+                numInFlightRequests--;
+                
+                HttpRequest finishedHttpRequest = finishedRequestFuture.get();
+                inFlightHttpRequests_.remove(finishedHttpRequest);
+                
+                if (!isRequestSuccess(finishedHttpRequest)) isAllRequestsSuccess = false;
+            }
+            catch (InterruptedException e) {
+                // stops the in-flight requests (by closing their connections), so they should finish quickly
+                if (!isInterrupted) abort();
+                isInterrupted = true;
+                isAllRequestsSuccess = false;
+            }
+            catch (Exception e) {
+                logger.error(e.toString() + System.lineSeparator() + StackTrace.getStringFromStackTrace(e));
+                isAllRequestsSuccess = false;
+            }
+        }
+        
+        if (isInterrupted) Thread.currentThread().interrupt();
+        if (nextRequestIndex < httpRequests.size()) isAllRequestsSuccess = false;
+        
+        return isAllRequestsSuccess;
+    }
+    
+    /*
+    Returns true if the request was successful. Also records whether the request failed because it couldn't connect to its endpoint.
+    */
+    private boolean isRequestSuccess(HttpRequest httpRequest) {
+        
+        if (httpRequest.didEncounterConnectionError() && httpRequest.didHitRetryAttemptLimit() && !httpRequest.isHttpRequestSuccess()) {
+            didEncounterConnectionError_ = true;
+        }
+        
+        return httpRequest.isHttpRequestSuccess();
+    }
+    
+    /*
+    Returns true if the request didn't succeed, but could succeed if it were made again later (ex- from a spool).
+    That is, the request was never started, it couldn't connect to its endpoint, or it was stopped by 'abort'. Requests that the endpoint rejected return false.
+    Only valid once 'makeRequests' has returned.
+    */
+    public boolean isRetryableFailure(HttpRequest httpRequest) {
+        
+        if ((httpRequest == null) || httpRequest.isHttpRequestSuccess()) return false;
+        if (!httpRequest.didMakeRequest() || abortedHttpRequests_.contains(httpRequest)) return true;
+        
+        return httpRequest.didEncounterConnectionError() && httpRequest.didHitRetryAttemptLimit();
+    }
+    
+    /*
+    Stops any in-flight requests (& prevents any new requests from being started). Safe to call from any thread.
+    'makeRequests' still waits for the stopped requests to finish.
+    */
+    public void abort() {
+        
+        isAborted_ = true;
+        
+        for (HttpRequest httpRequest : inFlightHttpRequests_) {
+            try {
+                abortedHttpRequests_.add(httpRequest);
+                httpRequest.setContinueRetrying(false);
+                httpRequest.closeResources();
+            }
+            catch (Exception e) {}
+        }
+    }
+    
+    /*
+    True if the most recent call to 'makeRequests' stopped early, because a request couldn't connect to its endpoint.
+    */
+    public boolean didEncounterConnectionError() {
+        return didEncounterConnectionError_;
+    }
+    
+    public boolean isAborted() {
+        return isAborted_;
+    }
+    
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests_;
+    }
+    
+    private static ThreadFactory getThreadFactory() {
+        
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HttpRequestExecutor-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.pearson.statspoller.internal_metric_collectors;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricRollupTest {
+    
+    private static final int[] ALL_STATISTICS = {MetricRollup.STATISTIC_MIN, MetricRollup.STATISTIC_MAX, MetricRollup.STATISTIC_AVG, 
+        MetricRollup.STATISTIC_LAST, MetricRollup.STATISTIC_COUNT};
+    
+    public MetricRollupTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testCreateRollup() {
+        assertNull(MetricRollup.createRollup(null));
+        assertNull(MetricRollup.createRollup(new int[0]));
+        assertNull(MetricRollup.createRollup(new int[] {MetricRollup.STATISTIC_MIN, 5}));
+        assertNull(MetricRollup.createRollup(new int[] {-1}));
+        
+        assertEquals(MetricRollup.STATISTIC_AVG, MetricRollup.getStatisticCode(" AVG "));
+        assertEquals(MetricRollup.STATISTIC_COUNT, MetricRollup.getStatisticCode("count"));
+        assertEquals(-1, MetricRollup.getStatisticCode("median"));
+        assertEquals(-1, MetricRollup.getStatisticCode(null));
+    }
+    
+    /*
+    The statistics are output at the timestamp of the newest point. 'last' is the value of the newest point, not of the point that was added last.
+    */
+    @Test
+    public void testStatistics() {
+        
+        MetricRollup metricRollup = MetricRollup.createRollup(ALL_STATISTICS);
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        graphiteMetrics.add(new GraphiteMetric("a", 5.0, 1500000002));
+        graphiteMetrics.add(new GraphiteMetric("a", 1.0, 1500000003));
+        graphiteMetrics.add(new GraphiteMetric("a", 9.0, 1500000001));
+        graphiteMetrics.add(new GraphiteMetric("a", (BigDecimal) null, 1500000004));
+        graphiteMetrics.add(new GraphiteMetric("a", Double.POSITIVE_INFINITY, 1500000004));
+        assertNull(metricRollup.add(graphiteMetrics));
+        assertEquals(1, metricRollup.getNumSeries());
+        
+        Map<String,GraphiteMetric> outputMetrics = getGraphiteMetricsByPath(MetricRollup.flushRollups());
+        assertEquals(5, outputMetrics.size());
+        assertEquals(1.0, outputMetrics.get("a.min").getMetricValueDouble(), 0);
+        assertEquals(9.0, outputMetrics.get("a.max").getMetricValueDouble(), 0);
+        assertEquals(5.0, outputMetrics.get("a.avg").getMetricValueDouble(), 0);
+        assertEquals(1.0, outputMetrics.get("a.last").getMetricValueDouble(), 0);
+        assertEquals(3.0, outputMetrics.get("a.count").getMetricValueDouble(), 0);
+        for (GraphiteMetric graphiteMetric : outputMetrics.values()) assertEquals(1500000003L, graphiteMetric.getMetricTimestamp());
+        
+        // the statistics start over every output interval
+        metricRollup.add(Arrays.asList(new GraphiteMetric("a", 7.0, 1500000010)));
+        outputMetrics = getGraphiteMetricsByPath(MetricRollup.flushRollups());
+        assertEquals(7.0, outputMetrics.get("a.min").getMetricValueDouble(), 0);
+        assertEquals(7.0, outputMetrics.get("a.avg").getMetricValueDouble(), 0);
+        assertEquals(1.0, outputMetrics.get("a.count").getMetricValueDouble(), 0);
+    }
+    
+    /*
+    Series with no points during an interval are dropped, & the remaining series are moved down. Moved series must keep their own statistics.
+    */
+    @Test
+    public void testFlushPacksSeries() {
+        
+        MetricRollup metricRollup = MetricRollup.createRollup(new int[] {MetricRollup.STATISTIC_MAX});
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) graphiteMetrics.add(new GraphiteMetric("s" + i, i, 1500000000));
+        metricRollup.add(graphiteMetrics);
+        assertEquals(1000, metricRollup.getNumSeries());
+        assertEquals(1000, MetricRollup.flushRollups().size());
+        
+        // only every 100th series is still active
+        graphiteMetrics.clear();
+        for (int i = 0; i < 1000; i += 100) graphiteMetrics.add(new GraphiteMetric("s" + i, i * 2, 1500000001));
+        metricRollup.add(graphiteMetrics);
+        assertEquals(1000, metricRollup.getNumSeries());
+        
+        Map<String,GraphiteMetric> outputMetrics = getGraphiteMetricsByPath(MetricRollup.flushRollups());
+        assertEquals(10, outputMetrics.size());
+        for (int i = 0; i < 1000; i += 100) assertEquals(i * 2, outputMetrics.get("s" + i + ".max").getMetricValueDouble(), 0);
+        assertEquals(10, metricRollup.getNumSeries());
+        
+        // the moved series & a new series
+        graphiteMetrics.clear();
+        for (int i = 0; i < 1000; i += 100) graphiteMetrics.add(new GraphiteMetric("s" + i, i * 3, 1500000002));
+        graphiteMetrics.add(new GraphiteMetric("new", -1, 1500000002));
+        metricRollup.add(graphiteMetrics);
+        assertEquals(11, metricRollup.getNumSeries());
+        
+        outputMetrics = getGraphiteMetricsByPath(MetricRollup.flushRollups());
+        assertEquals(11, outputMetrics.size());
+        for (int i = 0; i < 1000; i += 100) assertEquals(i * 3, outputMetrics.get("s" + i + ".max").getMetricValueDouble(), 0);
+        assertEquals(-1, outputMetrics.get("new.max").getMetricValueDouble(), 0);
+        
+        // an idle interval drops every series
+        assertTrue(MetricRollup.flushRollups().isEmpty());
+        assertEquals(0, metricRollup.getNumSeries());
+    }
+    
+    /*
+    OpenTSDB statistics keep the tags of the series. Metrics that can't be rolled up are handed back, to be output as-is.
+    */
+    @Test
+    public void testOpenTsdbAndUnrolledMetrics() {
+        
+        MetricRollup metricRollup = MetricRollup.createRollup(new int[] {MetricRollup.STATISTIC_MAX, MetricRollup.STATISTIC_COUNT});
+        
+        List<OpenTsdbTag> tags = Arrays.asList(new OpenTsdbTag("Host=a"), new OpenTsdbTag("Core=0"));
+        OpenTsdbMetric openTsdbMetric1 = new OpenTsdbMetric("cpu", 1500000000000L, new BigDecimal("2"), new ArrayList<>(tags));
+        OpenTsdbMetric openTsdbMetric2 = new OpenTsdbMetric("cpu", 1500000000500L, new BigDecimal("4"), new ArrayList<>(tags));
+        
+        List<Object> metrics = new ArrayList<>();
+        metrics.add(openTsdbMetric1);
+        metrics.add(openTsdbMetric2);
+        metrics.add("not a metric");
+        
+        // a graphite metric path that is the same as the opentsdb metric key is a different series
+        GraphiteMetric graphiteMetric = new GraphiteMetric(openTsdbMetric1.getMetricKey(), 1.0, 1500000000);
+        metrics.add(graphiteMetric);
+        
+        List<Object> unrolledMetrics = metricRollup.add(metrics);
+        assertEquals(Arrays.asList("not a metric", graphiteMetric), unrolledMetrics);
+        assertNull(metricRollup.add(null));
+        
+        List<Object> outputMetrics = MetricRollup.flushRollups();
+        assertEquals(2, outputMetrics.size());
+        
+        OpenTsdbMetric maxMetric = (OpenTsdbMetric) outputMetrics.get(0);
+        assertEquals(openTsdbMetric1.getSuffixedMetricKey(".max"), maxMetric.getMetricKey());
+        assertEquals("cpu.max", maxMetric.getMetric());
+        assertEquals(4.0, maxMetric.getMetricValueDouble(), 0);
+        assertEquals(1500000000500L, maxMetric.getMetricTimestampInMilliseconds());
+        
+        OpenTsdbMetric countMetric = (OpenTsdbMetric) outputMetrics.get(1);
+        assertEquals("cpu.count", countMetric.getMetric());
+        assertEquals(2.0, countMetric.getMetricValueDouble(), 0);
+    }
+    
+    private static Map<String,GraphiteMetric> getGraphiteMetricsByPath(List<Object> metrics) {
+        
+        Map<String,GraphiteMetric> graphiteMetricsByPath = new HashMap<>();
+        
+        for (Object metric : metrics) {
+            GraphiteMetric graphiteMetric = (GraphiteMetric) metric;
+            assertNull(graphiteMetricsByPath.put(graphiteMetric.getMetricPath(), graphiteMetric));
+        }
+        
+        return graphiteMetricsByPath;
+    }
+
+}
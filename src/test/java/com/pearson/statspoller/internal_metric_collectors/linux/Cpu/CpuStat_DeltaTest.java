@@ -0,0 +1,102 @@
+package com.pearson.statspoller.internal_metric_collectors.linux.Cpu;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class CpuStat_DeltaTest {
+    
+    public CpuStat_DeltaTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testGetPercent() {
+        
+        CpuStat_Delta cpuStat = new CpuStat_Delta("cpu", "10", "0", "20", "60", "5", "1", "1", "3", "0", "0");
+        
+        assertEquals("CPU-All", cpuStat.getFormattedCpuName());
+        assertEquals(10, cpuStat.getUserPercent(), 0);
+        assertEquals(20, cpuStat.getSystemPercent(), 0);
+        assertEquals(60, cpuStat.getIdlePercent(), 0);
+        assertEquals(40, cpuStat.getUsedPercent(), 0);
+        assertEquals(0, cpuStat.getGuestPercent(), 0);
+        assertEquals(0, cpuStat.getExtraPercent(), 0);
+        
+        // percentages are rounded (half-up) to 5 decimal places
+        cpuStat = new CpuStat_Delta("cpu0", "1", "0", "0", "2", "0", "0", "0", "0", "0", "0");
+        assertEquals("CPU-0", cpuStat.getFormattedCpuName());
+        assertEquals(33.33333, cpuStat.getUserPercent(), 0);
+        assertEquals(66.66667, cpuStat.getIdlePercent(), 0);
+    }
+    
+    /*
+    A counter that went backwards between two reads of /proc/stat (ex- a counter reset) gives a negative delta, & its percentage can't be computed.
+    The negative delta is left out of the total, so the other fields' percentages are still computed.
+    */
+    @Test
+    public void testCounterResetIsNaN() {
+        
+        CpuStat_Delta cpuStat = new CpuStat_Delta("cpu", "25", "0", "25", "-1000", "0", "0", "0", "0", "0", "0");
+        
+        assertTrue(Double.isNaN(cpuStat.getIdlePercent()));
+        assertTrue(Double.isNaN(cpuStat.getUsedPercent()));
+        assertEquals(50, cpuStat.getUserPercent(), 0);
+        assertEquals(50, cpuStat.getSystemPercent(), 0);
+        
+        // fields that aren't available (ex- on older kernels) can't be computed either
+        cpuStat = new CpuStat_Delta("cpu", "25", "0", "25", "50", "0", "0", "0", null, null, null);
+        assertTrue(Double.isNaN(cpuStat.getStealPercent()));
+        assertTrue(Double.isNaN(cpuStat.getGuestPercent()));
+        assertEquals(50, cpuStat.getUsedPercent(), 0);
+    }
+    
+    /*
+    If no time passed between the two reads of /proc/stat, then every percentage is NaN (rather than a division by zero).
+    */
+    @Test
+    public void testZeroSumIntervalIsNaN() {
+        
+        CpuStat_Delta cpuStat = new CpuStat_Delta("cpu", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0");
+        
+        assertTrue(Double.isNaN(cpuStat.getUserPercent()));
+        assertTrue(Double.isNaN(cpuStat.getNicePercent()));
+        assertTrue(Double.isNaN(cpuStat.getSystemPercent()));
+        assertTrue(Double.isNaN(cpuStat.getIdlePercent()));
+        assertTrue(Double.isNaN(cpuStat.getIowaitPercent()));
+        assertTrue(Double.isNaN(cpuStat.getIrqPercent()));
+        assertTrue(Double.isNaN(cpuStat.getSoftIrqPercent()));
+        assertTrue(Double.isNaN(cpuStat.getStealPercent()));
+        assertTrue(Double.isNaN(cpuStat.getGuestPercent()));
+        assertTrue(Double.isNaN(cpuStat.getGuestNicePercent()));
+        assertTrue(Double.isNaN(cpuStat.getExtraPercent()));
+        assertTrue(Double.isNaN(cpuStat.getUsedPercent()));
+        
+        // only negative deltas (every counter was reset) sum to zero too
+        cpuStat = new CpuStat_Delta("cpu", "-1", "-1", "-1", "-1", "-1", "-1", "-1", "-1", "-1", "-1");
+        assertTrue(Double.isNaN(cpuStat.getUserPercent()));
+        assertTrue(Double.isNaN(cpuStat.getUsedPercent()));
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.pearson.statspoller.metric_formats;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.influxdb.Common;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricByteEncoderTest {
+    
+    private static final String[] METRIC_PATHS = {"Test.Metric", "a b\tc", "weird!@#$%^&*()_+=[]{}|;:'\",<>?/\\.path", "unicode.é中😀.path", ""};
+    
+    private static final BigDecimal[] BIG_DECIMAL_VALUES = {new BigDecimal("0"), new BigDecimal("1.50"), new BigDecimal("-12345.6789"), new BigDecimal("1E+3"),
+        new BigDecimal("1E-300"), new BigDecimal("123456789012345678901234567890.123"), new BigDecimal("-0.000000001"), null};
+    
+    private static final long[] LONG_VALUES = {0, 1, -1, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+    
+    private static final byte[] TIME_PRECISION_CODES = {Common.TIMESTAMP_PRECISION_UNKNOWN, Common.TIMESTAMP_PRECISION_HOURS, Common.TIMESTAMP_PRECISION_MINUTES, 
+        Common.TIMESTAMP_PRECISION_SECONDS, Common.TIMESTAMP_PRECISION_MILLISECONDS, Common.TIMESTAMP_PRECISION_MICROSECONDS, Common.TIMESTAMP_PRECISION_NANOSECONDS};
+    
+    private static final double[] DOUBLE_VALUES = {0.0, -0.0, 1.5, -2.25, 0.1, 1.0 / 3.0, 1e-300, 1e300, 123456789.123, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY};
+    
+    public MetricByteEncoderTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testGraphiteMetricBytesMatchStrings() {
+        
+        for (GraphiteMetric graphiteMetric : getGraphiteMetrics()) {
+            for (boolean sanitizeMetric : new boolean[] {true, false}) {
+                for (boolean substituteCharacters : new boolean[] {true, false}) {
+                    ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                    graphiteMetric.writeGraphiteFormatBytes(byteBuffer, sanitizeMetric, substituteCharacters);
+                    assertEquals(graphiteMetric.getGraphiteFormatString(sanitizeMetric, substituteCharacters), getString(byteBuffer));
+                }
+                
+                ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                graphiteMetric.writeOpenTsdbTelnetFormatBytes(byteBuffer, sanitizeMetric, null, null);
+                assertEquals(graphiteMetric.getOpenTsdbTelnetFormatString(sanitizeMetric, null, null), getString(byteBuffer));
+                
+                byteBuffer = ByteBuffer.allocate(4096);
+                graphiteMetric.writeOpenTsdbTelnetFormatBytes(byteBuffer, sanitizeMetric, "Format", "Gräphite");
+                assertEquals(graphiteMetric.getOpenTsdbTelnetFormatString(sanitizeMetric, "Format", "Gräphite"), getString(byteBuffer));
+            }
+        }
+    }
+    
+    @Test
+    public void testOpenTsdbMetricBytesMatchStrings() {
+        
+        for (OpenTsdbMetric openTsdbMetric : getOpenTsdbMetrics()) {
+            for (boolean sanitizeMetric : new boolean[] {true, false}) {
+                for (boolean substituteCharacters : new boolean[] {true, false}) {
+                    ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                    openTsdbMetric.writeGraphiteFormatBytes(byteBuffer, sanitizeMetric, substituteCharacters);
+                    assertEquals(openTsdbMetric.getGraphiteFormatString(sanitizeMetric, substituteCharacters), getString(byteBuffer));
+                }
+                
+                String[][] defaultTags = {{null, null}, {"Format", "OpenTSDB"}, {"Täg", "välue!"}, {"Bad=Key", "Value"}, {"Key", ""}};
+                
+                for (String[] defaultTag : defaultTags) {
+                    String expected = openTsdbMetric.getOpenTsdbTelnetFormatString(sanitizeMetric, defaultTag[0], defaultTag[1]);
+                    ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                    openTsdbMetric.writeOpenTsdbTelnetFormatBytes(byteBuffer, sanitizeMetric, defaultTag[0], defaultTag[1]);
+                    assertEquals(openTsdbMetric.getMetricKey() + " " + Arrays.toString(defaultTag), expected, getString(byteBuffer));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testGraphiteMetricInfluxdbV2BytesMatchStrings() {
+        
+        for (GraphiteMetric graphiteMetric : getGraphiteMetrics()) {
+            for (byte timePrecisionCode : TIME_PRECISION_CODES) {
+                // nothing is written for metrics that can't be output (ex- a null value)
+                String expected = graphiteMetric.getInfluxdbV2LineFormatString(timePrecisionCode);
+                ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                graphiteMetric.writeInfluxdbV2LineFormatBytes(byteBuffer, timePrecisionCode);
+                assertEquals(graphiteMetric.getMetricPath() + " " + timePrecisionCode, (expected == null) ? "" : expected, getString(byteBuffer));
+            }
+        }
+    }
+    
+    /*
+    The tag sets include empty tag values, tags with spaces, commas, & '=' (all of which must be escaped in the line protocol), & tag-less metrics (which aren't written).
+    */
+    @Test
+    public void testOpenTsdbMetricInfluxdbV2BytesMatchStrings() {
+        
+        for (OpenTsdbMetric openTsdbMetric : getOpenTsdbMetrics()) {
+            for (byte timePrecisionCode : TIME_PRECISION_CODES) {
+                // nothing is written for metrics that can't be output (ex- a null value)
+                String expected = openTsdbMetric.getInfluxdbV2LineFormatString(timePrecisionCode);
+                ByteBuffer byteBuffer = ByteBuffer.allocate(4096);
+                openTsdbMetric.writeInfluxdbV2LineFormatBytes(byteBuffer, timePrecisionCode);
+                assertEquals(openTsdbMetric.getMetricKey() + " " + timePrecisionCode, (expected == null) ? "" : expected, getString(byteBuffer));
+            }
+        }
+    }
+    
+    @Test
+    public void testWriteLong() {
+        
+        for (long value : LONG_VALUES) {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(32);
+            MetricByteEncoder.writeLong(byteBuffer, value);
+            assertEquals(Long.toString(value), getString(byteBuffer));
+        }
+        
+        for (long value = 1; (value > 0) && (value < Long.MAX_VALUE / 10); value *= 10) {
+            for (long delta = -1; delta <= 1; delta++) {
+                ByteBuffer byteBuffer = ByteBuffer.allocate(32);
+                MetricByteEncoder.writeLong(byteBuffer, value + delta);
+                assertEquals(Long.toString(value + delta), getString(byteBuffer));
+            }
+        }
+    }
+    
+    private static List<GraphiteMetric> getGraphiteMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        
+        for (String metricPath : METRIC_PATHS) {
+            for (BigDecimal value : BIG_DECIMAL_VALUES) graphiteMetrics.add(new GraphiteMetric(metricPath, value, 1500000000));
+            for (BigDecimal value : BIG_DECIMAL_VALUES) graphiteMetrics.add(new GraphiteMetric(metricPath, value, 1500000000123L, 1500000000123L));
+            for (long value : LONG_VALUES) graphiteMetrics.add(new GraphiteMetric(metricPath, value, 1500000000));
+            for (double value : DOUBLE_VALUES) graphiteMetrics.add(new GraphiteMetric(metricPath, value, 1500000000));
+        }
+        
+        return graphiteMetrics;
+    }
+    
+    private static List<OpenTsdbMetric> getOpenTsdbMetrics() {
+        
+        List<List<OpenTsdbTag>> tagSets = new ArrayList<>();
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Host=server1")));
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Host=server1"), new OpenTsdbTag("Env=prod"), new OpenTsdbTag("Zone=us-east-1a")));
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Ho$t=servér 1"), new OpenTsdbTag("中=😀")));
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Host=server1"), new OpenTsdbTag("Host=server2")));
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Host=")));
+        tagSets.add(Arrays.asList(new OpenTsdbTag("Host Name=server 1, rack 2"), new OpenTsdbTag("Key,1=a=b"), new OpenTsdbTag("Empty=")));
+        tagSets.add(new ArrayList<OpenTsdbTag>());
+        
+        List<OpenTsdbMetric> openTsdbMetrics = new ArrayList<>();
+        
+        for (String metric : METRIC_PATHS) {
+            for (List<OpenTsdbTag> tags : tagSets) {
+                for (BigDecimal value : BIG_DECIMAL_VALUES) openTsdbMetrics.add(new OpenTsdbMetric(metric, 1500000000123L, value, new ArrayList<>(tags)));
+                for (BigDecimal value : BIG_DECIMAL_VALUES) openTsdbMetrics.add(new OpenTsdbMetric(metric, 1500000000, value, new ArrayList<>(tags)));
+                for (long value : LONG_VALUES) openTsdbMetrics.add(new OpenTsdbMetric(metric, 1500000000123L, value, new ArrayList<>(tags)));
+                for (double value : DOUBLE_VALUES) openTsdbMetrics.add(new OpenTsdbMetric(metric, 1500000000123L, value, new ArrayList<>(tags)));
+            }
+        }
+        
+        return openTsdbMetrics;
+    }
+    
+    /*
+    Also checks that the bytes are valid UTF-8 (ex- surrogate pairs were written as one 4-byte character, not as two 3-byte characters).
+    */
+    private static String getString(ByteBuffer byteBuffer) {
+        byte[] bytes = Arrays.copyOf(byteBuffer.array(), byteBuffer.position());
+        String string = new String(bytes, StandardCharsets.UTF_8);
+        assertArrayEquals(string.getBytes(StandardCharsets.UTF_8), bytes);
+        return string;
+    }
+
+}
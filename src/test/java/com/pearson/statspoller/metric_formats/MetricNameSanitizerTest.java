@@ -0,0 +1,177 @@
+package com.pearson.statspoller.metric_formats;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricNameSanitizerTest {
+    
+    // ascii letters/digits/punctuation, runs of dots, non-ascii letters & digits (ex- arabic-indic digits), non-ascii symbols, & surrogate pairs
+    private static final String CHARACTERS = "aZ09 ._-/\\%[]{}()!@#$^&*=+,;:'\"<>?|~`\t\n" + "......" + "éß中Ж٣" + "€©  " + "😀𝔸";
+    
+    public MetricNameSanitizerTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    The sanitizers must give the same output as the per-character implementations that they replaced, on both a cache miss & a cache hit.
+    */
+    @Test
+    public void testSanitizedStringsMatchPreviousImplementation() {
+        
+        Random random = new Random(17);
+        
+        for (int i = 0; i < 20000; i++) {
+            String unsanitizedInput = getRandomString(random, random.nextInt(24));
+            
+            for (int j = 0; j < 2; j++) {
+                assertEquals(unsanitizedInput, getPreviousOpenTsdbSanitizedString(unsanitizedInput), MetricNameSanitizer.getOpenTsdbSanitizedString(unsanitizedInput));
+                
+                for (boolean sanitizeMetric : new boolean[] {true, false}) {
+                    for (boolean substituteCharacters : new boolean[] {true, false}) {
+                        assertEquals(unsanitizedInput + " " + sanitizeMetric + " " + substituteCharacters, 
+                                getPreviousGraphiteSanitizedString(unsanitizedInput, sanitizeMetric, substituteCharacters), 
+                                MetricNameSanitizer.getGraphiteSanitizedString(unsanitizedInput, sanitizeMetric, substituteCharacters));
+                    }
+                }
+            }
+        }
+        
+        assertNull(MetricNameSanitizer.getOpenTsdbSanitizedString(null));
+        assertNull(MetricNameSanitizer.getGraphiteSanitizedString(null, true, true));
+        assertEquals("", MetricNameSanitizer.getOpenTsdbSanitizedString(""));
+        assertEquals("", MetricNameSanitizer.getGraphiteSanitizedString("", true, true));
+    }
+    
+    /*
+    Names that don't need any sanitizing are returned as the same String instance.
+    */
+    @Test
+    public void testUnchangedNamesAreNotCopied() {
+        
+        String openTsdbName = new String("Test.Metric-1_a/b");
+        assertSame(openTsdbName, MetricNameSanitizer.getOpenTsdbSanitizedString(openTsdbName));
+        
+        String graphiteName = new String("Test.Metric.1");
+        assertSame(graphiteName, MetricNameSanitizer.getGraphiteSanitizedString(graphiteName, true, true));
+        assertSame(graphiteName, MetricNameSanitizer.getGraphiteSanitizedString(graphiteName, false, false));
+    }
+    
+    private static String getRandomString(Random random, int length) {
+        
+        StringBuilder randomString = new StringBuilder();
+        
+        while (randomString.length() < length) {
+            int index = random.nextInt(CHARACTERS.length());
+            
+            // sometimes split a surrogate pair, so that lone surrogates are tested too
+            if (Character.isHighSurrogate(CHARACTERS.charAt(index)) && random.nextBoolean()) randomString.append(CHARACTERS, index, index + 2);
+            else randomString.append(CHARACTERS.charAt(index));
+        }
+        
+        return randomString.toString();
+    }
+    
+    /*
+    The per-character graphite sanitizer that MetricNameSanitizer replaced.
+    */
+    private static String getPreviousGraphiteSanitizedString(String unsanitizedInput, boolean sanitizeMetric, boolean substituteCharacters) {
+        
+        if (unsanitizedInput == null) return null;
+        if (!sanitizeMetric && !substituteCharacters) return unsanitizedInput;
+        
+        StringBuilder sanitizedInput = new StringBuilder();
+        
+        for (int i = 0; i < unsanitizedInput.length(); i++) {
+            char character = unsanitizedInput.charAt(i);
+            
+            if (substituteCharacters && Character.isLetterOrDigit(character)) {
+                sanitizedInput.append(character);
+                continue;
+            }
+            
+            if (sanitizeMetric && (character == '.')) {
+                int iPlusOne = i + 1;
+                
+                if (((iPlusOne < unsanitizedInput.length()) && (unsanitizedInput.charAt(iPlusOne) != '.')) || (iPlusOne == unsanitizedInput.length())) {
+                    sanitizedInput.append(character);
+                    continue;
+                }
+            }
+            
+            if (substituteCharacters) {
+                if (character == '%') {
+                    sanitizedInput.append("Pct");
+                    continue;
+                }
+                
+                if (character == ' ') {
+                    sanitizedInput.append("_");
+                    continue;
+                }
+                
+                if ((character == '\\') || (character == '/') || 
+                        (character == '[') || (character == ']') || 
+                        (character == '{') || (character == '}') ||
+                        (character == '(') || (character == ')')) {
+                    sanitizedInput.append("|");
+                    continue;
+                }
+            }
+            
+            if (sanitizeMetric && (character != '.')) sanitizedInput.append(character);
+            else if (!sanitizeMetric) sanitizedInput.append(character);
+        }
+        
+        return sanitizedInput.toString();
+    }
+    
+    /*
+    The per-character opentsdb sanitizer that MetricNameSanitizer replaced.
+    */
+    private static String getPreviousOpenTsdbSanitizedString(String unsanitizedInput) {
+        
+        if (unsanitizedInput == null) return null;
+        
+        StringBuilder sanitizedInput = new StringBuilder();
+        
+        for (int i = 0; i < unsanitizedInput.length(); i++) {
+            char character = unsanitizedInput.charAt(i);
+            
+            if (Character.isLetterOrDigit(character)) {
+                sanitizedInput.append(character);
+                continue;
+            }
+            
+            if ((character == '-') || (character == '_') || (character == '.') || (character == '/')) {
+                sanitizedInput.append(character);
+                continue;
+            }
+        }
+        
+        return sanitizedInput.toString();
+    }
+
+}
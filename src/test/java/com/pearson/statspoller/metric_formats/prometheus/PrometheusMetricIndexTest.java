@@ -0,0 +1,116 @@
+package com.pearson.statspoller.metric_formats.prometheus;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class PrometheusMetricIndexTest {
+    
+    public PrometheusMetricIndexTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    Values are written as plain numbers, so tiny & huge values are hundreds of characters long. They must still fit in the line buffer.
+    Values are written with 15 significant digits, so the largest values are just under Double.MAX_VALUE (which would round up to infinity).
+    */
+    @Test
+    public void testExtremeValuesAreWrittenInFull() throws Exception {
+        
+        double[] values = {1e-300, -1e-300, -Double.MIN_VALUE, Double.MIN_VALUE, -1.79769313486231e308, 1.79769313486231e308, -1.23456789012345e-307, 0.0, -1.5};
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) graphiteMetrics.add(new GraphiteMetric("Test.Metric" + i, values[i], Integer.MAX_VALUE));
+        graphiteMetrics.add(new GraphiteMetric("Test.BigDecimal", new BigDecimal("1E-300"), Integer.MAX_VALUE));
+        
+        PrometheusMetricIndex prometheusMetricIndex = new PrometheusMetricIndex();
+        prometheusMetricIndex.updateMetrics(graphiteMetrics);
+        assertEquals(graphiteMetrics.size(), prometheusMetricIndex.getNumSeries());
+        
+        Map<String,String[]> linesBySeriesName = getExpositionFormatLines(prometheusMetricIndex);
+        assertEquals(graphiteMetrics.size(), linesBySeriesName.size());
+        
+        for (int i = 0; i < values.length; i++) {
+            String[] line = linesBySeriesName.get("Test_Metric" + i);
+            assertNotNull(line);
+            assertEquals(values[i], Double.parseDouble(line[1]), Math.abs(values[i]) * 1e-14);
+            assertEquals(Integer.MAX_VALUE * 1000L, Long.parseLong(line[2]));
+        }
+        
+        String[] bigDecimalLine = linesBySeriesName.get("Test_BigDecimal");
+        assertEquals(1e-300, Double.parseDouble(bigDecimalLine[1]), 1e-314);
+        assertTrue(bigDecimalLine[1].length() > 300);
+    }
+    
+    @Test
+    public void testUpdateKeepsLatestValue() throws Exception {
+        
+        PrometheusMetricIndex prometheusMetricIndex = new PrometheusMetricIndex();
+        
+        List<Object> metrics = new ArrayList<>();
+        metrics.add(new GraphiteMetric("a.b", 1.0, 1500000000));
+        metrics.add(new GraphiteMetric("a_b", 2.0, 1500000001));
+        metrics.add(new GraphiteMetric("c", (BigDecimal) null, 1500000000));
+        metrics.add("not a metric");
+        prometheusMetricIndex.updateMetrics(metrics);
+        
+        // 'a.b' & 'a_b' are the same prometheus series
+        assertEquals(1, prometheusMetricIndex.getNumSeries());
+        
+        String[] line = getExpositionFormatLines(prometheusMetricIndex).get("a_b");
+        assertEquals("2", line[1]);
+        assertEquals("1500000001000", line[2]);
+    }
+    
+    /*
+    Returns each line of the exposition format, split into the series name, the value, & the timestamp. Keyed by the series name.
+    */
+    private static Map<String,String[]> getExpositionFormatLines(PrometheusMetricIndex prometheusMetricIndex) throws Exception {
+        
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        prometheusMetricIndex.writeExpositionFormat(outputStream);
+        String expositionFormat = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(expositionFormat.isEmpty() || expositionFormat.endsWith("\n"));
+        
+        Map<String,String[]> linesBySeriesName = new HashMap<>();
+        
+        for (String line : expositionFormat.split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split(" ");
+            assertEquals(line, 3, fields.length);
+            linesBySeriesName.put(fields[0], fields);
+        }
+        
+        return linesBySeriesName;
+    }
+
+}
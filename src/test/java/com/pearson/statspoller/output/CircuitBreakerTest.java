@@ -0,0 +1,119 @@
+package com.pearson.statspoller.output;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class CircuitBreakerTest {
+    
+    public CircuitBreakerTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("Test", 3, 60000, 60000);
+        
+        assertEquals(CircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.isSendAllowed());
+        
+        // a success resets the consecutive failure count
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        assertEquals(0, circuitBreaker.getNumConsecutiveFailures());
+        assertEquals(CircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+        
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.isSendAllowed());
+        
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getNumTimesOpened());
+        assertFalse(circuitBreaker.isSendAllowed());
+        
+        // failures while open (ex- a send that was already in flight) don't re-open the breaker
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getNumTimesOpened());
+    }
+    
+    @Test
+    public void testHalfOpenProbeSuccessCloses() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("Test", 1, 0, 0);
+        
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+        
+        // the open time has elapsed, so exactly one probe is let through
+        assertTrue(circuitBreaker.isSendAllowed());
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.isSendAllowed());
+        
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getNumConsecutiveFailures());
+        assertTrue(circuitBreaker.isSendAllowed());
+        assertTrue(circuitBreaker.isSendAllowed());
+    }
+    
+    /*
+    A failed probe re-opens the breaker, & each failed probe doubles the open time (up to the max open time).
+    */
+    @Test
+    public void testHalfOpenProbeFailureReopensWithBackoff() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("Test", 1, 200, 500);
+        
+        circuitBreaker.recordFailure();
+        assertFalse(circuitBreaker.isSendAllowed());
+        
+        // open for 200ms
+        Thread.sleep(250);
+        assertTrue(circuitBreaker.isSendAllowed());
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+        assertEquals(2, circuitBreaker.getNumTimesOpened());
+        
+        // open for 400ms
+        Thread.sleep(250);
+        assertFalse(circuitBreaker.isSendAllowed());
+        Thread.sleep(250);
+        assertTrue(circuitBreaker.isSendAllowed());
+        circuitBreaker.recordFailure();
+        
+        // open for 500ms (the max), not 800ms
+        Thread.sleep(600);
+        assertTrue(circuitBreaker.isSendAllowed());
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, circuitBreaker.getState());
+        
+        // a successful probe resets the backoff
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        Thread.sleep(250);
+        assertTrue(circuitBreaker.isSendAllowed());
+    }
+
+}
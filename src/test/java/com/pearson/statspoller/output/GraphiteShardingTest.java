@@ -0,0 +1,155 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.utilities.math_utils.MathUtilities;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class GraphiteShardingTest {
+    
+    public GraphiteShardingTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    The shard of a metric path must never change between releases, or every series would move to a different carbon server on upgrade.
+    */
+    @Test
+    public void testHashesAreStable() {
+        
+        // the published FNV-1a 64 test vectors
+        assertEquals(0xcbf29ce484222325L, getFnv1a64Hash(""));
+        assertEquals(0xaf63dc4c8601ec8cL, getFnv1a64Hash("a"));
+        assertEquals(0x85944171f73967e8L, getFnv1a64Hash("foobar"));
+        
+        assertEquals(0, MathUtilities.getJumpConsistentHash(0, 1000));
+        assertEquals(549, MathUtilities.getJumpConsistentHash(1, 1000));
+        assertEquals(338, MathUtilities.getJumpConsistentHash(2, 1000));
+        assertEquals(285, MathUtilities.getJumpConsistentHash(0xdeadbeefL, 1000));
+        assertEquals(972, MathUtilities.getJumpConsistentHash(Long.MAX_VALUE, 1000));
+        assertEquals(313, MathUtilities.getJumpConsistentHash(-1, 1000));
+        assertEquals(0, MathUtilities.getJumpConsistentHash(12345, 1));
+        assertEquals(0, MathUtilities.getJumpConsistentHash(12345, 0));
+        
+        assertEquals(2, getShardIndex("servers.web01.cpu.user", 3));
+        assertEquals(1, getShardIndex("servers.web02.cpu.user", 3));
+        assertEquals(3, getShardIndex("servers.web02.cpu.user", 5));
+        assertEquals(0, getShardIndex("apps.checkout.latency.p99", 10));
+    }
+    
+    /*
+    Adding a shard only moves the paths that now belong to the new shard, & the paths are spread evenly.
+    */
+    @Test
+    public void testAddingShardOnlyMovesPathsToNewShard() {
+        
+        int numPaths = 20000;
+        
+        for (int numShards = 1; numShards < 12; numShards++) {
+            int[] numPathsPerShard = new int[numShards + 1];
+            int numMovedPaths = 0;
+            
+            for (int i = 0; i < numPaths; i++) {
+                String metricPath = "servers.host" + i + ".cpu.user";
+                int shardIndex = getShardIndex(metricPath, numShards);
+                int newShardIndex = getShardIndex(metricPath, numShards + 1);
+                
+                assertTrue((shardIndex >= 0) && (shardIndex < numShards));
+                if (newShardIndex != shardIndex) {
+                    assertEquals(numShards, newShardIndex);
+                    numMovedPaths++;
+                }
+                
+                numPathsPerShard[newShardIndex]++;
+            }
+            
+            double expectedNumPathsPerShard = (double) numPaths / (numShards + 1);
+            assertEquals(expectedNumPathsPerShard, numMovedPaths, expectedNumPathsPerShard * 0.1);
+            for (int numPathsInShard : numPathsPerShard) assertEquals(expectedNumPathsPerShard, numPathsInShard, expectedNumPathsPerShard * 0.1);
+        }
+    }
+    
+    /*
+    Every line ends up in exactly one shard (unchanged), & all the lines of a metric path end up in the same shard.
+    */
+    @Test
+    public void testShardGraphiteBatch() {
+        
+        int numShards = 4;
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            graphiteMetrics.add(new GraphiteMetric("servers.host" + (i % 100) + ".cpu.user", new BigDecimal(i), 1500000000 + i));
+        }
+        
+        EncodedMetricBatch graphiteBatch = MetricEncodingCache.encodeGraphite(graphiteMetrics, true, true);
+        EncodedMetricBatch[] shardBatches = MetricEncodingCache.shardGraphiteBatch(graphiteBatch, numShards);
+        assertEquals(numShards, shardBatches.length);
+        
+        Map<String,Integer> shardIndexByMetricPath = new HashMap<>();
+        List<String> shardedLines = new ArrayList<>();
+        
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            for (int i = 0; i < shardBatches[shardIndex].getNumRecords(); i++) {
+                String line = shardBatches[shardIndex].getRecordAsString(i);
+                String metricPath = line.substring(0, line.indexOf(' '));
+                
+                assertEquals(getShardIndex(metricPath, numShards), shardIndex);
+                Integer previousShardIndex = shardIndexByMetricPath.put(metricPath, shardIndex);
+                assertTrue((previousShardIndex == null) || (previousShardIndex == shardIndex));
+                
+                shardedLines.add(line);
+            }
+        }
+        
+        assertEquals(100, shardIndexByMetricPath.size());
+        assertEquals(graphiteMetrics.size(), shardedLines.size());
+        
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < graphiteBatch.getNumRecords(); i++) lines.add(graphiteBatch.getRecordAsString(i));
+        assertTrue(lines.containsAll(shardedLines) && shardedLines.containsAll(lines));
+        
+        // one shard is the same as no sharding
+        EncodedMetricBatch[] singleShardBatch = MetricEncodingCache.shardGraphiteBatch(graphiteBatch, 1);
+        assertArrayEquals(MetricEncodingCache.getRecords(graphiteBatch, 0, graphiteBatch.getNumRecords()),
+                MetricEncodingCache.getRecords(singleShardBatch[0], 0, singleShardBatch[0].getNumRecords()));
+    }
+    
+    private static long getFnv1a64Hash(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return MathUtilities.getFnv1a64Hash(bytes, 0, bytes.length);
+    }
+    
+    private static int getShardIndex(String metricPath, int numShards) {
+        return MathUtilities.getJumpConsistentHash(getFnv1a64Hash(metricPath), numShards);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricCompactorTest {
+    
+    public MetricCompactorTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testGetCompactionModeCode() {
+        assertEquals(MetricCompactor.COMPACTION_MODE_OFF, MetricCompactor.getCompactionModeCode("off"));
+        assertEquals(MetricCompactor.COMPACTION_MODE_OFF, MetricCompactor.getCompactionModeCode("false"));
+        assertEquals(MetricCompactor.COMPACTION_MODE_LAST, MetricCompactor.getCompactionModeCode(" Last "));
+        assertEquals(MetricCompactor.COMPACTION_MODE_MIN, MetricCompactor.getCompactionModeCode("min"));
+        assertEquals(MetricCompactor.COMPACTION_MODE_MAX, MetricCompactor.getCompactionModeCode("MAX"));
+        assertEquals(MetricCompactor.COMPACTION_MODE_AVG, MetricCompactor.getCompactionModeCode("avg"));
+        assertEquals(-1, MetricCompactor.getCompactionModeCode("median"));
+        assertEquals(-1, MetricCompactor.getCompactionModeCode(null));
+    }
+    
+    @Test
+    public void testCompactionModes() {
+        
+        List<Object> metrics = new ArrayList<>();
+        metrics.add(new GraphiteMetric("a", new BigDecimal("5"), 1500000002));
+        metrics.add(new GraphiteMetric("b", new BigDecimal("1"), 1500000000));
+        metrics.add(new GraphiteMetric("a", new BigDecimal("1"), 1500000003));
+        metrics.add(new GraphiteMetric("a", new BigDecimal("9"), 1500000001));
+        metrics.add(new GraphiteMetric("a", (BigDecimal) null, 1500000000));
+        
+        // the newest point wins
+        List<?> lastMetrics = MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_LAST);
+        assertEquals(Arrays.asList(metrics.get(2), metrics.get(1)), lastMetrics);
+        
+        List<?> minMetrics = MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_MIN);
+        assertEquals(Arrays.asList(metrics.get(2), metrics.get(1)), minMetrics);
+        
+        List<?> maxMetrics = MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_MAX);
+        assertEquals(Arrays.asList(metrics.get(3), metrics.get(1)), maxMetrics);
+        
+        // null values don't count towards the average. the average is output at the newest point's timestamp.
+        List<?> avgMetrics = MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_AVG);
+        assertEquals(2, avgMetrics.size());
+        GraphiteMetric avgMetric = (GraphiteMetric) avgMetrics.get(0);
+        assertEquals("a", avgMetric.getMetricPath());
+        assertEquals(0, new BigDecimal("5").compareTo(avgMetric.getMetricValue()));
+        assertEquals(1500000003L, avgMetric.getMetricTimestamp());
+        assertSame(metrics.get(1), avgMetrics.get(1));
+    }
+    
+    @Test
+    public void testNothingToCompactReturnsInputList() {
+        
+        List<Object> metrics = new ArrayList<>();
+        metrics.add(new GraphiteMetric("a", new BigDecimal("1"), 1500000000));
+        metrics.add(new GraphiteMetric("b", new BigDecimal("2"), 1500000000));
+        metrics.add("not a metric");
+        metrics.add("not a metric");
+        
+        assertSame(metrics, MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_LAST));
+        assertSame(metrics, MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_OFF));
+        assertNull(MetricCompactor.compactMetrics(null, MetricCompactor.COMPACTION_MODE_LAST));
+    }
+    
+    /*
+    OpenTSDB series are a metric + tags. A Graphite series & an OpenTSDB series with the same key are different series.
+    */
+    @Test
+    public void testSeriesAreKeptApart() {
+        
+        List<OpenTsdbTag> tagsA = Arrays.asList(new OpenTsdbTag("Host=a"));
+        List<OpenTsdbTag> tagsB = Arrays.asList(new OpenTsdbTag("Host=b"));
+        
+        List<Object> metrics = new ArrayList<>();
+        metrics.add(new OpenTsdbMetric("cpu", 1500000000000L, new BigDecimal("1"), new ArrayList<>(tagsA)));
+        metrics.add(new OpenTsdbMetric("cpu", 1500000000000L, new BigDecimal("2"), new ArrayList<>(tagsB)));
+        
+        // a graphite metric path that is the same as an opentsdb metric key
+        String openTsdbMetricKey = ((OpenTsdbMetric) metrics.get(0)).getMetricKey();
+        metrics.add(new GraphiteMetric(openTsdbMetricKey, new BigDecimal("3"), 1500000000));
+        metrics.add("not a metric");
+        metrics.add(new OpenTsdbMetric("cpu", 1500000001000L, new BigDecimal("5"), new ArrayList<>(tagsA)));
+        metrics.add(new GraphiteMetric(openTsdbMetricKey, new BigDecimal("6"), 1500000001));
+        
+        List<?> compactedMetrics = MetricCompactor.compactMetrics(metrics, MetricCompactor.COMPACTION_MODE_LAST);
+        
+        // compacted metrics keep the order in which their series were first seen
+        assertEquals(Arrays.asList(metrics.get(4), metrics.get(1), metrics.get(5), metrics.get(3)), compactedMetrics);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.influxdb.Common;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricEncodingCacheTest {
+    
+    public MetricEncodingCacheTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    A second output module with the same format settings gets the batch that the first one encoded. Different settings get their own batch.
+    */
+    @Test
+    public void testSameSettingsShareBatches() {
+        
+        List<GraphiteMetric> graphiteMetrics = getGraphiteMetrics();
+        MetricEncodingCache metricEncodingCache = new MetricEncodingCache(graphiteMetrics);
+        
+        EncodedMetricBatch graphiteBatch = metricEncodingCache.getGraphiteBatch(graphiteMetrics, true, true);
+        assertSame(graphiteBatch, metricEncodingCache.getGraphiteBatch(graphiteMetrics, true, true));
+        assertEquals(graphiteMetrics.size(), graphiteBatch.getNumRecords());
+        
+        EncodedMetricBatch unsanitizedGraphiteBatch = metricEncodingCache.getGraphiteBatch(graphiteMetrics, false, true);
+        EncodedMetricBatch unsubstitutedGraphiteBatch = metricEncodingCache.getGraphiteBatch(graphiteMetrics, true, false);
+        assertNotSame(graphiteBatch, unsanitizedGraphiteBatch);
+        assertNotSame(graphiteBatch, unsubstitutedGraphiteBatch);
+        assertNotSame(unsanitizedGraphiteBatch, unsubstitutedGraphiteBatch);
+        assertSame(unsanitizedGraphiteBatch, metricEncodingCache.getGraphiteBatch(graphiteMetrics, false, true));
+        assertSame(unsubstitutedGraphiteBatch, metricEncodingCache.getGraphiteBatch(graphiteMetrics, true, false));
+        
+        // the settings change the encoding (ex- 'a..b' is only merged to 'a.b' when sanitizing)
+        assertEquals(MetricEncodingCache.encodeGraphite(graphiteMetrics, false, true).getRecordAsString(0), unsanitizedGraphiteBatch.getRecordAsString(0));
+        assertFalse(graphiteBatch.getRecordAsString(0).equals(unsanitizedGraphiteBatch.getRecordAsString(0)));
+        
+        EncodedMetricBatch openTsdbTelnetBatch = metricEncodingCache.getOpenTsdbTelnetBatch(graphiteMetrics, true, "Format", "Graphite");
+        assertSame(openTsdbTelnetBatch, metricEncodingCache.getOpenTsdbTelnetBatch(graphiteMetrics, true, "Format", "Graphite"));
+        assertNotSame(openTsdbTelnetBatch, metricEncodingCache.getOpenTsdbTelnetBatch(graphiteMetrics, false, "Format", "Graphite"));
+        assertNotSame(openTsdbTelnetBatch, metricEncodingCache.getOpenTsdbTelnetBatch(graphiteMetrics, true, "Format", "Other"));
+        
+        EncodedMetricBatch openTsdbJsonBatch = metricEncodingCache.getOpenTsdbJsonBatch(graphiteMetrics, true, "Format", "Graphite");
+        assertSame(openTsdbJsonBatch, metricEncodingCache.getOpenTsdbJsonBatch(graphiteMetrics, true, "Format", "Graphite"));
+        assertNotSame(openTsdbJsonBatch, openTsdbTelnetBatch);
+        
+        EncodedMetricBatch influxdbV1JsonBatch = metricEncodingCache.getInfluxdbV1JsonBatch(graphiteMetrics);
+        assertSame(influxdbV1JsonBatch, metricEncodingCache.getInfluxdbV1JsonBatch(graphiteMetrics));
+        
+        EncodedMetricBatch influxdbV2LineBatch = metricEncodingCache.getInfluxdbV2LineBatch(graphiteMetrics, Common.TIMESTAMP_PRECISION_SECONDS);
+        assertSame(influxdbV2LineBatch, metricEncodingCache.getInfluxdbV2LineBatch(graphiteMetrics, Common.TIMESTAMP_PRECISION_SECONDS));
+        assertNotSame(influxdbV2LineBatch, metricEncodingCache.getInfluxdbV2LineBatch(graphiteMetrics, Common.TIMESTAMP_PRECISION_MILLISECONDS));
+        
+        // every shard of a sharded batch is cached when the first shard is asked for
+        EncodedMetricBatch shardBatch0 = metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 3, 0);
+        EncodedMetricBatch shardBatch2 = metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 3, 2);
+        assertSame(shardBatch0, metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 3, 0));
+        assertSame(shardBatch2, metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 3, 2));
+        assertNotSame(shardBatch0, metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 2, 0));
+        
+        int numShardedRecords = 0;
+        for (int i = 0; i < 3; i++) numShardedRecords += metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 3, i).getNumRecords();
+        assertEquals(graphiteBatch.getNumRecords(), numShardedRecords);
+    }
+    
+    /*
+    The cache only holds encodings of the list of metrics that it was created with. Any other list is encoded every time.
+    */
+    @Test
+    public void testOtherMetricsAreNotCached() {
+        
+        List<GraphiteMetric> graphiteMetrics = getGraphiteMetrics();
+        MetricEncodingCache metricEncodingCache = new MetricEncodingCache(graphiteMetrics);
+        
+        List<GraphiteMetric> otherGraphiteMetrics = new ArrayList<>(graphiteMetrics);
+        EncodedMetricBatch otherGraphiteBatch = metricEncodingCache.getGraphiteBatch(otherGraphiteMetrics, true, true);
+        assertNotSame(otherGraphiteBatch, metricEncodingCache.getGraphiteBatch(otherGraphiteMetrics, true, true));
+        assertNotSame(otherGraphiteBatch, metricEncodingCache.getGraphiteBatch(graphiteMetrics, true, true));
+        
+        List<OpenTsdbMetric> openTsdbMetrics = new ArrayList<>();
+        openTsdbMetrics.add(new OpenTsdbMetric("Test.Metric", 1500000000123L, new BigDecimal("1"), new ArrayList<>(Arrays.asList(new OpenTsdbTag("Host=a")))));
+        assertNotSame(metricEncodingCache.getOpenTsdbJsonBatch(openTsdbMetrics, true, null, null), metricEncodingCache.getOpenTsdbJsonBatch(openTsdbMetrics, true, null, null));
+    }
+    
+    /*
+    Output modules that ask for the same encoding at the same time all get the same batch (it is only encoded once).
+    */
+    @Test
+    public void testConcurrentRequestsShareOneBatch() throws Exception {
+        
+        final List<GraphiteMetric> graphiteMetrics = getGraphiteMetrics();
+        final MetricEncodingCache metricEncodingCache = new MetricEncodingCache(graphiteMetrics);
+        
+        final int numThreads = 8;
+        final EncodedMetricBatch[] encodedMetricBatches = new EncodedMetricBatch[numThreads];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numThreads);
+        
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                        encodedMetricBatches[threadIndex] = metricEncodingCache.getGraphiteShardBatch(graphiteMetrics, true, true, 2, threadIndex % 2);
+                    }
+                    catch (Exception e) {}
+                    finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            
+            thread.start();
+        }
+        
+        startLatch.countDown();
+        assertTrue(doneLatch.await(30, TimeUnit.SECONDS));
+        
+        for (int i = 0; i < numThreads; i++) {
+            assertNotNull(encodedMetricBatches[i]);
+            assertSame(encodedMetricBatches[i % 2], encodedMetricBatches[i]);
+        }
+    }
+    
+    private static List<GraphiteMetric> getGraphiteMetrics() {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        
+        graphiteMetrics.add(new GraphiteMetric("Test..Metric (1)", new BigDecimal("1.5"), 1500000000));
+        for (int i = 0; i < 1000; i++) graphiteMetrics.add(new GraphiteMetric("Test.Metric." + i, i, 1500000000));
+        
+        return graphiteMetrics;
+    }
+
+}
@@ -0,0 +1,355 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.globals.AgentInstrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricIngestionQueueTest {
+    
+    // metrics that aren't GraphiteMetric or OpenTsdbMetric objects all have the same estimated size
+    private static final int METRIC_SIZE_IN_BYTES = MetricMemoryBudget.getEstimatedSizeInBytes("metric");
+    
+    public MetricIngestionQueueTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testDrainReturnsMetricsInOrder() {
+        MetricIngestionQueue<String> metricIngestionQueue = new MetricIngestionQueue<>(100);
+        
+        assertTrue(metricIngestionQueue.offer("a"));
+        assertEquals(3, metricIngestionQueue.offerAll(Arrays.asList("b", null, "c", "d")));
+        assertTrue(metricIngestionQueue.offer("e"));
+        assertFalse(metricIngestionQueue.offer(null));
+        assertEquals(5, metricIngestionQueue.size());
+        
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), metricIngestionQueue.drain());
+        assertTrue(metricIngestionQueue.isEmpty());
+        assertEquals(0, metricIngestionQueue.size());
+        assertTrue(metricIngestionQueue.drain().isEmpty());
+    }
+    
+    @Test
+    public void testFullQueueDropsNewestMetrics() {
+        MetricIngestionQueue<String> metricIngestionQueue = new MetricIngestionQueue<>(3);
+        
+        assertEquals(2, metricIngestionQueue.offerAll(Arrays.asList("a", "b")));
+        assertEquals(1, metricIngestionQueue.offerAll(Arrays.asList("c", "d", "e")));
+        assertFalse(metricIngestionQueue.offer("f"));
+        assertEquals(3, metricIngestionQueue.getNumDroppedMetrics());
+        
+        assertEquals(Arrays.asList("a", "b", "c"), metricIngestionQueue.drain());
+        
+        // draining frees up the space
+        assertTrue(metricIngestionQueue.offer("g"));
+        assertEquals(Arrays.asList("g"), metricIngestionQueue.drain());
+    }
+    
+    /*
+    Producers & the consumer run at the same time. Every metric must be drained exactly once, & each producer's metrics must stay in order.
+    */
+    @Test
+    public void testConcurrentProducersAndDrain() throws Exception {
+        final int numProducers = 8;
+        final int numBatchesPerProducer = 2000;
+        final int batchSize = 10;
+        
+        final MetricIngestionQueue<String> metricIngestionQueue = new MetricIngestionQueue<>(Integer.MAX_VALUE);
+        final AtomicBoolean isProducing = new AtomicBoolean(true);
+        final List<String> drainedMetrics = new ArrayList<>();
+        
+        Thread drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (isProducing.get()) drainedMetrics.addAll(metricIngestionQueue.drain());
+                drainedMetrics.addAll(metricIngestionQueue.drain());
+            }
+        });
+        drainThread.start();
+        
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            final int producerId = i;
+            
+            Thread producerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < numBatchesPerProducer; j++) {
+                        List<String> batch = new ArrayList<>();
+                        for (int k = 0; k < batchSize; k++) batch.add(producerId + "-" + ((j * batchSize) + k));
+                        
+                        if ((j % 2) == 0) metricIngestionQueue.offerAll(batch);
+                        else for (String metric : batch) metricIngestionQueue.offer(metric);
+                    }
+                }
+            });
+            
+            producerThreads.add(producerThread);
+            producerThread.start();
+        }
+        
+        for (Thread producerThread : producerThreads) producerThread.join();
+        isProducing.set(false);
+        drainThread.join();
+        
+        assertEquals(numProducers * numBatchesPerProducer * batchSize, drainedMetrics.size());
+        assertEquals(drainedMetrics.size(), new HashSet<>(drainedMetrics).size());
+        assertEquals(0, metricIngestionQueue.size());
+        assertEquals(0, metricIngestionQueue.getNumDroppedMetrics());
+        
+        int[] previousSequenceNumbers = new int[numProducers];
+        Arrays.fill(previousSequenceNumbers, -1);
+        Set<Integer> producerIds = new HashSet<>();
+        
+        for (String metric : drainedMetrics) {
+            int producerId = Integer.parseInt(metric.substring(0, metric.indexOf('-')));
+            int sequenceNumber = Integer.parseInt(metric.substring(metric.indexOf('-') + 1));
+            assertTrue(sequenceNumber > previousSequenceNumbers[producerId]);
+            previousSequenceNumbers[producerId] = sequenceNumber;
+            producerIds.add(producerId);
+        }
+        
+        assertEquals(numProducers, producerIds.size());
+    }
+    
+    @Test
+    public void testMemoryBudgetDropNewest() {
+        MetricIngestionQueue<String> metricIngestionQueue = getMetricIngestionQueue(100, 5, 0, MetricMemoryBudget.OVERFLOW_POLICY_DROP_NEWEST);
+        MetricMemoryBudget metricMemoryBudget = metricIngestionQueue.getMetricMemoryBudget();
+        
+        assertEquals(3, metricIngestionQueue.offerAll(Arrays.asList("a", "b", "c")));
+        assertEquals(2, metricIngestionQueue.offerAll(Arrays.asList("d", "e", "f")));
+        assertFalse(metricIngestionQueue.offer("g"));
+        assertEquals(2, metricIngestionQueue.getNumDroppedMetrics());
+        assertEquals(5 * METRIC_SIZE_IN_BYTES, metricMemoryBudget.getNumBytes());
+        
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), metricIngestionQueue.drain());
+        assertEquals(0, metricMemoryBudget.getNumBytes());
+        
+        // draining gives the bytes back
+        assertTrue(metricIngestionQueue.offer("h"));
+        assertEquals(METRIC_SIZE_IN_BYTES, metricMemoryBudget.getNumBytes());
+    }
+    
+    /*
+    drop_oldest drops the oldest queued metrics, plus some extra room (a tenth of the limit), so that room isn't made on every add.
+    */
+    @Test
+    public void testMemoryBudgetDropOldest() {
+        MetricIngestionQueue<String> metricIngestionQueue = getMetricIngestionQueue(100, 10, 0, MetricMemoryBudget.OVERFLOW_POLICY_DROP_OLDEST);
+        MetricMemoryBudget metricMemoryBudget = metricIngestionQueue.getMetricMemoryBudget();
+        
+        assertEquals(10, metricIngestionQueue.offerAll(getMetrics("a", 0, 10)));
+        
+        // 1 metric is over the limit, & 1 more is dropped as extra room
+        assertTrue(metricIngestionQueue.offer("b0"));
+        assertEquals(2, metricIngestionQueue.getNumDroppedMetrics());
+        assertEquals(9 * METRIC_SIZE_IN_BYTES, metricMemoryBudget.getNumBytes());
+        
+        List<String> expectedMetrics = getMetrics("a", 2, 10);
+        expectedMetrics.add("b0");
+        assertEquals(expectedMetrics, metricIngestionQueue.drain());
+        assertEquals(0, metricMemoryBudget.getNumBytes());
+        
+        // the queue's own size limit is enforced the same way. 3 metrics are over the limit, & 1 more is dropped as extra room.
+        metricIngestionQueue.setMaxSize(10);
+        assertEquals(10, metricIngestionQueue.offerAll(getMetrics("c", 0, 10)));
+        assertEquals(3, metricIngestionQueue.offerAll(getMetrics("d", 0, 3)));
+        assertEquals(9, metricIngestionQueue.size());
+        
+        expectedMetrics = getMetrics("c", 4, 10);
+        expectedMetrics.addAll(getMetrics("d", 0, 3));
+        assertEquals(expectedMetrics, metricIngestionQueue.drain());
+        assertEquals(0, metricMemoryBudget.getNumBytes());
+    }
+    
+    /*
+    sample drops queued metrics at random. Whatever is dropped, every metric is either queued or counted as dropped, & the queued metrics stay in order.
+    */
+    @Test
+    public void testMemoryBudgetSample() {
+        MetricIngestionQueue<String> metricIngestionQueue = getMetricIngestionQueue(Integer.MAX_VALUE, 100, 0, MetricMemoryBudget.OVERFLOW_POLICY_SAMPLE);
+        MetricMemoryBudget metricMemoryBudget = metricIngestionQueue.getMetricMemoryBudget();
+        
+        assertEquals(100, metricIngestionQueue.offerAll(getMetrics("a", 0, 100)));
+        int numAddedMetrics = metricIngestionQueue.offerAll(getMetrics("b", 0, 50));
+        assertTrue(numAddedMetrics > 0);
+        assertEquals(150, metricIngestionQueue.size() + metricIngestionQueue.getNumDroppedMetrics());
+        assertTrue(metricMemoryBudget.getNumBytes() <= metricMemoryBudget.getMaxBytes());
+        assertEquals(metricIngestionQueue.size() * (long) METRIC_SIZE_IN_BYTES, metricMemoryBudget.getNumBytes());
+        
+        List<String> drainedMetrics = metricIngestionQueue.drain();
+        
+        // the sampled 'a' metrics, then the 'b' metrics that were added, both in the order that they were offered
+        List<String> expectedMetrics = new ArrayList<>();
+        for (String metric : getMetrics("a", 0, 100)) if (drainedMetrics.contains(metric)) expectedMetrics.add(metric);
+        assertTrue(expectedMetrics.size() < 100);
+        expectedMetrics.addAll(getMetrics("b", 0, numAddedMetrics));
+        assertEquals(expectedMetrics, drainedMetrics);
+        assertEquals(0, metricMemoryBudget.getNumBytes());
+    }
+    
+    /*
+    A collector that is over its own limit only has its own metrics dropped. Other collectors' metrics are left alone.
+    */
+    @Test
+    public void testPerCollectorLimit() {
+        MetricIngestionQueue<String> metricIngestionQueue = getMetricIngestionQueue(100, 100, 4, MetricMemoryBudget.OVERFLOW_POLICY_DROP_OLDEST);
+        AgentInstrumentation.CollectorInstrumentation collectorA = AgentInstrumentation.getCollectorInstrumentation("MetricIngestionQueueTest-A");
+        AgentInstrumentation.CollectorInstrumentation collectorB = AgentInstrumentation.getCollectorInstrumentation("MetricIngestionQueueTest-B");
+        long numCollectorADroppedMetrics = collectorA.getNumDroppedMetrics();
+        long numCollectorBDroppedMetrics = collectorB.getNumDroppedMetrics();
+        
+        assertEquals(4, metricIngestionQueue.offerAll(getMetrics("a", 0, 4), collectorA));
+        assertEquals(4, metricIngestionQueue.offerAll(getMetrics("b", 0, 4), collectorB));
+        assertEquals(4 * METRIC_SIZE_IN_BYTES, collectorA.getNumQueuedBytes());
+        
+        // collector 'a' is full. its oldest metrics are dropped to make room (1 metric, plus a tenth of its limit as extra room).
+        assertTrue(metricIngestionQueue.offer("a4", collectorA));
+        assertEquals(2, collectorA.getNumDroppedMetrics() - numCollectorADroppedMetrics);
+        assertEquals(0, collectorB.getNumDroppedMetrics() - numCollectorBDroppedMetrics);
+        assertEquals(3 * METRIC_SIZE_IN_BYTES, collectorA.getNumQueuedBytes());
+        assertEquals(4 * METRIC_SIZE_IN_BYTES, collectorB.getNumQueuedBytes());
+        
+        // metrics with no collector only count against the queue's limits
+        assertEquals(3, metricIngestionQueue.offerAll(getMetrics("c", 0, 3)));
+        
+        List<String> expectedMetrics = getMetrics("a", 2, 5);
+        expectedMetrics.addAll(getMetrics("b", 0, 4));
+        expectedMetrics.addAll(getMetrics("c", 0, 3));
+        List<String> drainedMetrics = metricIngestionQueue.drain();
+        assertEquals(new HashSet<>(expectedMetrics), new HashSet<>(drainedMetrics));
+        assertEquals(expectedMetrics.size(), drainedMetrics.size());
+        assertEquals(0, collectorA.getNumQueuedBytes());
+        assertEquals(0, collectorB.getNumQueuedBytes());
+        
+        // drop_newest doesn't make room. the collector's newest metrics are dropped instead.
+        metricIngestionQueue.setMetricMemoryBudget(new MetricMemoryBudget(100 * METRIC_SIZE_IN_BYTES, 4 * METRIC_SIZE_IN_BYTES, MetricMemoryBudget.OVERFLOW_POLICY_DROP_NEWEST));
+        assertEquals(4, metricIngestionQueue.offerAll(getMetrics("a", 0, 6), collectorA));
+        assertFalse(metricIngestionQueue.offer("a6", collectorA));
+        assertTrue(metricIngestionQueue.offer("b4", collectorB));
+        assertEquals(5, collectorA.getNumDroppedMetrics() - numCollectorADroppedMetrics);
+        assertEquals(0, collectorB.getNumDroppedMetrics() - numCollectorBDroppedMetrics);
+        
+        metricIngestionQueue.drain();
+        assertEquals(0, collectorA.getNumQueuedBytes());
+        assertEquals(0, collectorB.getNumQueuedBytes());
+    }
+    
+    /*
+    Producers keep the queue over its memory budget, so queued metrics are evicted while the consumer drains. 
+    Every metric must be drained or counted as dropped exactly once, & the bytes must all be given back.
+    */
+    @Test
+    public void testConcurrentEvictionAndDrain() throws Exception {
+        final int numProducers = 8;
+        final int numBatchesPerProducer = 2000;
+        final int batchSize = 10;
+        
+        for (final int overflowPolicy : new int[] {MetricMemoryBudget.OVERFLOW_POLICY_DROP_OLDEST, MetricMemoryBudget.OVERFLOW_POLICY_SAMPLE}) {
+            final MetricIngestionQueue<String> metricIngestionQueue = getMetricIngestionQueue(Integer.MAX_VALUE, 500, 200, overflowPolicy);
+            final AtomicBoolean isProducing = new AtomicBoolean(true);
+            final List<String> drainedMetrics = new ArrayList<>();
+            
+            Thread drainThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (isProducing.get()) drainedMetrics.addAll(metricIngestionQueue.drain());
+                    drainedMetrics.addAll(metricIngestionQueue.drain());
+                }
+            });
+            drainThread.start();
+            
+            final List<AgentInstrumentation.CollectorInstrumentation> collectorInstrumentations = new ArrayList<>();
+            long numPreviousCollectorDroppedMetrics = 0;
+            List<Thread> producerThreads = new ArrayList<>();
+            
+            for (int i = 0; i < numProducers; i++) {
+                final int producerId = i;
+                final AgentInstrumentation.CollectorInstrumentation collectorInstrumentation = 
+                        AgentInstrumentation.getCollectorInstrumentation("MetricIngestionQueueTest-" + overflowPolicy + "-" + producerId);
+                collectorInstrumentations.add(collectorInstrumentation);
+                numPreviousCollectorDroppedMetrics += collectorInstrumentation.getNumDroppedMetrics();
+                
+                Thread producerThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < numBatchesPerProducer; j++) {
+                            List<String> batch = new ArrayList<>();
+                            for (int k = 0; k < batchSize; k++) batch.add(producerId + "-" + ((j * batchSize) + k));
+                            
+                            if ((j % 2) == 0) metricIngestionQueue.offerAll(batch, collectorInstrumentation);
+                            else for (String metric : batch) metricIngestionQueue.offer(metric, collectorInstrumentation);
+                        }
+                    }
+                });
+                
+                producerThreads.add(producerThread);
+                producerThread.start();
+            }
+            
+            for (Thread producerThread : producerThreads) producerThread.join();
+            isProducing.set(false);
+            drainThread.join();
+            
+            long numDroppedMetrics = metricIngestionQueue.getNumDroppedMetrics();
+            assertEquals(numProducers * numBatchesPerProducer * batchSize, drainedMetrics.size() + numDroppedMetrics);
+            assertEquals(drainedMetrics.size(), new HashSet<>(drainedMetrics).size());
+            assertEquals(0, metricIngestionQueue.size());
+            assertEquals(0, metricIngestionQueue.getMetricMemoryBudget().getNumBytes());
+            
+            long numCollectorDroppedMetrics = 0;
+            for (AgentInstrumentation.CollectorInstrumentation collectorInstrumentation : collectorInstrumentations) {
+                assertEquals(0, collectorInstrumentation.getNumQueuedBytes());
+                numCollectorDroppedMetrics += collectorInstrumentation.getNumDroppedMetrics();
+            }
+            
+            assertEquals(numDroppedMetrics, numCollectorDroppedMetrics - numPreviousCollectorDroppedMetrics);
+        }
+    }
+    
+    /*
+    A queue with a memory budget of 'maxMetrics' metrics (& 'maxMetricsPerCollector' metrics per collector, 0 for no limit).
+    */
+    private static MetricIngestionQueue<String> getMetricIngestionQueue(int maxSize, int maxMetrics, int maxMetricsPerCollector, int overflowPolicy) {
+        MetricIngestionQueue<String> metricIngestionQueue = new MetricIngestionQueue<>(maxSize);
+        metricIngestionQueue.setMetricMemoryBudget(new MetricMemoryBudget((long) maxMetrics * METRIC_SIZE_IN_BYTES, 
+                (long) maxMetricsPerCollector * METRIC_SIZE_IN_BYTES, overflowPolicy));
+        return metricIngestionQueue;
+    }
+    
+    private static List<String> getMetrics(String prefix, int from, int to) {
+        List<String> metrics = new ArrayList<>();
+        for (int i = from; i < to; i++) metrics.add(prefix + i);
+        return metrics;
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricRelabelerTest {
+    
+    public MetricRelabelerTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    @Test
+    public void testCreateRelabelRule() {
+        assertEquals(MetricRelabeler.ACTION_DROP, MetricRelabeler.RelabelRule.createRelabelRule(" Drop ", "a.*", null).getAction());
+        assertEquals(MetricRelabeler.ACTION_KEEP, MetricRelabeler.RelabelRule.createRelabelRule("keep", "a.*", null).getAction());
+        assertEquals("$1", MetricRelabeler.RelabelRule.createRelabelRule("REWRITE", "a(.*)", "$1").getReplacement());
+        
+        assertNull(MetricRelabeler.RelabelRule.createRelabelRule("rename", "a.*", "b"));
+        assertNull(MetricRelabeler.RelabelRule.createRelabelRule("rewrite", "a.*", null));
+        assertNull(MetricRelabeler.RelabelRule.createRelabelRule("drop", "a(", null));
+        assertNull(MetricRelabeler.RelabelRule.createRelabelRule("drop", "", null));
+        assertNull(MetricRelabeler.RelabelRule.createRelabelRule(null, "a.*", null));
+    }
+    
+    /*
+    Rules are applied in order, & later rules see the name that earlier rewrites produced. Regexes must match the entire name.
+    */
+    @Test
+    public void testDropKeepRewrite() {
+        
+        MetricRelabeler metricRelabeler = createMetricRelabeler(
+                "rewrite", "Old\\.(.*)", "New.$1",
+                "keep", "New\\..*|Keep\\..*", null,
+                "drop", ".*\\.Debug", null);
+        assertEquals(3, metricRelabeler.getNumRelabelRules());
+        
+        GraphiteMetric renamed = new GraphiteMetric("Old.Cpu", 1.5, 1500000000);
+        GraphiteMetric kept = new GraphiteMetric("Keep.Cpu", 2.5, 1500000000);
+        GraphiteMetric notKept = new GraphiteMetric("Other.Cpu", 3.5, 1500000000);
+        GraphiteMetric renamedThenDropped = new GraphiteMetric("Old.Debug", 4.5, 1500000000);
+        GraphiteMetric partialMatch = new GraphiteMetric("Keep.Cpu.Debug.x", 5.5, 1500000000);
+        
+        GraphiteMetric relabeledMetric = metricRelabeler.relabelMetric(renamed);
+        assertEquals("New.Cpu", relabeledMetric.getMetricPath());
+        assertEquals(1.5, relabeledMetric.getMetricValueDouble(), 0);
+        assertEquals(renamed.getMetricTimestamp(), relabeledMetric.getMetricTimestamp());
+        
+        assertSame(kept, metricRelabeler.relabelMetric(kept));
+        assertNull(metricRelabeler.relabelMetric(notKept));
+        assertNull(metricRelabeler.relabelMetric(renamedThenDropped));
+        assertSame(partialMatch, metricRelabeler.relabelMetric(partialMatch));
+        assertEquals("not a metric", metricRelabeler.relabelMetric("not a metric"));
+        assertNull(metricRelabeler.relabelMetric(null));
+        
+        assertEquals(2, metricRelabeler.getNumDroppedMetrics());
+        assertEquals(1, metricRelabeler.getNumRewrittenMetrics());
+        assertEquals(5, metricRelabeler.getNumCachedSeries());
+        
+        // a series that has already been seen gets the cached outcome
+        assertEquals("New.Cpu", metricRelabeler.relabelMetric(new GraphiteMetric("Old.Cpu", 7.0, 1500000001)).getMetricPath());
+        assertNull(metricRelabeler.relabelMetric(new GraphiteMetric("Other.Cpu", 7.0, 1500000001)));
+        assertEquals(5, metricRelabeler.getNumCachedSeries());
+        assertEquals(3, metricRelabeler.getNumDroppedMetrics());
+        assertEquals(2, metricRelabeler.getNumRewrittenMetrics());
+    }
+    
+    /*
+    OpenTSDB rules match the metric name only. Tags are never changed, & the renamed copy gets the renamed metric key.
+    */
+    @Test
+    public void testOpenTsdbMetricsKeepTheirTags() {
+        
+        MetricRelabeler metricRelabeler = createMetricRelabeler(
+                "rewrite", "cpu\\.(.*)", "processor.$1",
+                "drop", ".*Host.*", null);
+        
+        List<OpenTsdbTag> tags = Arrays.asList(new OpenTsdbTag("Host=a"), new OpenTsdbTag("Core=0"));
+        OpenTsdbMetric openTsdbMetric = new OpenTsdbMetric("cpu.usage", 1500000000123L, new BigDecimal("12.5"), new ArrayList<>(tags));
+        OpenTsdbMetric expectedMetric = new OpenTsdbMetric("processor.usage", 1500000000123L, new BigDecimal("12.5"), new ArrayList<>(tags));
+        
+        // the 'drop' rule would match the tags, but rules only see the metric name
+        OpenTsdbMetric relabeledMetric = metricRelabeler.relabelMetric(openTsdbMetric);
+        assertEquals("processor.usage", relabeledMetric.getMetric());
+        assertEquals(expectedMetric.getMetricKey(), relabeledMetric.getMetricKey());
+        assertEquals(openTsdbMetric.getMetricTimestampInMilliseconds(), relabeledMetric.getMetricTimestampInMilliseconds());
+        assertEquals(0, new BigDecimal("12.5").compareTo(relabeledMetric.getMetricValue()));
+        
+        // the same metric name with different tags is a different series, but gets the same outcome
+        OpenTsdbMetric otherSeries = new OpenTsdbMetric("cpu.usage", 1500000000123L, new BigDecimal("1"), new ArrayList<>(Arrays.asList(new OpenTsdbTag("Host=b"))));
+        assertEquals("processor.usage", metricRelabeler.relabelMetric(otherSeries).getMetric());
+        assertEquals(2, metricRelabeler.getNumCachedSeries());
+    }
+    
+    @Test
+    public void testRelabelMetrics() {
+        
+        MetricRelabeler metricRelabeler = createMetricRelabeler(
+                "drop", "Drop\\..*", null,
+                "rewrite", "Old\\.(.*)", "New.$1");
+        
+        GraphiteMetric unchanged1 = new GraphiteMetric("Keep.A", 1.0, 1500000000);
+        GraphiteMetric unchanged2 = new GraphiteMetric("Keep.B", 2.0, 1500000000);
+        GraphiteMetric dropped = new GraphiteMetric("Drop.A", 3.0, 1500000000);
+        GraphiteMetric renamed = new GraphiteMetric("Old.A", 4.0, 1500000000);
+        
+        // nothing changed, so the input list itself is returned
+        List<GraphiteMetric> unchangedMetrics = new ArrayList<>(Arrays.asList(unchanged1, unchanged2));
+        assertSame(unchangedMetrics, metricRelabeler.relabelMetrics(unchangedMetrics));
+        
+        List<GraphiteMetric> relabeledMetrics = metricRelabeler.relabelMetrics(Arrays.asList(unchanged1, dropped, renamed, unchanged2));
+        assertEquals(3, relabeledMetrics.size());
+        assertSame(unchanged1, relabeledMetrics.get(0));
+        assertEquals("New.A", relabeledMetrics.get(1).getMetricPath());
+        assertSame(unchanged2, relabeledMetrics.get(2));
+        
+        assertTrue(metricRelabeler.relabelMetrics(Arrays.asList(dropped, dropped)).isEmpty());
+        assertNull(metricRelabeler.relabelMetrics(null));
+        
+        // no rules, no relabeling
+        MetricRelabeler emptyMetricRelabeler = new MetricRelabeler(null);
+        List<GraphiteMetric> metrics = Arrays.asList(dropped, renamed);
+        assertSame(metrics, emptyMetricRelabeler.relabelMetrics(metrics));
+        assertSame(dropped, emptyMetricRelabeler.relabelMetric(dropped));
+    }
+    
+    /*
+    'rules' is a list of (action, regex, replacement) triples.
+    */
+    private static MetricRelabeler createMetricRelabeler(String... rules) {
+        
+        List<MetricRelabeler.RelabelRule> relabelRules = new ArrayList<>();
+        
+        for (int i = 0; i < rules.length; i += 3) {
+            MetricRelabeler.RelabelRule relabelRule = MetricRelabeler.RelabelRule.createRelabelRule(rules[i], rules[i + 1], rules[i + 2]);
+            assertNotNull(relabelRule);
+            relabelRules.add(relabelRule);
+        }
+        
+        return new MetricRelabeler(relabelRules);
+    }
+
+}
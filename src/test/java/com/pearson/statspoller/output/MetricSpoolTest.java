@@ -0,0 +1,164 @@
+package com.pearson.statspoller.output;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class MetricSpoolTest {
+    
+    private File spoolDirectory_ = null;
+    
+    public MetricSpoolTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() throws Exception {
+        spoolDirectory_ = Files.createTempDirectory("statspoller-spool-test").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        deleteRecursively(spoolDirectory_);
+    }
+    
+    @Test
+    public void testPeekAndCommit() {
+        MetricSpool metricSpool = new MetricSpool("Graphite-1", spoolDirectory_.getAbsolutePath(), 1024 * 1024, 64);
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue(metricSpool.append(("metric.path." + i + " 1 1500000000\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        List<MetricSpool.SpooledRecord> records = metricSpool.peek(4);
+        assertEquals(4, records.size());
+        assertEquals("metric.path.0 1 1500000000\n", getString(records.get(0)));
+        assertEquals("metric.path.3 1 1500000000\n", getString(records.get(3)));
+        
+        // peeking doesn't remove anything
+        assertEquals("metric.path.0 1 1500000000\n", getString(metricSpool.peek(1).get(0)));
+        
+        metricSpool.commit(records.get(2).getEndPosition());
+        records = metricSpool.peek(100);
+        assertEquals(7, records.size());
+        assertEquals("metric.path.3 1 1500000000\n", getString(records.get(0)));
+        
+        metricSpool.commit(records.get(6).getEndPosition());
+        assertTrue(metricSpool.isEmpty());
+        assertTrue(metricSpool.peek(100).isEmpty());
+        
+        metricSpool.close();
+    }
+    
+    @Test
+    public void testEvictOldestSegments() {
+        MetricSpool metricSpool = new MetricSpool("Graphite-1", spoolDirectory_.getAbsolutePath(), 100, 40);
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue(metricSpool.append(("record-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        assertTrue(metricSpool.getSpoolSizeInBytes() <= 100);
+        assertTrue(metricSpool.getNumEvictedSegments() > 0);
+        
+        List<MetricSpool.SpooledRecord> records = metricSpool.peek(100);
+        assertFalse(records.isEmpty());
+        assertEquals("record-9", getString(records.get(records.size() - 1)));
+        assertNotEquals("record-0", getString(records.get(0)));
+        
+        metricSpool.close();
+    }
+    
+    @Test
+    public void testReopenExistingSpool() {
+        MetricSpool metricSpool = new MetricSpool("OpenTSDB-HTTP-1", spoolDirectory_.getAbsolutePath(), 1024 * 1024, 1024);
+        metricSpool.append("record-0".getBytes(StandardCharsets.UTF_8));
+        metricSpool.append("record-1".getBytes(StandardCharsets.UTF_8));
+        metricSpool.close();
+        
+        metricSpool = new MetricSpool("OpenTSDB-HTTP-1", spoolDirectory_.getAbsolutePath(), 1024 * 1024, 1024);
+        List<MetricSpool.SpooledRecord> records = metricSpool.peek(100);
+        assertEquals(2, records.size());
+        assertEquals("record-0", getString(records.get(0)));
+        
+        metricSpool.commit(records.get(1).getEndPosition());
+        assertTrue(metricSpool.isEmpty());
+        metricSpool.close();
+    }
+    
+    /*
+    Segments that are evicted (by an append) between a peek & its commit must not cause the commit to remove newer, unsent records.
+    */
+    @Test
+    public void testAppendEvictsBetweenPeekAndCommit() {
+        // each record is 12 bytes (4 byte header + 8 bytes), so 3 records per segment & at most 6 records in the spool
+        MetricSpool metricSpool = new MetricSpool("Graphite-1", spoolDirectory_.getAbsolutePath(), 72, 36);
+        
+        for (int i = 0; i < 6; i++) assertTrue(metricSpool.append(("record-" + i).getBytes(StandardCharsets.UTF_8)));
+        
+        List<MetricSpool.SpooledRecord> records = metricSpool.peek(2);
+        assertEquals("record-0", getString(records.get(0)));
+        assertEquals("record-1", getString(records.get(1)));
+        
+        // the oldest segment (record-0 to record-2) is evicted while record-0 & record-1 are being sent
+        assertTrue(metricSpool.append("record-6".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, metricSpool.getNumEvictedSegments());
+        
+        metricSpool.commit(records.get(1).getEndPosition());
+        
+        records = metricSpool.peek(100);
+        assertEquals(4, records.size());
+        assertEquals("record-3", getString(records.get(0)));
+        assertEquals("record-6", getString(records.get(3)));
+        
+        // a peek that spans two segments, where the first one is evicted before the commit
+        records = metricSpool.peek(4);
+        assertEquals("record-6", getString(records.get(3)));
+        assertTrue(metricSpool.append("record-7".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(metricSpool.append("record-8".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(metricSpool.append("record-9".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, metricSpool.getNumEvictedSegments());
+        
+        metricSpool.commit(records.get(3).getEndPosition());
+        
+        records = metricSpool.peek(100);
+        assertEquals(3, records.size());
+        assertEquals("record-7", getString(records.get(0)));
+        assertEquals("record-9", getString(records.get(2)));
+        
+        metricSpool.close();
+    }
+    
+    private static String getString(MetricSpool.SpooledRecord spooledRecord) {
+        return new String(spooledRecord.getRecord(), StandardCharsets.UTF_8);
+    }
+    
+    private static void deleteRecursively(File file) {
+        if (file == null) return;
+        
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File childFile : files) deleteRecursively(childFile);
+        }
+        
+        file.delete();
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.pearson.statspoller.output;
+
+import com.pearson.statspoller.metric_formats.graphite.GraphiteMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbMetric;
+import com.pearson.statspoller.metric_formats.opentsdb.OpenTsdbTag;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class UnchangedMetricSuppressorTest {
+    
+    public UnchangedMetricSuppressorTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    An unchanged series is output again once every 'heartbeatIntervals' output intervals. A changed value is always output.
+    */
+    @Test
+    public void testHeartbeat() {
+        
+        UnchangedMetricSuppressor unchangedMetricSuppressor = new UnchangedMetricSuppressor(3);
+        
+        // interval 1. a new series is always output.
+        assertEquals(1, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1"));
+        
+        // intervals 2 & 3 are suppressed, the heartbeat is due in interval 4
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1"));
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1"));
+        assertEquals(1, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1"));
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1"));
+        
+        // a value that is written the same way on the wire is the same value
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "1.0"));
+        
+        // a changed value restarts the heartbeat
+        assertEquals(1, getNumOutputMetrics(unchangedMetricSuppressor, "a", "2"));
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "2"));
+        assertEquals(0, getNumOutputMetrics(unchangedMetricSuppressor, "a", "2"));
+        assertEquals(1, getNumOutputMetrics(unchangedMetricSuppressor, "a", "2"));
+        
+        assertEquals(6, unchangedMetricSuppressor.getNumSuppressedMetrics());
+        assertEquals(1, unchangedMetricSuppressor.getNumSeries());
+    }
+    
+    /*
+    If nothing is suppressed, then the input list itself is returned. Metrics that aren't GraphiteMetric or OpenTsdbMetric objects are never suppressed.
+    */
+    @Test
+    public void testUnsuppressedMetricsKeepTheirOrder() {
+        
+        UnchangedMetricSuppressor unchangedMetricSuppressor = new UnchangedMetricSuppressor(100);
+        
+        GraphiteMetric a = new GraphiteMetric("a", new BigDecimal("1"), 1500000000);
+        GraphiteMetric b = new GraphiteMetric("b", new BigDecimal("1"), 1500000000);
+        GraphiteMetric changedB = new GraphiteMetric("b", new BigDecimal("2"), 1500000001);
+        
+        List<Object> metrics = new ArrayList<Object>(Arrays.asList(a, "not a metric", b));
+        assertSame(metrics, unchangedMetricSuppressor.suppressUnchangedMetrics(metrics));
+        
+        List<Object> outputMetrics = unchangedMetricSuppressor.suppressUnchangedMetrics(Arrays.asList(a, "not a metric", changedB, "not a metric"));
+        assertEquals(Arrays.asList("not a metric", changedB, "not a metric"), outputMetrics);
+        
+        assertNull(unchangedMetricSuppressor.suppressUnchangedMetrics(null));
+    }
+    
+    /*
+    Series that haven't been seen for a full heartbeat period are removed from the table. If one comes back, its first point is output.
+    The table grows past its initial capacity while there are many series, & shrinks again once they expire.
+    */
+    @Test
+    public void testExpiredSeriesAreRemoved() {
+        
+        UnchangedMetricSuppressor unchangedMetricSuppressor = new UnchangedMetricSuppressor(2);
+        
+        // interval 1
+        assertEquals(5000, unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 5000, "7")).size());
+        assertEquals(5000, unchangedMetricSuppressor.getNumSeries());
+        
+        // intervals 2 & 3. only the first 10 series are still active (& are output again at their heartbeat, in interval 3).
+        assertTrue(unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 10, "7")).isEmpty());
+        assertEquals(5000, unchangedMetricSuppressor.getNumSeries());
+        assertEquals(10, unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 10, "7")).size());
+        
+        // interval 4. the series that went quiet after interval 1 are removed, before this interval's metrics are looked at.
+        List<GraphiteMetric> outputMetrics = unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 11, "7"));
+        assertEquals(1, outputMetrics.size());
+        assertEquals("Series.10", outputMetrics.get(0).getMetricPath());
+        assertEquals(11, unchangedMetricSuppressor.getNumSeries());
+        
+        // the remaining series are still tracked correctly in the shrunken table. the first 10 series are due for a heartbeat in interval 5.
+        outputMetrics = unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 11, "7"));
+        assertEquals(getGraphiteMetrics(0, 10, "7"), outputMetrics);
+        assertEquals(11, unchangedMetricSuppressor.suppressUnchangedMetrics(getGraphiteMetrics(0, 11, "8")).size());
+        
+        // empty intervals still count towards expiry
+        assertTrue(unchangedMetricSuppressor.suppressUnchangedMetrics(new ArrayList<GraphiteMetric>()).isEmpty());
+        assertNull(unchangedMetricSuppressor.suppressUnchangedMetrics(null));
+        assertEquals(0, unchangedMetricSuppressor.getNumSeries());
+    }
+    
+    /*
+    A Graphite series & an OpenTSDB series with the same key are different series. So are OpenTSDB series with the same metric, but different tags.
+    */
+    @Test
+    public void testSeriesAreKeptApart() {
+        
+        UnchangedMetricSuppressor unchangedMetricSuppressor = new UnchangedMetricSuppressor(100);
+        
+        OpenTsdbMetric openTsdbMetricA = new OpenTsdbMetric("cpu", 1500000000000L, new BigDecimal("1"), new ArrayList<>(Arrays.asList(new OpenTsdbTag("Host=a"))));
+        OpenTsdbMetric openTsdbMetricB = new OpenTsdbMetric("cpu", 1500000000000L, new BigDecimal("2"), new ArrayList<>(Arrays.asList(new OpenTsdbTag("Host=b"))));
+        GraphiteMetric graphiteMetric = new GraphiteMetric(openTsdbMetricA.getMetricKey(), new BigDecimal("3"), 1500000000);
+        
+        // if any two of these were treated as one series, then the values would keep changing, & nothing would be suppressed
+        List<Object> metrics = Arrays.asList(openTsdbMetricA, openTsdbMetricB, graphiteMetric);
+        assertEquals(3, unchangedMetricSuppressor.suppressUnchangedMetrics(metrics).size());
+        assertEquals(3, unchangedMetricSuppressor.getNumSeries());
+        
+        assertTrue(unchangedMetricSuppressor.suppressUnchangedMetrics(metrics).isEmpty());
+        assertTrue(unchangedMetricSuppressor.suppressUnchangedMetrics(metrics).isEmpty());
+        assertEquals(6, unchangedMetricSuppressor.getNumSuppressedMetrics());
+    }
+    
+    private static int getNumOutputMetrics(UnchangedMetricSuppressor unchangedMetricSuppressor, String metricPath, String metricValue) {
+        List<GraphiteMetric> graphiteMetrics = Arrays.asList(new GraphiteMetric(metricPath, new BigDecimal(metricValue), 1500000000));
+        return unchangedMetricSuppressor.suppressUnchangedMetrics(graphiteMetrics).size();
+    }
+    
+    private static List<GraphiteMetric> getGraphiteMetrics(int fromSeries, int toSeries, String metricValue) {
+        
+        List<GraphiteMetric> graphiteMetrics = new ArrayList<>();
+        for (int i = fromSeries; i < toSeries; i++) graphiteMetrics.add(new GraphiteMetric("Series." + i, new BigDecimal(metricValue), 1500000000));
+        
+        return graphiteMetrics;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.pearson.statspoller.utilities.math_utils;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class AtomicHistogramTest {
+    
+    public AtomicHistogramTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    Values below 8 get a bucket each. Every power of 2 above that starts a new group of 8 buckets, & the bucket before it ends at the power of 2 minus 1.
+    */
+    @Test
+    public void testBucketBoundaries() {
+        
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, AtomicHistogram.getBucketIndex(value));
+            assertEquals(value, AtomicHistogram.getBucketUpperBound(value));
+        }
+        
+        for (int exponent = 3; exponent < 63; exponent++) {
+            long powerOfTwo = 1L << exponent;
+            int bucketIndex = AtomicHistogram.getBucketIndex(powerOfTwo);
+            
+            assertEquals(8 + ((exponent - 3) * 8), bucketIndex);
+            assertEquals(bucketIndex - 1, AtomicHistogram.getBucketIndex(powerOfTwo - 1));
+            assertEquals(powerOfTwo - 1, AtomicHistogram.getBucketUpperBound(bucketIndex - 1));
+            
+            // the first bucket of each group is 1/8th of the power of 2 wide
+            assertEquals(bucketIndex, AtomicHistogram.getBucketIndex(powerOfTwo + (powerOfTwo / 8) - 1));
+            assertEquals(powerOfTwo + (powerOfTwo / 8) - 1, AtomicHistogram.getBucketUpperBound(bucketIndex));
+        }
+        
+        // the last bucket ends at Long.MAX_VALUE
+        int lastBucketIndex = AtomicHistogram.getBucketIndex(Long.MAX_VALUE);
+        assertEquals(8 + (60 * 8) - 1, lastBucketIndex);
+        assertEquals(Long.MAX_VALUE, AtomicHistogram.getBucketUpperBound(lastBucketIndex));
+        assertEquals(lastBucketIndex, AtomicHistogram.getBucketIndex(Long.MAX_VALUE - 1));
+    }
+    
+    /*
+    Every value is at most its bucket's upper bound, is above the previous bucket's upper bound, & its bucket's upper bound is within 12.5% of it.
+    */
+    @Test
+    public void testBucketsContainTheirValues() {
+        
+        Random random = new Random(21);
+        
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucketIndex = AtomicHistogram.getBucketIndex(value);
+            long upperBound = AtomicHistogram.getBucketUpperBound(bucketIndex);
+            
+            assertTrue(value + " " + upperBound, value <= upperBound);
+            if (bucketIndex > 0) assertTrue(value > AtomicHistogram.getBucketUpperBound(bucketIndex - 1));
+            assertTrue(value + " " + upperBound, (upperBound - value) <= (value / 8));
+        }
+    }
+    
+    @Test
+    public void testPercentiles() {
+        
+        AtomicHistogram atomicHistogram = new AtomicHistogram();
+        assertEquals(0, atomicHistogram.getSnapshotAndReset().getPercentile(50));
+        
+        for (int value = 1; value <= 100; value++) atomicHistogram.record(value);
+        atomicHistogram.record(-5);
+        
+        AtomicHistogram.Snapshot snapshot = atomicHistogram.getSnapshotAndReset();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(5050.0 / 101.0, snapshot.getAverage(), 0.000001);
+        
+        // negative values are recorded as 0, & the lowest percentile is the lowest recorded value
+        assertEquals(0, snapshot.getPercentile(0));
+        assertEquals(7, snapshot.getPercentile(7.5));
+        
+        // percentiles are upper bounds of the bucket that they land in (51 is in the 48-51 bucket)
+        assertEquals(51, snapshot.getPercentile(50));
+        assertTrue(snapshot.getPercentile(90) >= 90);
+        assertTrue(snapshot.getPercentile(90) <= 90 + (90 / 8));
+        
+        // the 96-103 bucket's upper bound is clamped to the largest recorded value
+        assertEquals(100, snapshot.getPercentile(99));
+        assertEquals(100, snapshot.getPercentile(100));
+        
+        atomicHistogram.record(1000);
+        atomicHistogram.record(Long.MAX_VALUE);
+        snapshot = atomicHistogram.getSnapshotAndReset();
+        assertEquals(1023, snapshot.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, snapshot.getPercentile(100));
+        
+        atomicHistogram.record(1000);
+        assertEquals(1000, atomicHistogram.getSnapshotAndReset().getPercentile(100));
+    }
+    
+    /*
+    A snapshot zeroes the count, sum, max, & every bucket, so the next snapshot only holds the values that were recorded after it.
+    */
+    @Test
+    public void testGetSnapshotAndResetZeroesEveryCounter() {
+        
+        AtomicHistogram atomicHistogram = new AtomicHistogram();
+        
+        for (int exponent = 0; exponent < 63; exponent++) atomicHistogram.record(1L << exponent);
+        for (int value = 0; value < 8; value++) atomicHistogram.record(value);
+        atomicHistogram.record(Long.MAX_VALUE);
+        assertEquals(63 + 8 + 1, atomicHistogram.getSnapshotAndReset().getCount());
+        
+        AtomicHistogram.Snapshot snapshot = atomicHistogram.getSnapshotAndReset();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getSum());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getAverage(), 0);
+        assertEquals(0, snapshot.getPercentile(0));
+        assertEquals(0, snapshot.getPercentile(100));
+        
+        // if any bucket still held a count from before the reset, the lowest percentile would be below 5
+        atomicHistogram.record(5);
+        atomicHistogram.record(5);
+        snapshot = atomicHistogram.getSnapshotAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(10, snapshot.getSum());
+        assertEquals(5, snapshot.getMax());
+        assertEquals(5, snapshot.getPercentile(0));
+        assertEquals(5, snapshot.getPercentile(100));
+    }
+
+}
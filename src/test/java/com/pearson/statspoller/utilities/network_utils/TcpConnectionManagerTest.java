@@ -0,0 +1,260 @@
+package com.pearson.statspoller.utilities.network_utils;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class TcpConnectionManagerTest {
+    
+    private ServerSocket serverSocket_ = null;
+    private final List<Socket> acceptedSockets_ = Collections.synchronizedList(new ArrayList<Socket>());
+    
+    public TcpConnectionManagerTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() throws Exception {
+        serverSocket_ = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        
+        final ServerSocket serverSocket = serverSocket_;
+        Thread acceptThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (!serverSocket.isClosed()) acceptedSockets_.add(serverSocket.accept());
+                }
+                catch (Exception e) {}
+            }
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        serverSocket_.close();
+        
+        synchronized (acceptedSockets_) {
+            for (Socket socket : acceptedSockets_) socket.close();
+        }
+    }
+    
+    /*
+    The connection is kept open between acquire/release cycles, so only one connection is ever made to a healthy endpoint.
+    */
+    @Test
+    public void testConnectionIsReused() {
+        TcpConnectionManager tcpConnectionManager = new TcpConnectionManager(getHost(), serverSocket_.getLocalPort(), 1000, 100, 1000);
+        
+        TcpClient tcpClient1 = tcpConnectionManager.acquire(1000, 0);
+        assertNotNull(tcpClient1);
+        assertTrue(tcpClient1.send("a 1 1\n".getBytes(StandardCharsets.UTF_8), 0, 6, 0, false, true));
+        tcpConnectionManager.release(tcpClient1, true);
+        
+        TcpClient tcpClient2 = tcpConnectionManager.acquire(1000, 0);
+        assertSame(tcpClient1, tcpClient2);
+        tcpConnectionManager.release(tcpClient2, true);
+        
+        assertEquals(1, tcpConnectionManager.getNumConnects());
+        tcpConnectionManager.close();
+    }
+    
+    /*
+    A connection that the remote end closed (ex- the endpoint restarted) is detected when it is acquired, & is replaced by a new connection.
+    */
+    @Test
+    public void testReconnectAfterRemoteClose() throws Exception {
+        TcpConnectionManager tcpConnectionManager = new TcpConnectionManager(getHost(), serverSocket_.getLocalPort(), 1000, 100, 1000);
+        
+        TcpClient tcpClient1 = tcpConnectionManager.acquire(1000, 0);
+        assertNotNull(tcpClient1);
+        tcpConnectionManager.release(tcpClient1, true);
+        
+        closeAcceptedSockets(1, false);
+        
+        TcpClient tcpClient2 = tcpConnectionManager.acquire(1000, 0);
+        assertNotNull(tcpClient2);
+        assertNotSame(tcpClient1, tcpClient2);
+        assertFalse(tcpClient2.isRemoteClosed());
+        tcpConnectionManager.release(tcpClient2, true);
+        
+        assertEquals(2, tcpConnectionManager.getNumConnects());
+        tcpConnectionManager.close();
+    }
+    
+    /*
+    A write to a connection that was reset by the remote end fails, & the failed write closes the client.
+    The retries of the same send then reconnect, rather than writing to the same dead socket.
+    */
+    @Test
+    public void testFailedWriteReconnects() throws Exception {
+        TcpConnectionManager tcpConnectionManager = new TcpConnectionManager(getHost(), serverSocket_.getLocalPort(), 1000, 100, 1000);
+        
+        TcpClient tcpClient = tcpConnectionManager.acquire(1000, 0);
+        assertNotNull(tcpClient);
+        
+        closeAcceptedSockets(1, true);
+        
+        // the first writes after a reset can still be accepted by the local socket, so write until one fails
+        byte[] message = new byte[64 * 1024];
+        boolean isSendSuccess = true;
+        for (int i = 0; (i < 100) && isSendSuccess; i++) isSendSuccess = tcpClient.send(message, 0, message.length, false, true);
+        
+        assertFalse(isSendSuccess);
+        assertFalse(tcpClient.isConnected());
+        
+        // with retries, the same send reconnects & succeeds
+        assertTrue(tcpClient.send(message, 0, message.length, 1, false, true));
+        assertTrue(tcpClient.isConnected());
+        tcpConnectionManager.release(tcpClient, true);
+        
+        tcpConnectionManager.close();
+    }
+    
+    /*
+    The reconnect backoff starts at the minimum, doubles after every consecutive connect failure, & is capped at the maximum.
+    */
+    @Test
+    public void testReconnectBackoff() throws Exception {
+        TcpConnectionManager tcpConnectionManager = new TcpConnectionManager(getHost(), 1, 1000, 100, 1000);
+        
+        assertEquals(100, tcpConnectionManager.getReconnectBackoffInMs(1));
+        assertEquals(200, tcpConnectionManager.getReconnectBackoffInMs(2));
+        assertEquals(400, tcpConnectionManager.getReconnectBackoffInMs(3));
+        assertEquals(800, tcpConnectionManager.getReconnectBackoffInMs(4));
+        assertEquals(1000, tcpConnectionManager.getReconnectBackoffInMs(5));
+        assertEquals(1000, tcpConnectionManager.getReconnectBackoffInMs(100));
+        
+        // a max that is smaller than the min is raised to the min
+        assertEquals(500, new TcpConnectionManager(getHost(), 1, 1000, 500, 10).getReconnectBackoffInMs(3));
+        
+        // an endpoint that refuses connections isn't reconnected to until its backoff has passed
+        int closedPort = getClosedPort();
+        TcpConnectionManager closedPortConnectionManager = new TcpConnectionManager(getHost(), closedPort, 1000, 300, 1000);
+        
+        assertNull(closedPortConnectionManager.acquire(1000, 0));
+        
+        // the endpoint is listening again, but it isn't connected to until the backoff has passed
+        ServerSocket serverSocket = reopenPort(closedPort);
+        if (serverSocket == null) return;
+        
+        try {
+            assertNull(closedPortConnectionManager.acquire(1000, 0));
+            assertEquals(0, closedPortConnectionManager.getNumConnects());
+            
+            Thread.sleep(400);
+            TcpClient tcpClient = closedPortConnectionManager.acquire(1000, 0);
+            assertNotNull(tcpClient);
+            closedPortConnectionManager.release(tcpClient, true);
+            assertEquals(1, closedPortConnectionManager.getNumConnects());
+        }
+        finally {
+            closedPortConnectionManager.close();
+            serverSocket.close();
+        }
+    }
+    
+    /*
+    Only one thread may use the connection at a time. Other threads give up after the lock timeout, & releasing a connection that isn't held is a no-op.
+    */
+    @Test
+    public void testLockTimeout() throws Exception {
+        final TcpConnectionManager tcpConnectionManager = new TcpConnectionManager(getHost(), serverSocket_.getLocalPort(), 1000, 100, 1000);
+        
+        final TcpClient tcpClient = tcpConnectionManager.acquire(1000, 0);
+        assertNotNull(tcpClient);
+        
+        final CountDownLatch acquireDone = new CountDownLatch(1);
+        final long[] acquireTimeInMs = new long[1];
+        final TcpClient[] otherThreadTcpClient = new TcpClient[1];
+        
+        Thread otherThread = new Thread(new Runnable() {
+            public void run() {
+                // not holding the lock, so this must not close or unlock the connection
+                tcpConnectionManager.release(tcpClient, false);
+                
+                long startTimestampInMs = System.currentTimeMillis();
+                otherThreadTcpClient[0] = tcpConnectionManager.acquire(200, 0);
+                acquireTimeInMs[0] = System.currentTimeMillis() - startTimestampInMs;
+                acquireDone.countDown();
+            }
+        });
+        otherThread.start();
+        
+        assertTrue(acquireDone.await(10, TimeUnit.SECONDS));
+        assertNull(otherThreadTcpClient[0]);
+        assertTrue(acquireTimeInMs[0] >= 150);
+        assertTrue(tcpClient.isConnected());
+        
+        // once released, the connection can be acquired again
+        tcpConnectionManager.release(tcpClient, true);
+        TcpClient tcpClient2 = tcpConnectionManager.acquire(200, 0);
+        assertSame(tcpClient, tcpClient2);
+        tcpConnectionManager.release(tcpClient2, true);
+        
+        tcpConnectionManager.close();
+    }
+    
+    private String getHost() {
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+    
+    private void closeAcceptedSockets(int numExpectedSockets, boolean reset) throws Exception {
+        
+        for (int i = 0; (i < 500) && (acceptedSockets_.size() < numExpectedSockets); i++) Thread.sleep(10);
+        assertEquals(numExpectedSockets, acceptedSockets_.size());
+        
+        synchronized (acceptedSockets_) {
+            for (Socket socket : acceptedSockets_) {
+                if (reset) socket.setSoLinger(true, 0);
+                socket.close();
+            }
+        }
+        
+        // give the close (or reset) time to reach the client
+        Thread.sleep(100);
+    }
+    
+    private int getClosedPort() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        int port = serverSocket.getLocalPort();
+        serverSocket.close();
+        return port;
+    }
+    
+    private ServerSocket reopenPort(int port) {
+        try {
+            ServerSocket serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return serverSocket;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.pearson.statspoller.utilities.string_utils;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Jeffrey Schmidt
+ */
+public class BoundedStringCacheTest {
+    
+    public BoundedStringCacheTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+    }
+    
+    @After
+    public void tearDown() {
+    }
+    
+    /*
+    A full generation becomes the previous generation. Entries that are used while they are in the previous generation move back into the current generation.
+    The entries that weren't used are dropped when the next generation starts.
+    */
+    @Test
+    public void testTwoGenerationEviction() {
+        
+        BoundedStringCache boundedStringCache = new BoundedStringCache(3);
+        
+        boundedStringCache.put("a", "A");
+        boundedStringCache.put("b", "B");
+        boundedStringCache.put("c", "C");
+        assertEquals(3, boundedStringCache.size());
+        
+        // the current generation is full, so 'a', 'b', & 'c' become the previous generation
+        boundedStringCache.put("d", "D");
+        assertEquals(4, boundedStringCache.size());
+        assertEquals("C", boundedStringCache.get("c"));
+        assertEquals("D", boundedStringCache.get("d"));
+        
+        // 'c' was used, so it was moved into the current generation (& 'a' & 'b' are only in the previous generation)
+        boundedStringCache.put("e", "E");
+        
+        // the current generation ('d', 'c', 'e') is full, so the previous generation is dropped
+        boundedStringCache.put("f", "F");
+        assertNull(boundedStringCache.get("a"));
+        assertNull(boundedStringCache.get("b"));
+        assertEquals("C", boundedStringCache.get("c"));
+        assertEquals("D", boundedStringCache.get("d"));
+        assertEquals("E", boundedStringCache.get("e"));
+        assertEquals("F", boundedStringCache.get("f"));
+    }
+    
+    /*
+    An entry that is used at least once per generation is never dropped, & the cache never holds more than 2 x 'maxSize' entries.
+    */
+    @Test
+    public void testFrequentlyUsedEntriesAreKept() {
+        
+        BoundedStringCache boundedStringCache = new BoundedStringCache(10);
+        boundedStringCache.put("hot", "HOT");
+        
+        for (int i = 0; i < 1000; i++) {
+            boundedStringCache.put("key" + i, "value" + i);
+            if ((i % 5) == 0) assertEquals("HOT", boundedStringCache.get("hot"));
+            assertTrue(boundedStringCache.size() <= 20);
+        }
+        
+        assertEquals("HOT", boundedStringCache.get("hot"));
+        assertEquals("value999", boundedStringCache.get("key999"));
+        assertNull(boundedStringCache.get("key0"));
+    }
+    
+    @Test
+    public void testNullsAndClear() {
+        
+        BoundedStringCache boundedStringCache = new BoundedStringCache(0);
+        assertEquals(1, boundedStringCache.getMaxSize());
+        
+        boundedStringCache.put(null, "A");
+        boundedStringCache.put("a", null);
+        assertEquals(0, boundedStringCache.size());
+        assertNull(boundedStringCache.get(null));
+        
+        boundedStringCache.put("a", "A");
+        boundedStringCache.put("b", "B");
+        assertEquals("A", boundedStringCache.get("a"));
+        
+        boundedStringCache.clear();
+        assertEquals(0, boundedStringCache.size());
+        assertNull(boundedStringCache.get("a"));
+    }
+
+}